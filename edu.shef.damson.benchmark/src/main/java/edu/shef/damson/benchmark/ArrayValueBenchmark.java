@@ -0,0 +1,121 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.debug.core.model.IVariable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.shef.damson.core.engine.DamsonSyntheticProgram;
+import edu.shef.damson.core.engine.MockEngineSession;
+import edu.shef.damson.core.model.DamsonDebugTarget;
+import edu.shef.damson.core.model.DamsonValue;
+import edu.shef.damson.core.model.DamsonVariable;
+
+/**
+ * Measures expanding a local array variable: fetching the values of the first page of 
+ * elements as the variables view does when the array is expanded, and fetching a single 
+ * element at the end of the array ({@link DamsonValue#getVariable(int)}), for which no 
+ * other element variable is created.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArrayValueBenchmark {
+
+	/**
+	 * Number of elements the variables view shows per array partition
+	 */
+	private static final int PAGE_SIZE = 100;
+
+	@Param({"100", "10000", "100000"})
+	public int arraySize;
+
+	@Param({MockEngineSession.PROTOCOL_LEGACY, MockEngineSession.PROTOCOL_PIPELINE, MockEngineSession.PROTOCOL_BINARY})
+	public String protocol;
+
+	private MockEngineSession fSession;
+	private DamsonVariable fArray;
+
+	/**
+	 * Starts a new suspend before each page fetch so that no element value is cached
+	 */
+	@State(Scope.Thread)
+	public static class Suspend {
+
+		@Setup(Level.Invocation)
+		public void suspend(ArrayValueBenchmark benchmark) throws Exception {
+			benchmark.fSession.nextSuspend();
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void startSession() throws Exception {
+		fSession = new MockEngineSession(new DamsonSyntheticProgram(1, 1, 1, arraySize), protocol);
+		DamsonDebugTarget target = fSession.getTarget();
+		target.updateTargetData();
+		IVariable[] vars = target.getThreads()[0].getTopStackFrame().getVariables();
+		for (int i = 0; i < vars.length; i++) {
+			if (vars[i].getName().equals(DamsonSyntheticProgram.LOCAL_ARRAY))
+				fArray = (DamsonVariable)vars[i];
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void endSession() {
+		fSession.close();
+	}
+
+	/**
+	 * Fetches the values of the first page of elements of the array
+	 */
+	@Benchmark
+	public void fetchPage(Suspend suspend, Blackhole blackhole) throws Exception {
+		DamsonValue value = new DamsonValue(fSession.getTarget(), fArray, "[" + arraySize + "]");
+		IVariable[] elements = value.getVariables(0, Math.min(PAGE_SIZE, arraySize));
+		for (int i = 0; i < elements.length; i++) {
+			blackhole.consume(elements[i].getValue());
+		}
+	}
+
+	/**
+	 * Fetches the value of the last element of the array
+	 */
+	@Benchmark
+	public Object fetchLastElement(Suspend suspend) throws Exception {
+		DamsonValue value = new DamsonValue(fSession.getTarget(), fArray, "[" + arraySize + "]");
+		return value.getVariable(arraySize - 1).getValue();
+	}
+}
@@ -0,0 +1,41 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the DAMSON debug model benchmarks. Takes the standard JMH command line options 
+ * (i.e. a benchmark name pattern and <code>-p threads=1,64</code> to narrow the sweep) and 
+ * always adds the GC profiler so that the allocation rate is reported along with the 
+ * throughput and the sampled refresh latency percentiles.
+ */
+public class DamsonBenchmarks {
+
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
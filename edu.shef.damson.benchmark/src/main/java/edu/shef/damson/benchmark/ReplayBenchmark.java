@@ -0,0 +1,149 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.debug.core.model.IThread;
+import org.eclipse.debug.core.model.IVariable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.shef.damson.core.engine.DamsonSessionRecording;
+import edu.shef.damson.core.engine.DamsonSessionRecording.Exchange;
+import edu.shef.damson.core.engine.DamsonSyntheticProgram;
+import edu.shef.damson.core.engine.MockEngineProcess;
+import edu.shef.damson.core.engine.MockEngineSession;
+import edu.shef.damson.core.engine.ReplayDamsonEngine;
+import edu.shef.damson.core.model.DamsonDebugTarget;
+import edu.shef.damson.core.model.DamsonSessionRecorder;
+
+/**
+ * Measures the request traffic of a recorded debug session: every request of the recording 
+ * which was answered and did not change the program state (no events followed it) is sent in 
+ * the recorded order through a debug target connected to the replay engine. Recordings of 
+ * field sessions are given with <code>-p recording=file</code>, otherwise a session of refreshes 
+ * of a synthetic program is recorded first.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReplayBenchmark {
+
+	/**
+	 * Number of suspends of the recorded synthetic session
+	 */
+	private static final int RECORDED_SUSPENDS = 3;
+
+	@Param({""})
+	public String recording;
+
+	@Param({MockEngineSession.PROTOCOL_PIPELINE})
+	public String protocol;
+
+	private ReplayDamsonEngine fEngine;
+	private DamsonDebugTarget fTarget;
+	private String[] fRequests;
+
+	@Setup(Level.Trial)
+	public void startReplay() throws Exception {
+		File file;
+		if (recording.length() > 0) {
+			file = new File(recording);
+		} else {
+			file = File.createTempFile("damson", ".session");
+			file.deleteOnExit();
+			recordSyntheticSession(file);
+		}
+		DamsonSessionRecording session = DamsonSessionRecording.read(file);
+		List<String> requests = new ArrayList<String>();
+		for (Exchange exchange : session.getExchanges()) {
+			String request = exchange.getRequest();
+			if (exchange.isAnswered() && exchange.getEvents().isEmpty() 
+					&& !request.equals("capabilities") && !request.equals("binary") && !request.equals("exit"))
+				requests.add(request);
+		}
+		fRequests = requests.toArray(new String[requests.size()]);
+		fEngine = new ReplayDamsonEngine(session);
+		fEngine.start();
+		fTarget = new DamsonDebugTarget(null, new MockEngineProcess(fEngine), fEngine.getRequestPort(), fEngine.getEventPort());
+	}
+
+	/**
+	 * Records a session of refreshes of a synthetic program as the debug view and 
+	 * variables view make them after each suspend
+	 *
+	 * @param file recording file
+	 * @throws Exception if the session fails
+	 */
+	private void recordSyntheticSession(File file) throws Exception {
+		DamsonSessionRecorder recorder = new DamsonSessionRecorder(file);
+		MockEngineSession session = new MockEngineSession(new DamsonSyntheticProgram(16, 8, 16, 100), protocol, recorder);
+		try {
+			for (int i = 0; i < RECORDED_SUSPENDS; i++) {
+				session.nextSuspend();
+				DamsonDebugTarget target = session.getTarget();
+				target.updateTargetData();
+				IThread[] threads = target.getThreads();
+				for (int j = 0; j < threads.length; j++) {
+					IVariable[] vars = threads[j].getTopStackFrame().getVariables();
+					for (int k = 0; k < vars.length; k++) {
+						vars[k].getValue();
+					}
+				}
+			}
+		} finally {
+			session.close();
+			recorder.close();
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void endReplay() throws Exception {
+		fTarget.terminate();
+		fEngine.terminate();
+	}
+
+	/**
+	 * Sends the recorded requests and waits for each reply in turn
+	 */
+	@Benchmark
+	public void replayRequests(Blackhole blackhole) throws Exception {
+		for (int i = 0; i < fRequests.length; i++) {
+			blackhole.consume(fTarget.sendRequestAsync(fRequests[i]).get());
+		}
+	}
+}
@@ -0,0 +1,91 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.shef.damson.core.engine.DamsonSyntheticProgram;
+import edu.shef.damson.core.engine.MockEngineSession;
+import edu.shef.damson.core.model.DamsonDebugTarget;
+import edu.shef.damson.core.model.DamsonStackFrame;
+import edu.shef.damson.core.model.DamsonThread;
+
+/**
+ * Measures building the stack frames of a thread from the frame records of a text 
+ * <code>stack</code> reply (the {@link DamsonStackFrame} frame data constructor), without 
+ * any requests to the engine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StackFrameInitBenchmark {
+
+	@Param({"1", "8", "32", "128"})
+	public int depth;
+
+	@Param({"8", "64", "512"})
+	public int variables;
+
+	private MockEngineSession fSession;
+	private DamsonThread fThread;
+	private String[] fFrameRecords;
+
+	@Setup(Level.Trial)
+	public void startSession() throws Exception {
+		fSession = new MockEngineSession(new DamsonSyntheticProgram(1, depth, variables, 100), MockEngineSession.PROTOCOL_PIPELINE);
+		DamsonDebugTarget target = fSession.getTarget();
+		target.updateTargetData();
+		fThread = (DamsonThread)target.getThreads()[0];
+		fFrameRecords = target.sendRequest("stack " + fThread.getProcessHandle()).split("#");
+	}
+
+	@TearDown(Level.Trial)
+	public void endSession() {
+		fSession.close();
+	}
+
+	/**
+	 * Builds a new stack frame for each frame record of the stack
+	 */
+	@Benchmark
+	public DamsonStackFrame[] init() {
+		int numFrames = fFrameRecords.length;
+		DamsonStackFrame[] frames = new DamsonStackFrame[numFrames];
+		for (int i = 0; i < numFrames; i++) {
+			frames[i] = new DamsonStackFrame(fThread, fFrameRecords[i], numFrames-i-1, i);
+		}
+		return frames;
+	}
+}
@@ -0,0 +1,105 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.debug.core.model.IThread;
+import org.eclipse.debug.core.model.IVariable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.shef.damson.core.engine.DamsonSyntheticProgram;
+import edu.shef.damson.core.engine.MockEngineSession;
+import edu.shef.damson.core.model.DamsonDebugTarget;
+
+/**
+ * Measures the refresh of the whole debug model after a suspend 
+ * ({@link DamsonDebugTarget#updateTargetData()}): source, threads, stack frames and 
+ * variables, including the requests to the engine. Every invocation follows a new suspend 
+ * so that no value is served from the previous refresh.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TargetRefreshBenchmark {
+
+	@Param({"1", "16", "64"})
+	public int threads;
+
+	@Param({"4", "32"})
+	public int depth;
+
+	@Param({"8", "64"})
+	public int variables;
+
+	@Param({"100"})
+	public int arraySize;
+
+	@Param({MockEngineSession.PROTOCOL_LEGACY, MockEngineSession.PROTOCOL_PIPELINE, MockEngineSession.PROTOCOL_SNAPSHOT, MockEngineSession.PROTOCOL_BINARY})
+	public String protocol;
+
+	private MockEngineSession fSession;
+
+	@Setup(Level.Trial)
+	public void startSession() throws Exception {
+		fSession = new MockEngineSession(new DamsonSyntheticProgram(threads, depth, variables, arraySize), protocol);
+	}
+
+	@Setup(Level.Invocation)
+	public void suspend() throws Exception {
+		fSession.nextSuspend();
+	}
+
+	@TearDown(Level.Trial)
+	public void endSession() {
+		fSession.close();
+	}
+
+	/**
+	 * Refreshes the debug model and reads the variable values of the top stack frame of 
+	 * the first thread, as shown by the variables view after a suspend
+	 */
+	@Benchmark
+	public void updateTargetData(Blackhole blackhole) throws Exception {
+		DamsonDebugTarget target = fSession.getTarget();
+		target.updateTargetData();
+		IThread[] threads = target.getThreads();
+		if (threads.length > 0) {
+			IVariable[] vars = threads[0].getTopStackFrame().getVariables();
+			for (int i = 0; i < vars.length; i++) {
+				blackhole.consume(vars[i].getValue());
+			}
+		}
+	}
+}
@@ -0,0 +1,382 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.eclipse.debug.core.DebugException;
+import org.eclipse.debug.core.model.IIndexedValue;
+import org.eclipse.debug.core.model.IStackFrame;
+import org.eclipse.debug.core.model.IThread;
+import org.eclipse.debug.core.model.IVariable;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import edu.shef.damson.core.engine.DamsonSyntheticProgram;
+import edu.shef.damson.core.engine.MockEngineSession;
+
+/**
+ * Drives a {@link DamsonDebugTarget} connected to the mock DAMSON engine and checks the threads, 
+ * stack frames and variable values it shows against the synthetic program. Each test runs once 
+ * for each protocol: legacy requests, pipelined requests, binary snapshot replies and non-stop 
+ * mode (the non-stop tests only run for the latter).
+ */
+@RunWith(Parameterized.class)
+public class DamsonDebugTargetTest {
+
+	private static final int THREADS = 3;
+	private static final int DEPTH = 2;
+	private static final int VARIABLES = 3;
+	private static final int ARRAY_SIZE = 10;
+
+	/**
+	 * Time to wait for the target to handle the events of a node or thread
+	 */
+	private static final long EVENT_TIMEOUT = 10000;
+
+	private String fProtocol;
+	private DamsonSyntheticProgram fProgram;
+	private MockEngineSession fSession;
+	private DamsonDebugTarget fTarget;
+
+	@Parameters
+	public static Collection<Object[]> protocols() {
+		return Arrays.asList(new Object[][]{
+				{MockEngineSession.PROTOCOL_LEGACY},
+				{MockEngineSession.PROTOCOL_PIPELINE},
+				{MockEngineSession.PROTOCOL_BINARY},
+				{MockEngineSession.PROTOCOL_NON_STOP}});
+	}
+
+	/**
+	 * Constructs the test for a protocol
+	 *
+	 * @param protocol one of the MockEngineSession PROTOCOL values
+	 */
+	public DamsonDebugTargetTest(String protocol) {
+		fProtocol = protocol;
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		fProgram = new DamsonSyntheticProgram(THREADS, DEPTH, VARIABLES, ARRAY_SIZE);
+		fSession = new MockEngineSession(fProgram, fProtocol);
+		fTarget = fSession.getTarget();
+		fTarget.updateTargetData();
+	}
+
+	@After
+	public void tearDown() {
+		fSession.close();
+	}
+
+	/**
+	 * Gets the expected value of a variable of the synthetic program in the current suspend
+	 *
+	 * @param thread thread index
+	 * @param frame DAMSON stack frame (0 top of the stack)
+	 * @param var variable
+	 * @return expected value string
+	 */
+	private String getExpectedValue(int thread, int frame, DamsonVariable var) {
+		String name = var.getVaribleName();
+		if (fProgram.isArray(name, var.isGlobal()))
+			return "[" + ARRAY_SIZE + "]";
+		return Integer.toString(fProgram.getValue(thread, frame, name, var.isGlobal(), 0, fSession.getSuspends()));
+	}
+
+	/**
+	 * Checks the values of the variables of every stack frame of every thread
+	 */
+	private void assertVariableValues() throws DebugException {
+		IThread[] threads = fTarget.getThreads();
+		assertEquals(THREADS, threads.length);
+		for (int t = 0; t < threads.length; t++) {
+			IStackFrame[] frames = threads[t].getStackFrames();
+			assertEquals(DEPTH, frames.length);
+			for (int f = 0; f < frames.length; f++) {
+				IVariable[] vars = frames[f].getVariables();
+				assertEquals(fProgram.getFrameVariableNames().length, vars.length);
+				for (int v = 0; v < vars.length; v++) {
+					DamsonVariable var = (DamsonVariable)vars[v];
+					assertEquals(fProtocol + " " + threads[t].getName() + " frame " + f + " " + var.getName(),
+							getExpectedValue(t, f, var), var.getValue().getValueString());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets a variable of a stack frame by name
+	 */
+	private DamsonVariable getVariable(IStackFrame frame, String name) throws DebugException {
+		IVariable[] vars = frame.getVariables();
+		for (int i = 0; i < vars.length; i++) {
+			if (vars[i].getName().equals(name))
+				return (DamsonVariable)vars[i];
+		}
+		throw new AssertionError("No variable " + name);
+	}
+
+	/**
+	 * Waits for the target to report a node suspended on its own, or resumed
+	 */
+	private void awaitNodeSuspended(int node, boolean suspended) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + EVENT_TIMEOUT;
+		while (fTarget.isNodeSuspended(node) != suspended) {
+			assertTrue("Node " + node + " suspended: " + !suspended, System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+	}
+
+	/**
+	 * Waits for the target to report a thread suspended on its own, or resumed
+	 */
+	private void awaitThreadSuspended(DamsonThread thread, boolean suspended) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + EVENT_TIMEOUT;
+		while (fTarget.isThreadSuspended(thread) != suspended) {
+			assertTrue(thread.getName() + " suspended: " + !suspended, System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+	}
+
+	/**
+	 * Waits for the values cached under a variable to become the previous values
+	 */
+	private void awaitCacheAdvanced(DamsonVariable var) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + EVENT_TIMEOUT;
+		while (fTarget.getValueCache().get(var.getCacheKey()) != null) {
+			assertTrue(var.getCacheKey() + " still cached", System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+	}
+
+	@Test
+	public void testCapabilities() {
+		boolean extended = !fProtocol.equals(MockEngineSession.PROTOCOL_LEGACY);
+		assertEquals(extended, fTarget.isPipelined());
+		assertEquals(extended, fTarget.hasCapability(DamsonDebugTarget.CAPABILITY_ARRAY_RANGE));
+		boolean binary = fProtocol.equals(MockEngineSession.PROTOCOL_BINARY) || fProtocol.equals(MockEngineSession.PROTOCOL_NON_STOP);
+		assertEquals(binary, fTarget.isBinary());
+		assertEquals(binary, fTarget.hasCapability(DamsonDebugTarget.CAPABILITY_SNAPSHOT));
+		assertEquals(fProtocol.equals(MockEngineSession.PROTOCOL_NON_STOP), fTarget.isNonStop());
+	}
+
+	@Test
+	public void testThreadsAndStackFrames() throws DebugException {
+		assertTrue(fTarget.isSuspended());
+		assertEquals(fProgram.getSourceFile(), fTarget.getTargetSourceFile());
+		IThread[] threads = fTarget.getThreads();
+		assertEquals(THREADS, threads.length);
+		for (int t = 0; t < threads.length; t++) {
+			DamsonThread thread = (DamsonThread)threads[t];
+			assertEquals(fProgram.getThreadHandle(t), thread.getProcessHandle());
+			assertEquals(fProgram.getThreadState(t), thread.getStatus());
+			assertTrue(thread.isSuspended());
+			IStackFrame[] frames = thread.getStackFrames();
+			assertEquals(DEPTH, frames.length);
+			assertSame(frames[0], thread.getTopStackFrame());
+			for (int f = 0; f < frames.length; f++) {
+				assertEquals(fProgram.getFunctionName(f), frames[f].getName());
+				//the program has no breakpoints so stays at line 1
+				assertEquals(fProgram.getFrameLine(f, 1), frames[f].getLineNumber());
+			}
+		}
+	}
+
+	@Test
+	public void testVariableValues() throws DebugException {
+		assertVariableValues();
+	}
+
+	@Test
+	public void testValuesChangeOnSuspend() throws DebugException {
+		IThread[] threads = fTarget.getThreads();
+		IStackFrame top = threads[0].getTopStackFrame();
+		String value = getVariable(top, "v0").getValue().getValueString();
+		fSession.nextSuspend();
+		fTarget.updateTargetData();
+		//threads and frames of the previous suspend are retained
+		assertSame(threads[0], fTarget.getThreads()[0]);
+		assertSame(top, fTarget.getThreads()[0].getTopStackFrame());
+		assertFalse(value.equals(getVariable(top, "v0").getValue().getValueString()));
+		assertVariableValues();
+	}
+
+	@Test
+	public void testArrayElements() throws DebugException {
+		IStackFrame top = fTarget.getThreads()[1].getTopStackFrame();
+		DamsonVariable[] arrays = new DamsonVariable[]{
+				getVariable(top, DamsonSyntheticProgram.LOCAL_ARRAY),
+				getVariable(top, DamsonSyntheticProgram.GLOBAL_ARRAY)};
+		for (int a = 0; a < arrays.length; a++) {
+			IIndexedValue array = (IIndexedValue)arrays[a].getValue();
+			assertTrue(array.hasVariables());
+			assertEquals(ARRAY_SIZE, array.getSize());
+			assertEquals(ARRAY_SIZE, array.getVariables().length);
+			IVariable[] elements = array.getVariables(2, 5);
+			assertEquals(5, elements.length);
+			for (int i = 0; i < elements.length; i++) {
+				String expected = Integer.toString(fProgram.getValue(1, 0, arrays[a].getVaribleName(), arrays[a].isGlobal(), i + 2, fSession.getSuspends()));
+				assertEquals(arrays[a].getName() + "[" + (i + 2) + "]", elements[i].getName());
+				assertEquals(expected, elements[i].getValue().getValueString());
+			}
+			//elements are fetched on first use as well as by range
+			String expected = Integer.toString(fProgram.getValue(1, 0, arrays[a].getVaribleName(), arrays[a].isGlobal(), 9, fSession.getSuspends()));
+			assertEquals(expected, array.getVariable(9).getValue().getValueString());
+		}
+	}
+
+	@Test
+	public void testSetValue() throws DebugException {
+		IStackFrame top = fTarget.getThreads()[2].getTopStackFrame();
+		DamsonVariable var = getVariable(top, "v1");
+		assertTrue(var.supportsValueModification());
+		var.setValue("1234");
+		assertEquals("1234", var.getValue().getValueString());
+		//other variables are unchanged
+		assertEquals(getExpectedValue(2, 0, getVariable(top, "v0")), getVariable(top, "v0").getValue().getValueString());
+		//modified values are discarded by the program on the next suspend
+		fSession.nextSuspend();
+		fTarget.updateTargetData();
+		assertVariableValues();
+	}
+
+	@Test
+	public void testTerminate() throws Exception {
+		assertTrue(fTarget.canTerminate());
+		fTarget.terminate();
+		long deadline = System.currentTimeMillis() + 10000;
+		while (!(fTarget.isTerminated() && fSession.getEngine().isTerminated()) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertTrue(fTarget.isTerminated());
+		assertTrue(fSession.getEngine().isTerminated());
+		assertFalse(fTarget.canResume());
+	}
+
+	@Test
+	public void testNonStopSuspendScope() throws Exception {
+		Assume.assumeTrue(fTarget.isNonStop());
+		DamsonNode node = fTarget.getNode(fTarget.getCurrentNode());
+		DamsonThread thread = node.getThreads()[0];
+		//commands act on the whole program while it is suspended
+		assertSame(fTarget, fTarget.getSuspendScope(thread));
+		assertEquals("suspend", fTarget.getScopedRequest("suspend", thread));
+		fSession.resume();
+		//and on the node of a thread or stack frame while it runs
+		assertSame(node, fTarget.getSuspendScope(thread));
+		assertSame(node, fTarget.getSuspendScope((DamsonDebugElement)thread.getTopStackFrame()));
+		assertSame(fTarget, fTarget.getSuspendScope(fTarget));
+		assertEquals("suspend node " + node.getNumber(), fTarget.getScopedRequest("suspend", thread));
+		fSession.suspend();
+	}
+
+	@Test
+	public void testNonStopNodeSuspend() throws Exception {
+		Assume.assumeTrue(fTarget.isNonStop());
+		DamsonNode node = fTarget.getNode(fTarget.getCurrentNode());
+		DamsonThread thread = node.getThreads()[0];
+		int t = fProgram.getThreadIndex(thread.getProcessHandle());
+		IStackFrame top = thread.getTopStackFrame();
+		DamsonVariable local = getVariable(top, "v0");
+		DamsonVariable global = getVariable(top, "g0");
+		assertEquals(getExpectedValue(t, 0, local), local.getValue().getValueString());
+		assertEquals(getExpectedValue(t, 0, global), global.getValue().getValueString());
+		fSession.resume();
+		assertFalse(node.isSuspended());
+		assertFalse(global.isSuspended());
+		//park the node while the rest of the program runs
+		node.suspend();
+		awaitNodeSuspended(node.getNumber(), true);
+		assertFalse(fTarget.isSuspended());
+		assertTrue(node.isSuspended());
+		assertTrue(thread.isSuspended());
+		//values read before the node suspended are now the previous values, globals included
+		awaitCacheAdvanced(local);
+		awaitCacheAdvanced(global);
+		assertTrue(global.isSuspended());
+		DamsonThread[] threads = node.getThreads();
+		assertEquals(THREADS, threads.length);
+		for (int i = 0; i < threads.length; i++) {
+			IStackFrame[] frames = threads[i].getStackFrames();
+			assertEquals(DEPTH, frames.length);
+			for (int f = 0; f < frames.length; f++) {
+				IVariable[] vars = frames[f].getVariables();
+				for (int v = 0; v < vars.length; v++) {
+					DamsonVariable var = (DamsonVariable)vars[v];
+					assertEquals(threads[i].getName() + " frame " + f + " " + var.getName(),
+							getExpectedValue(fProgram.getThreadIndex(threads[i].getProcessHandle()), f, var), var.getValue().getValueString());
+				}
+			}
+		}
+		node.resume();
+		awaitNodeSuspended(node.getNumber(), false);
+		assertFalse(global.isSuspended());
+		fSession.suspend();
+	}
+
+	@Test
+	public void testNonStopThreadSuspend() throws Exception {
+		Assume.assumeTrue(fTarget.isNonStop());
+		DamsonNode node = fTarget.getNode(fTarget.getCurrentNode());
+		DamsonThread[] threads = node.getThreads();
+		fSession.resume();
+		fTarget.sendRequest("suspend thread " + threads[1].getProcessHandle());
+		awaitThreadSuspended(threads[1], true);
+		//only the thread is suspended
+		assertFalse(node.isSuspended());
+		assertFalse(threads[0].isSuspended());
+		assertTrue(threads[1].isSuspended());
+		fTarget.sendRequest("resume thread " + threads[1].getProcessHandle());
+		awaitThreadSuspended(threads[1], false);
+		fSession.suspend();
+	}
+
+	@Test
+	public void testProgramSuspendClearsScopedSuspends() throws Exception {
+		Assume.assumeTrue(fTarget.isNonStop());
+		DamsonNode node = fTarget.getNode(fTarget.getCurrentNode());
+		DamsonThread thread = node.getThreads()[0];
+		fSession.resume();
+		node.suspend();
+		awaitNodeSuspended(node.getNumber(), true);
+		fTarget.sendRequest("suspend thread " + thread.getProcessHandle());
+		awaitThreadSuspended(thread, true);
+		//suspending and resuming the whole program resumes the node and thread as well
+		fSession.suspend();
+		fSession.resume();
+		assertFalse(node.isSuspended());
+		assertFalse(thread.isSuspended());
+		fSession.suspend();
+		assertTrue(node.isSuspended());
+		fTarget.updateTargetData();
+		assertVariableValues();
+	}
+}
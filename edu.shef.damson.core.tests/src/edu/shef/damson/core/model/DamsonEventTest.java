@@ -0,0 +1,116 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ *
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is
+ * described at
+ *
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ *
+ * and is distributed under the Eclipse Public License v1.0
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Checks the parsing of DAMSON debugger events and the coalescing of superseded suspends 
+ * ({@link DamsonEvent#coalesce(List)}).
+ */
+public class DamsonEventTest {
+
+	/**
+	 * Parses a batch of event lines
+	 */
+	private static List<DamsonEvent> parse(String[] lines) {
+		List<DamsonEvent> events = new ArrayList<DamsonEvent>(lines.length);
+		for (int i = 0; i < lines.length; i++) {
+			events.add(DamsonEvent.parse(lines[i]));
+		}
+		return events;
+	}
+
+	/**
+	 * Checks that coalescing a batch of event lines leaves the expected event lines
+	 */
+	private static void assertCoalesced(String[] expected, String[] lines) {
+		List<DamsonEvent> coalesced = DamsonEvent.coalesce(parse(lines));
+		assertEquals(expected.length, coalesced.size());
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], coalesced.get(i).getText());
+		}
+	}
+
+	@Test
+	public void testParse() {
+		DamsonEvent event = DamsonEvent.parse("suspended breakpoint 12");
+		assertEquals(DamsonEvent.SUSPENDED, event.getKind());
+		assertTrue(event.isDetail(DamsonEvent.DETAIL_BREAKPOINT));
+		assertEquals(12, event.getLine());
+		assertFalse(event.isScoped());
+		assertEquals(DamsonEvent.STARTED, DamsonEvent.parse("started").getKind());
+		assertEquals(DamsonEvent.UNKNOWN, DamsonEvent.parse("rebooted").getKind());
+	}
+
+	@Test
+	public void testParseScoped() {
+		DamsonEvent event = DamsonEvent.parse("suspended node 3 breakpoint 7");
+		assertTrue(event.isNodeEvent());
+		assertEquals(3, event.getScopeId());
+		assertTrue(event.isDetail(DamsonEvent.DETAIL_BREAKPOINT));
+		assertEquals(7, event.getLine());
+		event = DamsonEvent.parse("resumed thread 41 client");
+		assertEquals(DamsonEvent.RESUMED, event.getKind());
+		assertTrue(event.isThreadEvent());
+		assertEquals(41, event.getScopeId());
+		assertTrue(event.isDetail(DamsonEvent.DETAIL_CLIENT));
+		assertEquals(DamsonEvent.UNKNOWN, DamsonEvent.parse("suspended node x client").getKind());
+	}
+
+	@Test
+	public void testResumeSupersedesSuspend() {
+		assertCoalesced(new String[]{"resumed step", "resumed step", "suspended step"},
+				new String[]{"suspended step", "resumed step", "suspended step", "resumed step", "suspended step"});
+	}
+
+	@Test
+	public void testScopedResumeSupersedesSameScopeOnly() {
+		assertCoalesced(new String[]{"suspended node 2 breakpoint 5", "resumed node 1 client"},
+				new String[]{"suspended node 1 breakpoint 5", "suspended node 2 breakpoint 5", "resumed node 1 client"});
+		assertCoalesced(new String[]{"suspended node 4 client", "resumed thread 4 client"},
+				new String[]{"suspended thread 4 client", "suspended node 4 client", "resumed thread 4 client"});
+	}
+
+	@Test
+	public void testGlobalResumeSupersedesScopedSuspends() {
+		assertCoalesced(new String[]{"resumed client"},
+				new String[]{"suspended node 1 client", "suspended thread 9 step", "resumed client"});
+	}
+
+	@Test
+	public void testStartedAndTerminatedReset() {
+		assertCoalesced(new String[]{"suspended client", "terminated", "started", "resumed client"},
+				new String[]{"suspended client", "terminated", "started", "resumed client"});
+		assertCoalesced(new String[]{"suspended node 1 client", "started", "resumed node 1 client"},
+				new String[]{"suspended node 1 client", "started", "resumed node 1 client"});
+	}
+
+	@Test
+	public void testSingleEventUnchanged() {
+		List<DamsonEvent> events = parse(new String[]{"suspended client"});
+		assertEquals(events, DamsonEvent.coalesce(events));
+	}
+}
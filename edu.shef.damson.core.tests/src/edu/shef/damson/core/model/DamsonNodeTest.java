@@ -0,0 +1,120 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ *
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is
+ * described at
+ *
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ *
+ * and is distributed under the Eclipse Public License v1.0
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.debug.core.DebugException;
+import org.eclipse.debug.core.model.IStackFrame;
+import org.eclipse.debug.core.model.IVariable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.shef.damson.core.engine.DamsonSyntheticProgram;
+import edu.shef.damson.core.engine.MockEngineSession;
+
+/**
+ * Checks the threads of nodes of the network other than the current node of a
+ * {@link DamsonDebugTarget} connected to the mock DAMSON engine.
+ */
+public class DamsonNodeTest {
+
+	private static final int NODES = 4;
+	private static final int THREADS = 2;
+	private static final int DEPTH = 2;
+	private static final int VARIABLES = 3;
+	private static final int ARRAY_SIZE = 10;
+
+	private DamsonSyntheticProgram fProgram;
+	private MockEngineSession fSession;
+	private DamsonDebugTarget fTarget;
+
+	@Before
+	public void setUp() throws Exception {
+		fProgram = new DamsonSyntheticProgram(THREADS, DEPTH, VARIABLES, ARRAY_SIZE);
+		fProgram.setNodeCount(NODES);
+		fSession = new MockEngineSession(fProgram, MockEngineSession.PROTOCOL_NODES);
+		fTarget = fSession.getTarget();
+		fTarget.updateTargetData();
+	}
+
+	@After
+	public void tearDown() {
+		fSession.close();
+	}
+
+	/**
+	 * Counts the global variables of a stack frame
+	 */
+	private int countGlobals(IStackFrame frame) throws DebugException {
+		IVariable[] vars = frame.getVariables();
+		int globals = 0;
+		for (int i = 0; i < vars.length; i++) {
+			if (((DamsonVariable)vars[i]).isGlobal())
+				globals++;
+		}
+		return globals;
+	}
+
+	@Test
+	public void testCurrentNodeShowsGlobals() throws DebugException {
+		assertTrue(fTarget.hasNodes());
+		assertEquals(NODES, fTarget.getNodeCount());
+		DamsonNode node = fTarget.getNode(fTarget.getCurrentNode());
+		assertTrue(node.isCurrent());
+		DamsonThread[] threads = node.getThreads();
+		assertEquals(THREADS, threads.length);
+		for (int t = 0; t < threads.length; t++) {
+			IStackFrame[] frames = threads[t].getStackFrames();
+			for (int f = 0; f < frames.length; f++) {
+				assertEquals(fProgram.getFrameVariableNames().length, frames[f].getVariables().length);
+				assertTrue(countGlobals(frames[f]) > 0);
+			}
+		}
+	}
+
+	@Test
+	public void testOtherNodeHidesGlobals() throws DebugException {
+		DamsonNode node = fTarget.getNode(NODES - 1);
+		assertFalse(node.isCurrent());
+		DamsonThread[] threads = node.getThreads();
+		assertEquals(THREADS, threads.length);
+		for (int t = 0; t < threads.length; t++) {
+			assertEquals(node, threads[t].getNode());
+			int thread = fProgram.getThreadIndex(threads[t].getProcessHandle());
+			IStackFrame[] frames = threads[t].getStackFrames();
+			assertEquals(DEPTH, frames.length);
+			for (int f = 0; f < frames.length; f++) {
+				//globals are read from the current node only
+				assertEquals(0, countGlobals(frames[f]));
+				IVariable[] vars = frames[f].getVariables();
+				for (int v = 0; v < vars.length; v++) {
+					DamsonVariable var = (DamsonVariable)vars[v];
+					if (fProgram.isArray(var.getVaribleName(), false))
+						continue;
+					String expected = Integer.toString(fProgram.getValue(thread, f, var.getVaribleName(), false, 0, fSession.getSuspends()));
+					assertEquals(node.getName() + " " + threads[t].getName() + " frame " + f + " " + var.getName(),
+							expected, var.getValue().getValueString());
+				}
+			}
+		}
+	}
+}
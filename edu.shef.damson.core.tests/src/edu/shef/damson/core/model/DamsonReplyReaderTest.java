@@ -0,0 +1,283 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+
+import org.junit.Test;
+
+import edu.shef.damson.core.engine.DamsonBinaryWriter;
+
+/**
+ * Tests the text lines and binary frames read from the request stream by 
+ * {@link DamsonReplyReader} and the decoding of binary reply payloads by 
+ * {@link DamsonBinaryReply}
+ */
+public class DamsonReplyReaderTest {
+
+	/**
+	 * Input stream returning at most one byte from each read, so that every field of a 
+	 * reply crosses a buffer fill
+	 */
+	private static class TrickleInputStream extends InputStream {
+
+		private InputStream fInput;
+
+		TrickleInputStream(byte[] data) {
+			fInput = new ByteArrayInputStream(data);
+		}
+
+		public int read() throws IOException {
+			return fInput.read();
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException {
+			return fInput.read(b, off, Math.min(len, 1));
+		}
+
+		public int available() throws IOException {
+			return Math.min(fInput.available(), 1);
+		}
+	}
+
+	/**
+	 * Encodes a binary reply frame
+	 *
+	 * @param id correlation ID
+	 * @param payload frame payload
+	 * @return frame bytes
+	 */
+	private static byte[] frame(int id, DamsonBinaryWriter payload) {
+		DamsonBinaryWriter frame = new DamsonBinaryWriter(payload.getLength() + 16);
+		frame.write(new byte[]{(byte)DamsonReplyReader.FRAME_MARKER}, 0, 1);
+		frame.writeVarint(id);
+		frame.writeVarint(payload.getLength());
+		frame.write(payload.getData(), 0, payload.getLength());
+		byte[] bytes = new byte[frame.getLength()];
+		System.arraycopy(frame.getData(), 0, bytes, 0, bytes.length);
+		return bytes;
+	}
+
+	/**
+	 * Encodes a text reply line
+	 */
+	private static byte[] line(String line) {
+		return (line + "\n").getBytes();
+	}
+
+	/**
+	 * Concatenates replies into one stream
+	 */
+	private static byte[] stream(byte[][] replies) {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		for (int i = 0; i < replies.length; i++) {
+			stream.write(replies[i], 0, replies[i].length);
+		}
+		return stream.toByteArray();
+	}
+
+	@Test
+	public void testReadLines() throws IOException {
+		DamsonReplyReader reader = new DamsonReplyReader(new ByteArrayInputStream("OK set\r\n1|main#2|func1\n\nlast".getBytes()));
+		assertEquals("OK set", reader.readLine());
+		assertEquals("1|main#2|func1", reader.readLine());
+		assertEquals("", reader.readLine());
+		assertEquals("last", reader.readLine());
+		assertNull(reader.readLine());
+		assertEquals(-1, reader.peek());
+	}
+
+	@Test
+	public void testLineContinuesAfterTimeout() throws IOException {
+		final byte[] data = "OK late\nnext\n".getBytes();
+		//the read times out once half way through the first line
+		DamsonReplyReader reader = new DamsonReplyReader(new InputStream() {
+			private int fPosition = 0;
+			private boolean fTimedOut = false;
+			public int read() throws IOException {
+				if (fPosition == 4 && !fTimedOut) {
+					fTimedOut = true;
+					throw new SocketTimeoutException();
+				}
+				return fPosition < data.length ? data[fPosition++] : -1;
+			}
+			public int read(byte[] b, int off, int len) throws IOException {
+				int c = read();
+				if (c < 0)
+					return -1;
+				b[off] = (byte)c;
+				return 1;
+			}
+		});
+		try {
+			reader.readLine();
+			fail("Read did not time out");
+		} catch (SocketTimeoutException e) {
+			//expected
+		}
+		assertEquals("OK late", reader.readLine());
+		assertEquals("next", reader.readLine());
+	}
+
+	@Test
+	public void testReadLongLine() throws IOException {
+		StringBuffer value = new StringBuffer();
+		for (int i = 0; i < 5000; i++) {
+			value.append(i % 10).append('|');
+		}
+		DamsonReplyReader reader = new DamsonReplyReader(new ByteArrayInputStream(line(value.toString())));
+		assertEquals(value.toString(), reader.readLine());
+	}
+
+	@Test
+	public void testReadFramesAndLines() throws IOException {
+		DamsonBinaryWriter payload = new DamsonBinaryWriter(16);
+		payload.writeString("synthetic.d");
+		payload.writeInt(-3);
+		payload.writeVarint(300);
+		byte[] data = stream(new byte[][]{line("@1 OK binary"), frame(2, payload), line("@3 error")});
+
+		DamsonReplyReader reader = new DamsonReplyReader(new TrickleInputStream(data));
+		assertEquals('@', reader.peek());
+		assertEquals("@1 OK binary", reader.readLine());
+		assertEquals(DamsonReplyReader.FRAME_MARKER, reader.peek());
+		DamsonBinaryReply reply = reader.readFrame();
+		assertEquals(2, reply.getId());
+		assertEquals(payload.getLength(), reply.getLength());
+		assertEquals("synthetic.d", reply.readString());
+		assertEquals(-3, reply.readInt());
+		assertEquals(300, reply.readVarint());
+		assertFalse(reply.hasRemaining());
+		assertEquals("@3 error", reader.readLine());
+		assertNull(reader.readLine());
+	}
+
+	@Test
+	public void testReadFrameLargerThanBuffer() throws IOException {
+		DamsonBinaryWriter payload = new DamsonBinaryWriter(16);
+		for (int i = 0; i < 10000; i++) {
+			payload.writeInt(i - 5000);
+		}
+		DamsonReplyReader reader = new DamsonReplyReader(new ByteArrayInputStream(stream(new byte[][]{frame(70000, payload), frame(0, new DamsonBinaryWriter(0))})));
+		DamsonBinaryReply reply = reader.readFrame();
+		assertEquals(70000, reply.getId());
+		for (int i = 0; i < 10000; i++) {
+			assertEquals(i - 5000, reply.readInt());
+		}
+		assertFalse(reply.hasRemaining());
+		reply = reader.readFrame();
+		assertEquals(0, reply.getId());
+		assertEquals(0, reply.getLength());
+	}
+
+	@Test
+	public void testReadFrameOfTextReply() throws IOException {
+		DamsonReplyReader reader = new DamsonReplyReader(new ByteArrayInputStream(line("error")));
+		try {
+			reader.readFrame();
+			fail("Read a text reply as a frame");
+		} catch (IOException e) {
+		}
+	}
+
+	@Test(expected = EOFException.class)
+	public void testReadTruncatedFrame() throws IOException {
+		DamsonBinaryWriter payload = new DamsonBinaryWriter(16);
+		payload.writeString("truncated");
+		byte[] data = frame(1, payload);
+		byte[] truncated = new byte[data.length - 3];
+		System.arraycopy(data, 0, truncated, 0, truncated.length);
+		new DamsonReplyReader(new ByteArrayInputStream(truncated)).readFrame();
+	}
+
+	@Test
+	public void testReady() throws IOException {
+		DamsonReplyReader reader = new DamsonReplyReader(new ByteArrayInputStream(new byte[0]));
+		assertFalse(reader.ready());
+		reader = new DamsonReplyReader(new TrickleInputStream(line("capabilities")));
+		assertTrue(reader.ready());
+		assertEquals('c', reader.peek());
+		assertTrue(reader.ready());
+		assertEquals("capabilities", reader.readLine());
+		assertFalse(reader.ready());
+	}
+
+	@Test
+	public void testBinaryReplyValues() throws IOException {
+		DamsonBinaryWriter payload = new DamsonBinaryWriter(0);
+		int[] ints = new int[]{0, 1, -1, 63, -64, 64, Integer.MAX_VALUE, Integer.MIN_VALUE};
+		for (int i = 0; i < ints.length; i++) {
+			payload.writeInt(ints[i]);
+		}
+		payload.writeVarint(0);
+		payload.writeVarint(127);
+		payload.writeVarint(128);
+		payload.writeVarint(Integer.MAX_VALUE);
+		payload.writeString("");
+		payload.writeString("caf\u00e9 \u03bb");
+
+		DamsonBinaryReply reply = new DamsonBinaryReply(5, payload.getData(), payload.getLength());
+		for (int i = 0; i < ints.length; i++) {
+			assertEquals(ints[i], reply.readInt());
+		}
+		assertEquals(0, reply.readVarint());
+		assertEquals(127, reply.readVarint());
+		assertEquals(128, reply.readVarint());
+		assertEquals(Integer.MAX_VALUE, reply.readVarint());
+		assertEquals("", reply.readString());
+		assertEquals("caf\u00e9 \u03bb", reply.readString());
+		assertFalse(reply.hasRemaining());
+	}
+
+	@Test
+	public void testBinaryReplyTruncated() {
+		DamsonBinaryWriter payload = new DamsonBinaryWriter(0);
+		payload.writeString("value");
+		//the payload buffer holds more bytes than the reply length
+		DamsonBinaryReply reply = new DamsonBinaryReply(0, payload.getData(), payload.getLength() - 1);
+		try {
+			reply.readString();
+			fail("Read a truncated string");
+		} catch (EOFException e) {
+		}
+		reply = new DamsonBinaryReply(0, new byte[]{(byte)0x80}, 1);
+		try {
+			reply.readVarint();
+			fail("Read a truncated varint");
+		} catch (EOFException e) {
+		}
+		reply = new DamsonBinaryReply(0, new byte[0], 0);
+		assertFalse(reply.hasRemaining());
+		try {
+			reply.readInt();
+			fail("Read past the end of the payload");
+		} catch (EOFException e) {
+		}
+	}
+}
@@ -0,0 +1,138 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * Tests the records and fields of text replies read by {@link DamsonReplyTokenizer}
+ */
+public class DamsonReplyTokenizerTest {
+
+	@Test
+	public void testRecordsAndFields() {
+		DamsonReplyTokenizer reply = new DamsonReplyTokenizer("1|main|x|7#2|func1#3");
+		assertEquals(3, reply.countRecords());
+		assertEquals(4, reply.countFields());
+		assertEquals(1, reply.nextInt());
+		assertEquals("main", reply.nextString());
+		assertEquals("x", reply.nextString());
+		assertEquals(7, reply.nextInt());
+		assertTrue(reply.atEndOfRecord());
+		assertTrue(reply.nextRecord());
+		assertEquals(2, reply.countRecords());
+		assertEquals(2, reply.countFields());
+		assertEquals(2, reply.nextInt());
+		assertEquals("func1", reply.nextString());
+		assertTrue(reply.nextRecord());
+		assertEquals(1, reply.countFields());
+		assertEquals(3, reply.nextInt());
+		assertTrue(reply.atEnd());
+		assertFalse(reply.nextRecord());
+	}
+
+	@Test
+	public void testNextRecordSkipsRemainingFields() {
+		DamsonReplyTokenizer reply = new DamsonReplyTokenizer("a|b|c#d");
+		assertEquals("a", reply.nextString());
+		assertTrue(reply.nextRecord());
+		assertEquals("d", reply.nextString());
+	}
+
+	@Test
+	public void testEmptyFields() {
+		DamsonReplyTokenizer reply = new DamsonReplyTokenizer("|x||#");
+		assertEquals(4, reply.countFields());
+		assertEquals("", reply.nextString());
+		assertEquals("x", reply.nextString());
+		assertEquals("", reply.nextString());
+		assertEquals("", reply.nextString());
+		assertTrue(reply.atEndOfRecord());
+		assertTrue(reply.nextRecord());
+		assertEquals(0, reply.countFields());
+		assertTrue(reply.atEnd());
+	}
+
+	@Test
+	public void testEmptyAndNullReplies() {
+		DamsonReplyTokenizer reply = new DamsonReplyTokenizer(null);
+		assertTrue(reply.atEnd());
+		assertEquals(0, reply.countRecords());
+		assertEquals(0, reply.countFields());
+		assertFalse(reply.nextRecord());
+		reply.reset("");
+		assertTrue(reply.atEnd());
+		assertEquals(0, reply.countRecords());
+	}
+
+	@Test
+	public void testSkipFieldAndFieldStartsWith() {
+		DamsonReplyTokenizer reply = new DamsonReplyTokenizer("T|12|0#F|5");
+		assertTrue(reply.fieldStartsWith('T'));
+		reply.skipField();
+		assertFalse(reply.fieldStartsWith('T'));
+		reply.skipField();
+		assertEquals(0, reply.nextInt());
+		assertFalse(reply.fieldStartsWith('F'));
+		reply.nextRecord();
+		assertTrue(reply.fieldStartsWith('F'));
+	}
+
+	@Test
+	public void testReset() {
+		DamsonReplyTokenizer reply = new DamsonReplyTokenizer("1#2");
+		reply.nextRecord();
+		reply.reset("5|6");
+		assertEquals(1, reply.countRecords());
+		assertEquals(5, reply.nextInt());
+		assertEquals(6, reply.nextInt());
+	}
+
+	@Test
+	public void testParseInt() {
+		assertEquals(0, DamsonReplyTokenizer.parseInt("0", 0, 1));
+		assertEquals(42, DamsonReplyTokenizer.parseInt("x42x", 1, 3));
+		assertEquals(-17, DamsonReplyTokenizer.parseInt("-17", 0, 3));
+		assertEquals(17, DamsonReplyTokenizer.parseInt("+17", 0, 3));
+		assertEquals(10, DamsonReplyTokenizer.parseInt("[10]", 1, 3));
+		assertEquals(Integer.MAX_VALUE, DamsonReplyTokenizer.parseInt("2147483647", 0, 10));
+		assertEquals(Integer.MIN_VALUE, DamsonReplyTokenizer.parseInt("-2147483648", 0, 11));
+	}
+
+	@Test
+	public void testParseIntRejectsInvalidNumbers() {
+		String[] invalid = new String[]{"", "-", "+", "1a", "a1", "1.5", " 1", "2147483648", "-2147483649", "99999999999"};
+		for (int i = 0; i < invalid.length; i++) {
+			try {
+				DamsonReplyTokenizer.parseInt(invalid[i], 0, invalid[i].length());
+				fail("Parsed \"" + invalid[i] + "\"");
+			} catch (NumberFormatException e) {
+			}
+		}
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testNextIntOfTextField() {
+		new DamsonReplyTokenizer("error").nextInt();
+	}
+}
@@ -0,0 +1,94 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ *
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is
+ * described at
+ *
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ *
+ * and is distributed under the Eclipse Public License v1.0
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.eclipse.debug.core.DebugException;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Checks how the request channel of a {@link DamsonDebugTarget} copes with replies which
+ * are stray, malformed or late, against a {@link ScriptedEngine}.
+ */
+public class DamsonRequestChannelTest {
+
+	private static final String[] PIPELINED = new String[]{DamsonDebugTarget.CAPABILITY_PIPELINE};
+
+	private ScriptedEngine fEngine;
+	private DamsonDebugTarget fTarget;
+
+	@After
+	public void tearDown() {
+		if (fEngine != null)
+			fEngine.terminate();
+	}
+
+	@Test
+	public void testUntaggedReplyIsDropped() throws Exception {
+		fEngine = new ScriptedEngine(PIPELINED);
+		fEngine.setReply("first", "one\nstray");
+		fTarget = fEngine.connect();
+		assertTrue(fTarget.isPipelined());
+		fTarget.sendRequest("sync");
+		//the stray line arrives while the second request is outstanding
+		DamsonRequest[] requests = fTarget.sendRequestsAsync(new String[]{"first", "second"});
+		assertEquals("one", requests[0].getReply());
+		assertEquals("OK second", requests[1].getReply());
+		assertEquals("OK third", fTarget.sendRequest("third"));
+	}
+
+	@Test
+	public void testMalformedTagFailsChannel() throws Exception {
+		fEngine = new ScriptedEngine(PIPELINED);
+		fEngine.setReply("first", "one\n@x garbage");
+		fTarget = fEngine.connect();
+		fTarget.sendRequest("sync");
+		DamsonRequest[] requests = fTarget.sendRequestsAsync(new String[]{"first", "second"});
+		assertEquals("one", requests[0].getReply());
+		try {
+			requests[1].getReply();
+			fail("Reply read from a channel which is out of step");
+		} catch (DebugException e) {
+			//expected
+		}
+		try {
+			fTarget.sendRequest("third");
+			fail("Request sent over a failed channel");
+		} catch (DebugException e) {
+			//expected
+		}
+	}
+
+	@Test
+	public void testLateCapabilitiesReplyIsDiscarded() throws Exception {
+		fEngine = new ScriptedEngine(PIPELINED);
+		//later than the target waits for the reply but within the second wait
+		fEngine.setDelay("capabilities", 2500);
+		//the first request is sent as soon as the target gives up waiting
+		fEngine.holdStarted();
+		fTarget = fEngine.connect();
+		assertFalse(fTarget.isPipelined());
+		assertEquals("OK first", fTarget.sendRequest("first"));
+		assertEquals("OK second", fTarget.sendRequest("second"));
+	}
+}
@@ -0,0 +1,148 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ *
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is
+ * described at
+ *
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ *
+ * and is distributed under the Eclipse Public License v1.0
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.debug.core.DebugException;
+import org.junit.After;
+import org.junit.Test;
+
+import edu.shef.damson.core.DebugCorePlugin;
+
+/**
+ * Checks the timeout and cancellation of {@link DamsonRequest} replies and that late replies 
+ * are discarded, against a {@link ScriptedEngine} which is slow to reply to some requests.
+ */
+public class DamsonRequestTest {
+
+	/**
+	 * Time the engine takes to reply to the slow request
+	 */
+	private static final long SLOW_REPLY = 1000;
+
+	private ScriptedEngine fEngine;
+	private DamsonDebugTarget fTarget;
+
+	@After
+	public void tearDown() {
+		if (fEngine != null)
+			fEngine.terminate();
+	}
+
+	/**
+	 * Connects a target to an engine which is slow to reply to the <code>slow</code> request
+	 */
+	private void connect(String[] capabilities) throws Exception {
+		fEngine = new ScriptedEngine(capabilities);
+		fEngine.setDelay("slow", SLOW_REPLY);
+		fTarget = fEngine.connect();
+	}
+
+	/**
+	 * Returns the number of failures recorded for a command
+	 */
+	private long getFailures(String command) {
+		DamsonCommandStatistics[] statistics = fTarget.getRequestStatistics().getCommandStatistics();
+		for (int i = 0; i < statistics.length; i++) {
+			if (statistics[i].getCommand().equals(command))
+				return statistics[i].getFailures();
+		}
+		return 0;
+	}
+
+	@Test
+	public void testReplyTimesOut() throws Exception {
+		connect(new String[]{DamsonDebugTarget.CAPABILITY_PIPELINE});
+		DamsonRequest request = fTarget.sendRequestAsync("slow");
+		long start = System.currentTimeMillis();
+		try {
+			request.getReply(200, null);
+			fail("Reply did not time out");
+		} catch (DebugException e) {
+			//expected
+		}
+		assertTrue(System.currentTimeMillis() - start < SLOW_REPLY);
+		assertTrue(request.isCancelled());
+		assertFalse(fTarget.isOutstanding(request));
+		//the late reply matches no request and is dropped
+		assertEquals("OK next", fTarget.sendRequest("next"));
+	}
+
+	@Test
+	public void testMonitorCancelsReply() throws Exception {
+		connect(new String[]{DamsonDebugTarget.CAPABILITY_PIPELINE});
+		DamsonRequest request = fTarget.sendRequestAsync("slow");
+		NullProgressMonitor monitor = new NullProgressMonitor();
+		monitor.setCanceled(true);
+		long start = System.currentTimeMillis();
+		try {
+			request.getReply(DamsonDebugTarget.REQUEST_TIMEOUT, monitor);
+			fail("Reply was not cancelled");
+		} catch (DebugException e) {
+			//expected
+		}
+		assertTrue(System.currentTimeMillis() - start < SLOW_REPLY);
+		assertTrue(request.isCancelled());
+		assertFalse(fTarget.isOutstanding(request));
+	}
+
+	@Test
+	public void testCancelForgetsRequest() throws Exception {
+		connect(new String[]{DamsonDebugTarget.CAPABILITY_PIPELINE});
+		DamsonRequest request = fTarget.sendRequestAsync("slow");
+		assertTrue(fTarget.isOutstanding(request));
+		assertTrue(request.cancel(true));
+		assertFalse(fTarget.isOutstanding(request));
+		assertFalse(request.cancel(true));
+		assertEquals(1, getFailures("slow"));
+	}
+
+	@Test
+	public void testStatisticsOfTarget() throws Exception {
+		connect(new String[]{DamsonDebugTarget.CAPABILITY_PIPELINE});
+		fTarget.sendRequest("next");
+		assertSame(fTarget.getRequestStatistics(), DebugCorePlugin.getRequestStatistics(fTarget));
+		assertEquals(0, getFailures("next"));
+		assertNull(DebugCorePlugin.getRequestStatistics(null));
+	}
+
+	@Test
+	public void testLateReplyDiscardedWhenNotPipelined() throws Exception {
+		connect(new String[0]);
+		assertFalse(fTarget.isPipelined());
+		fTarget.setRequestTimeout(200);
+		try {
+			fTarget.sendRequest("slow");
+			fail("Reply did not time out");
+		} catch (DebugException e) {
+			//expected
+		}
+		//the session carries on and the late reply is not taken for the next reply
+		fTarget.setRequestTimeout((int)SLOW_REPLY * 2);
+		assertEquals("OK next", fTarget.sendRequest("next"));
+		assertFalse(fTarget.isTerminated());
+		assertFalse(fEngine.isTerminated());
+	}
+}
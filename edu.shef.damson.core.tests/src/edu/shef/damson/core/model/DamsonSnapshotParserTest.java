@@ -0,0 +1,198 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.debug.core.DebugException;
+import org.eclipse.debug.core.model.IThread;
+import org.eclipse.debug.core.model.IVariable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.shef.damson.core.engine.DamsonBinaryWriter;
+import edu.shef.damson.core.engine.DamsonSyntheticProgram;
+import edu.shef.damson.core.engine.MockEngineSession;
+
+/**
+ * Tests the threads, stack frames and variables built by {@link DamsonSnapshotParser} from 
+ * text and binary snapshot replies. The parser builds the model of a target connected to 
+ * the mock DAMSON engine but the snapshots parsed are given by each test.
+ */
+public class DamsonSnapshotParserTest {
+
+	private MockEngineSession fSession;
+
+	@Before
+	public void setUp() throws Exception {
+		fSession = new MockEngineSession(new DamsonSyntheticProgram(2, 2, 2, 0), MockEngineSession.PROTOCOL_LEGACY);
+		fSession.getTarget().updateTargetData();
+	}
+
+	@After
+	public void tearDown() {
+		fSession.close();
+	}
+
+	/**
+	 * Checks the model built from the snapshot used by the text and binary tests
+	 */
+	private void assertSnapshot(DamsonSnapshotParser parser) throws DebugException {
+		assertEquals("prog.d", parser.getSourceFile());
+		assertEquals(3, parser.getCurrentNode());
+		DamsonThread[] threads = parser.getThreads();
+		assertEquals(2, threads.length);
+
+		assertEquals(1, threads[0].getProcessHandle());
+		assertEquals(0, threads[0].getStatus());
+		DamsonStackFrame[] frames = threads[0].getStackFrames();
+		assertEquals(2, frames.length);
+		assertEquals(12, frames[0].getLineNumber());
+		assertEquals("func1", frames[0].getName());
+		assertEquals(0, frames[0].getStackFrame());
+		assertEquals(3, frames[1].getLineNumber());
+		assertEquals("main", frames[1].getName());
+		assertEquals(1, frames[1].getStackFrame());
+
+		IVariable[] vars = frames[0].getVariables();
+		assertEquals(2, vars.length);
+		assertEquals("a", vars[0].getName());
+		assertEquals("-5", vars[0].getValue().getValueString());
+		assertFalse(((DamsonVariable)vars[0]).isGlobal());
+		assertEquals("limit", vars[1].getName());
+		assertEquals("7", vars[1].getValue().getValueString());
+		assertTrue(((DamsonVariable)vars[1]).isGlobal());
+
+		vars = frames[1].getVariables();
+		assertEquals(2, vars.length);
+		assertEquals("b", vars[0].getName());
+		assertEquals("[4]", vars[0].getValue().getValueString());
+		assertTrue(vars[0].getValue().hasVariables());
+		//globals are shared by all frames
+		assertSame(frames[0].getVariables()[1], vars[1]);
+
+		assertEquals(2, threads[1].getProcessHandle());
+		assertEquals(1, threads[1].getStatus());
+		frames = threads[1].getStackFrames();
+		assertEquals(1, frames.length);
+		assertEquals(0, frames[0].getVariables().length);
+	}
+
+	@Test
+	public void testParseTextSnapshot() throws DebugException {
+		DamsonSnapshotParser parser = new DamsonSnapshotParser(fSession.getTarget());
+		assertTrue(parser.parse("S|/home/user/prog.d|3#T|1|0#F|12|func1|a|-5|&limit|7#F|3|main|b|[4]|&limit|7#T|2|1#F|8|main"));
+		assertSnapshot(parser);
+	}
+
+	@Test
+	public void testParseBinarySnapshot() throws Exception {
+		DamsonBinaryWriter payload = new DamsonBinaryWriter(64);
+		payload.writeString("/home/user/prog.d");
+		payload.writeInt(3);
+		payload.writeVarint(2);
+		//thread 1 with two frames
+		payload.writeInt(1);
+		payload.writeInt(0);
+		payload.writeVarint(2);
+		payload.writeInt(12);
+		payload.writeString("func1");
+		payload.writeVarint(2);
+		payload.writeString("a");
+		payload.writeString("-5");
+		payload.writeString("&limit");
+		payload.writeString("7");
+		payload.writeInt(3);
+		payload.writeString("main");
+		payload.writeVarint(2);
+		payload.writeString("b");
+		payload.writeString("[4]");
+		payload.writeString("&limit");
+		payload.writeString("7");
+		//thread 2 with one frame
+		payload.writeInt(2);
+		payload.writeInt(1);
+		payload.writeVarint(1);
+		payload.writeInt(8);
+		payload.writeString("main");
+		payload.writeVarint(0);
+
+		DamsonSnapshotParser parser = new DamsonSnapshotParser(fSession.getTarget());
+		assertTrue(parser.parse(new DamsonBinaryReply(0, payload.getData(), payload.getLength())));
+		assertSnapshot(parser);
+	}
+
+	@Test
+	public void testRetainsThreadsOfTarget() {
+		IThread[] current = fSession.getTarget().getThreads();
+		DamsonSnapshotParser parser = new DamsonSnapshotParser(fSession.getTarget());
+		assertTrue(parser.parse("S|prog.d|0#T|2|0#F|1|main#T|99|0#F|1|main"));
+		DamsonThread[] threads = parser.getThreads();
+		assertEquals(2, threads.length);
+		assertSame(current[1], threads[0]);
+		assertEquals(99, threads[1].getProcessHandle());
+	}
+
+	@Test
+	public void testRejectsInvalidTextSnapshots() {
+		String[] invalid = new String[]{
+				null,
+				"",
+				"error",
+				"S|prog.d",
+				"S|prog.d|x",
+				"S|prog.d|0#T|x|0",
+				"S|prog.d|0#F|1|main",
+				"S|prog.d|0#T|1|0#F|x|main",
+				"S|prog.d|0#T|1|0#F|12|func1|a|-5|b",
+				"S|prog.d|0#Q|1"};
+		for (int i = 0; i < invalid.length; i++) {
+			DamsonSnapshotParser parser = new DamsonSnapshotParser(fSession.getTarget());
+			assertFalse(invalid[i], parser.parse(invalid[i]));
+		}
+	}
+
+	@Test
+	public void testInvalidSnapshotLeavesThreads() throws DebugException {
+		DamsonThread thread = (DamsonThread)fSession.getTarget().getThreads()[0];
+		DamsonStackFrame[] frames = thread.getStackFrames();
+		int line = frames[0].getLineNumber();
+		DamsonSnapshotParser parser = new DamsonSnapshotParser(fSession.getTarget());
+		assertFalse(parser.parse("S|prog.d|0#T|" + thread.getProcessHandle() + "|2#F|99|changed|a|1#T|7|0#Q|1"));
+		assertEquals(0, parser.getThreads().length);
+		assertSame(frames[0], thread.getStackFrames()[0]);
+		assertEquals(frames.length, thread.getStackFrames().length);
+		assertEquals(line, thread.getStackFrames()[0].getLineNumber());
+		assertEquals("main", thread.getStackFrames()[frames.length - 1].getName());
+	}
+
+	@Test
+	public void testRejectsTruncatedBinarySnapshot() {
+		DamsonBinaryWriter payload = new DamsonBinaryWriter(16);
+		payload.writeString("prog.d");
+		payload.writeInt(0);
+		payload.writeVarint(1);
+		payload.writeInt(1);
+		DamsonSnapshotParser parser = new DamsonSnapshotParser(fSession.getTarget());
+		assertFalse(parser.parse(new DamsonBinaryReply(0, payload.getData(), payload.getLength())));
+	}
+}
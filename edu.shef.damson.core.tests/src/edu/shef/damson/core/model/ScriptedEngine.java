@@ -0,0 +1,179 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ *
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is
+ * described at
+ *
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ *
+ * and is distributed under the Eclipse Public License v1.0
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.CoreException;
+
+import edu.shef.damson.core.engine.DamsonEngineServer;
+import edu.shef.damson.core.engine.MockEngineProcess;
+
+/**
+ * A DAMSON debugger with scripted replies for testing how a target copes with replies which
+ * are late, stray or malformed. Requests without a scripted reply are answered with
+ * <code>OK request</code>. A scripted reply may hold further lines, which are written as
+ * they are after the reply line (i.e. without a correlation ID).
+ */
+public class ScriptedEngine extends DamsonEngineServer {
+
+	/**
+	 * Time to wait for the target to send a request
+	 */
+	private static final long REQUEST_TIMEOUT = 10000;
+
+	private String[] fCapabilities;
+	private Map<String, String> fReplies = new HashMap<String, String>();
+	private Map<String, Long> fDelays = new HashMap<String, Long>();
+	private List<String> fHandled = new ArrayList<String>();
+	private boolean fStartedHeld = false;
+
+	/**
+	 * Constructs an engine listening on free ports
+	 *
+	 * @param capabilities capabilities reported in reply to the capabilities request
+	 * @throws IOException if unable to listen
+	 */
+	public ScriptedEngine(String[] capabilities) throws IOException {
+		super(0, 0);
+		fCapabilities = capabilities;
+	}
+
+	/**
+	 * Sets the reply to a request
+	 *
+	 * @param request request
+	 * @param reply reply (further lines separated by new lines are written untagged)
+	 */
+	public synchronized void setReply(String request, String reply) {
+		fReplies.put(request, reply);
+	}
+
+	/**
+	 * Delays the reply to a request
+	 *
+	 * @param request request
+	 * @param delay time in milliseconds
+	 */
+	public synchronized void setDelay(String request, long delay) {
+		fDelays.put(request, Long.valueOf(delay));
+	}
+
+	/**
+	 * Holds back the <code>started</code> event so that the target does not resume the 
+	 * program (and sends no request) once connected
+	 */
+	public synchronized void holdStarted() {
+		fStartedHeld = true;
+	}
+
+	/**
+	 * Starts the engine and connects a target to it
+	 *
+	 * @return the connected target
+	 * @throws CoreException if the target can not connect
+	 */
+	public DamsonDebugTarget connect() throws CoreException {
+		start();
+		DamsonDebugTarget target = new DamsonDebugTarget(null, new MockEngineProcess(this), DamsonTransport.createTcp(getRequestPort(), getEventPort()));
+		//the target resumes the program once started
+		if (!isStartedHeld())
+			awaitRequest("resume");
+		return target;
+	}
+
+	/**
+	 * Returns whether the <code>started</code> event is held back
+	 *
+	 * @return whether held back
+	 */
+	private synchronized boolean isStartedHeld() {
+		return fStartedHeld;
+	}
+
+	/* (non-Javadoc)
+	 * @see edu.shef.damson.core.engine.DamsonEngineServer#sendEvent(java.lang.String)
+	 */
+	public void sendEvent(String event) {
+		if (event.equals("started") && isStartedHeld())
+			return;
+		super.sendEvent(event);
+	}
+
+	/**
+	 * Waits for a request to have been handled
+	 *
+	 * @param request request
+	 * @throws IllegalStateException if the request is not sent in time
+	 */
+	public synchronized void awaitRequest(String request) {
+		long deadline = System.currentTimeMillis() + REQUEST_TIMEOUT;
+		while (!fHandled.contains(request)) {
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0)
+				throw new IllegalStateException("Request not sent: " + request);
+			try {
+				wait(remaining);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see edu.shef.damson.core.engine.DamsonEngineServer#handleRequest(java.lang.String)
+	 */
+	protected String handleRequest(String request) {
+		String reply;
+		Long delay;
+		synchronized (this) {
+			reply = fReplies.get(request);
+			delay = fDelays.get(request);
+		}
+		if (delay != null) {
+			try {
+				Thread.sleep(delay.longValue());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (reply == null) {
+			if (request.equals("capabilities")) {
+				StringBuffer capabilities = new StringBuffer("capabilities");
+				for (int i = 0; i < fCapabilities.length; i++) {
+					capabilities.append(' ').append(fCapabilities[i]);
+				}
+				reply = capabilities.toString();
+			} else {
+				if (request.equals("exit"))
+					exitAfterReply();
+				reply = "OK " + request;
+			}
+		}
+		synchronized (this) {
+			fHandled.add(request);
+			notifyAll();
+		}
+		return reply;
+	}
+}
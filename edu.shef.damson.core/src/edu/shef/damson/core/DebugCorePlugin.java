@@ -21,6 +21,7 @@ import org.eclipse.core.runtime.FileLocator;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Plugin;
+import org.eclipse.debug.core.model.IDebugTarget;
 import org.osgi.framework.BundleContext;
 
 import java.io.File;
@@ -28,6 +29,9 @@ import java.io.IOException;
 import java.net.URL;
 import java.util.*;
 
+import edu.shef.damson.core.model.DamsonDebugTarget;
+import edu.shef.damson.core.model.DamsonRequestStatistics;
+
 /**
  * The main plugin class to be used in the desktop.
  */
@@ -75,6 +79,61 @@ public class DebugCorePlugin extends Plugin {
 	 */
 	public static final String ATTR_DAMSON_LAUNCH_OPTIONS =  ID_DAMSON_DEBUG_MODEL + ".ATTR_DAMSON_LAUNCH_OPTIONS";
 	
+	/**
+	 * Launch configuration attribute key. Value is a boolean indicating whether free 
+	 * debugger ports are allocated for each debug launch (and passed to DAMSON on the 
+	 * command line) rather than using the fixed REQUEST_PORT and EVENT_PORT. Allows 
+	 * many debug sessions to run at once.
+	 */
+	public static final String ATTR_DAMSON_DYNAMIC_PORTS =  ID_DAMSON_DEBUG_MODEL + ".ATTR_DAMSON_DYNAMIC_PORTS";
+	
+	/**
+	 * Launch configuration attribute key. Value is the transport of the debugger request 
+	 * and event streams specified by one of the TRANSPORT values.
+	 */
+	public static final String ATTR_DAMSON_TRANSPORT =  ID_DAMSON_DEBUG_MODEL + ".ATTR_DAMSON_TRANSPORT";
+	
+	/**
+	 * Launch configuration attribute key. Value is a boolean indicating whether the DAMSON 
+	 * debugger is asked for its protocol extensions (pipelined and binary replies, snapshots 
+	 * etc.) when connected. Defaults to false as DAMSON versions which do not reply to the 
+	 * capabilities request would delay every launch by the wait for the reply.
+	 */
+	public static final String ATTR_DAMSON_PROTOCOL_EXTENSIONS =  ID_DAMSON_DEBUG_MODEL + ".ATTR_DAMSON_PROTOCOL_EXTENSIONS";
+	
+	/**
+	 * Launch configuration attribute key. Value is a boolean indicating whether debug 
+	 * launches run a synthetic program on the in-process mock DAMSON engine rather than 
+	 * the DAMSON executable. Used to test and measure the debugger without DAMSON.
+	 */
+	public static final String ATTR_DAMSON_MOCK_ENGINE =  ID_DAMSON_DEBUG_MODEL + ".ATTR_DAMSON_MOCK_ENGINE";
+	
+	/**
+	 * Launch configuration attribute key. Value is the shape of the synthetic program run 
+	 * by the mock DAMSON engine as comma separated settings, i.e. 
+	 * <code>nodes=1000,threads=16,depth=32,variables=64,array=10000</code> (see DamsonSyntheticProgram).
+	 */
+	public static final String ATTR_DAMSON_MOCK_PROGRAM =  ID_DAMSON_DEBUG_MODEL + ".ATTR_DAMSON_MOCK_PROGRAM";
+	
+	/**
+	 * Launch configuration attribute key. Value is the path of a file to which debug launches 
+	 * record every request, reply and event exchanged with the DAMSON debugger (see 
+	 * DamsonSessionRecorder). Sessions are not recorded if unset.
+	 */
+	public static final String ATTR_DAMSON_RECORD_FILE =  ID_DAMSON_DEBUG_MODEL + ".ATTR_DAMSON_RECORD_FILE";
+	
+	/**
+	 * Launch configuration attribute key. Value is the path of a session recording which debug 
+	 * launches replay on an in-process engine rather than running DAMSON (see ReplayDamsonEngine).
+	 */
+	public static final String ATTR_DAMSON_REPLAY_FILE =  ID_DAMSON_DEBUG_MODEL + ".ATTR_DAMSON_REPLAY_FILE";
+	
+	/**
+	 * Launch configuration attribute key. Value is a boolean indicating whether a replayed 
+	 * session answers requests with their recorded latency rather than at once.
+	 */
+	public static final String ATTR_DAMSON_REPLAY_REAL_TIME =  ID_DAMSON_DEBUG_MODEL + ".ATTR_DAMSON_REPLAY_REAL_TIME";
+	
 	/**
 	 * Identifier for the DAMSON launch configuration type
 	 * (value <code>launchType</code>)
@@ -87,12 +146,14 @@ public class DebugCorePlugin extends Plugin {
 	public static final String PLUGIN_ID = "edu.shef.damson.core";
 	
 	/**
-	 * REQUEST PORT (Must be the same as in DAMSON source - damson_debugger.h)
+	 * REQUEST PORT (Must be the same as in DAMSON source - damson_debugger.h). Used unless 
+	 * dynamic ports are enabled for the launch.
 	 */
 	public static final int REQUEST_PORT = 48174;
 	
 	/**
-	 * EVENT PORT (Must be the same as in DAMSON source - damson_debugger.h)
+	 * EVENT PORT (Must be the same as in DAMSON source - damson_debugger.h). Used unless 
+	 * dynamic ports are enabled for the launch.
 	 */
 	public static final int EVENT_PORT = 48474;
 	
@@ -117,6 +178,16 @@ public class DebugCorePlugin extends Plugin {
 	 */
 	public static final int LAUNCH_OPTION_CODEGEN = 4;
 	
+	/**
+	 * TRANSPORT_TCP Debugger streams use loopback TCP ports (default)
+	 */
+	public static final String TRANSPORT_TCP = "tcp";
+	/**
+	 * TRANSPORT_UNIX Debugger streams use Unix domain sockets (-requestsocket and -eventsocket DAMSON arguments). 
+	 * Falls back to TCP where Unix domain sockets are not supported.
+	 */
+	public static final String TRANSPORT_UNIX = "unix";
+	
 	
 	public static final int THREAD_STATE_RUNNING	= 0;
 	public static final int THREAD_STATE_WAITING 	= 1;
@@ -147,6 +218,19 @@ public class DebugCorePlugin extends Plugin {
 		resourceBundle = null;
 	}
 
+	/**
+	 * Returns the statistics of the requests sent to the DAMSON debugger by a debug target 
+	 * (request counts, latencies and bytes by command).
+	 * 
+	 * @param target debug target
+	 * @return request statistics of the target, or <code>null</code> if not a DAMSON debug target
+	 */
+	public static DamsonRequestStatistics getRequestStatistics(IDebugTarget target) {
+		if (target instanceof DamsonDebugTarget)
+			return ((DamsonDebugTarget)target).getRequestStatistics();
+		return null;
+	}
+
 	/**
 	 * Returns the shared instance.
 	 */
@@ -27,13 +27,12 @@ import org.eclipse.debug.core.model.LineBreakpoint;
 
 import edu.shef.damson.core.DebugCorePlugin;
 import edu.shef.damson.core.model.DamsonDebugTarget;
-import edu.shef.damson.core.model.IDamsonEventListener;
 
 
 /**
  * DAMSON line breakpoint
  */
-public class DamsonLineBreakpoint extends LineBreakpoint implements IDamsonEventListener {
+public class DamsonLineBreakpoint extends LineBreakpoint {
 	
 	// target currently installed in
 	private DamsonDebugTarget fTarget;
@@ -115,18 +114,55 @@ public class DamsonLineBreakpoint extends LineBreakpoint implements IDamsonEvent
     
     /**
      * Installs this breakpoint in the given DAMSON instance.
-     * Registers this breakpoint as an event listener in the
-     * given target and creates the breakpoint specific request.
+     * Adds this breakpoint to the line index of the given 
+     * target and creates the breakpoint specific request.
      * 
      * @param target DAMSON instance
      * @throws CoreException if installation fails
      */
     public void install(DamsonDebugTarget target) throws CoreException {
     	fTarget = target;
-    	target.addEventListener(this);
+    	target.addBreakpoint(this, getLineNumber());
     	createRequest(target);
     }
     
+    /**
+     * Installs this breakpoint in the given DAMSON instance without creating 
+     * the breakpoint request. Used by the target when the requests of many 
+     * breakpoints are created together by a single batch request.
+     * 
+     * @param target DAMSON instance
+     * @throws CoreException if installation fails
+     */
+    public void attach(DamsonDebugTarget target) throws CoreException {
+    	fTarget = target;
+    	target.addBreakpoint(this, getLineNumber());
+    }
+    
+    /**
+     * Removes this breakpoint from the given DAMSON instance without clearing 
+     * the breakpoint request (see {@link #attach(DamsonDebugTarget)}).
+     * 
+     * @param target DAMSON instance
+     */
+    public void detach(DamsonDebugTarget target) {
+    	target.removeBreakpoint(this);
+    	fTarget = null;
+    }
+    
+    /**
+     * Returns the arguments of the set request for this breakpoint
+     * 
+     * @return line number and alias condition (0 if none)
+     * @throws CoreException if the line number can not be read
+     */
+    public String getRequestArguments() throws CoreException {
+    	int alias_condition = 0;
+    	if (isAliasConditionEnabaled())
+    		alias_condition = fAliasCondition;
+    	return getLineNumber() + " " + alias_condition;
+    }
+    
     /**
      * Update the breakpoint alias condition by sending a new set request
      * @throws CoreException
@@ -144,10 +180,7 @@ public class DamsonLineBreakpoint extends LineBreakpoint implements IDamsonEvent
      * @throws CoreException if request creation fails
      */
     protected void createRequest(DamsonDebugTarget target) throws CoreException {
-    	int alias_condition = 0;
-    	if (isAliasConditionEnabaled())
-    		alias_condition = fAliasCondition;
-    	target.sendRequest("set " + getLineNumber() + " " + alias_condition);
+    	target.sendRequest("set " + getRequestArguments());
     }
     
     /**
@@ -163,14 +196,14 @@ public class DamsonLineBreakpoint extends LineBreakpoint implements IDamsonEvent
     
     /**
      * Removes this breakpoint from the given DAMSON instance.
-     * Removes this breakpoint as an event listener and clears
+     * Removes this breakpoint from the line index and clears
      * the request for the DAMSON instance.
      * 
      * @param target DAMSON instance
      * @throws CoreException if removal fails
      */
     public void remove(DamsonDebugTarget target) throws CoreException {
-    	target.removeEventListener(this);
+    	target.removeBreakpoint(this);
     	clearRequest(target);
     	fTarget = null;
     	
@@ -184,44 +217,4 @@ public class DamsonLineBreakpoint extends LineBreakpoint implements IDamsonEvent
     protected DamsonDebugTarget getDebugTarget() {
     	return fTarget;
     }
-    
-    /**
-     * Notify's the DAMSON instance that this breakpoint has been hit.
-     */
-    protected void notifyTarget() {
-    	if (fTarget != null) {
-			fTarget.notifySuspendBy(this);  		
-    	}
-    }
-
-	/* (non-Javadoc)
-	 * 
-	 * Subclasses should override to handle their breakpoint specific event.
-	 * 
-	 * @see org.eclipse.debug.examples.core.pda.model.IPDAEventListener#handleEvent(java.lang.String)
-	 */
-	public void handleEvent(String event) {
-		if (event.startsWith("suspended breakpoint")) {
-			handleHit(event);
-		}
-	}
-    
-	/**
-     * Determines if this breakpoint was hit and notifies the thread.
-     * 
-     * @param event breakpoint event
-     */
-    private void handleHit(String event) {
-    	int lastSpace = event.lastIndexOf(' ');
-    	if (lastSpace > 0) {
-    		String line = event.substring(lastSpace + 1);
-    		int lineNumber = Integer.parseInt(line);
-    		try {
-				if (getLineNumber() == lineNumber) {
-					notifyTarget();
-				}
-    		} catch (CoreException e) {
-    		}
-    	}
-    }		
 }
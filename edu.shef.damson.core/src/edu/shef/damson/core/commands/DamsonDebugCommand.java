@@ -0,0 +1,114 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.commands;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.debug.core.IRequest;
+import org.eclipse.debug.core.commands.AbstractDebugCommand;
+import org.eclipse.debug.core.commands.IEnabledStateRequest;
+
+import edu.shef.damson.core.model.DamsonDebugElement;
+import edu.shef.damson.core.model.DamsonDebugTarget;
+
+/**
+ * Base of the debug command handlers of DAMSON debug elements (see 
+ * {@link DamsonDebugElement#getAdapter(Class)}). The platform runs commands in jobs, so 
+ * the command request is sent and its reply awaited off the UI thread. The reply is waited 
+ * for at most {@link #COMMAND_TIMEOUT} and the wait ends when the job is cancelled.
+ * <p>
+ * DAMSON commands act on the whole debug target (the emulator) unless the DAMSON debugger 
+ * supports non-stop mode and the program is running, in which case a command on a node or 
+ * thread acts on that node or thread alone (see {@link DamsonDebugTarget#getSuspendScope(DamsonDebugElement)}). 
+ * A command on several elements of the same scope sends a single request.
+ * </p>
+ */
+public abstract class DamsonDebugCommand extends AbstractDebugCommand {
+
+	/**
+	 * Time to wait for the DAMSON debugger to accept a command
+	 */
+	public static final long COMMAND_TIMEOUT = 10000;
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.commands.AbstractDebugCommand#getTarget(java.lang.Object)
+	 */
+	protected Object getTarget(Object element) {
+		if (element instanceof DamsonDebugElement) {
+			DamsonDebugElement damsonElement = (DamsonDebugElement)element;
+			return ((DamsonDebugTarget)damsonElement.getDebugTarget()).getSuspendScope(damsonElement);
+		}
+		return null;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.commands.AbstractDebugCommand#isExecutable(java.lang.Object[], org.eclipse.core.runtime.IProgressMonitor, org.eclipse.debug.core.commands.IEnabledStateRequest)
+	 */
+	protected boolean isExecutable(Object[] targets, IProgressMonitor monitor, IEnabledStateRequest request) throws CoreException {
+		for (int i = 0; i < targets.length; i++) {
+			if (!isExecutable((DamsonDebugElement)targets[i]))
+				return false;
+		}
+		return targets.length > 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.commands.AbstractDebugCommand#doExecute(java.lang.Object[], org.eclipse.core.runtime.IProgressMonitor, org.eclipse.debug.core.IRequest)
+	 */
+	protected void doExecute(Object[] targets, IProgressMonitor monitor, IRequest request) throws CoreException {
+		Set<DamsonDebugElement> distinct = new LinkedHashSet<DamsonDebugElement>();
+		for (int i = 0; i < targets.length; i++) {
+			distinct.add((DamsonDebugElement)targets[i]);
+		}
+		for (DamsonDebugElement scope : distinct) {
+			if (monitor.isCanceled())
+				return;
+			execute(scope, monitor);
+		}
+	}
+
+	/**
+	 * Sends the command request for a scope and waits for the reply
+	 *
+	 * @param scope debug target, node or thread the command acts on
+	 * @param monitor job progress monitor
+	 * @throws CoreException if the request fails, times out or is cancelled
+	 */
+	protected void execute(DamsonDebugElement scope, IProgressMonitor monitor) throws CoreException {
+		DamsonDebugTarget target = (DamsonDebugTarget)scope.getDebugTarget();
+		target.sendRequestAsync(target.getScopedRequest(getRequest(), scope)).getReply(COMMAND_TIMEOUT, monitor);
+	}
+
+	/**
+	 * Returns whether the command can be executed on a scope
+	 *
+	 * @param scope debug target, node or thread the command acts on
+	 * @return whether executable
+	 */
+	protected abstract boolean isExecutable(DamsonDebugElement scope);
+
+	/**
+	 * Gets the request sent to the DAMSON debugger
+	 *
+	 * @return request
+	 */
+	protected abstract String getRequest();
+}
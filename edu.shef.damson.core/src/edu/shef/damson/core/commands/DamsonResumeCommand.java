@@ -0,0 +1,50 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.commands;
+
+import org.eclipse.debug.core.commands.IResumeHandler;
+import org.eclipse.debug.core.model.ISuspendResume;
+
+import edu.shef.damson.core.model.DamsonDebugElement;
+
+/**
+ * Resumes the DAMSON program.
+ */
+public class DamsonResumeCommand extends DamsonDebugCommand implements IResumeHandler {
+
+	/* (non-Javadoc)
+	 * @see edu.shef.damson.core.commands.DamsonDebugCommand#isExecutable(edu.shef.damson.core.model.DamsonDebugElement)
+	 */
+	protected boolean isExecutable(DamsonDebugElement scope) {
+		return ((ISuspendResume)scope).canResume();
+	}
+
+	/* (non-Javadoc)
+	 * @see edu.shef.damson.core.commands.DamsonDebugCommand#getRequest()
+	 */
+	protected String getRequest() {
+		return "resume";
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.commands.AbstractDebugCommand#getExecuteTaskName()
+	 */
+	protected String getExecuteTaskName() {
+		return "Resuming DAMSON program";
+	}
+}
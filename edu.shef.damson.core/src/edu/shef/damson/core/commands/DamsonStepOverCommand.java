@@ -0,0 +1,54 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.commands;
+
+import org.eclipse.debug.core.commands.IStepOverHandler;
+import org.eclipse.debug.core.model.IStep;
+
+import edu.shef.damson.core.model.DamsonDebugElement;
+import edu.shef.damson.core.model.DamsonDebugTarget;
+
+/**
+ * Steps a single source line, passing over any function called.
+ */
+public class DamsonStepOverCommand extends DamsonDebugCommand implements IStepOverHandler {
+
+	/* (non-Javadoc)
+	 * @see edu.shef.damson.core.commands.DamsonDebugCommand#isExecutable(edu.shef.damson.core.model.DamsonDebugElement)
+	 */
+	protected boolean isExecutable(DamsonDebugElement scope) {
+		if (scope instanceof IStep)
+			return ((IStep)scope).canStepOver();
+		DamsonDebugTarget target = (DamsonDebugTarget)scope;
+		return target.isSuspended();
+	}
+
+	/* (non-Javadoc)
+	 * @see edu.shef.damson.core.commands.DamsonDebugCommand#getRequest()
+	 */
+	protected String getRequest() {
+		return "step over";
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.commands.AbstractDebugCommand#getExecuteTaskName()
+	 */
+	protected String getExecuteTaskName() {
+		return "Stepping over";
+	}
+}
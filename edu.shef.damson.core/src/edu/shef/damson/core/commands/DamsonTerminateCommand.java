@@ -0,0 +1,78 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.commands;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.debug.core.DebugException;
+import org.eclipse.debug.core.commands.ITerminateHandler;
+
+import edu.shef.damson.core.model.DamsonDebugElement;
+import edu.shef.damson.core.model.DamsonDebugTarget;
+
+/**
+ * Ends the DAMSON debugger. If DAMSON does not accept the request in time (i.e. it has 
+ * hung) the DAMSON process is terminated instead.
+ */
+public class DamsonTerminateCommand extends DamsonDebugCommand implements ITerminateHandler {
+
+	/* (non-Javadoc)
+	 * @see edu.shef.damson.core.commands.DamsonDebugCommand#getTarget(java.lang.Object)
+	 */
+	protected Object getTarget(Object element) {
+		//terminate always ends the whole DAMSON debugger
+		if (element instanceof DamsonDebugElement)
+			return ((DamsonDebugElement)element).getDebugTarget();
+		return null;
+	}
+
+	/* (non-Javadoc)
+	 * @see edu.shef.damson.core.commands.DamsonDebugCommand#isExecutable(edu.shef.damson.core.model.DamsonDebugElement)
+	 */
+	protected boolean isExecutable(DamsonDebugElement scope) {
+		return ((DamsonDebugTarget)scope).canTerminate();
+	}
+
+	/* (non-Javadoc)
+	 * @see edu.shef.damson.core.commands.DamsonDebugCommand#getRequest()
+	 */
+	protected String getRequest() {
+		return "exit";
+	}
+
+	/* (non-Javadoc)
+	 * @see edu.shef.damson.core.commands.DamsonDebugCommand#execute(edu.shef.damson.core.model.DamsonDebugElement, org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	protected void execute(DamsonDebugElement scope, IProgressMonitor monitor) throws CoreException {
+		DamsonDebugTarget target = (DamsonDebugTarget)scope;
+		try {
+			super.execute(target, monitor);
+		} catch (DebugException e) {
+			if (monitor.isCanceled() || target.getProcess() == null || !target.getProcess().canTerminate())
+				throw e;
+			target.getProcess().terminate();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.commands.AbstractDebugCommand#getExecuteTaskName()
+	 */
+	protected String getExecuteTaskName() {
+		return "Terminating DAMSON";
+	}
+}
@@ -0,0 +1,131 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.engine;
+
+import java.nio.charset.Charset;
+
+/**
+ * Encodes the payload of a binary reply frame in the format decoded by 
+ * {@link edu.shef.damson.core.model.DamsonBinaryReply}: unsigned varints, zigzag encoded 
+ * signed varints and length prefixed UTF-8 strings. The buffer grows as required and 
+ * may be reset and reused for each reply.
+ */
+public class DamsonBinaryWriter {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private byte[] fData;
+	private int fLength;
+
+	/**
+	 * Constructs a writer with the given initial capacity
+	 *
+	 * @param capacity initial buffer size in bytes
+	 */
+	public DamsonBinaryWriter(int capacity) {
+		fData = new byte[Math.max(capacity, 16)];
+		fLength = 0;
+	}
+
+	/**
+	 * Discards the encoded payload
+	 */
+	public void reset() {
+		fLength = 0;
+	}
+
+	/**
+	 * Gets the encoded payload length
+	 *
+	 * @return length in bytes
+	 */
+	public int getLength() {
+		return fLength;
+	}
+
+	/**
+	 * Gets the buffer holding the encoded payload (valid up to {@link #getLength()})
+	 *
+	 * @return payload buffer
+	 */
+	public byte[] getData() {
+		return fData;
+	}
+
+	/**
+	 * Encodes an unsigned varint
+	 *
+	 * @param value value (treated as unsigned)
+	 */
+	public void writeVarint(int value) {
+		ensureCapacity(5);
+		while ((value & ~0x7f) != 0) {
+			fData[fLength++] = (byte)((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		fData[fLength++] = (byte)value;
+	}
+
+	/**
+	 * Encodes a zigzag encoded signed varint
+	 *
+	 * @param value value
+	 */
+	public void writeInt(int value) {
+		writeVarint((value << 1) ^ (value >> 31));
+	}
+
+	/**
+	 * Encodes a length prefixed UTF-8 string
+	 *
+	 * @param value value
+	 */
+	public void writeString(String value) {
+		byte[] bytes = value.getBytes(UTF8);
+		writeVarint(bytes.length);
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, fData, fLength, bytes.length);
+		fLength += bytes.length;
+	}
+
+	/**
+	 * Appends bytes which are already encoded (i.e. a recorded payload)
+	 *
+	 * @param data bytes
+	 * @param offset offset of the first byte
+	 * @param length number of bytes
+	 */
+	public void write(byte[] data, int offset, int length) {
+		ensureCapacity(length);
+		System.arraycopy(data, offset, fData, fLength, length);
+		fLength += length;
+	}
+
+	/**
+	 * Grows the buffer so that the given number of bytes can be appended
+	 *
+	 * @param count number of bytes
+	 */
+	private void ensureCapacity(int count) {
+		if (fLength + count > fData.length) {
+			byte[] data = new byte[Math.max(fData.length * 2, fLength + count)];
+			System.arraycopy(fData, 0, data, 0, fLength);
+			fData = data;
+		}
+	}
+}
@@ -0,0 +1,89 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.engine;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Presents an in-process {@link DamsonEngineServer} as a system process so that it can be 
+ * added to a launch in place of the DAMSON executable. The process has no output and ends 
+ * when the server terminates.
+ */
+public class DamsonEngineProcess extends Process {
+
+	private DamsonEngineServer fServer;
+
+	/**
+	 * Constructs a process for the given server
+	 *
+	 * @param server engine server (started by the caller)
+	 */
+	public DamsonEngineProcess(DamsonEngineServer server) {
+		fServer = server;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Process#getOutputStream()
+	 */
+	public OutputStream getOutputStream() {
+		return new OutputStream() {
+			public void write(int b) {
+			}
+		};
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Process#getInputStream()
+	 */
+	public InputStream getInputStream() {
+		return new ByteArrayInputStream(new byte[0]);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Process#getErrorStream()
+	 */
+	public InputStream getErrorStream() {
+		return new ByteArrayInputStream(new byte[0]);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Process#waitFor()
+	 */
+	public int waitFor() throws InterruptedException {
+		fServer.waitFor();
+		return 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Process#exitValue()
+	 */
+	public int exitValue() {
+		if (!fServer.isTerminated())
+			throw new IllegalThreadStateException("DAMSON engine has not terminated");
+		return 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Process#destroy()
+	 */
+	public void destroy() {
+		fServer.terminate();
+	}
+}
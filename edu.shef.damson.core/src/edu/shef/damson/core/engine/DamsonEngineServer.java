@@ -0,0 +1,353 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.engine;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Server side of the DAMSON debugger protocol (see 
+ * {@link edu.shef.damson.core.model.DamsonDebugElement#sendRequest(String)}). Listens on 
+ * the request and event ports, reads requests and writes their replies and writes events. 
+ * Subclasses interpret the requests.
+ * <p>
+ * Requests which are not pipelined are sent without a terminating new line, one request per 
+ * write, and are answered with a reply line. Pipelined requests are lines <code>@ID request</code> 
+ * and are answered with the line <code>@ID reply</code>. Once binary replies have been enabled 
+ * (see {@link #setBinary(boolean)}) requests with a binary reply are answered with a frame 
+ * holding the correlation ID (0 if not pipelined).
+ * </p>
+ * Events are written as lines on the event connection. Events posted while a request is handled 
+ * (see {@link #postEvent(String)}) are written after the reply to the request.
+ */
+public abstract class DamsonEngineServer {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	/**
+	 * Leading byte of a binary reply frame (see {@link edu.shef.damson.core.model.DamsonReplyReader})
+	 */
+	public static final int FRAME_MARKER = 0x01;
+	
+	private ServerSocket fRequestServer;
+	private ServerSocket fEventServer;
+	private Socket fRequestSocket;
+	private Socket fEventSocket;
+	private OutputStream fReplyStream;
+	private OutputStream fEventStream;
+	private Thread fThread;
+	private boolean fBinary = false;
+	private boolean fTerminated = false;
+	private boolean fExitRequested = false;
+	private List<String> fPostedEvents = new ArrayList<String>();
+	private DamsonBinaryWriter fFrameHeader = new DamsonBinaryWriter(16);
+	private DamsonBinaryWriter fPayload = new DamsonBinaryWriter(8192);
+
+	/**
+	 * Constructs a server listening on the given local ports
+	 *
+	 * @param requestPort request port (0 for any free port)
+	 * @param eventPort event port (0 for any free port)
+	 * @throws IOException if unable to listen on the ports
+	 */
+	public DamsonEngineServer(int requestPort, int eventPort) throws IOException {
+		InetAddress localhost = InetAddress.getByName("localhost");
+		fRequestServer = new ServerSocket(requestPort, 1, localhost);
+		try {
+			fEventServer = new ServerSocket(eventPort, 1, localhost);
+		} catch (IOException e) {
+			fRequestServer.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Gets the port the request connection is accepted on
+	 *
+	 * @return request port
+	 */
+	public int getRequestPort() {
+		return fRequestServer.getLocalPort();
+	}
+
+	/**
+	 * Gets the port the event connection is accepted on
+	 *
+	 * @return event port
+	 */
+	public int getEventPort() {
+		return fEventServer.getLocalPort();
+	}
+
+	/**
+	 * Starts serving the debugger in a background thread. The request and event connections 
+	 * are accepted, the <code>started</code> event is written and requests are served until 
+	 * the <code>exit</code> request or the request connection closes.
+	 */
+	public synchronized void start() {
+		if (fThread != null)
+			return;
+		fThread = new Thread("DAMSON Engine") {
+			public void run() {
+				try {
+					fRequestSocket = fRequestServer.accept();
+					fRequestSocket.setTcpNoDelay(true);
+					fReplyStream = new BufferedOutputStream(fRequestSocket.getOutputStream(), 8192);
+					fEventSocket = fEventServer.accept();
+					fEventSocket.setTcpNoDelay(true);
+					fEventStream = new BufferedOutputStream(fEventSocket.getOutputStream(), 1024);
+					sendEvent("started");
+					serveRequests(fRequestSocket.getInputStream());
+				} catch (IOException e) {
+					//connection closed
+				}
+				terminate();
+			}
+		};
+		fThread.setDaemon(true);
+		fThread.start();
+	}
+
+	/**
+	 * Reads and dispatches requests until the request connection closes or the server 
+	 * is terminated
+	 *
+	 * @param in request stream
+	 * @throws IOException if the request connection fails
+	 */
+	private void serveRequests(InputStream in) throws IOException {
+		byte[] buffer = new byte[8192];
+		StringBuffer pending = new StringBuffer();
+		int read;
+		while (!isTerminated() && (read = in.read(buffer)) > 0) {
+			pending.append(new String(buffer, 0, read, UTF8));
+			int newline;
+			while ((newline = pending.indexOf("\n")) >= 0) {
+				String line = pending.substring(0, newline);
+				pending.delete(0, newline + 1);
+				dispatch(line);
+			}
+			//requests which are not pipelined are a single write without a new line
+			if (pending.length() > 0 && pending.charAt(0) != '@') {
+				String request = pending.toString();
+				pending.setLength(0);
+				dispatch(request);
+			}
+		}
+	}
+
+	/**
+	 * Handles a request and writes its reply followed by any events posted while handling it
+	 *
+	 * @param line request line (<code>@ID request</code> if pipelined)
+	 * @throws IOException if the reply can not be written
+	 */
+	private void dispatch(String line) throws IOException {
+		int id = 0;
+		boolean tagged = line.startsWith("@");
+		String request = line.trim();
+		if (tagged) {
+			int space = line.indexOf(' ');
+			if (space < 0)
+				space = line.length();
+			try {
+				id = Integer.parseInt(line.substring(1, space));
+			} catch (NumberFormatException e) {
+				return;
+			}
+			request = space < line.length() ? line.substring(space + 1).trim() : "";
+		}
+		fPayload.reset();
+		if (isBinary() && handleBinaryRequest(request, fPayload)) {
+			writeFrame(id, fPayload);
+		} else {
+			String reply = handleRequest(request);
+			if (tagged)
+				reply = "@" + id + " " + reply;
+			fReplyStream.write((reply + "\n").getBytes(UTF8));
+		}
+		fReplyStream.flush();
+		String[] events;
+		synchronized (fPostedEvents) {
+			events = fPostedEvents.toArray(new String[fPostedEvents.size()]);
+			fPostedEvents.clear();
+		}
+		for (int i = 0; i < events.length; i++) {
+			sendEvent(events[i]);
+		}
+		if (fExitRequested)
+			terminate();
+	}
+
+	/**
+	 * Writes a binary reply frame
+	 *
+	 * @param id correlation ID
+	 * @param payload encoded payload
+	 * @throws IOException if the frame can not be written
+	 */
+	private void writeFrame(int id, DamsonBinaryWriter payload) throws IOException {
+		fFrameHeader.reset();
+		fFrameHeader.writeVarint(id);
+		fFrameHeader.writeVarint(payload.getLength());
+		fReplyStream.write(FRAME_MARKER);
+		fReplyStream.write(fFrameHeader.getData(), 0, fFrameHeader.getLength());
+		fReplyStream.write(payload.getData(), 0, payload.getLength());
+	}
+
+	/**
+	 * Handles a request with a text reply
+	 *
+	 * @param request request without correlation ID
+	 * @return reply (without a new line)
+	 */
+	protected abstract String handleRequest(String request);
+
+	/**
+	 * Handles a request with a binary reply once binary replies are enabled. Returns 
+	 * <code>false</code> for requests whose reply is text. The default implementation 
+	 * answers all requests with text.
+	 *
+	 * @param request request without correlation ID
+	 * @param payload writer to encode the reply payload with
+	 * @return whether the request was answered with the payload
+	 */
+	protected boolean handleBinaryRequest(String request, DamsonBinaryWriter payload) {
+		return false;
+	}
+
+	/**
+	 * Enables or disables binary replies (i.e. when the <code>binary</code> request is handled)
+	 *
+	 * @param binary whether requests with binary replies are answered with frames
+	 */
+	protected void setBinary(boolean binary) {
+		fBinary = binary;
+	}
+
+	/**
+	 * Returns whether binary replies are enabled
+	 *
+	 * @return whether requests with binary replies are answered with frames
+	 */
+	public boolean isBinary() {
+		return fBinary;
+	}
+
+	/**
+	 * Posts an event to be written once the reply to the request being handled has been written
+	 *
+	 * @param event event text
+	 */
+	protected void postEvent(String event) {
+		synchronized (fPostedEvents) {
+			fPostedEvents.add(event);
+		}
+	}
+
+	/**
+	 * Terminates the server once the reply to the request being handled has been written 
+	 * (i.e. when the <code>exit</code> request is handled)
+	 */
+	protected void exitAfterReply() {
+		fExitRequested = true;
+	}
+
+	/**
+	 * Writes an event immediately
+	 *
+	 * @param event event text
+	 */
+	public void sendEvent(String event) {
+		synchronized (fPostedEvents) {
+			if (fEventStream == null)
+				return;
+			try {
+				fEventStream.write((event + "\n").getBytes(UTF8));
+				fEventStream.flush();
+			} catch (IOException e) {
+				//event connection closed
+			}
+		}
+	}
+
+	/**
+	 * Stops serving the debugger. Writes the <code>terminated</code> event and closes 
+	 * the connections. Has no effect if already terminated.
+	 */
+	public void terminate() {
+		synchronized (this) {
+			if (fTerminated)
+				return;
+			fTerminated = true;
+		}
+		sendEvent("terminated");
+		close(fRequestServer);
+		close(fEventServer);
+		try {
+			if (fRequestSocket != null)
+				fRequestSocket.close();
+			if (fEventSocket != null)
+				fEventSocket.close();
+		} catch (IOException e) {
+		}
+		synchronized (this) {
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Closes a server socket ignoring errors
+	 *
+	 * @param server server socket
+	 */
+	private void close(ServerSocket server) {
+		try {
+			server.close();
+		} catch (IOException e) {
+		}
+	}
+
+	/**
+	 * Returns whether the server has terminated
+	 *
+	 * @return whether terminated
+	 */
+	public synchronized boolean isTerminated() {
+		return fTerminated;
+	}
+
+	/**
+	 * Waits for the server to terminate
+	 *
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public synchronized void waitFor() throws InterruptedException {
+		while (!fTerminated) {
+			wait();
+		}
+	}
+}
@@ -0,0 +1,261 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.engine;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import edu.shef.damson.core.model.DamsonSessionRecorder;
+
+/**
+ * A debug session recorded by a {@link DamsonSessionRecorder}, read as the list of request 
+ * and reply exchanges in the order the requests were sent. Each event is attached to the 
+ * exchange of the most recent request sent before the event was received (events received 
+ * before any request are the initial events of the session).
+ */
+public class DamsonSessionRecording {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private List<Exchange> fExchanges = new ArrayList<Exchange>();
+	private List<String> fInitialEvents = new ArrayList<String>();
+	private long fDuration = 0;
+
+	/**
+	 * A recorded request with its reply and the events which followed it
+	 */
+	public static class Exchange {
+		private String fRequest;
+		private long fRequestTime;
+		private String fReply;
+		private byte[] fBinaryReply;
+		private long fLatency = -1;
+		private List<String> fEvents = new ArrayList<String>();
+
+		/**
+		 * Constructs an exchange of a request which has not yet been answered
+		 *
+		 * @param request request text
+		 * @param time time the request was sent (microseconds since recording started)
+		 */
+		Exchange(String request, long time) {
+			fRequest = request;
+			fRequestTime = time;
+		}
+
+		/**
+		 * Sets the reply of this exchange to that of another exchange of the same request
+		 *
+		 * @param exchange answered exchange
+		 */
+		void setReply(Exchange exchange) {
+			fReply = exchange.fReply;
+			fBinaryReply = exchange.fBinaryReply;
+			fLatency = exchange.fLatency;
+		}
+
+		/**
+		 * Gets the request text (without correlation ID)
+		 *
+		 * @return request
+		 */
+		public String getRequest() {
+			return fRequest;
+		}
+
+		/**
+		 * Gets the text reply
+		 *
+		 * @return reply or <code>null</code> if the reply was binary or never arrived
+		 */
+		public String getReply() {
+			return fReply;
+		}
+
+		/**
+		 * Gets the payload of the binary reply
+		 *
+		 * @return payload or <code>null</code> if the reply was text or never arrived
+		 */
+		public byte[] getBinaryReply() {
+			return fBinaryReply;
+		}
+
+		/**
+		 * Returns whether the DAMSON debugger answered the request
+		 *
+		 * @return whether a reply was recorded
+		 */
+		public boolean isAnswered() {
+			return fReply != null || fBinaryReply != null;
+		}
+
+		/**
+		 * Gets the time from sending the request until its reply arrived
+		 *
+		 * @return latency in microseconds or -1 if never answered
+		 */
+		public long getLatency() {
+			return fLatency;
+		}
+
+		/**
+		 * Gets the events received after this request was sent and before the next
+		 *
+		 * @return event texts
+		 */
+		public List<String> getEvents() {
+			return fEvents;
+		}
+	}
+
+	/**
+	 * Reads a recording file
+	 *
+	 * @param file recording file
+	 * @return the recording
+	 * @throws IOException if the file can not be read or is not a recording
+	 */
+	public static DamsonSessionRecording read(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file)), 8192));
+		try {
+			if (!DamsonSessionRecorder.MAGIC.equals(in.readUTF()))
+				throw new IOException(file + " is not a DAMSON session recording");
+			int version = in.readInt();
+			if (version != DamsonSessionRecorder.VERSION)
+				throw new IOException("Unsupported DAMSON session recording version " + version);
+			DamsonSessionRecording recording = new DamsonSessionRecording();
+			recording.readRecords(in);
+			return recording;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads records until the end of the recording. A recording cut short (i.e. the 
+	 * session was not terminated cleanly) is read up to the last complete record.
+	 *
+	 * @param in recording stream (after the header)
+	 * @throws IOException if the recording is invalid
+	 */
+	private void readRecords(DataInputStream in) throws IOException {
+		Map<Integer, Exchange> pending = new HashMap<Integer, Exchange>();
+		Exchange last = null;
+		while (true) {
+			int type;
+			try {
+				type = in.read();
+				if (type < 0)
+					return;
+				long time = in.readLong();
+				fDuration = time;
+				switch (type) {
+				case DamsonSessionRecorder.RECORD_REQUEST: {
+					int id = in.readInt();
+					last = new Exchange(readString(in), time);
+					pending.put(Integer.valueOf(id), last);
+					fExchanges.add(last);
+					break;
+				}
+				case DamsonSessionRecorder.RECORD_REPLY: {
+					Exchange exchange = pending.remove(Integer.valueOf(in.readInt()));
+					String reply = readString(in);
+					if (exchange != null) {
+						exchange.fReply = reply;
+						exchange.fLatency = time - exchange.fRequestTime;
+					}
+					break;
+				}
+				case DamsonSessionRecorder.RECORD_BINARY_REPLY: {
+					Exchange exchange = pending.remove(Integer.valueOf(in.readInt()));
+					byte[] reply = new byte[in.readInt()];
+					in.readFully(reply);
+					if (exchange != null) {
+						exchange.fBinaryReply = reply;
+						exchange.fLatency = time - exchange.fRequestTime;
+					}
+					break;
+				}
+				case DamsonSessionRecorder.RECORD_EVENT: {
+					String event = readString(in);
+					if (last != null)
+						last.fEvents.add(event);
+					else
+						fInitialEvents.add(event);
+					break;
+				}
+				default:
+					throw new IOException("Invalid DAMSON session record type " + type);
+				}
+			} catch (EOFException e) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Reads a length prefixed UTF-8 string
+	 *
+	 * @param in recording stream
+	 * @return string
+	 * @throws IOException if reading fails
+	 */
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	/**
+	 * Gets the exchanges in the order the requests were sent
+	 *
+	 * @return exchanges
+	 */
+	public List<Exchange> getExchanges() {
+		return fExchanges;
+	}
+
+	/**
+	 * Gets the events received before the first request
+	 *
+	 * @return event texts
+	 */
+	public List<String> getInitialEvents() {
+		return fInitialEvents;
+	}
+
+	/**
+	 * Gets the length of the recorded session
+	 *
+	 * @return time of the last record in microseconds since recording started
+	 */
+	public long getDuration() {
+		return fDuration;
+	}
+}
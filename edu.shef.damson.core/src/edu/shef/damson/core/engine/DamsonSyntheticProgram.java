@@ -0,0 +1,346 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.engine;
+
+import edu.shef.damson.core.DebugCorePlugin;
+
+/**
+ * Shape of the synthetic program run by the {@link MockDamsonEngine}. The program has a 
+ * number of nodes (numbered from 0, node <code>N</code> having the alias <code>workerN</code>), 
+ * each running the same number of threads, each with a call stack of the same depth. Every stack frame has the 
+ * same scalar local variables (<code>v0</code>, <code>v1</code>, ...) and a local array 
+ * (<code>data</code>) and lists the global variables (<code>g0</code>, <code>g1</code>, ... 
+ * and the array <code>table</code>). Arrays are omitted if the array size is 0.
+ * <p>
+ * Values are derived from the thread, frame, variable and element and from the number of 
+ * suspends so far, so that every value changes between suspends.
+ * </p>
+ */
+public class DamsonSyntheticProgram {
+
+	/**
+	 * Name of the local array variable
+	 */
+	public static final String LOCAL_ARRAY = "data";
+
+	/**
+	 * Name of the global array variable
+	 */
+	public static final String GLOBAL_ARRAY = "table";
+
+	private int fNodes = 1;
+	private int fThreads = 4;
+	private int fDepth = 8;
+	private int fVariables = 8;
+	private int fGlobals = 2;
+	private int fArraySize = 100;
+	private int fLines = 100;
+	private String fSourceFile = "synthetic.d";
+
+	/**
+	 * Constructs the default program (4 threads, 8 frames deep, 8 locals per frame and 
+	 * arrays of 100 elements)
+	 */
+	public DamsonSyntheticProgram() {
+	}
+
+	/**
+	 * Constructs a program of the given shape
+	 *
+	 * @param threads number of threads
+	 * @param depth stack depth of each thread
+	 * @param variables scalar local variables per frame
+	 * @param arraySize number of elements of the array variables (0 for no arrays)
+	 */
+	public DamsonSyntheticProgram(int threads, int depth, int variables, int arraySize) {
+		fThreads = Math.max(threads, 0);
+		fDepth = Math.max(depth, 1);
+		fVariables = Math.max(variables, 0);
+		fArraySize = Math.max(arraySize, 0);
+	}
+
+	/**
+	 * Constructs a program from a specification of comma separated <code>name=value</code> 
+	 * settings, i.e. <code>nodes=1000,threads=16,depth=32,variables=64,globals=4,array=10000,lines=200</code>. 
+	 * Settings which are not given keep their default.
+	 *
+	 * @param spec program specification
+	 * @return the program
+	 * @throws IllegalArgumentException if a setting is unknown or not a number
+	 */
+	public static DamsonSyntheticProgram parse(String spec) {
+		DamsonSyntheticProgram program = new DamsonSyntheticProgram();
+		if (spec == null || spec.trim().length() == 0)
+			return program;
+		String[] settings = spec.split(",");
+		for (int i = 0; i < settings.length; i++) {
+			int equals = settings[i].indexOf('=');
+			if (equals < 0)
+				throw new IllegalArgumentException("Invalid synthetic program setting: " + settings[i]);
+			String name = settings[i].substring(0, equals).trim();
+			int value;
+			try {
+				value = Integer.parseInt(settings[i].substring(equals + 1).trim());
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid synthetic program setting: " + settings[i]);
+			}
+			if (name.equals("nodes"))
+				program.fNodes = Math.max(value, 1);
+			else if (name.equals("threads"))
+				program.fThreads = Math.max(value, 0);
+			else if (name.equals("depth"))
+				program.fDepth = Math.max(value, 1);
+			else if (name.equals("variables"))
+				program.fVariables = Math.max(value, 0);
+			else if (name.equals("globals"))
+				program.fGlobals = Math.max(value, 0);
+			else if (name.equals("array"))
+				program.fArraySize = Math.max(value, 0);
+			else if (name.equals("lines"))
+				program.fLines = Math.max(value, 1);
+			else
+				throw new IllegalArgumentException("Unknown synthetic program setting: " + name);
+		}
+		return program;
+	}
+
+	/**
+	 * Sets the name of the source file reported by the program
+	 *
+	 * @param sourceFile source file name
+	 */
+	public void setSourceFile(String sourceFile) {
+		fSourceFile = sourceFile;
+	}
+
+	/**
+	 * Gets the name of the source file reported by the program
+	 *
+	 * @return source file name
+	 */
+	public String getSourceFile() {
+		return fSourceFile;
+	}
+
+	/**
+	 * Sets the number of nodes of the network
+	 *
+	 * @param nodes node count (at least 1)
+	 */
+	public void setNodeCount(int nodes) {
+		fNodes = Math.max(nodes, 1);
+	}
+
+	public int getNodeCount() {
+		return fNodes;
+	}
+
+	/**
+	 * Gets the alias of a node
+	 *
+	 * @param node node number
+	 * @return alias
+	 */
+	public String getNodeAlias(int node) {
+		return "worker" + node;
+	}
+
+	/**
+	 * Gets the number of threads run by each node
+	 *
+	 * @return threads per node
+	 */
+	public int getThreadCount() {
+		return fThreads;
+	}
+
+	public int getDepth() {
+		return fDepth;
+	}
+
+	public int getVariableCount() {
+		return fVariables;
+	}
+
+	public int getGlobalCount() {
+		return fGlobals;
+	}
+
+	public int getArraySize() {
+		return fArraySize;
+	}
+
+	/**
+	 * Gets the number of source lines. Execution loops over lines 1 to the line count.
+	 *
+	 * @return line count
+	 */
+	public int getLineCount() {
+		return fLines;
+	}
+
+	/**
+	 * Gets the process handle of a thread. Handles are unique across the network.
+	 *
+	 * @param thread thread index (threads of node <code>N</code> start at <code>N * getThreadCount()</code>)
+	 * @return process handle
+	 */
+	public int getThreadHandle(int thread) {
+		return thread + 1;
+	}
+
+	/**
+	 * Gets the thread index of a process handle
+	 *
+	 * @param handle process handle
+	 * @return thread index or -1 if no such thread
+	 */
+	public int getThreadIndex(int handle) {
+		return handle >= 1 && handle <= fNodes * fThreads ? handle - 1 : -1;
+	}
+
+	/**
+	 * Gets the state of a thread (cycles through the thread states)
+	 *
+	 * @param thread thread index
+	 * @return thread state
+	 */
+	public int getThreadState(int thread) {
+		switch (thread % 3) {
+			case 1:
+				return DebugCorePlugin.THREAD_STATE_WAITING;
+			case 2:
+				return DebugCorePlugin.THREAD_STATE_DELAYING;
+			default:
+				return DebugCorePlugin.THREAD_STATE_RUNNING;
+		}
+	}
+
+	/**
+	 * Gets the function of a stack frame
+	 *
+	 * @param frame DAMSON stack frame (0 top of the stack)
+	 * @return function name
+	 */
+	public String getFunctionName(int frame) {
+		int level = fDepth - frame - 1;
+		return level == 0 ? "main" : "func" + level;
+	}
+
+	/**
+	 * Gets the current line of a stack frame. The top frame is at the current line and 
+	 * the other frames at their call site.
+	 *
+	 * @param frame DAMSON stack frame (0 top of the stack)
+	 * @param line current line
+	 * @return line of the frame
+	 */
+	public int getFrameLine(int frame, int line) {
+		if (frame == 0)
+			return line;
+		return (fDepth - frame - 1) % fLines + 1;
+	}
+
+	/**
+	 * Gets the names of the variables of a stack frame as listed in the <code>stack</code> 
+	 * reply (global variable names prefixed with <code>&amp;</code>)
+	 *
+	 * @return variable names
+	 */
+	public String[] getFrameVariableNames() {
+		int arrays = fArraySize > 0 ? 1 : 0;
+		String[] names = new String[fVariables + arrays + fGlobals + arrays];
+		int n = 0;
+		for (int i = 0; i < fVariables; i++) {
+			names[n++] = "v" + i;
+		}
+		if (arrays > 0)
+			names[n++] = LOCAL_ARRAY;
+		for (int i = 0; i < fGlobals; i++) {
+			names[n++] = "&g" + i;
+		}
+		if (arrays > 0)
+			names[n++] = "&" + GLOBAL_ARRAY;
+		return names;
+	}
+
+	/**
+	 * Returns whether a variable is an array
+	 *
+	 * @param name variable name
+	 * @param global whether the variable is global
+	 * @return whether the variable is one of the array variables
+	 */
+	public boolean isArray(String name, boolean global) {
+		return fArraySize > 0 && name.equals(global ? GLOBAL_ARRAY : LOCAL_ARRAY);
+	}
+
+	/**
+	 * Returns whether a variable exists
+	 *
+	 * @param name variable name
+	 * @param global whether the variable is global
+	 * @return whether the program has the variable
+	 */
+	public boolean hasVariable(String name, boolean global) {
+		if (isArray(name, global))
+			return true;
+		int index = getScalarIndex(name, global ? 'g' : 'v');
+		return index >= 0 && index < (global ? fGlobals : fVariables);
+	}
+
+	/**
+	 * Gets the value of a scalar variable or array element
+	 *
+	 * @param thread thread index (ignored for globals)
+	 * @param frame DAMSON stack frame (ignored for globals)
+	 * @param name variable name
+	 * @param global whether the variable is global
+	 * @param element element index of an array (ignored for scalars)
+	 * @param epoch number of suspends so far
+	 * @return the value
+	 */
+	public int getValue(int thread, int frame, String name, boolean global, int element, int epoch) {
+		if (isArray(name, global)) {
+			if (global)
+				return (element * 7 + epoch) % 65536;
+			return (thread * 1000 + frame * 100 + element + epoch) % 65536;
+		}
+		int index = getScalarIndex(name, global ? 'g' : 'v');
+		if (global)
+			return index * 10 + epoch;
+		return thread * 10000 + frame * 100 + index + epoch;
+	}
+
+	/**
+	 * Gets the index of a scalar variable name
+	 *
+	 * @param name variable name
+	 * @param prefix name prefix
+	 * @return index or -1 if not a scalar variable name
+	 */
+	private int getScalarIndex(String name, char prefix) {
+		if (name.length() < 2 || name.charAt(0) != prefix)
+			return -1;
+		try {
+			return Integer.parseInt(name.substring(1));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+}
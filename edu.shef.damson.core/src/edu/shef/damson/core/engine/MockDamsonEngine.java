@@ -0,0 +1,699 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.engine;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import edu.shef.damson.core.model.DamsonDebugTarget;
+
+/**
+ * In-process stand-in for the DAMSON debugger which runs a {@link DamsonSyntheticProgram}. 
+ * Answers the same requests and writes the same events as DAMSON so that the debug model 
+ * can be exercised and its refresh latency measured without a DAMSON executable.
+ * <p>
+ * The program starts suspended at line 1. Resuming runs to the next line holding a breakpoint 
+ * (looping back to line 1 after the last line) or, if there are no breakpoints, runs until 
+ * suspended. Each step advances to the next line. Every suspend changes all variable values.
+ * </p>
+ * <p>
+ * In non-stop mode single nodes and threads are suspended, stepped and resumed while the 
+ * program runs. Their events are sent but their lines and values only change when the whole 
+ * program suspends.
+ * </p>
+ */
+public class MockDamsonEngine extends DamsonEngineServer {
+
+	private DamsonSyntheticProgram fProgram;
+	private List<String> fCapabilities = new ArrayList<String>();
+	private SortedSet<Integer> fBreakpoints = new TreeSet<Integer>();
+	private Map<String, String> fModified = new HashMap<String, String>();
+	private int fLine = 1;
+	private int fEpoch = 0;
+	private volatile boolean fSuspended = true;
+	private Set<String> fSuspendedScopes = new HashSet<String>();
+
+	/**
+	 * Constructs an engine running the given program listening on the given local ports. 
+	 * All protocol extensions are supported.
+	 *
+	 * @param program synthetic program
+	 * @param requestPort request port (0 for any free port)
+	 * @param eventPort event port (0 for any free port)
+	 * @throws IOException if unable to listen on the ports
+	 */
+	public MockDamsonEngine(DamsonSyntheticProgram program, int requestPort, int eventPort) throws IOException {
+		super(requestPort, eventPort);
+		fProgram = program;
+		setCapabilities(new String[]{
+				DamsonDebugTarget.CAPABILITY_PIPELINE,
+				DamsonDebugTarget.CAPABILITY_SNAPSHOT,
+				DamsonDebugTarget.CAPABILITY_ARRAY_RANGE,
+				DamsonDebugTarget.CAPABILITY_BREAKPOINT_BATCH,
+				DamsonDebugTarget.CAPABILITY_BINARY,
+				DamsonDebugTarget.CAPABILITY_NODES,
+				DamsonDebugTarget.CAPABILITY_NON_STOP});
+	}
+
+	/**
+	 * Constructs an engine running the given program listening on any free local ports
+	 *
+	 * @param program synthetic program
+	 * @throws IOException if unable to listen on the ports
+	 */
+	public MockDamsonEngine(DamsonSyntheticProgram program) throws IOException {
+		this(program, 0, 0);
+	}
+
+	/**
+	 * Sets the protocol extensions reported in reply to the <code>capabilities</code> request. 
+	 * Requests of extensions which are not reported are rejected. An empty list behaves as 
+	 * an older DAMSON debugger. Must be set before the engine is started.
+	 *
+	 * @param capabilities capability names (see {@link DamsonDebugTarget#hasCapability(String)})
+	 */
+	public void setCapabilities(String[] capabilities) {
+		fCapabilities = new ArrayList<String>(Arrays.asList(capabilities));
+	}
+
+	/**
+	 * Gets the synthetic program
+	 *
+	 * @return the program
+	 */
+	public DamsonSyntheticProgram getProgram() {
+		return fProgram;
+	}
+
+	/**
+	 * Returns whether the program is suspended
+	 *
+	 * @return whether suspended
+	 */
+	public boolean isSuspended() {
+		return fSuspended;
+	}
+
+	/* (non-Javadoc)
+	 * @see edu.shef.damson.core.engine.DamsonEngineServer#handleRequest(java.lang.String)
+	 */
+	protected String handleRequest(String request) {
+		String[] args = request.split(" ");
+		String command = args[0];
+		try {
+			if (command.equals("capabilities")) {
+				StringBuffer reply = new StringBuffer("capabilities");
+				for (int i = 0; i < fCapabilities.size(); i++) {
+					reply.append(' ').append(fCapabilities.get(i));
+				}
+				return reply.toString();
+			} else if (command.equals("binary") && supports(DamsonDebugTarget.CAPABILITY_BINARY)) {
+				setBinary(true);
+				return "OK binary";
+			} else if (command.equals("source")) {
+				return fProgram.getSourceFile() + "|0";
+			} else if (command.equals("threads")) {
+				return getThreads(0);
+			} else if (command.equals("nodes") && supports(DamsonDebugTarget.CAPABILITY_NODES)) {
+				return getNodes(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+			} else if (command.equals("findnode") && supports(DamsonDebugTarget.CAPABILITY_NODES)) {
+				return getNodeRecord(findNode(args[1]));
+			} else if (command.equals("matchnodes") && supports(DamsonDebugTarget.CAPABILITY_NODES)) {
+				return matchNodes(args[1], Integer.parseInt(args[2]));
+			} else if (command.equals("nodethreads") && supports(DamsonDebugTarget.CAPABILITY_NODES)) {
+				return getThreads(getNode(args[1]));
+			} else if (command.equals("stack")) {
+				return getStack(getThread(args[1]));
+			} else if (command.equals("snapshot") && supports(DamsonDebugTarget.CAPABILITY_SNAPSHOT)) {
+				return getSnapshot();
+			} else if (command.equals("var") || command.equals("arrayvar")) {
+				return getValue(getThread(args[1]), getFrame(args[2]), args[3], false, parseIndices(args, 4));
+			} else if (command.equals("gvar") || command.equals("garrayvar")) {
+				return getValue(0, 0, args[1], true, parseIndices(args, 2));
+			} else if (command.equals("arrayrange") && supports(DamsonDebugTarget.CAPABILITY_ARRAY_RANGE)) {
+				return join(getRange(getThread(args[1]), getFrame(args[2]), args[3], false, args, 4));
+			} else if (command.equals("garrayrange") && supports(DamsonDebugTarget.CAPABILITY_ARRAY_RANGE)) {
+				return join(getRange(0, 0, args[1], true, args, 2));
+			} else if (command.equals("setvar") || command.equals("setarrayvar")) {
+				return setValue(getThread(args[1]), getFrame(args[2]), args[3], false, args, 4);
+			} else if (command.equals("setgvar") || command.equals("setgarrayvar")) {
+				return setValue(0, 0, args[1], true, args, 2);
+			} else if (command.equals("set")) {
+				fBreakpoints.add(Integer.valueOf(args[1]));
+				return "OK set";
+			} else if (command.equals("clear")) {
+				fBreakpoints.remove(Integer.valueOf(args[1]));
+				return "OK clear";
+			} else if (command.equals("setbatch") && supports(DamsonDebugTarget.CAPABILITY_BREAKPOINT_BATCH)) {
+				for (int i = 1; i + 1 < args.length; i += 2) {
+					fBreakpoints.add(Integer.valueOf(args[i]));
+				}
+				return "OK setbatch";
+			} else if (command.equals("clearbatch") && supports(DamsonDebugTarget.CAPABILITY_BREAKPOINT_BATCH)) {
+				for (int i = 1; i < args.length; i++) {
+					fBreakpoints.remove(Integer.valueOf(args[i]));
+				}
+				return "OK clearbatch";
+			} else if ((command.equals("resume") || command.equals("suspend")) && args.length == 3 && supports(DamsonDebugTarget.CAPABILITY_NON_STOP)) {
+				return handleScopedRequest(command, getScope(args[1], args[2]));
+			} else if (command.equals("step") && args.length == 4 && supports(DamsonDebugTarget.CAPABILITY_NON_STOP)) {
+				return handleScopedRequest(command, getScope(args[2], args[3]));
+			} else if (command.equals("resume")) {
+				resume();
+				return "OK resume";
+			} else if (command.equals("suspend")) {
+				if (!fSuspended)
+					suspend("client");
+				return "OK suspend";
+			} else if (command.equals("step")) {
+				postEvent("resumed step");
+				fLine = fLine % fProgram.getLineCount() + 1;
+				suspend("step");
+				return "OK step";
+			} else if (command.equals("exit")) {
+				exitAfterReply();
+				return "OK exit";
+			}
+		} catch (IllegalArgumentException e) {
+		} catch (ArrayIndexOutOfBoundsException e) {
+		}
+		return "error";
+	}
+
+	/* (non-Javadoc)
+	 * @see edu.shef.damson.core.engine.DamsonEngineServer#handleBinaryRequest(java.lang.String, edu.shef.damson.core.engine.DamsonBinaryWriter)
+	 */
+	protected boolean handleBinaryRequest(String request, DamsonBinaryWriter payload) {
+		String[] args = request.split(" ");
+		String command = args[0];
+		try {
+			if (command.equals("stack")) {
+				writeStack(getThread(args[1]), payload);
+				return true;
+			} else if (command.equals("snapshot") && supports(DamsonDebugTarget.CAPABILITY_SNAPSHOT)) {
+				writeSnapshot(payload);
+				return true;
+			} else if (command.equals("arrayrange") || command.equals("garrayrange")) {
+				if (!supports(DamsonDebugTarget.CAPABILITY_ARRAY_RANGE))
+					return false;
+				String[] values;
+				if (command.equals("arrayrange"))
+					values = getRange(getThread(args[1]), getFrame(args[2]), args[3], false, args, 4);
+				else
+					values = getRange(0, 0, args[1], true, args, 2);
+				payload.writeVarint(values.length);
+				for (int i = 0; i < values.length; i++) {
+					payload.writeString(values[i]);
+				}
+				return true;
+			}
+		} catch (IllegalArgumentException e) {
+		} catch (ArrayIndexOutOfBoundsException e) {
+		}
+		//invalid requests are answered with a text error
+		payload.reset();
+		return false;
+	}
+
+	/**
+	 * Returns whether the given protocol extension is reported
+	 *
+	 * @param capability capability name
+	 * @return whether supported
+	 */
+	private boolean supports(String capability) {
+		return fCapabilities.contains(capability);
+	}
+
+	/**
+	 * Handles a suspend, resume or step request of a single node or thread. Requests are only 
+	 * accepted while the program runs; a resumed node or thread runs to the next breakpoint 
+	 * if there are any breakpoints.
+	 *
+	 * @param command <code>suspend</code>, <code>resume</code> or <code>step</code>
+	 * @param scope <code>node N</code> or <code>thread H</code>
+	 * @return reply
+	 */
+	private String handleScopedRequest(String command, String scope) {
+		if (fSuspended)
+			return "error";
+		if (command.equals("suspend")) {
+			if (fSuspendedScopes.add(scope))
+				postEvent("suspended " + scope + " client");
+			return "OK suspend";
+		}
+		if (!fSuspendedScopes.contains(scope))
+			return "error";
+		if (command.equals("step")) {
+			postEvent("resumed " + scope + " step");
+			postEvent("suspended " + scope + " step");
+			return "OK step";
+		}
+		fSuspendedScopes.remove(scope);
+		postEvent("resumed " + scope + " client");
+		if (!fBreakpoints.isEmpty()) {
+			SortedSet<Integer> next = fBreakpoints.tailSet(Integer.valueOf(fLine + 1));
+			int line = (next.isEmpty() ? fBreakpoints.first() : next.first()).intValue();
+			fSuspendedScopes.add(scope);
+			postEvent("suspended " + scope + " breakpoint " + line);
+		}
+		return "OK resume";
+	}
+
+	/**
+	 * Gets the scope of a non-stop request
+	 *
+	 * @param kind <code>node</code> or <code>thread</code>
+	 * @param id node number or process handle
+	 * @return scope of the events of the node or thread
+	 * @throws IllegalArgumentException if there is no such node or thread
+	 */
+	private String getScope(String kind, String id) {
+		if (kind.equals("node"))
+			return "node " + getNode(id);
+		if (kind.equals("thread")) {
+			getThread(id);
+			return "thread " + Integer.parseInt(id);
+		}
+		throw new IllegalArgumentException("Unknown scope " + kind);
+	}
+
+	/**
+	 * Runs to the next breakpoint or, if there are no breakpoints, until suspended
+	 */
+	private void resume() {
+		fSuspendedScopes.clear();
+		fSuspended = false;
+		postEvent("resumed client");
+		if (fBreakpoints.isEmpty())
+			return;
+		SortedSet<Integer> next = fBreakpoints.tailSet(Integer.valueOf(fLine + 1));
+		fLine = (next.isEmpty() ? fBreakpoints.first() : next.first()).intValue();
+		suspend("breakpoint " + fLine);
+	}
+
+	/**
+	 * Suspends the program. All values change and any modified values are discarded.
+	 *
+	 * @param detail suspend event detail
+	 */
+	private void suspend(String detail) {
+		fSuspendedScopes.clear();
+		fSuspended = true;
+		fEpoch++;
+		fModified.clear();
+		postEvent("suspended " + detail);
+	}
+
+	/**
+	 * Gets the thread index of a process handle argument
+	 *
+	 * @param handle process handle argument
+	 * @return thread index
+	 * @throws IllegalArgumentException if there is no such thread
+	 */
+	private int getThread(String handle) {
+		int thread = fProgram.getThreadIndex(Integer.parseInt(handle));
+		if (thread < 0)
+			throw new IllegalArgumentException("No thread " + handle);
+		return thread;
+	}
+
+	/**
+	 * Gets a node number argument
+	 *
+	 * @param node node number argument
+	 * @return node number
+	 * @throws IllegalArgumentException if there is no such node
+	 */
+	private int getNode(String node) {
+		int number = Integer.parseInt(node);
+		if (number < 0 || number >= fProgram.getNodeCount())
+			throw new IllegalArgumentException("No node " + node);
+		return number;
+	}
+
+	/**
+	 * Finds a node by number or alias
+	 *
+	 * @param query node number or alias argument
+	 * @return node number
+	 * @throws IllegalArgumentException if there is no such node
+	 */
+	private int findNode(String query) {
+		try {
+			return getNode(query);
+		} catch (NumberFormatException e) {
+		}
+		for (int node = 0; node < fProgram.getNodeCount(); node++) {
+			if (fProgram.getNodeAlias(node).equals(query))
+				return node;
+		}
+		throw new IllegalArgumentException("No node " + query);
+	}
+
+	/**
+	 * Builds the reply to the <code>matchnodes</code> request
+	 *
+	 * @param filter start of the node number or alias
+	 * @param max maximum number of nodes listed
+	 * @return number of matches followed by the records of the listed nodes
+	 */
+	private String matchNodes(String filter, int max) {
+		String prefix = filter.toLowerCase();
+		StringBuffer records = new StringBuffer();
+		int matches = 0;
+		for (int node = 0; node < fProgram.getNodeCount(); node++) {
+			if (Integer.toString(node).startsWith(prefix) || fProgram.getNodeAlias(node).toLowerCase().startsWith(prefix)) {
+				if (matches++ < max)
+					records.append('#').append(getNodeRecord(node));
+			}
+		}
+		return matches + records.toString();
+	}
+
+	/**
+	 * Gets a stack frame argument
+	 *
+	 * @param frame DAMSON stack frame argument (0 top of the stack)
+	 * @return stack frame
+	 * @throws IllegalArgumentException if there is no such frame
+	 */
+	private int getFrame(String frame) {
+		int index = Integer.parseInt(frame);
+		if (index < 0 || index >= fProgram.getDepth())
+			throw new IllegalArgumentException("No frame " + frame);
+		return index;
+	}
+
+	/**
+	 * Parses the indices arguments of a variable (index count followed by the indices)
+	 *
+	 * @param args request arguments
+	 * @param start position of the index count (may be past the end for a scalar request)
+	 * @return indices, the first being the index count
+	 */
+	private int[] parseIndices(String[] args, int start) {
+		if (start >= args.length)
+			return new int[]{0};
+		int[] indices = new int[Integer.parseInt(args[start]) + 1];
+		indices[0] = indices.length - 1;
+		for (int i = 1; i < indices.length; i++) {
+			indices[i] = Integer.parseInt(args[start + i]);
+		}
+		return indices;
+	}
+
+	/**
+	 * Gets the value of a variable or array element
+	 *
+	 * @param thread thread index
+	 * @param frame DAMSON stack frame
+	 * @param name variable name
+	 * @param global whether the variable is global
+	 * @param indices indices, the first being the index count
+	 * @return the value or <code>[S]</code> for an array
+	 * @throws IllegalArgumentException if there is no such variable or element
+	 */
+	private String getValue(int thread, int frame, String name, boolean global, int[] indices) {
+		if (!fProgram.hasVariable(name, global))
+			throw new IllegalArgumentException("No variable " + name);
+		boolean array = fProgram.isArray(name, global);
+		if (indices[0] == 0) {
+			if (array)
+				return "[" + fProgram.getArraySize() + "]";
+			return getElement(thread, frame, name, global, 0);
+		}
+		if (!array || indices[0] != 1 || indices[1] < 0 || indices[1] >= fProgram.getArraySize())
+			throw new IllegalArgumentException("No element of " + name);
+		return getElement(thread, frame, name, global, indices[1]);
+	}
+
+	/**
+	 * Gets the value of a scalar variable or array element taking account of modified values
+	 *
+	 * @param thread thread index
+	 * @param frame DAMSON stack frame
+	 * @param name variable name
+	 * @param global whether the variable is global
+	 * @param element element index (ignored for scalars)
+	 * @return the value
+	 */
+	private String getElement(int thread, int frame, String name, boolean global, int element) {
+		if (!fModified.isEmpty()) {
+			String value = fModified.get(getKey(thread, frame, name, global, element));
+			if (value != null)
+				return value;
+		}
+		return Integer.toString(fProgram.getValue(thread, frame, name, global, element, fEpoch));
+	}
+
+	/**
+	 * Gets the values of a range of array elements
+	 *
+	 * @param thread thread index
+	 * @param frame DAMSON stack frame
+	 * @param name array variable name
+	 * @param global whether the variable is global
+	 * @param args request arguments
+	 * @param start position of the array indices followed by the first element and element count
+	 * @return the element values
+	 * @throws IllegalArgumentException if the range is out of bounds
+	 */
+	private String[] getRange(int thread, int frame, String name, boolean global, String[] args, int start) {
+		int[] indices = parseIndices(args, start);
+		int first = Integer.parseInt(args[start + indices.length]);
+		int count = Integer.parseInt(args[start + indices.length + 1]);
+		if (!fProgram.isArray(name, global) || indices[0] != 0 || first < 0 || count < 0 || first + count > fProgram.getArraySize())
+			throw new IllegalArgumentException("Invalid range of " + name);
+		String[] values = new String[count];
+		for (int i = 0; i < count; i++) {
+			values[i] = getElement(thread, frame, name, global, first + i);
+		}
+		return values;
+	}
+
+	/**
+	 * Modifies the value of a variable or array element until the next suspend
+	 *
+	 * @param thread thread index
+	 * @param frame DAMSON stack frame
+	 * @param name variable name
+	 * @param global whether the variable is global
+	 * @param args request arguments
+	 * @param start position of the array indices (if any) followed by the value
+	 * @return reply
+	 * @throws IllegalArgumentException if there is no such variable or element
+	 */
+	private String setValue(int thread, int frame, String name, boolean global, String[] args, int start) {
+		int[] indices = start + 1 < args.length ? parseIndices(args, start) : new int[]{0};
+		String value = Integer.toString(Integer.parseInt(args[args.length - 1]));
+		getValue(thread, frame, name, global, indices);
+		if (indices[0] == 0 && fProgram.isArray(name, global))
+			throw new IllegalArgumentException("Can not set array " + name);
+		fModified.put(getKey(thread, frame, name, global, indices[0] == 0 ? 0 : indices[1]), value);
+		return "OK setvar";
+	}
+
+	/**
+	 * Builds the key of a modified value
+	 *
+	 * @param thread thread index
+	 * @param frame DAMSON stack frame
+	 * @param name variable name
+	 * @param global whether the variable is global
+	 * @param element element index
+	 * @return key
+	 */
+	private String getKey(int thread, int frame, String name, boolean global, int element) {
+		if (global)
+			return "&" + name + "[" + element + "]";
+		return thread + "/" + frame + "/" + name + "[" + element + "]";
+	}
+
+	/**
+	 * Builds the reply to the <code>threads</code> and <code>nodethreads</code> requests
+	 *
+	 * @param node node number (0 is the current node)
+	 * @return threads reply
+	 */
+	private String getThreads(int node) {
+		StringBuffer reply = new StringBuffer();
+		int first = node * fProgram.getThreadCount();
+		for (int i = first; i < first + fProgram.getThreadCount(); i++) {
+			if (i > first)
+				reply.append('#');
+			reply.append(fProgram.getThreadHandle(i)).append('|').append(fProgram.getThreadState(i));
+		}
+		return reply.toString();
+	}
+
+	/**
+	 * Builds the reply to the <code>nodes</code> request
+	 *
+	 * @param offset position of the first node
+	 * @param count number of nodes
+	 * @return node count followed by the node records
+	 */
+	private String getNodes(int offset, int count) {
+		if (offset < 0 || count < 0)
+			throw new IllegalArgumentException("Invalid range of nodes");
+		StringBuffer reply = new StringBuffer();
+		reply.append(fProgram.getNodeCount());
+		int end = Math.min(offset + count, fProgram.getNodeCount());
+		for (int node = offset; node < end; node++) {
+			reply.append('#').append(getNodeRecord(node));
+		}
+		return reply.toString();
+	}
+
+	/**
+	 * Builds the record of a node <code>index|number|alias</code> (nodes are listed in order 
+	 * of their number)
+	 *
+	 * @param node node number
+	 * @return node record
+	 */
+	private String getNodeRecord(int node) {
+		return node + "|" + node + "|" + fProgram.getNodeAlias(node);
+	}
+
+	/**
+	 * Builds the text reply to the <code>stack</code> request of a thread
+	 *
+	 * @param thread thread index
+	 * @return stack reply (frames from the top of the stack)
+	 */
+	private String getStack(int thread) {
+		String[] names = fProgram.getFrameVariableNames();
+		StringBuffer reply = new StringBuffer();
+		for (int frame = 0; frame < fProgram.getDepth(); frame++) {
+			if (frame > 0)
+				reply.append('#');
+			reply.append(fProgram.getFrameLine(frame, fLine)).append('|').append(fProgram.getFunctionName(frame));
+			for (int i = 0; i < names.length; i++) {
+				reply.append('|').append(names[i]);
+			}
+		}
+		return reply.toString();
+	}
+
+	/**
+	 * Encodes the binary reply to the <code>stack</code> request of a thread
+	 *
+	 * @param thread thread index
+	 * @param payload reply payload
+	 */
+	private void writeStack(int thread, DamsonBinaryWriter payload) {
+		String[] names = fProgram.getFrameVariableNames();
+		payload.writeVarint(fProgram.getDepth());
+		for (int frame = 0; frame < fProgram.getDepth(); frame++) {
+			payload.writeInt(fProgram.getFrameLine(frame, fLine));
+			payload.writeString(fProgram.getFunctionName(frame));
+			payload.writeVarint(names.length);
+			for (int i = 0; i < names.length; i++) {
+				payload.writeString(names[i]);
+			}
+		}
+	}
+
+	/**
+	 * Builds the text reply to the <code>snapshot</code> request
+	 *
+	 * @return snapshot reply
+	 */
+	private String getSnapshot() {
+		String[] names = fProgram.getFrameVariableNames();
+		StringBuffer reply = new StringBuffer();
+		reply.append("S|").append(fProgram.getSourceFile()).append("|0");
+		for (int thread = 0; thread < fProgram.getThreadCount(); thread++) {
+			reply.append("#T|").append(fProgram.getThreadHandle(thread)).append('|').append(fProgram.getThreadState(thread));
+			for (int frame = 0; frame < fProgram.getDepth(); frame++) {
+				reply.append("#F|").append(fProgram.getFrameLine(frame, fLine)).append('|').append(fProgram.getFunctionName(frame));
+				for (int i = 0; i < names.length; i++) {
+					reply.append('|').append(names[i]).append('|').append(getSnapshotValue(thread, frame, names[i]));
+				}
+			}
+		}
+		return reply.toString();
+	}
+
+	/**
+	 * Encodes the binary reply to the <code>snapshot</code> request
+	 *
+	 * @param payload reply payload
+	 */
+	private void writeSnapshot(DamsonBinaryWriter payload) {
+		String[] names = fProgram.getFrameVariableNames();
+		payload.writeString(fProgram.getSourceFile());
+		payload.writeInt(0);
+		payload.writeVarint(fProgram.getThreadCount());
+		for (int thread = 0; thread < fProgram.getThreadCount(); thread++) {
+			payload.writeInt(fProgram.getThreadHandle(thread));
+			payload.writeInt(fProgram.getThreadState(thread));
+			payload.writeVarint(fProgram.getDepth());
+			for (int frame = 0; frame < fProgram.getDepth(); frame++) {
+				payload.writeInt(fProgram.getFrameLine(frame, fLine));
+				payload.writeString(fProgram.getFunctionName(frame));
+				payload.writeVarint(names.length);
+				for (int i = 0; i < names.length; i++) {
+					payload.writeString(names[i]);
+					payload.writeString(getSnapshotValue(thread, frame, names[i]));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the value of a frame variable listed in a snapshot
+	 *
+	 * @param thread thread index
+	 * @param frame DAMSON stack frame
+	 * @param name variable name as listed in the frame (prefixed with <code>&amp;</code> if global)
+	 * @return the value
+	 */
+	private String getSnapshotValue(int thread, int frame, String name) {
+		if (name.startsWith("&"))
+			return getValue(thread, frame, name.substring(1), true, new int[]{0});
+		return getValue(thread, frame, name, false, new int[]{0});
+	}
+
+	/**
+	 * Joins values into a single reply <code>value|value|...|value</code>
+	 *
+	 * @param values values
+	 * @return reply
+	 */
+	private String join(String[] values) {
+		StringBuffer reply = new StringBuffer();
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0)
+				reply.append('|');
+			reply.append(values[i]);
+		}
+		return reply.toString();
+	}
+}
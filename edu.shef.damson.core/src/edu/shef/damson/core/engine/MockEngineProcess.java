@@ -0,0 +1,117 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.engine;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.debug.core.DebugException;
+import org.eclipse.debug.core.ILaunch;
+import org.eclipse.debug.core.model.IProcess;
+import org.eclipse.debug.core.model.IStreamsProxy;
+
+/**
+ * The process of a mock DAMSON engine for debug targets driven outside Eclipse, where 
+ * there is no launch to create a runtime process in. The process has no streams and is 
+ * terminated with the engine.
+ */
+public class MockEngineProcess implements IProcess {
+
+	private DamsonEngineServer fEngine;
+	private Map<String, String> fAttributes = new HashMap<String, String>();
+
+	/**
+	 * Constructs the process of the given engine
+	 *
+	 * @param engine engine server
+	 */
+	public MockEngineProcess(DamsonEngineServer engine) {
+		fEngine = engine;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IProcess#getLabel()
+	 */
+	public String getLabel() {
+		return "DAMSON mock engine";
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IProcess#getLaunch()
+	 */
+	public ILaunch getLaunch() {
+		return null;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IProcess#getStreamsProxy()
+	 */
+	public IStreamsProxy getStreamsProxy() {
+		return null;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IProcess#setAttribute(java.lang.String, java.lang.String)
+	 */
+	public void setAttribute(String key, String value) {
+		fAttributes.put(key, value);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IProcess#getAttribute(java.lang.String)
+	 */
+	public String getAttribute(String key) {
+		return fAttributes.get(key);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IProcess#getExitValue()
+	 */
+	public int getExitValue() throws DebugException {
+		return 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.core.runtime.IAdaptable#getAdapter(java.lang.Class)
+	 */
+	@SuppressWarnings("rawtypes")
+	public Object getAdapter(Class adapter) {
+		return null;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.ITerminate#canTerminate()
+	 */
+	public boolean canTerminate() {
+		return !isTerminated();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.ITerminate#isTerminated()
+	 */
+	public boolean isTerminated() {
+		return fEngine.isTerminated();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.ITerminate#terminate()
+	 */
+	public void terminate() throws DebugException {
+		fEngine.terminate();
+	}
+}
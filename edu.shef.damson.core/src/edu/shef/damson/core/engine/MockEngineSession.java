@@ -0,0 +1,260 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.engine;
+
+import java.io.IOException;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.debug.core.DebugException;
+
+import edu.shef.damson.core.DebugCorePlugin;
+import edu.shef.damson.core.model.DamsonDebugTarget;
+import edu.shef.damson.core.model.DamsonSessionRecorder;
+import edu.shef.damson.core.model.DamsonTransport;
+
+/**
+ * A debug session of a synthetic program on the mock DAMSON engine, driven outside Eclipse 
+ * (there is no launch or breakpoint manager) by the tests and benchmarks. The engine reports 
+ * the capabilities of one of the protocols. The session is suspended once started and can be 
+ * taken through further suspends so that each refresh sees changed values; the suspends are 
+ * counted so that the expected values can be computed (see 
+ * {@link DamsonSyntheticProgram#getValue(int, int, String, boolean, int, int)}).
+ */
+public class MockEngineSession {
+
+	/**
+	 * Protocol without any extensions (older DAMSON debuggers)
+	 */
+	public static final String PROTOCOL_LEGACY = "legacy";
+
+	/**
+	 * Pipelined requests with array range and breakpoint batch requests
+	 */
+	public static final String PROTOCOL_PIPELINE = "pipeline";
+
+	/**
+	 * Pipelined requests with single request snapshots
+	 */
+	public static final String PROTOCOL_SNAPSHOT = "snapshot";
+
+	/**
+	 * Pipelined requests with snapshots and binary replies
+	 */
+	public static final String PROTOCOL_BINARY = "binary";
+
+	/**
+	 * Pipelined requests with snapshots, binary replies and paged nodes
+	 */
+	public static final String PROTOCOL_NODES = "nodes";
+
+	/**
+	 * Pipelined requests with snapshots, binary replies, paged nodes and non-stop mode
+	 */
+	public static final String PROTOCOL_NON_STOP = "nonstop";
+
+	/**
+	 * Time to wait for the target to follow the engine state
+	 */
+	private static final long STATE_TIMEOUT = 10000;
+
+	private MockDamsonEngine fEngine;
+	private DamsonDebugTarget fTarget;
+	private int fSuspends = 0;
+
+	/**
+	 * Starts the engine running the given program and connects a debug target to it. 
+	 * Returns once the target is suspended.
+	 *
+	 * @param program synthetic program
+	 * @param protocol one of the PROTOCOL values
+	 * @throws IOException if the engine can not be started
+	 * @throws CoreException if the target can not connect or suspend
+	 */
+	public MockEngineSession(DamsonSyntheticProgram program, String protocol) throws IOException, CoreException {
+		this(program, protocol, null);
+	}
+
+	/**
+	 * Starts the engine running the given program and connects a debug target recording 
+	 * the session to it. Returns once the target is suspended.
+	 *
+	 * @param program synthetic program
+	 * @param protocol one of the PROTOCOL values
+	 * @param recorder session recorder or <code>null</code> if not recording
+	 * @throws IOException if the engine can not be started
+	 * @throws CoreException if the target can not connect or suspend
+	 */
+	public MockEngineSession(DamsonSyntheticProgram program, String protocol, DamsonSessionRecorder recorder) throws IOException, CoreException {
+		fEngine = new MockDamsonEngine(program);
+		fEngine.setCapabilities(getCapabilities(protocol));
+		fEngine.start();
+		try {
+			fTarget = new DamsonDebugTarget(null, new MockEngineProcess(fEngine), DamsonTransport.createTcp(fEngine.getRequestPort(), fEngine.getEventPort()), recorder);
+			//the target resumes the program once started
+			long deadline = System.currentTimeMillis() + STATE_TIMEOUT;
+			while (fEngine.isSuspended()) {
+				awaitDeadline(deadline);
+			}
+			suspend();
+		} catch (CoreException e) {
+			fEngine.terminate();
+			throw e;
+		}
+	}
+
+	/**
+	 * Gets the capabilities reported by the engine for a protocol
+	 *
+	 * @param protocol one of the PROTOCOL values
+	 * @return capability names
+	 */
+	private static String[] getCapabilities(String protocol) {
+		if (protocol.equals(PROTOCOL_LEGACY))
+			return new String[0];
+		if (protocol.equals(PROTOCOL_PIPELINE))
+			return new String[]{
+					DamsonDebugTarget.CAPABILITY_PIPELINE,
+					DamsonDebugTarget.CAPABILITY_ARRAY_RANGE,
+					DamsonDebugTarget.CAPABILITY_BREAKPOINT_BATCH};
+		if (protocol.equals(PROTOCOL_SNAPSHOT))
+			return new String[]{
+					DamsonDebugTarget.CAPABILITY_PIPELINE,
+					DamsonDebugTarget.CAPABILITY_SNAPSHOT,
+					DamsonDebugTarget.CAPABILITY_ARRAY_RANGE,
+					DamsonDebugTarget.CAPABILITY_BREAKPOINT_BATCH};
+		if (protocol.equals(PROTOCOL_BINARY))
+			return new String[]{
+					DamsonDebugTarget.CAPABILITY_PIPELINE,
+					DamsonDebugTarget.CAPABILITY_SNAPSHOT,
+					DamsonDebugTarget.CAPABILITY_ARRAY_RANGE,
+					DamsonDebugTarget.CAPABILITY_BREAKPOINT_BATCH,
+					DamsonDebugTarget.CAPABILITY_BINARY};
+		if (protocol.equals(PROTOCOL_NODES))
+			return new String[]{
+					DamsonDebugTarget.CAPABILITY_PIPELINE,
+					DamsonDebugTarget.CAPABILITY_SNAPSHOT,
+					DamsonDebugTarget.CAPABILITY_ARRAY_RANGE,
+					DamsonDebugTarget.CAPABILITY_BREAKPOINT_BATCH,
+					DamsonDebugTarget.CAPABILITY_BINARY,
+					DamsonDebugTarget.CAPABILITY_NODES};
+		if (protocol.equals(PROTOCOL_NON_STOP))
+			return new String[]{
+					DamsonDebugTarget.CAPABILITY_PIPELINE,
+					DamsonDebugTarget.CAPABILITY_SNAPSHOT,
+					DamsonDebugTarget.CAPABILITY_ARRAY_RANGE,
+					DamsonDebugTarget.CAPABILITY_BREAKPOINT_BATCH,
+					DamsonDebugTarget.CAPABILITY_BINARY,
+					DamsonDebugTarget.CAPABILITY_NODES,
+					DamsonDebugTarget.CAPABILITY_NON_STOP};
+		throw new IllegalArgumentException("Unknown protocol: " + protocol);
+	}
+
+	/**
+	 * Gets the debug target
+	 *
+	 * @return debug target
+	 */
+	public DamsonDebugTarget getTarget() {
+		return fTarget;
+	}
+
+	/**
+	 * Gets the engine
+	 *
+	 * @return mock engine
+	 */
+	public MockDamsonEngine getEngine() {
+		return fEngine;
+	}
+
+	/**
+	 * Gets the number of times the program has been suspended
+	 *
+	 * @return suspend count
+	 */
+	public int getSuspends() {
+		return fSuspends;
+	}
+
+	/**
+	 * Resumes and suspends the program again. Returns once the target has started the new 
+	 * suspend (all cached values are stale and all variable values have changed).
+	 *
+	 * @throws DebugException if the target does not follow the engine
+	 */
+	public void nextSuspend() throws DebugException {
+		fTarget.resume();
+		suspend();
+	}
+
+	/**
+	 * Resumes the program (which runs until suspended, if there are no breakpoints). Returns 
+	 * once the target has handled the resume event.
+	 *
+	 * @throws DebugException if the target does not follow the engine
+	 */
+	public void resume() throws DebugException {
+		fTarget.resume();
+		long deadline = System.currentTimeMillis() + STATE_TIMEOUT;
+		while (fTarget.isSuspended()) {
+			awaitDeadline(deadline);
+		}
+	}
+
+	/**
+	 * Suspends the program and waits for the target to handle the suspend event (i.e. after 
+	 * {@link #resume()})
+	 *
+	 * @throws DebugException if the target does not follow the engine
+	 */
+	public void suspend() throws DebugException {
+		int epoch = fTarget.getValueCache().getEpoch();
+		fTarget.suspend();
+		fSuspends++;
+		long deadline = System.currentTimeMillis() + STATE_TIMEOUT;
+		while (fTarget.getValueCache().getEpoch() == epoch) {
+			awaitDeadline(deadline);
+		}
+	}
+
+	/**
+	 * Yields while waiting for the target
+	 *
+	 * @param deadline time to give up
+	 * @throws DebugException if the deadline has passed
+	 */
+	private void awaitDeadline(long deadline) throws DebugException {
+		if (fTarget.isTerminated() || System.currentTimeMillis() > deadline)
+			throw new DebugException(new Status(IStatus.ERROR, DebugCorePlugin.PLUGIN_ID, "Debug target did not follow the mock DAMSON engine"));
+		Thread.yield();
+	}
+
+	/**
+	 * Ends the session, terminating the target and the engine
+	 */
+	public void close() {
+		try {
+			if (!fTarget.isTerminated())
+				fTarget.terminate();
+		} catch (DebugException e) {
+		}
+		fEngine.terminate();
+	}
+}
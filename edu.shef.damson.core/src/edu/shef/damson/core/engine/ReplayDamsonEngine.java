@@ -0,0 +1,206 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.engine;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.shef.damson.core.engine.DamsonSessionRecording.Exchange;
+
+/**
+ * In-process stand-in for the DAMSON debugger which replays a recorded debug session 
+ * (see {@link DamsonSessionRecording}), so that a session can be reproduced without DAMSON 
+ * or the original program.
+ * <p>
+ * Each request is answered with the recorded reply of the same request. Requests made more 
+ * than once are answered with their recorded replies in turn, and once those run out with the 
+ * last of them. Requests which were never recorded are answered with an error. The events 
+ * which followed a recorded request are written after its reply is replayed. A request which 
+ * the DAMSON debugger never answered blocks the engine until it is terminated, reproducing 
+ * the hang.
+ * </p>
+ * Replies are written as soon as possible unless real time replay is enabled (see 
+ * {@link #setRealTime(boolean)}).
+ */
+public class ReplayDamsonEngine extends DamsonEngineServer {
+
+	private DamsonSessionRecording fRecording;
+	private Map<String, List<Exchange>> fExchanges = new HashMap<String, List<Exchange>>();
+	private Map<String, Integer> fReplayed = new HashMap<String, Integer>();
+	private boolean fRealTime = false;
+	//exchange selected while offering a request a binary reply
+	private Exchange fSelected;
+	private boolean fSelectedValid = false;
+
+	/**
+	 * Constructs an engine replaying the given recording listening on the given local ports
+	 *
+	 * @param recording recorded session
+	 * @param requestPort request port (0 for any free port)
+	 * @param eventPort event port (0 for any free port)
+	 * @throws IOException if unable to listen on the ports
+	 */
+	public ReplayDamsonEngine(DamsonSessionRecording recording, int requestPort, int eventPort) throws IOException {
+		super(requestPort, eventPort);
+		fRecording = recording;
+		for (Exchange exchange : recording.getExchanges()) {
+			List<Exchange> exchanges = fExchanges.get(exchange.getRequest());
+			if (exchanges == null) {
+				exchanges = new ArrayList<Exchange>();
+				fExchanges.put(exchange.getRequest(), exchanges);
+			}
+			exchanges.add(exchange);
+		}
+		for (String event : recording.getInitialEvents()) {
+			replayEvent(event);
+		}
+	}
+
+	/**
+	 * Constructs an engine replaying the given recording listening on any free local ports
+	 *
+	 * @param recording recorded session
+	 * @throws IOException if unable to listen on the ports
+	 */
+	public ReplayDamsonEngine(DamsonSessionRecording recording) throws IOException {
+		this(recording, 0, 0);
+	}
+
+	/**
+	 * Gets the recorded session
+	 *
+	 * @return the recording
+	 */
+	public DamsonSessionRecording getRecording() {
+		return fRecording;
+	}
+
+	/**
+	 * Sets whether replies are delayed by their recorded latency (disabled by default)
+	 *
+	 * @param realTime whether to replay in real time
+	 */
+	public void setRealTime(boolean realTime) {
+		fRealTime = realTime;
+	}
+
+	/* (non-Javadoc)
+	 * @see edu.shef.damson.core.engine.DamsonEngineServer#handleBinaryRequest(java.lang.String, edu.shef.damson.core.engine.DamsonBinaryWriter)
+	 */
+	protected boolean handleBinaryRequest(String request, DamsonBinaryWriter payload) {
+		fSelected = select(request);
+		fSelectedValid = true;
+		if (fSelected == null || fSelected.getBinaryReply() == null)
+			return false;
+		fSelectedValid = false;
+		replay(fSelected);
+		byte[] reply = fSelected.getBinaryReply();
+		payload.write(reply, 0, reply.length);
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see edu.shef.damson.core.engine.DamsonEngineServer#handleRequest(java.lang.String)
+	 */
+	protected String handleRequest(String request) {
+		Exchange exchange = fSelectedValid ? fSelected : select(request);
+		fSelectedValid = false;
+		if (exchange == null)
+			return "error";
+		replay(exchange);
+		if (exchange.getReply() == null)
+			return "error";
+		if (request.equals("binary"))
+			setBinary(exchange.getReply().endsWith("OK binary"));
+		return exchange.getReply();
+	}
+
+	/**
+	 * Selects the recorded exchange which answers a request
+	 *
+	 * @param request request text
+	 * @return the exchange or <code>null</code> if the request was never recorded
+	 */
+	private Exchange select(String request) {
+		List<Exchange> exchanges = fExchanges.get(request);
+		if (exchanges == null)
+			return null;
+		Integer replayed = fReplayed.get(request);
+		int index = replayed == null ? 0 : replayed.intValue();
+		fReplayed.put(request, Integer.valueOf(index + 1));
+		if (index < exchanges.size())
+			return exchanges.get(index);
+		//repeat the last reply without its events
+		Exchange last = exchanges.get(exchanges.size() - 1);
+		Exchange repeat = new Exchange(request, 0);
+		repeat.setReply(last);
+		return repeat;
+	}
+
+	/**
+	 * Waits as the recorded DAMSON debugger did before its reply and posts the events 
+	 * which followed the request
+	 *
+	 * @param exchange the exchange being replayed
+	 */
+	private void replay(Exchange exchange) {
+		if (!exchange.isAnswered()) {
+			//the recorded debugger never answered
+			while (!isTerminated()) {
+				sleep(100);
+			}
+			return;
+		}
+		if (fRealTime)
+			sleep(exchange.getLatency() / 1000);
+		for (String event : exchange.getEvents()) {
+			replayEvent(event);
+		}
+		if (exchange.getRequest().equals("exit"))
+			exitAfterReply();
+	}
+
+	/**
+	 * Posts a recorded event. The <code>started</code> and <code>terminated</code> events 
+	 * are written by the server itself when the debugger connects and when it terminates.
+	 *
+	 * @param event event text
+	 */
+	private void replayEvent(String event) {
+		if (event.equals("terminated"))
+			exitAfterReply();
+		else if (!event.equals("started"))
+			postEvent(event);
+	}
+
+	/**
+	 * Sleeps without being interrupted
+	 *
+	 * @param millis time in milliseconds
+	 */
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -18,6 +18,9 @@
 package edu.shef.damson.core.launcher;
 
 import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.List;
@@ -40,17 +43,42 @@ import org.eclipse.debug.core.model.IProcess;
 import org.eclipse.debug.core.model.LaunchConfigurationDelegate;
 
 import edu.shef.damson.core.DebugCorePlugin;
+import edu.shef.damson.core.engine.DamsonEngineProcess;
+import edu.shef.damson.core.engine.DamsonSyntheticProgram;
+import edu.shef.damson.core.engine.DamsonSessionRecording;
+import edu.shef.damson.core.engine.MockDamsonEngine;
+import edu.shef.damson.core.engine.ReplayDamsonEngine;
 import edu.shef.damson.core.model.DamsonDebugTarget;
+import edu.shef.damson.core.model.DamsonSessionRecorder;
+import edu.shef.damson.core.model.DamsonTransport;
 
 
 /**
  * Launches DAMSON Program 
  */
 public class DamsonLaunchDelegate extends LaunchConfigurationDelegate {
+	
+	/**
+	 * Number of times DAMSON is started with newly found free ports if another program 
+	 * binds one of the ports before DAMSON does
+	 */
+	private static final int PORT_ATTEMPTS = 3;
+	
 	/* (non-Javadoc)
 	 * @see org.eclipse.debug.core.model.ILaunchConfigurationDelegate#launch(org.eclipse.debug.core.ILaunchConfiguration, java.lang.String, org.eclipse.debug.core.ILaunch, org.eclipse.core.runtime.IProgressMonitor)
 	 */
 	public void launch(ILaunchConfiguration configuration, String mode, ILaunch launch, IProgressMonitor monitor) throws CoreException {
+		//debug a synthetic program without DAMSON
+		if (mode.equals(ILaunchManager.DEBUG_MODE) && configuration.getAttribute(DebugCorePlugin.ATTR_DAMSON_MOCK_ENGINE, false)) {
+			launchMockEngine(configuration, launch);
+			return;
+		}
+		//debug a recorded session without DAMSON
+		if (mode.equals(ILaunchManager.DEBUG_MODE) && configuration.getAttribute(DebugCorePlugin.ATTR_DAMSON_REPLAY_FILE, (String)null) != null) {
+			launchReplayEngine(configuration, launch);
+			return;
+		}
+		
 		List<String> commandList = new ArrayList<String>();
 		
 		// DAMSON executable
@@ -88,8 +116,27 @@ public class DamsonLaunchDelegate extends LaunchConfigurationDelegate {
 
 		
 		// if in debug mode, add debug argument - i.e. '-debug'
+		int requestPort = DebugCorePlugin.REQUEST_PORT;
+		int eventPort = DebugCorePlugin.EVENT_PORT;
+		DamsonTransport transport = null;
+		boolean dynamicPorts = false;
 		if (mode.equals(ILaunchManager.DEBUG_MODE)) {
 			commandList.add("-debug");
+			String transportName = configuration.getAttribute(DebugCorePlugin.ATTR_DAMSON_TRANSPORT, DebugCorePlugin.TRANSPORT_TCP);
+			//use unix domain sockets where supported (otherwise fall back to TCP)
+			if (transportName.equals(DebugCorePlugin.TRANSPORT_UNIX) && DamsonTransport.isUnixDomainSupported()) {
+				String requestPath = createSocketPath("request");
+				String eventPath = createSocketPath("event");
+				transport = DamsonTransport.createUnix(requestPath, eventPath);
+				commandList.add("-requestsocket");
+				commandList.add(requestPath);
+				commandList.add("-eventsocket");
+				commandList.add(eventPath);
+			}
+			//use free ports so that many debug sessions can run at once (found for each attempt to run DAMSON)
+			else if (configuration.getAttribute(DebugCorePlugin.ATTR_DAMSON_DYNAMIC_PORTS, false)) {
+				dynamicPorts = true;
+			}
 			//un-comment the following to allow debugging of the debugger
 			//commandList.clear();
 			//commandList.add("sleep");
@@ -138,19 +185,187 @@ public class DamsonLaunchDelegate extends LaunchConfigurationDelegate {
 			}
 		}
 		
-		//run DAMSON
-		
-		String[] commandLine = commandList.toArray(new String[commandList.size()]);
-		System.out.println(commandList.toString());
-		Process process = DebugPlugin.exec(commandLine, null);
-		IProcess p = DebugPlugin.newProcess(launch, process, damson_path);
+		DamsonSessionRecorder recorder = null;
+		if (mode.equals(ILaunchManager.DEBUG_MODE))
+			recorder = createRecorder(configuration);
 		
-		// if in debug mode, create a debug target 
-		if (mode.equals(ILaunchManager.DEBUG_MODE)) {
-			IDebugTarget target = new DamsonDebugTarget(launch, p);
-			launch.addDebugTarget(target);
+		//run DAMSON
+		int attempts = dynamicPorts ? PORT_ATTEMPTS : 1;
+		for (int attempt = 1; ; attempt++) {
+			List<String> attemptList = commandList;
+			if (dynamicPorts) {
+				int[] ports = findFreePorts(2);
+				requestPort = ports[0];
+				eventPort = ports[1];
+				attemptList = new ArrayList<String>(commandList);
+				attemptList.add("-requestport");
+				attemptList.add(Integer.toString(requestPort));
+				attemptList.add("-eventport");
+				attemptList.add(Integer.toString(eventPort));
+			}
+			String[] commandLine = attemptList.toArray(new String[attemptList.size()]);
+			System.out.println(attemptList.toString());
+			Process process = DebugPlugin.exec(commandLine, null);
+			IProcess p = DebugPlugin.newProcess(launch, process, damson_path);
+			
+			// if in debug mode, create a debug target 
+			if (mode.equals(ILaunchManager.DEBUG_MODE)) {
+				DamsonDebugTarget target = new DamsonDebugTarget(launch, p, transport != null ? transport : DamsonTransport.createTcp(requestPort, eventPort), recorder);
+				//DAMSON exits if it can not bind its ports, which another program may have bound since they were found
+				if (dynamicPorts && attempt < attempts && !target.isConnected() && !(isPortFree(requestPort) && isPortFree(eventPort))) {
+					launch.removeProcess(p);
+					continue;
+				}
+				launch.addDebugTarget(target);
+			}
+			return;
+		}
+	}
+	
+	/**
+	 * Debugs a synthetic program run by an in-process mock DAMSON engine listening on 
+	 * free ports. The engine reports the name of the launched program as its source file.
+	 * 
+	 * @param configuration launch configuration
+	 * @param launch containing launch
+	 * @throws CoreException if the engine can not be started
+	 */
+	private void launchMockEngine(ILaunchConfiguration configuration, ILaunch launch) throws CoreException {
+		DamsonSyntheticProgram program = null;
+		try {
+			program = DamsonSyntheticProgram.parse(configuration.getAttribute(DebugCorePlugin.ATTR_DAMSON_MOCK_PROGRAM, (String)null));
+		} catch (IllegalArgumentException e) {
+			abort(e.getMessage(), null);
 		}
+		String programPath = configuration.getAttribute(DebugCorePlugin.ATTR_DAMSON_PROGRAM, (String)null);
+		if (programPath != null)
+			program.setSourceFile(new Path(programPath).lastSegment());
 		
+		MockDamsonEngine engine = null;
+		try {
+			engine = new MockDamsonEngine(program);
+		} catch (IOException e) {
+			abort("Unable to start the mock DAMSON engine.", e);
+		}
+		engine.start();
+		IProcess p = DebugPlugin.newProcess(launch, new DamsonEngineProcess(engine), "DAMSON mock engine");
+		IDebugTarget target = new DamsonDebugTarget(launch, p, DamsonTransport.createTcp(engine.getRequestPort(), engine.getEventPort()), createRecorder(configuration));
+		launch.addDebugTarget(target);
+	}
+	
+	/**
+	 * Debugs a recorded session replayed by an in-process DAMSON engine listening on 
+	 * free ports.
+	 * 
+	 * @param configuration launch configuration
+	 * @param launch containing launch
+	 * @throws CoreException if the recording can not be read or the engine can not be started
+	 */
+	private void launchReplayEngine(ILaunchConfiguration configuration, ILaunch launch) throws CoreException {
+		String replayPath = configuration.getAttribute(DebugCorePlugin.ATTR_DAMSON_REPLAY_FILE, (String)null);
+		ReplayDamsonEngine engine = null;
+		try {
+			engine = new ReplayDamsonEngine(DamsonSessionRecording.read(new File(replayPath)));
+		} catch (IOException e) {
+			abort(MessageFormat.format("Unable to replay DAMSON session recording {0}.", new Object[]{replayPath}), e);
+		}
+		engine.setRealTime(configuration.getAttribute(DebugCorePlugin.ATTR_DAMSON_REPLAY_REAL_TIME, false));
+		engine.start();
+		IProcess p = DebugPlugin.newProcess(launch, new DamsonEngineProcess(engine), "DAMSON replay engine");
+		IDebugTarget target = new DamsonDebugTarget(launch, p, engine.getRequestPort(), engine.getEventPort());
+		launch.addDebugTarget(target);
+	}
+	
+	/**
+	 * Creates the recorder of the debugger traffic if the launch records the session
+	 * 
+	 * @param configuration launch configuration
+	 * @return session recorder or <code>null</code> if not recording
+	 * @throws CoreException if the recording file can not be created
+	 */
+	private DamsonSessionRecorder createRecorder(ILaunchConfiguration configuration) throws CoreException {
+		String recordPath = configuration.getAttribute(DebugCorePlugin.ATTR_DAMSON_RECORD_FILE, (String)null);
+		if (recordPath == null || recordPath.length() == 0)
+			return null;
+		try {
+			return new DamsonSessionRecorder(new File(recordPath));
+		} catch (IOException e) {
+			abort(MessageFormat.format("Unable to create DAMSON session recording {0}.", new Object[]{recordPath}), e);
+		}
+		return null;
+	}
+	
+	/**
+	 * Finds free local ports by binding server sockets to port 0. All sockets are held 
+	 * open until every port is found so that the ports are distinct.
+	 * 
+	 * @param count number of ports
+	 * @return free port numbers
+	 * @throws CoreException if no free port is available
+	 */
+	private int[] findFreePorts(int count) throws CoreException {
+		int[] ports = new int[count];
+		ServerSocket[] sockets = new ServerSocket[count];
+		try {
+			for (int i = 0; i < count; i++) {
+				sockets[i] = new ServerSocket(0, 1, InetAddress.getByName("localhost"));
+				ports[i] = sockets[i].getLocalPort();
+			}
+		} catch (IOException e) {
+			abort("Unable to allocate DAMSON debugger ports.", e);
+		} finally {
+			for (int i = 0; i < count; i++) {
+				if (sockets[i] != null) {
+					try {
+						sockets[i].close();
+					} catch (IOException e) {
+					}
+				}
+			}
+		}
+		return ports;
+	}
+	
+	/**
+	 * Returns whether a local port is free, i.e. not bound by another program
+	 * 
+	 * @param port port number
+	 * @return whether the port can be bound
+	 */
+	private boolean isPortFree(int port) {
+		ServerSocket socket = null;
+		try {
+			socket = new ServerSocket(port, 1, InetAddress.getByName("localhost"));
+			return true;
+		} catch (IOException e) {
+			return false;
+		} finally {
+			if (socket != null) {
+				try {
+					socket.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Creates a unique path for a Unix domain socket bound by DAMSON. The path is in the 
+	 * temporary directory and does not exist.
+	 * 
+	 * @param name stream name
+	 * @return socket path
+	 * @throws CoreException if the temporary directory is not writable
+	 */
+	private String createSocketPath(String name) throws CoreException {
+		try {
+			File file = File.createTempFile("damson-" + name, ".sock");
+			file.delete();
+			return file.getAbsolutePath();
+		} catch (IOException e) {
+			abort("Unable to create DAMSON debugger socket.", e);
+			return null;
+		}
 	}
 	
 	/**
@@ -0,0 +1,140 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.model;
+
+import java.io.EOFException;
+import java.nio.charset.Charset;
+
+/**
+ * The payload of a binary reply frame from the DAMSON debugger (see {@link DamsonReplyReader}).
+ * Fields are decoded in order directly from the payload bytes:
+ * <ul>
+ * <li>unsigned integers (counts) are varints - 7 bits per byte, least significant first, 
+ * 		with the top bit set on all but the last byte</li>
+ * <li>signed integers (lines, handles, states and node numbers) are zigzag encoded varints</li>
+ * <li>strings are a varint byte length followed by UTF-8 bytes</li>
+ * </ul>
+ */
+public class DamsonBinaryReply {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private int fId;
+	private byte[] fData;
+	private int fPosition;
+	private int fLimit;
+
+	/**
+	 * Constructs a reply over the given payload
+	 *
+	 * @param id correlation ID of the reply (0 if the request channel is not pipelined)
+	 * @param data payload bytes
+	 * @param length payload length
+	 */
+	public DamsonBinaryReply(int id, byte[] data, int length) {
+		fId = id;
+		fData = data;
+		fPosition = 0;
+		fLimit = length;
+	}
+
+	/**
+	 * Gets the correlation ID of the request this reply answers
+	 *
+	 * @return correlation ID
+	 */
+	public int getId() {
+		return fId;
+	}
+
+	/**
+	 * Gets the length of the payload
+	 *
+	 * @return payload length in bytes
+	 */
+	public int getLength() {
+		return fLimit;
+	}
+
+	/**
+	 * Gets the payload bytes (valid up to {@link #getLength()})
+	 *
+	 * @return payload buffer
+	 */
+	byte[] getData() {
+		return fData;
+	}
+
+	/**
+	 * Returns whether any fields remain to be decoded
+	 *
+	 * @return whether the payload has remaining bytes
+	 */
+	public boolean hasRemaining() {
+		return fPosition < fLimit;
+	}
+
+	/**
+	 * Decodes an unsigned varint
+	 *
+	 * @return value
+	 * @throws EOFException if the payload is truncated
+	 */
+	public int readVarint() throws EOFException {
+		int value = 0;
+		int shift = 0;
+		while (true) {
+			if (fPosition >= fLimit || shift > 28) {
+				throw new EOFException("Truncated DAMSON reply");
+			}
+			int b = fData[fPosition++];
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+			shift += 7;
+		}
+	}
+
+	/**
+	 * Decodes a zigzag encoded signed varint
+	 *
+	 * @return value
+	 * @throws EOFException if the payload is truncated
+	 */
+	public int readInt() throws EOFException {
+		int value = readVarint();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * Decodes a length prefixed UTF-8 string
+	 *
+	 * @return value
+	 * @throws EOFException if the payload is truncated
+	 */
+	public String readString() throws EOFException {
+		int length = readVarint();
+		if (length < 0 || fPosition + length > fLimit) {
+			throw new EOFException("Truncated DAMSON reply");
+		}
+		String value = new String(fData, fPosition, length, UTF8);
+		fPosition += length;
+		return value;
+	}
+}
@@ -0,0 +1,205 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.model;
+
+/**
+ * Request statistics of a single DAMSON debugger command (i.e. <code>var</code> or 
+ * <code>stack</code>): the number of requests and failures, the bytes sent and received 
+ * and a histogram of the request latencies (time from sending the request to its reply). 
+ * Instances returned by {@link DamsonRequestStatistics} are copies which are not updated.
+ */
+public class DamsonCommandStatistics {
+
+	/**
+	 * Upper bounds of the latency histogram buckets in microseconds. The last bucket holds 
+	 * all latencies above the last bound.
+	 */
+	private static final long[] BUCKET_BOUNDS = {
+		50, 100, 250, 500, 1000, 2500, 5000, 10000, 25000, 50000, 100000, 250000, 500000, 1000000
+	};
+
+	private String fCommand;
+	private long fCount;
+	private long fFailures;
+	private long fTotalTime;
+	private long fMaxTime;
+	private long fBytesOut;
+	private long fBytesIn;
+	private long[] fHistogram = new long[BUCKET_BOUNDS.length + 1];
+
+	/**
+	 * Constructs empty statistics of a command
+	 *
+	 * @param command command name
+	 */
+	DamsonCommandStatistics(String command) {
+		fCommand = command;
+	}
+
+	/**
+	 * Records a completed request
+	 *
+	 * @param time latency in nanoseconds
+	 * @param bytesOut bytes sent
+	 * @param bytesIn bytes received (0 if the request failed)
+	 * @param failed whether the request failed
+	 */
+	void record(long time, int bytesOut, int bytesIn, boolean failed) {
+		fCount++;
+		if (failed)
+			fFailures++;
+		fTotalTime += time;
+		fMaxTime = Math.max(fMaxTime, time);
+		fBytesOut += bytesOut;
+		fBytesIn += bytesIn;
+		long micros = time / 1000;
+		int bucket = 0;
+		while (bucket < BUCKET_BOUNDS.length && micros > BUCKET_BOUNDS[bucket]) {
+			bucket++;
+		}
+		fHistogram[bucket]++;
+	}
+
+	/**
+	 * Returns a copy of these statistics
+	 *
+	 * @return copy
+	 */
+	DamsonCommandStatistics copy() {
+		DamsonCommandStatistics copy = new DamsonCommandStatistics(fCommand);
+		copy.fCount = fCount;
+		copy.fFailures = fFailures;
+		copy.fTotalTime = fTotalTime;
+		copy.fMaxTime = fMaxTime;
+		copy.fBytesOut = fBytesOut;
+		copy.fBytesIn = fBytesIn;
+		copy.fHistogram = fHistogram.clone();
+		return copy;
+	}
+
+	/**
+	 * Gets the command name
+	 *
+	 * @return command name (first word of the request)
+	 */
+	public String getCommand() {
+		return fCommand;
+	}
+
+	/**
+	 * Gets the number of requests
+	 *
+	 * @return request count
+	 */
+	public long getCount() {
+		return fCount;
+	}
+
+	/**
+	 * Gets the number of requests which failed (no reply arrived)
+	 *
+	 * @return failure count
+	 */
+	public long getFailures() {
+		return fFailures;
+	}
+
+	/**
+	 * Gets the total latency of all requests
+	 *
+	 * @return total time in nanoseconds
+	 */
+	public long getTotalTime() {
+		return fTotalTime;
+	}
+
+	/**
+	 * Gets the mean request latency
+	 *
+	 * @return mean time in nanoseconds
+	 */
+	public long getMeanTime() {
+		return fCount == 0 ? 0 : fTotalTime / fCount;
+	}
+
+	/**
+	 * Gets the longest request latency
+	 *
+	 * @return maximum time in nanoseconds
+	 */
+	public long getMaxTime() {
+		return fMaxTime;
+	}
+
+	/**
+	 * Gets the number of bytes sent
+	 *
+	 * @return bytes sent
+	 */
+	public long getBytesOut() {
+		return fBytesOut;
+	}
+
+	/**
+	 * Gets the number of bytes received
+	 *
+	 * @return bytes received
+	 */
+	public long getBytesIn() {
+		return fBytesIn;
+	}
+
+	/**
+	 * Gets the latency histogram (see {@link #getBucketBounds()})
+	 *
+	 * @return request count of each bucket
+	 */
+	public long[] getHistogram() {
+		return fHistogram.clone();
+	}
+
+	/**
+	 * Gets the upper bounds of the latency histogram buckets. The histogram has one more 
+	 * bucket than there are bounds for the latencies above the last bound.
+	 *
+	 * @return bucket bounds in microseconds
+	 */
+	public static long[] getBucketBounds() {
+		return BUCKET_BOUNDS.clone();
+	}
+
+	/**
+	 * Estimates a latency percentile from the histogram as the upper bound of the bucket 
+	 * holding the percentile (or the maximum latency if that is lower).
+	 *
+	 * @param percentile percentile between 0 and 1 (i.e. 0.99)
+	 * @return latency in nanoseconds
+	 */
+	public long getPercentile(double percentile) {
+		if (fCount == 0)
+			return 0;
+		long rank = (long)Math.ceil(percentile * fCount);
+		long seen = 0;
+		for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+			seen += fHistogram[i];
+			if (seen >= rank)
+				return Math.min(BUCKET_BOUNDS[i] * 1000, fMaxTime);
+		}
+		return fMaxTime;
+	}
+}
@@ -17,13 +17,26 @@
  ******************************************************************************************/
 package edu.shef.damson.core.model;
 
+import org.eclipse.debug.core.DebugEvent;
 import org.eclipse.debug.core.DebugException;
 import org.eclipse.debug.core.DebugPlugin;
 import org.eclipse.debug.core.IBreakpointManager;
+import org.eclipse.debug.core.commands.IResumeHandler;
+import org.eclipse.debug.core.commands.IStepIntoHandler;
+import org.eclipse.debug.core.commands.IStepOverHandler;
+import org.eclipse.debug.core.commands.IStepReturnHandler;
+import org.eclipse.debug.core.commands.ISuspendHandler;
+import org.eclipse.debug.core.commands.ITerminateHandler;
 import org.eclipse.debug.core.model.DebugElement;
 import org.eclipse.debug.core.model.IDebugTarget;
 
 import edu.shef.damson.core.DebugCorePlugin;
+import edu.shef.damson.core.commands.DamsonResumeCommand;
+import edu.shef.damson.core.commands.DamsonStepIntoCommand;
+import edu.shef.damson.core.commands.DamsonStepOverCommand;
+import edu.shef.damson.core.commands.DamsonStepReturnCommand;
+import edu.shef.damson.core.commands.DamsonSuspendCommand;
+import edu.shef.damson.core.commands.DamsonTerminateCommand;
 
 
 /**
@@ -31,6 +44,14 @@ import edu.shef.damson.core.DebugCorePlugin;
  */
 public class DamsonDebugElement extends DebugElement {
 
+	// debug command handlers (stateless, shared by all elements)
+	private static final DamsonResumeCommand fgResumeCommand = new DamsonResumeCommand();
+	private static final DamsonSuspendCommand fgSuspendCommand = new DamsonSuspendCommand();
+	private static final DamsonStepIntoCommand fgStepIntoCommand = new DamsonStepIntoCommand();
+	private static final DamsonStepOverCommand fgStepOverCommand = new DamsonStepOverCommand();
+	private static final DamsonStepReturnCommand fgStepReturnCommand = new DamsonStepReturnCommand();
+	private static final DamsonTerminateCommand fgTerminateCommand = new DamsonTerminateCommand();
+
 	/**
 	 * Constructs a new debug element in the given target.
 	 * 
@@ -61,6 +82,11 @@ public class DamsonDebugElement extends DebugElement {
 	 * 		reply is <code>OK clear</code> or <code>FAILED set</code> 
 	 * </li>
 	 * 
+	 * <li><code>setbatch N A N A ...</code> - sets the breakpoints on each line <code>N</code> with 
+	 * 		alias condition <code>A</code>; reply is <code>OK setbatch</code>. <code>clearbatch N N ...</code> 
+	 * 		clears the breakpoints on each line <code>N</code>. Requires the <code>breakpointbatch</code> capability.
+	 * </li>
+	 * 
 	 * <li><code>resume</code> - resume execution of the program; reply is <code>OK resume</code>
 	 * </li>
 	 * 
@@ -94,11 +120,62 @@ public class DamsonDebugElement extends DebugElement {
 	 *      array of size S.
 	 * </li>
 	 * 
+	 * <li><code>arrayrange P N M X S C</code> - return the values of <code>C</code> consecutive 
+	 * 		elements, starting at element <code>S</code>, of the array variable <code>M</code> in the 
+	 * 		control stack frame <code>N</code> of process <code>P</code>, where <code>X</code> are the 
+	 * 		indices of the array itself in the format used by <code>arrayvar</code>; reply is the values 
+	 * 		as a single string <code>value|value|...|value</code>. <code>garrayrange M X S C</code> 
+	 * 		is the equivalent request for global arrays. Requires the <code>arrayrange</code> capability.
+	 * </li>
+	 * 
 	 * <li><code>exit</code> - end the DAMSON debugger; reply is <code>OK exit</code>
 	 * </li>
 	 * 
+	 * <li><code>snapshot</code> - return the source file, current node, threads, stack frames 
+	 * 		and variable values in a single reply (see {@link DamsonSnapshotParser} for the format); 
+	 * 		requires the <code>snapshot</code> capability
+	 * </li>
+	 * 
+	 * <li><code>nodes S C</code> - list <code>C</code> nodes of the network starting at position 
+	 * 		<code>S</code>; reply is the node count followed by a record for each node 
+	 * 		<code>count#index|number|alias#...#index|number|alias</code> (the alias is empty if the 
+	 * 		node has none). <code>findnode N</code> replies with the record <code>index|number|alias</code> 
+	 * 		of the node with number or alias <code>N</code> and <code>nodethreads N</code> with the threads 
+	 * 		of node number <code>N</code> in the format of <code>threads</code>. <code>matchnodes F M</code> 
+	 * 		lists at most <code>M</code> nodes whose number or alias starts with <code>F</code> (ignoring 
+	 * 		case) in the format of <code>nodes</code>, the first record being the number of matches. 
+	 * 		Process handles identify threads across the whole network. Global variable requests read 
+	 * 		the globals of the current node only. Requires the <code>nodes</code> capability.
+	 * </li>
+	 * 
+	 * <li><code>suspend node N</code>, <code>resume node N</code> and <code>step into|over|out node N</code> - 
+	 * 		suspend, resume or step node number <code>N</code> alone while the rest of the program runs; 
+	 * 		<code>suspend thread H</code>, <code>resume thread H</code> and <code>step into|over|out thread H</code> 
+	 * 		act on the thread with process handle <code>H</code> alone. Replies are those of the requests 
+	 * 		acting on the whole program and the node or thread reports its own <code>suspended</code> and 
+	 * 		<code>resumed</code> events. Only accepted while the program runs; suspending or resuming the 
+	 * 		whole program also resumes or suspends every node and thread. Requires the <code>nonstop</code> 
+	 * 		capability.
+	 * </li>
+	 * 
+	 * <li><code>capabilities</code> - list the protocol extensions supported by the debugger; 
+	 * 		reply is <code>capabilities name name ...</code>
+	 * </li>
+	 * 
 	 * </ul>
 	 * </p>
+	 * <p>
+	 * If the debugger reports the <code>pipeline</code> capability each request is sent as a 
+	 * line <code>@ID request</code> and the reply is the line <code>@ID reply</code>, where 
+	 * <code>ID</code> is the correlation ID of the request. Replies may then be read while 
+	 * further requests are outstanding (see {@link #sendRequestAsync(String)}).
+	 * </p>
+	 * <p>
+	 * If the debugger reports the <code>binary</code> capability the <code>binary</code> request 
+	 * (reply <code>OK binary</code>) switches the replies to <code>snapshot</code>, <code>stack</code> 
+	 * and <code>arrayrange</code> requests to binary frames (see {@link DamsonReplyReader} and 
+	 * {@link #sendBinaryRequest(String)}). All other replies remain text.
+	 * </p>
 	 * 
 	 * @param request command
 	 * @return reply
@@ -108,6 +185,42 @@ public class DamsonDebugElement extends DebugElement {
 		return getDamsonDebugTarget().sendRequest(request);
 	}
 	
+	/**
+	 * Sends a request to the DAMSON debugger without waiting for the reply.
+	 * 
+	 * @param request command
+	 * @return the outstanding request from which the reply can be collected
+	 * @throws DebugException if the request could not be sent
+	 */
+	public DamsonRequest sendRequestAsync(String request) throws DebugException {
+		return getDamsonDebugTarget().sendRequestAsync(request);
+	}
+	
+	/**
+	 * Sends a group of requests to the DAMSON debugger without waiting for the replies.
+	 * 
+	 * @param requests commands
+	 * @return outstanding requests in the same order as the commands
+	 * @throws DebugException if the requests could not be sent
+	 * @see DamsonDebugTarget#sendRequestsAsync(String[])
+	 */
+	public DamsonRequest[] sendRequestsAsync(String[] requests) throws DebugException {
+		return getDamsonDebugTarget().sendRequestsAsync(requests);
+	}
+	
+	/**
+	 * Sends a request whose reply is a binary frame to the DAMSON debugger, waits for and 
+	 * returns the reply.
+	 * 
+	 * @param request command
+	 * @return binary reply
+	 * @throws DebugException if the request fails or the reply is not binary
+	 * @see DamsonDebugTarget#isBinary()
+	 */
+	public DamsonBinaryReply sendBinaryRequest(String request) throws DebugException {
+		return getDamsonDebugTarget().sendBinaryRequest(request);
+	}
+	
 	/**
 	 * Returns the debug target as a DAMSON target.
 	 * 
@@ -117,12 +230,46 @@ public class DamsonDebugElement extends DebugElement {
 	    return (DamsonDebugTarget) getDebugTarget();
 	}
 	
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.DebugElement#getAdapter(java.lang.Class)
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public Object getAdapter(Class adapter) {
+		//commands run in jobs rather than on the calling (UI) thread
+		if (adapter == IResumeHandler.class)
+			return fgResumeCommand;
+		if (adapter == ISuspendHandler.class)
+			return fgSuspendCommand;
+		if (adapter == IStepIntoHandler.class)
+			return fgStepIntoCommand;
+		if (adapter == IStepOverHandler.class)
+			return fgStepOverCommand;
+		if (adapter == IStepReturnHandler.class)
+			return fgStepReturnCommand;
+		if (adapter == ITerminateHandler.class)
+			return fgTerminateCommand;
+		return super.getAdapter(adapter);
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.DebugElement#fireEvent(org.eclipse.debug.core.DebugEvent)
+	 */
+	public void fireEvent(DebugEvent event) {
+		//there are no listeners if the debug plug-in is not running (i.e. driven by a benchmark)
+		if (DebugPlugin.getDefault() != null)
+			super.fireEvent(event);
+	}
+	
 	/**
 	 * Returns the breakpoint manager
 	 * 
-     * @return the breakpoint manager
+     * @return the breakpoint manager or <code>null</code> if the debug plug-in is not 
+     * 		running (i.e. when the debug model is driven outside Eclipse by a benchmark)
      */
     protected IBreakpointManager getBreakpointManager() {
-        return DebugPlugin.getDefault().getBreakpointManager();
+    	DebugPlugin plugin = DebugPlugin.getDefault();
+    	if (plugin == null)
+    		return null;
+        return plugin.getBreakpointManager();
     }	
 }
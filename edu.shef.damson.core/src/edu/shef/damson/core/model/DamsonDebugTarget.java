@@ -17,13 +17,21 @@
  ******************************************************************************************/
 package edu.shef.damson.core.model;
 
-import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.net.ConnectException;
-import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
 
 import org.eclipse.core.resources.IMarker;
@@ -46,6 +54,7 @@ import org.eclipse.debug.core.model.IDebugTarget;
 import org.eclipse.debug.core.model.IMemoryBlock;
 import org.eclipse.debug.core.model.IProcess;
 import org.eclipse.debug.core.model.IThread;
+import org.eclipse.debug.core.model.IVariable;
 import edu.shef.damson.core.DebugCorePlugin;
 import edu.shef.damson.core.breakpoints.DamsonLineBreakpoint;
 import edu.shef.damson.core.breakpoints.DamsonRunToLineBreakpoint;
@@ -56,6 +65,81 @@ import edu.shef.damson.core.breakpoints.DamsonRunToLineBreakpoint;
  */
 public class DamsonDebugTarget extends DamsonDebugElement implements IDebugTarget, IBreakpointManagerListener, IDamsonEventListener {
 	
+	/**
+	 * Capability reported by DAMSON debuggers which accept ID tagged requests
+	 */
+	public static final String CAPABILITY_PIPELINE = "pipeline";
+	
+	/**
+	 * Capability reported by DAMSON debuggers which reply to the composite snapshot request
+	 */
+	public static final String CAPABILITY_SNAPSHOT = "snapshot";
+	
+	/**
+	 * Capability reported by DAMSON debuggers which reply to array range requests
+	 */
+	public static final String CAPABILITY_ARRAY_RANGE = "arrayrange";
+	
+	/**
+	 * Capability reported by DAMSON debuggers which set and clear many breakpoints in one request
+	 */
+	public static final String CAPABILITY_BREAKPOINT_BATCH = "breakpointbatch";
+	
+	/**
+	 * Capability reported by DAMSON debuggers which reply to snapshot, stack and array range 
+	 * requests with binary frames (see {@link DamsonReplyReader})
+	 */
+	public static final String CAPABILITY_BINARY = "binary";
+	
+	/**
+	 * Capability reported by DAMSON debuggers which list the nodes of the network in pages and 
+	 * the threads of any node (<code>nodes</code>, <code>findnode</code> and <code>nodethreads</code> requests)
+	 */
+	public static final String CAPABILITY_NODES = "nodes";
+	
+	/**
+	 * Capability reported by DAMSON debuggers which suspend, step and resume single nodes or 
+	 * threads while the rest of the program runs (<code>suspend</code>, <code>resume</code> and 
+	 * <code>step</code> requests followed by <code>node N</code> or <code>thread H</code>)
+	 */
+	public static final String CAPABILITY_NON_STOP = "nonstop";
+	
+	/**
+	 * Number of nodes requested at a time
+	 */
+	public static final int NODE_PAGE_SIZE = 256;
+	
+	/**
+	 * Time to wait for a reply to the capabilities request (older DAMSON versions may not reply)
+	 */
+	private static final int CAPABILITIES_TIMEOUT = 2000;
+	
+	/**
+	 * Default time to wait for the reply to a request before giving up on it (see 
+	 * {@link #getRequestTimeout()})
+	 */
+	public static final int REQUEST_TIMEOUT = 30000;
+	
+	/**
+	 * Time the event dispatch job waits for events before checking for termination
+	 */
+	private static final int EVENT_POLL_INTERVAL = 500;
+	
+	/**
+	 * Time to keep retrying to connect to the DAMSON debugger sockets
+	 */
+	private static final int CONNECT_TIMEOUT = 15000;
+	
+	/**
+	 * Delay before the first connection retry (doubled on each further retry)
+	 */
+	private static final int CONNECT_RETRY_DELAY = 10;
+	
+	/**
+	 * Maximum delay between connection retries
+	 */
+	private static final int CONNECT_MAX_RETRY_DELAY = 500;
+	
 	// associated system process (DAMSON debugger)
 	private IProcess fProcess;
 	
@@ -63,32 +147,71 @@ public class DamsonDebugTarget extends DamsonDebugElement implements IDebugTarge
 	private ILaunch fLaunch;
 	
 	// sockets to communicate with debugger
-	private Socket fRequestSocket;
+	private DamsonTransport fTransport;
 	private PrintWriter fRequestWriter;
-	private BufferedReader fRequestReader;
-	private Socket fEventSocket;
-	private BufferedReader fEventReader;
+	private DamsonReplyReader fRequestReader;
+	private SocketChannel fEventChannel;
+	private DamsonEventReader fEventReader;
+	// records the debugger traffic (null if not recording)
+	private DamsonSessionRecorder fRecorder;
+	
+	//request channel state (capabilities reported by the DAMSON debugger)
+	private Set<String> fCapabilities = new HashSet<String>();
+	private boolean fPipelined = false;
+	private boolean fBinary = false;
+	private int fNextRequestId = 0;
+	private Map<Integer, DamsonRequest> fPendingRequests = new HashMap<Integer, DamsonRequest>();
+	private Throwable fRequestFailure;	//why the pipelined request channel can no longer be read, guarded by fPendingRequests
+	private boolean fCapabilitiesReplyPending = false;	//an older debugger may still reply to the capabilities request
+	private boolean fTerminateNotified = false;	//whether notifyTerminate has run
+	private int fRequestTimeout = REQUEST_TIMEOUT;
+	//requests given up on whose replies are still to be read when not pipelined, guarded by fTransport
+	private LinkedList<DamsonRequest> fAbandonedRequests = new LinkedList<DamsonRequest>();
+	private ReplyDispatchJob fReplyDispatch;
 	
 	//DAMSON emulator debugger states
 	private boolean fSuspended = false;
 	private boolean fStepping = false;
 	private IBreakpoint fBreakpoint;	//current breakpoint, null if node
+	
+	// nodes and threads suspended on their own while the program runs (non-stop mode), guarded by fSuspendedNodes
+	private Set<Integer> fSuspendedNodes = new HashSet<Integer>();
+	private Set<Integer> fSuspendedThreads = new HashSet<Integer>();
 
 	//target source
 	String fTargetSourceFile;
 	int fCurrentNode;
 	
+	// nodes of the network read so far, indexed by position (null until the node count is known), by node number and by alias
+	private DamsonNode[] fNodes;
+	private Map<Integer, DamsonNode> fNodesByNumber = new HashMap<Integer, DamsonNode>();
+	private Map<String, DamsonNode> fNodesByAlias = new HashMap<String, DamsonNode>();
+	private Set<Integer> fNodePages = new HashSet<Integer>();
+	
 	// threads
 	private DamsonThread[] fThreads;
 	
+	// values read during the current and previous suspend
+	private DamsonValueCache fValueCache = new DamsonValueCache();
+	
+	// global variables shared by all stack frames
+	private DamsonGlobalVariables fGlobalVariables = new DamsonGlobalVariables(this);
+	
+	// statistics of the requests sent by this target
+	private DamsonRequestStatistics fRequestStatistics = new DamsonRequestStatistics();
+	
 	// event dispatch job
 	private EventDispatchJob fEventDispatch;
 	// event listeners
 	private Vector<IDamsonEventListener> fEventListeners = new Vector<IDamsonEventListener>();
+	// installed breakpoints indexed by line number (and line number of each breakpoint)
+	private Map<Integer, DamsonLineBreakpoint> fBreakpointsByLine = new HashMap<Integer, DamsonLineBreakpoint>();
+	private Map<DamsonLineBreakpoint, Integer> fBreakpointLines = new HashMap<DamsonLineBreakpoint, Integer>();
 	
 	/**
 	 * Listens to events from the DAMSON debugger and fires corresponding 
-	 * debug events.
+	 * debug events. Events are read in batches and state transitions superseded 
+	 * within a batch are dropped (see {@link DamsonEvent#coalesce(List)}).
 	 */
 	class EventDispatchJob extends Job {
 		
@@ -101,19 +224,99 @@ public class DamsonDebugTarget extends DamsonDebugElement implements IDebugTarge
 		 * @see org.eclipse.core.runtime.jobs.Job#run(org.eclipse.core.runtime.IProgressMonitor)
 		 */
 		protected IStatus run(IProgressMonitor monitor) {
-			String event = "";
-			while (!isTerminated() && event != null) {
-				try {
-					event = fEventReader.readLine();
-					if (event != null) {
+			try {
+				while (!isTerminated()) {
+					//handle each batch of events as a whole so superseded events are skipped
+					List<DamsonEvent> events = fEventReader.read(EVENT_POLL_INTERVAL);
+					if (fRecorder != null) {
+						for (int i = 0; i < events.size(); i++) {
+							fRecorder.recordEvent(events.get(i).getText());
+						}
+					}
+					for (int i = 0; i < events.size() && !isTerminated(); i++) {
 						Object[] listeners = fEventListeners.toArray();
-						for (int i = 0; i < listeners.length; i++) {
-							((IDamsonEventListener)listeners[i]).handleEvent(event);	
+						for (int j = 0; j < listeners.length; j++) {
+							((IDamsonEventListener)listeners[j]).handleEvent(events.get(i));	
 						}
 					}
-				} catch (IOException e) {
-					notifyTerminate();
 				}
+			} catch (EOFException e) {
+				//event channel closed by the DAMSON debugger
+			} catch (IOException e) {
+				notifyTerminate();
+			}
+			fEventReader.close();
+			return Status.OK_STATUS;
+		}
+		
+	}
+	
+	/**
+	 * Reads ID tagged replies from the DAMSON debugger when the request channel
+	 * is pipelined and completes the corresponding outstanding requests. A reply line 
+	 * without an ID can not be matched to a request (it may answer a request which has 
+	 * been cancelled) so is dropped, and its request, if any, times out. A malformed ID 
+	 * means the channel is out of step so fails it. Once the channel can no longer be read 
+	 * all further requests fail at once.
+	 */
+	class ReplyDispatchJob extends Job {
+		
+		public ReplyDispatchJob() {
+			super("DAMSON Reply Dispatch");
+			setSystem(true);
+		}
+
+		/* (non-Javadoc)
+		 * @see org.eclipse.core.runtime.jobs.Job#run(org.eclipse.core.runtime.IProgressMonitor)
+		 */
+		protected IStatus run(IProgressMonitor monitor) {
+			String reply = "";
+			try {
+				//read until the debugger closes the connection; the reply to the exit request 
+				//may still be unread when the process terminates
+				while (reply != null) {
+					if (fRequestReader.peek() == DamsonReplyReader.FRAME_MARKER) {
+						DamsonBinaryReply frame = fRequestReader.readFrame();
+						if (fRecorder != null)
+							fRecorder.recordReply(frame.getId(), frame);
+						DamsonRequest request;
+						synchronized (fPendingRequests) {
+							request = fPendingRequests.remove(Integer.valueOf(frame.getId()));
+						}
+						if (request != null)
+							request.complete(frame);
+						continue;
+					}
+					reply = fRequestReader.readLine();
+					if (reply == null)
+						break;
+					int id;
+					String text;
+					DamsonRequest request;
+					if (reply.startsWith("@")) {
+						int space = reply.indexOf(' ');
+						if (space < 0)
+							space = reply.length();
+						try {
+							id = Integer.parseInt(reply.substring(1, space));
+						} catch (NumberFormatException e) {
+							throw new IOException("Malformed DAMSON reply: " + reply);
+						}
+						text = space < reply.length() ? reply.substring(space + 1) : "";
+						synchronized (fPendingRequests) {
+							request = fPendingRequests.remove(Integer.valueOf(id));
+						}
+					} else {
+						continue; //not known to answer any outstanding request
+					}
+					if (fRecorder != null)
+						fRecorder.recordReply(id, text);
+					if (request != null)
+						request.complete(text);
+				}
+				failRequestChannel(new IOException("DAMSON debugger closed the request connection"));
+			} catch (IOException e) {
+				failRequestChannel(e);
 			}
 			return Status.OK_STATUS;
 		}
@@ -152,29 +355,66 @@ public class DamsonDebugTarget extends DamsonDebugElement implements IDebugTarge
 	 * @exception CoreException if unable to connect to host
 	 */
 	public DamsonDebugTarget(ILaunch launch, IProcess process) throws CoreException {
+		this(launch, process, DebugCorePlugin.REQUEST_PORT, DebugCorePlugin.EVENT_PORT);
+	}
+	
+	/**
+	 * Constructs a new debug target in the given launch for the 
+	 * associated DAMSON process listening on the given ports.
+	 * 
+	 * @param launch containing launch
+	 * @param process DAMSON debugger processes
+	 * @param requestPort port of the request socket
+	 * @param eventPort port of the event socket
+	 * @exception CoreException if unable to connect to host
+	 */
+	public DamsonDebugTarget(ILaunch launch, IProcess process, int requestPort, int eventPort) throws CoreException {
+		this(launch, process, DamsonTransport.createTcp(requestPort, eventPort));
+	}
+	
+	/**
+	 * Constructs a new debug target in the given launch for the 
+	 * associated DAMSON process listening on the given transport.
+	 * 
+	 * @param launch containing launch
+	 * @param process DAMSON debugger processes
+	 * @param transport request and event stream transport
+	 * @exception CoreException if unable to connect to host
+	 */
+	public DamsonDebugTarget(ILaunch launch, IProcess process, DamsonTransport transport) throws CoreException {
+		this(launch, process, transport, null);
+	}
+	
+	/**
+	 * Constructs a new debug target in the given launch for the 
+	 * associated DAMSON process listening on the given transport, recording 
+	 * all requests, replies and events of the session.
+	 * 
+	 * @param launch containing launch
+	 * @param process DAMSON debugger processes
+	 * @param transport request and event stream transport
+	 * @param recorder session recorder or <code>null</code> if not recording (closed when the target terminates)
+	 * @exception CoreException if unable to connect to host
+	 */
+	public DamsonDebugTarget(ILaunch launch, IProcess process, DamsonTransport transport, DamsonSessionRecorder recorder) throws CoreException {
 		super(null);
 		fLaunch = launch;
 		fProcess = process;
+		fTransport = transport;
+		fRecorder = recorder;
 		addEventListener(this);
 		try {
-			// give DAMSON chance to parse '*.d' file and start debugger
-			try {
-				Thread.sleep(1000);
-			} catch (InterruptedException e) {
-			}
-			try{
-				fRequestSocket = new Socket("localhost", DebugCorePlugin.REQUEST_PORT);
-			} catch(ConnectException e){return;} //silent fail (assume compiler failed)
-			fRequestWriter = new PrintWriter(fRequestSocket.getOutputStream());
-			fRequestReader = new BufferedReader(new InputStreamReader(fRequestSocket.getInputStream()));
-			// give DAMSON a chance to open next socket
-			try {
-				Thread.sleep(1000);
-			} catch (InterruptedException e) {}
-			try{
-			fEventSocket = new Socket("localhost", DebugCorePlugin.EVENT_PORT);
-			} catch(ConnectException e){return;} //silent fail (assume compiler failed)
-			fEventReader = new BufferedReader(new InputStreamReader(fEventSocket.getInputStream()));
+			// connect as soon as DAMSON has parsed the '*.d' file and started listening
+			if (!connectRequest())
+				return; //silent fail (compiler failed and DAMSON exited)
+			fRequestWriter = new PrintWriter(fTransport.getRequestOutputStream());
+			fRequestReader = new DamsonReplyReader(fTransport.getRequestInputStream());
+			fEventChannel = connectEvents();
+			if (fEventChannel == null)
+				return; //silent fail (DAMSON exited)
+			fEventReader = new DamsonEventReader(fEventChannel);
+			if (isCapabilitiesRequested())
+				requestCapabilities();
 		} catch (UnknownHostException e) {
 			requestFailed("Unable to connect to DAMSON Debugger", e);
 		} catch (IOException e) {
@@ -185,13 +425,95 @@ public class DamsonDebugTarget extends DamsonDebugElement implements IDebugTarge
 		fThreads = new DamsonThread[0];
 		fEventDispatch = new EventDispatchJob();
 		fEventDispatch.schedule();
+		if (fPipelined) {
+			fReplyDispatch = new ReplyDispatchJob();
+			fReplyDispatch.schedule();
+		}
 		
 		//add breakpoint manager
 		IBreakpointManager breakpointManager = getBreakpointManager();
-        breakpointManager.addBreakpointListener(this);
-		breakpointManager.addBreakpointManagerListener(this);
+		if (breakpointManager != null) {
+			breakpointManager.addBreakpointListener(this);
+			breakpointManager.addBreakpointManagerListener(this);
+		}
 	}
 
+	/**
+	 * Connects the request stream, retrying with exponential backoff until DAMSON 
+	 * is listening.
+	 * 
+	 * @return whether connected (<code>false</code> if the DAMSON process exited)
+	 * @throws IOException if unable to connect before the connection timeout
+	 */
+	private boolean connectRequest() throws IOException {
+		long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+		int delay = CONNECT_RETRY_DELAY;
+		while (true) {
+			try {
+				fTransport.connectRequest();
+				return true;
+			} catch (ConnectException e) {
+				if (!awaitConnectRetry(e, deadline, delay))
+					return false;
+				delay = Math.min(delay * 2, CONNECT_MAX_RETRY_DELAY);
+			}
+		}
+	}
+	
+	/**
+	 * Connects the event stream, retrying with exponential backoff until DAMSON 
+	 * is listening.
+	 * 
+	 * @return the connected channel or <code>null</code> if the DAMSON process exited
+	 * @throws IOException if unable to connect before the connection timeout
+	 */
+	private SocketChannel connectEvents() throws IOException {
+		long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+		int delay = CONNECT_RETRY_DELAY;
+		while (true) {
+			try {
+				return fTransport.connectEvents();
+			} catch (ConnectException e) {
+				if (!awaitConnectRetry(e, deadline, delay))
+					return null;
+				delay = Math.min(delay * 2, CONNECT_MAX_RETRY_DELAY);
+			}
+		}
+	}
+	
+	/**
+	 * Waits before retrying a refused connection
+	 * 
+	 * @param e cause of the failed connection attempt
+	 * @param deadline time at which to give up
+	 * @param delay time to wait
+	 * @return whether to retry (<code>false</code> if the DAMSON process has exited)
+	 * @throws ConnectException if the deadline has passed
+	 */
+	private boolean awaitConnectRetry(ConnectException e, long deadline, int delay) throws ConnectException {
+		if (fProcess != null && fProcess.isTerminated())
+			return false;
+		long remaining = deadline - System.currentTimeMillis();
+		if (remaining <= 0)
+			throw e;
+		try {
+			Thread.sleep(Math.min(delay, remaining));
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw e;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether this target connected to the DAMSON debugger
+	 * 
+	 * @return whether connected (<code>false</code> if DAMSON exited before it was listening)
+	 */
+	public boolean isConnected() {
+		return fEventReader != null;
+	}
+	
     /* (non-Javadoc)
 	 * @see org.eclipse.debug.core.model.IDebugTarget#getProcess()
 	 */
@@ -217,6 +539,62 @@ public class DamsonDebugTarget extends DamsonDebugElement implements IDebugTarge
 		return "DAMSON";
 	}
 	
+	/**
+	 * Returns whether the DAMSON debugger reported the given capability when the
+	 * target connected.
+	 * 
+	 * @param capability capability name
+	 * @return whether the capability is supported
+	 */
+	public boolean hasCapability(String capability) {
+		return fCapabilities.contains(capability);
+	}
+	
+	/**
+	 * Returns whether snapshot, stack and array range replies are binary frames
+	 * 
+	 * @return whether binary replies have been negotiated
+	 */
+	public boolean isBinary() {
+		return fBinary;
+	}
+	
+	/**
+	 * Returns whether requests are pipelined (i.e. may be outstanding concurrently)
+	 * 
+	 * @return whether the request channel is pipelined
+	 */
+	public boolean isPipelined() {
+		return fPipelined;
+	}
+	
+	/**
+	 * Gets the cache of variable values read during the current suspend
+	 * 
+	 * @return value cache
+	 */
+	public DamsonValueCache getValueCache() {
+		return fValueCache;
+	}
+	
+	/**
+	 * Gets the statistics of the requests sent to the DAMSON debugger by this target
+	 * 
+	 * @return request statistics
+	 */
+	public DamsonRequestStatistics getRequestStatistics() {
+		return fRequestStatistics;
+	}
+	
+	/**
+	 * Gets the global variables shared by all stack frames
+	 * 
+	 * @return global variable store
+	 */
+	public DamsonGlobalVariables getGlobalVariables() {
+		return fGlobalVariables;
+	}
+	
 	/**
 	 * Gets the current node number
 	 * 
@@ -227,6 +605,288 @@ public class DamsonDebugTarget extends DamsonDebugElement implements IDebugTarge
 		return fCurrentNode;
 	}
 	
+	/**
+	 * Returns whether the threads of the target are grouped by the nodes of the network 
+	 * (i.e. the DAMSON debugger reports the <code>nodes</code> capability)
+	 * 
+	 * @return whether nodes are listed
+	 */
+	public boolean hasNodes() {
+		return hasCapability(CAPABILITY_NODES);
+	}
+	
+	/**
+	 * Gets the number of nodes of the network. The count is read with the first page of nodes.
+	 * 
+	 * @return node count (0 if nodes are not listed or the request failed)
+	 */
+	public int getNodeCount() {
+		if (!hasNodes())
+			return 0;
+		synchronized (fNodesByNumber) {
+			if (fNodes == null)
+				loadNodePages(0, 0);
+			return fNodes == null ? 0 : fNodes.length;
+		}
+	}
+	
+	/**
+	 * Gets a range of the nodes of the network. Only the pages of nodes holding the range 
+	 * which have not been read yet are requested (as one group of requests), the rest of 
+	 * the network is never read.
+	 * 
+	 * @param offset index of the first node
+	 * @param length number of nodes
+	 * @return nodes (fewer than requested if the range passes the end of the network)
+	 */
+	public DamsonNode[] getNodes(int offset, int length) {
+		synchronized (fNodesByNumber) {
+			int end = Math.min(offset + length, getNodeCount());
+			if (offset >= end)
+				return new DamsonNode[0];
+			loadNodePages(offset / NODE_PAGE_SIZE, (end - 1) / NODE_PAGE_SIZE);
+			DamsonNode[] nodes = new DamsonNode[end - offset];
+			System.arraycopy(fNodes, offset, nodes, 0, nodes.length);
+			return nodes;
+		}
+	}
+	
+	/**
+	 * Gets the node with the given number, requesting it from the DAMSON debugger if it has 
+	 * not been read yet
+	 * 
+	 * @param number node number
+	 * @return the node or <code>null</code> if there is no such node
+	 */
+	public DamsonNode getNode(int number) {
+		if (!hasNodes())
+			return null;
+		synchronized (fNodesByNumber) {
+			DamsonNode node = fNodesByNumber.get(Integer.valueOf(number));
+			if (node != null)
+				return node;
+			return requestNode(Integer.toString(number));
+		}
+	}
+	
+	/**
+	 * Finds a node by number or alias (i.e. to jump to the node). Nodes which have already 
+	 * been read are found in the node index, otherwise the node is resolved by a single request.
+	 * 
+	 * @param query node number or alias
+	 * @return the node or <code>null</code> if there is no such node
+	 */
+	public DamsonNode findNode(String query) {
+		query = query.trim();
+		if (!hasNodes() || query.length() == 0 || query.indexOf(' ') >= 0)
+			return null;
+		try {
+			return getNode(Integer.parseInt(query));
+		} catch (NumberFormatException e) {
+			//not a node number
+		}
+		synchronized (fNodesByNumber) {
+			DamsonNode node = fNodesByAlias.get(query);
+			if (node != null)
+				return node;
+			return requestNode(query);
+		}
+	}
+	
+	/**
+	 * Gets the nodes whose number or alias starts with the given filter (ignoring case), in 
+	 * the order of the node list. Matching is done by the DAMSON debugger so that nodes which 
+	 * have not been read can be found.
+	 * 
+	 * @param filter start of the node number or alias (all nodes if empty)
+	 * @param max maximum number of nodes
+	 * @return matching nodes
+	 */
+	public DamsonNode[] matchNodes(String filter, int max) {
+		filter = filter.trim();
+		if (filter.length() == 0)
+			return getNodes(0, max);
+		if (!hasNodes() || filter.indexOf(' ') >= 0)
+			return new DamsonNode[0];
+		List<DamsonNode> nodes = new ArrayList<DamsonNode>();
+		synchronized (fNodesByNumber) {
+			if (getNodeCount() == 0)
+				return new DamsonNode[0];
+			try {
+				//first record is the number of matches, followed by a record for each listed node
+				DamsonReplyTokenizer reply = new DamsonReplyTokenizer(sendRequest("matchnodes " + filter + " " + max));
+				if (reply.countFields() == 1) {
+					reply.skipField();
+					while (reply.nextRecord()) {
+						if (reply.countFields() == 3)
+							nodes.add(addNode(reply));
+					}
+				}
+			} catch (DebugException e) {
+			} catch (NumberFormatException e) {
+			}
+		}
+		return nodes.toArray(new DamsonNode[nodes.size()]);
+	}
+	
+	/**
+	 * Resolves a node by number or alias with the <code>findnode</code> request
+	 * 
+	 * @param query node number or alias
+	 * @return the node or <code>null</code> if there is no such node
+	 */
+	private DamsonNode requestNode(String query) {
+		if (getNodeCount() == 0)
+			return null;
+		try {
+			DamsonReplyTokenizer reply = new DamsonReplyTokenizer(sendRequest("findnode " + query));
+			if (reply.countFields() == 3)
+				return addNode(reply);
+		} catch (DebugException e) {
+		} catch (NumberFormatException e) {
+			//error reply (no such node)
+		}
+		return null;
+	}
+	
+	/**
+	 * Requests the pages of nodes in the given range which have not been read yet
+	 * 
+	 * @param first first page
+	 * @param last last page
+	 */
+	private void loadNodePages(int first, int last) {
+		List<Integer> pages = new ArrayList<Integer>();
+		for (int page = first; page <= last; page++) {
+			if (!fNodePages.contains(Integer.valueOf(page)))
+				pages.add(Integer.valueOf(page));
+		}
+		if (pages.isEmpty())
+			return;
+		String[] requests = new String[pages.size()];
+		for (int i = 0; i < requests.length; i++) {
+			requests[i] = "nodes " + (pages.get(i).intValue() * NODE_PAGE_SIZE) + " " + NODE_PAGE_SIZE;
+		}
+		try {
+			DamsonRequest[] replies = sendRequestsAsync(requests);
+			DamsonReplyTokenizer reply = new DamsonReplyTokenizer(null);
+			for (int i = 0; i < replies.length; i++) {
+				reply.reset(replies[i].getReply(fRequestTimeout, null));
+				if (reply.countFields() != 1)
+					continue;
+				//first record is the node count, followed by a record for each node
+				int count = reply.nextInt();
+				if (fNodes == null)
+					fNodes = new DamsonNode[count];
+				while (reply.nextRecord()) {
+					if (reply.countFields() == 3)
+						addNode(reply);
+				}
+				fNodePages.add(pages.get(i));
+			}
+		} catch (DebugException e) {
+		} catch (NumberFormatException e) {
+		}
+	}
+	
+	/**
+	 * Adds the node of a <code>index|number|alias</code> record unless already read
+	 * 
+	 * @param record reply positioned at the record
+	 * @return the node
+	 * @throws NumberFormatException if the record is malformed
+	 */
+	private DamsonNode addNode(DamsonReplyTokenizer record) {
+		int index = record.nextInt();
+		int number = record.nextInt();
+		String alias = record.nextString();
+		if (index < 0 || index >= fNodes.length)
+			throw new NumberFormatException("Node index out of range: " + index);
+		DamsonNode node = fNodes[index];
+		if (node == null) {
+			node = new DamsonNode(this, index, number, alias.length() > 0 ? alias : null);
+			fNodes[index] = node;
+			fNodesByNumber.put(Integer.valueOf(number), node);
+			if (node.getAlias() != null)
+				fNodesByAlias.put(node.getAlias(), node);
+		}
+		return node;
+	}
+	
+	/**
+	 * Requests the threads of a node and their stacks. Threads of the current node and 
+	 * threads of the node which have already been read are retained.
+	 * 
+	 * @param node node
+	 * @return threads of the node (empty if the node is not suspended)
+	 */
+	DamsonThread[] requestNodeThreads(DamsonNode node) {
+		if (!isNodeSuspended(node.getNumber()) || isTerminated())
+			return new DamsonThread[0];
+		DamsonReplyTokenizer reply = new DamsonReplyTokenizer(null);
+		try {
+			reply.reset(sendRequest("nodethreads " + node.getNumber()));
+		} catch (DebugException e) {
+			return new DamsonThread[0];
+		}
+		Map<Integer, DamsonThread> previous = getThreadsByHandle();
+		DamsonThread[] retained = node.getRetainedThreads();
+		for (int i = 0; i < retained.length; i++) {
+			if (retained[i] != null)
+				previous.put(Integer.valueOf(retained[i].getProcessHandle()), retained[i]);
+		}
+		List<DamsonThread> threads = new ArrayList<DamsonThread>();
+		List<String> stackRequests = new ArrayList<String>();
+		int numThreads = reply.countRecords();
+		try {
+			for (int i = 0; i < numThreads; i++) {
+				if (reply.countFields() == 2) {
+					int handle = reply.nextInt();
+					int status = reply.nextInt();
+					DamsonThread thread = retainThread(previous, handle, status);
+					thread.setNode(node);
+					threads.add(thread);
+					stackRequests.add("stack " + handle);
+				}
+				reply.nextRecord();
+			}
+		} catch (NumberFormatException e) {
+			//error reply
+		}
+		//request all stacks at once
+		try {
+			DamsonRequest stacks[] = sendRequestsAsync(stackRequests.toArray(new String[stackRequests.size()]));
+			for (int i = 0; i < stacks.length; i++) {
+				threads.get(i).updateThreadData(stacks[i]);
+			}
+		} catch (DebugException e) {}
+		return threads.toArray(new DamsonThread[threads.size()]);
+	}
+	
+	/**
+	 * Assigns the threads read on suspend to the current node
+	 */
+	private void updateCurrentNode() {
+		if (!hasNodes())
+			return;
+		DamsonNode node = getNode(fCurrentNode);
+		if (node != null)
+			node.setThreads(fThreads);
+	}
+	
+	/**
+	 * Discards the threads read for any node (on suspend)
+	 */
+	private void invalidateNodes() {
+		DamsonNode[] nodes;
+		synchronized (fNodesByNumber) {
+			nodes = fNodesByNumber.values().toArray(new DamsonNode[fNodesByNumber.size()]);
+		}
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i].invalidate();
+		}
+	}
+	
 	/**
 	 * Gets the current target source file
 	 * @return
@@ -307,132 +967,580 @@ public class DamsonDebugTarget extends DamsonDebugElement implements IDebugTarge
 		return !isTerminated() && !isSuspended();
 	}
 	
-	
-
-	/* (non-Javadoc)
-	 * @see org.eclipse.debug.core.IBreakpointListener#breakpointAdded(org.eclipse.debug.core.model.IBreakpoint)
+	
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.IBreakpointListener#breakpointAdded(org.eclipse.debug.core.model.IBreakpoint)
+	 */
+	public void breakpointAdded(IBreakpoint breakpoint) {
+		if (supportsBreakpoint(breakpoint)) {
+			try {
+				if ((breakpoint.isEnabled() && getBreakpointManager().isEnabled()) || !breakpoint.isRegistered()) {
+					DamsonLineBreakpoint damsonBreakpoint = (DamsonLineBreakpoint)breakpoint;
+				    damsonBreakpoint.install(this);
+				}
+			} catch (CoreException e) {
+			}
+		}
+	}
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.IBreakpointListener#breakpointRemoved(org.eclipse.debug.core.model.IBreakpoint, org.eclipse.core.resources.IMarkerDelta)
+	 */
+	public void breakpointRemoved(IBreakpoint breakpoint, IMarkerDelta delta) {
+		if (supportsBreakpoint(breakpoint)) {
+			try {
+			    DamsonLineBreakpoint pdaBreakpoint = (DamsonLineBreakpoint)breakpoint;
+				pdaBreakpoint.remove(this);
+			} catch (CoreException e) {
+			}
+		}
+	}
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.IBreakpointListener#breakpointChanged(org.eclipse.debug.core.model.IBreakpoint, org.eclipse.core.resources.IMarkerDelta)
+	 */
+	public void breakpointChanged(IBreakpoint breakpoint, IMarkerDelta delta) {
+		if (supportsBreakpoint(breakpoint)) {
+			try {
+				if (breakpoint.isEnabled() && getBreakpointManager().isEnabled()) {
+					breakpointAdded(breakpoint);
+				} else {
+					breakpointRemoved(breakpoint, null);
+				}
+			} catch (CoreException e) {
+			}
+		}
+	}
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IDisconnect#canDisconnect()
+	 */
+	public boolean canDisconnect() {
+		return false;
+	}
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IDisconnect#disconnect()
+	 */
+	public void disconnect() throws DebugException {
+	}
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IDisconnect#isDisconnected()
+	 */
+	public boolean isDisconnected() {
+		return false;
+	}
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IMemoryBlockRetrieval#supportsStorageRetrieval()
+	 */
+	public boolean supportsStorageRetrieval() {
+		return false;
+	}
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IMemoryBlockRetrieval#getMemoryBlock(long, long)
+	 */
+	public IMemoryBlock getMemoryBlock(long startAddress, long length) throws DebugException {
+		return null;
+	}
+
+	/**
+	 * Notification we have connected to the DAMSON debugger and it has started.
+	 * Resume the debugger.
+	 */
+	private void started() {
+		fireCreationEvent();
+		installDeferredBreakpoints();
+		try {
+			resume();
+		} catch (DebugException e) {
+		}
+	}
+	
+	/**
+	 * Install breakpoints that are already registered with the breakpoint
+	 * manager.
+	 */
+	private void installDeferredBreakpoints() {
+		IBreakpointManager breakpointManager = getBreakpointManager();
+		if (breakpointManager != null)
+			installBreakpoints(breakpointManager.getBreakpoints(getModelIdentifier()));
+	}
+	
+	/**
+	 * Installs the given breakpoints. Where supported the requests of all the breakpoints 
+	 * are sent as a single <code>setbatch</code> request, otherwise each breakpoint is 
+	 * installed individually.
+	 * 
+	 * @param breakpoints breakpoints to install
+	 */
+	private void installBreakpoints(IBreakpoint[] breakpoints) {
+		if (!hasCapability(CAPABILITY_BREAKPOINT_BATCH)) {
+			for (int i = 0; i < breakpoints.length; i++) {
+				breakpointAdded(breakpoints[i]);
+			}
+			return;
+		}
+		StringBuffer request = new StringBuffer("setbatch");
+		int count = 0;
+		for (int i = 0; i < breakpoints.length; i++) {
+			IBreakpoint breakpoint = breakpoints[i];
+			if (supportsBreakpoint(breakpoint)) {
+				try {
+					if ((breakpoint.isEnabled() && getBreakpointManager().isEnabled()) || !breakpoint.isRegistered()) {
+						DamsonLineBreakpoint damsonBreakpoint = (DamsonLineBreakpoint)breakpoint;
+						damsonBreakpoint.attach(this);
+						request.append(' ').append(damsonBreakpoint.getRequestArguments());
+						count++;
+					}
+				} catch (CoreException e) {
+				}
+			}
+		}
+		if (count > 0) {
+			try {
+				sendRequest(request.toString());
+			} catch (DebugException e) {
+			}
+		}
+	}
+	
+	/**
+	 * Removes the given breakpoints. Where supported the requests of all the breakpoints 
+	 * are cleared by a single <code>clearbatch</code> request, otherwise each breakpoint is 
+	 * removed individually.
+	 * 
+	 * @param breakpoints breakpoints to remove
+	 */
+	private void removeBreakpoints(IBreakpoint[] breakpoints) {
+		if (!hasCapability(CAPABILITY_BREAKPOINT_BATCH)) {
+			for (int i = 0; i < breakpoints.length; i++) {
+				breakpointRemoved(breakpoints[i], null);
+			}
+			return;
+		}
+		StringBuffer request = new StringBuffer("clearbatch");
+		int count = 0;
+		for (int i = 0; i < breakpoints.length; i++) {
+			if (supportsBreakpoint(breakpoints[i])) {
+				try {
+					DamsonLineBreakpoint damsonBreakpoint = (DamsonLineBreakpoint)breakpoints[i];
+					damsonBreakpoint.detach(this);
+					request.append(' ').append(damsonBreakpoint.getLineNumber());
+					count++;
+				} catch (CoreException e) {
+				}
+			}
+		}
+		if (count > 0) {
+			try {
+				sendRequest(request.toString());
+			} catch (DebugException e) {
+			}
+		}
+	}
+	
+	/**
+	 * Called when this debug target terminates.
+	 */
+	private synchronized void notifyTerminate() {
+		if (fTerminateNotified)
+			return;
+		fTerminateNotified = true;
+		fThreads = new DamsonThread[0];
+		synchronized (fNodesByNumber) {
+			fNodes = null;
+			fNodesByNumber.clear();
+			fNodesByAlias.clear();
+			fNodePages.clear();
+		}
+		clearScopedSuspends();
+		failRequestChannel(new IOException("DAMSON debugger terminated"));
+		fValueCache.clear();
+		fGlobalVariables.clear();
+		fTransport.close();
+		if (fRecorder != null)
+			fRecorder.close();
+		synchronized (fBreakpointsByLine) {
+			fBreakpointsByLine.clear();
+			fBreakpointLines.clear();
+		}
+		IBreakpointManager breakpointManager = getBreakpointManager();
+		if (breakpointManager != null) {
+			breakpointManager.removeBreakpointListener(this);
+			breakpointManager.removeBreakpointManagerListener(this);
+		}
+		fireTerminateEvent();
+		removeEventListener(this);
+	}
+	
+	
+	/**
+	 * Asks the DAMSON debugger which protocol extensions it supports. The reply is 
+	 * <code>capabilities name name ...</code>. Older debuggers which do not understand the 
+	 * request reply with an error (or not at all) and are left with no capabilities.
+	 * 
+	 * @throws IOException if the request connection fails
+	 */
+	private void requestCapabilities() throws IOException {
+		String reply = null;
+		fTransport.setRequestTimeout(CAPABILITIES_TIMEOUT);
+		try {
+			if (fRecorder != null)
+				fRecorder.recordRequest(0, "capabilities");
+			fRequestWriter.print("capabilities");
+			fRequestWriter.flush();
+			reply = fRequestReader.readLine();
+			if (fRecorder != null)
+				fRecorder.recordReply(0, reply);
+		} catch (SocketTimeoutException e) {
+			//a late reply is discarded before the next request (see sendSynchronousRequest)
+			fCapabilitiesReplyPending = true;
+		} finally {
+			fTransport.setRequestTimeout(0);
+		}
+		if (reply != null && reply.startsWith("capabilities")) {
+			String[] capabilities = reply.split(" ");
+			for (int i = 1; i < capabilities.length; i++) {
+				fCapabilities.add(capabilities[i]);
+			}
+		}
+		fPipelined = hasCapability(CAPABILITY_PIPELINE);
+		//switch to binary replies before any other request is outstanding
+		if (hasCapability(CAPABILITY_BINARY)) {
+			int id = nextRequestId();
+			if (fRecorder != null)
+				fRecorder.recordRequest(id, "binary");
+			fRequestWriter.print(fPipelined ? "@" + id + " binary\n" : "binary");
+			fRequestWriter.flush();
+			reply = fRequestReader.readLine();
+			if (fRecorder != null)
+				fRecorder.recordReply(id, reply != null && reply.startsWith("@") ? reply.substring(reply.indexOf(' ') + 1) : reply);
+			fBinary = reply != null && reply.endsWith("OK binary");
+		}
+	}
+	
+	/**
+	 * Returns whether the DAMSON debugger is asked for its protocol extensions when connected. 
+	 * Launches opt in to the request as DAMSON versions which do not reply to it would delay 
+	 * every launch (see {@link DebugCorePlugin#ATTR_DAMSON_PROTOCOL_EXTENSIONS}). Targets 
+	 * created without a launch configuration (e.g. connected to the mock engine) always ask.
+	 * 
+	 * @return whether the capabilities request is sent
+	 */
+	private boolean isCapabilitiesRequested() {
+		if (fLaunch == null || fLaunch.getLaunchConfiguration() == null)
+			return true;
+		try {
+			return fLaunch.getLaunchConfiguration().getAttribute(DebugCorePlugin.ATTR_DAMSON_PROTOCOL_EXTENSIONS, false);
+		} catch (CoreException e) {
+			return false;
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.examples.core.pda.model.PDADebugElement#sendRequest(java.lang.String)
+	 */
+	public String sendRequest(String request) throws DebugException {
+		return sendRequestAsync(request).getReply(fRequestTimeout, null);
+	}  
+	
+	/* (non-Javadoc)
+	 * @see edu.shef.damson.core.model.DamsonDebugElement#sendRequestAsync(java.lang.String)
+	 */
+	public DamsonRequest sendRequestAsync(String request) throws DebugException {
+		return sendRequestsAsync(new String[]{request})[0];
+	}
+	
+	/**
+	 * Sends a group of requests to the DAMSON debugger without waiting for the replies. When 
+	 * the request channel is pipelined all requests are written before the channel is flushed 
+	 * so that they share as few round trips as possible. Otherwise each request is sent in turn 
+	 * and the returned requests are already complete.
+	 * 
+	 * @param requests commands
+	 * @return outstanding requests in the same order as the commands
+	 * @throws DebugException if the requests could not be sent
+	 */
+	public DamsonRequest[] sendRequestsAsync(String[] requests) throws DebugException {
+		DamsonRequest[] pending = new DamsonRequest[requests.length];
+		if (!fPipelined) {
+			for (int i = 0; i < requests.length; i++) {
+				pending[i] = new DamsonRequest(this, nextRequestId(), requests[i]);
+				sendSynchronousRequest(pending[i]);
+			}
+			return pending;
+		}
+		synchronized (fPendingRequests) {
+			if (fRequestFailure != null)
+				requestFailed("Request failed: " + requests[0], fRequestFailure);
+		}
+		synchronized (fRequestWriter) {
+			for (int i = 0; i < requests.length; i++) {
+				pending[i] = new DamsonRequest(this, nextRequestId(), requests[i]);
+				synchronized (fPendingRequests) {
+					if (fRequestFailure != null) {
+						pending[i].fail(fRequestFailure);
+						continue;
+					}
+					fPendingRequests.put(Integer.valueOf(pending[i].getId()), pending[i]);
+				}
+				String line = "@" + pending[i].getId() + " " + requests[i] + "\n";
+				if (fRecorder != null)
+					fRecorder.recordRequest(pending[i].getId(), requests[i]);
+				pending[i].sent(line.length());
+				fRequestWriter.print(line);
+			}
+			fRequestWriter.flush();
+			if (fRequestWriter.checkError()) {
+				IOException e = new IOException("Unable to write to DAMSON debugger");
+				failPendingRequests(e);
+				requestFailed("Request failed: " + requests[0], e);
+			}
+		}
+		return pending;
+	}
+	
+	/**
+	 * Requests the values of the given variables which have not yet been fetched.
+	 * The requests are sent as one group so that they share a round trip when the 
+	 * request channel is pipelined.
+	 * 
+	 * @param variables DAMSON variables
+	 */
+	void requestVariableValues(IVariable[] variables) {
+		List<DamsonVariable> pending = new ArrayList<DamsonVariable>();
+		for (int i = 0; i < variables.length; i++) {
+			DamsonVariable var = (DamsonVariable)variables[i];
+			if (!var.isValueAvailable() && var.isSuspended())
+				pending.add(var);
+		}
+		if (pending.isEmpty())
+			return;
+		String[] requests = new String[pending.size()];
+		for (int i = 0; i < requests.length; i++) {
+			requests[i] = pending.get(i).getValueRequest();
+		}
+		try {
+			DamsonRequest[] replies = sendRequestsAsync(requests);
+			for (int i = 0; i < replies.length; i++) {
+				pending.get(i).setValueData(replies[i].getReply(fRequestTimeout, null));
+			}
+		} catch (DebugException e) {
+			//values will be requested individually when displayed
+		}
+	}
+	
+	/**
+	 * Sends a request over a request channel which is not pipelined and waits for 
+	 * its (text or binary) reply. If the reply does not arrive in time (see 
+	 * {@link #getRequestTimeout()}) the request fails and its reply is read and discarded 
+	 * before the next request is sent. The session is only abandoned if the channel fails.
+	 * 
+	 * @param request request
+	 * @throws DebugException if the request fails or times out
 	 */
-	public void breakpointAdded(IBreakpoint breakpoint) {
-		if (supportsBreakpoint(breakpoint)) {
+	private void sendSynchronousRequest(DamsonRequest request) throws DebugException {
+		SocketTimeoutException timeout = null;
+		IOException failure = null;
+		synchronized (fTransport) {
+			boolean sent = false;
 			try {
-				if ((breakpoint.isEnabled() && getBreakpointManager().isEnabled()) || !breakpoint.isRegistered()) {
-					DamsonLineBreakpoint damsonBreakpoint = (DamsonLineBreakpoint)breakpoint;
-				    damsonBreakpoint.install(this);
+				fTransport.setRequestTimeout(fRequestTimeout);
+				try {
+					if (fCapabilitiesReplyPending)
+						discardCapabilitiesReply();
+					discardAbandonedReplies();
+					if (fRecorder != null)
+						fRecorder.recordRequest(request.getId(), request.getRequest());
+					request.sent(request.getRequest().length());
+					fRequestWriter.print(request.getRequest());
+					fRequestWriter.flush();
+					sent = true;
+					// wait for reply
+					if (fRequestReader.peek() == DamsonReplyReader.FRAME_MARKER) {
+						DamsonBinaryReply reply = fRequestReader.readFrame();
+						if (fRecorder != null)
+							fRecorder.recordReply(request.getId(), reply);
+						request.complete(reply);
+					} else {
+						String reply = fRequestReader.readLine();
+						if (fRecorder != null)
+							fRecorder.recordReply(request.getId(), reply);
+						request.complete(reply);
+					}
+				} finally {
+					fTransport.setRequestTimeout(0);
 				}
-			} catch (CoreException e) {
+			} catch (SocketTimeoutException e) {
+				//a request which was not sent waited for the reply to an earlier request
+				if (sent)
+					fAbandonedRequests.add(request);
+				request.fail(e);
+				timeout = e;
+			} catch (IOException e) {
+				request.fail(e);
+				failure = e;
 			}
 		}
+		//end the session once the transport is no longer held
+		if (failure != null) {
+			abandonSession(failure);
+			requestFailed("Request failed: " + request.getRequest(), failure);
+		}
+		if (timeout != null)
+			requestFailed("Request timed out: " + request.getRequest(), timeout);
 	}
-	/* (non-Javadoc)
-	 * @see org.eclipse.debug.core.IBreakpointListener#breakpointRemoved(org.eclipse.debug.core.model.IBreakpoint, org.eclipse.core.resources.IMarkerDelta)
+	
+	/**
+	 * Reads and discards the late replies to requests which have been given up on so that 
+	 * they are not taken as the reply to the next request. Called with the transport held.
+	 * 
+	 * @throws SocketTimeoutException if a reply is still late
+	 * @throws IOException if reading fails
 	 */
-	public void breakpointRemoved(IBreakpoint breakpoint, IMarkerDelta delta) {
-		if (supportsBreakpoint(breakpoint)) {
-			try {
-			    DamsonLineBreakpoint pdaBreakpoint = (DamsonLineBreakpoint)breakpoint;
-				pdaBreakpoint.remove(this);
-			} catch (CoreException e) {
+	private void discardAbandonedReplies() throws IOException {
+		while (!fAbandonedRequests.isEmpty()) {
+			DamsonRequest request = fAbandonedRequests.getFirst();
+			if (fRequestReader.peek() == DamsonReplyReader.FRAME_MARKER) {
+				DamsonBinaryReply reply = fRequestReader.readFrame();
+				if (fRecorder != null)
+					fRecorder.recordReply(request.getId(), reply);
+			} else {
+				String reply = fRequestReader.readLine();
+				if (fRecorder != null)
+					fRecorder.recordReply(request.getId(), reply);
 			}
+			fAbandonedRequests.removeFirst();
 		}
 	}
-	/* (non-Javadoc)
-	 * @see org.eclipse.debug.core.IBreakpointListener#breakpointChanged(org.eclipse.debug.core.model.IBreakpoint, org.eclipse.core.resources.IMarkerDelta)
+	
+	/**
+	 * Gives up on a session whose request channel has failed. All outstanding and further 
+	 * requests fail, the debugger process is terminated and this target terminates.
+	 * 
+	 * @param e the cause
 	 */
-	public void breakpointChanged(IBreakpoint breakpoint, IMarkerDelta delta) {
-		if (supportsBreakpoint(breakpoint)) {
+	private void abandonSession(IOException e) {
+		failRequestChannel(e);
+		if (fProcess != null && fProcess.canTerminate()) {
 			try {
-				if (breakpoint.isEnabled() && getBreakpointManager().isEnabled()) {
-					breakpointAdded(breakpoint);
-				} else {
-					breakpointRemoved(breakpoint, null);
-				}
-			} catch (CoreException e) {
+				fProcess.terminate();
+			} catch (DebugException x) {
+				//the target terminates regardless
 			}
 		}
+		notifyTerminate();
 	}
-	/* (non-Javadoc)
-	 * @see org.eclipse.debug.core.model.IDisconnect#canDisconnect()
+	
+	/**
+	 * Waits once more for the reply to the capabilities request after the request timed out 
+	 * and discards it, so that it is not taken as the reply to a later request. A debugger 
+	 * which does not reply in that time is taken not to reply at all.
+	 * 
+	 * @throws IOException if reading fails
 	 */
-	public boolean canDisconnect() {
-		return false;
+	private void discardCapabilitiesReply() throws IOException {
+		fCapabilitiesReplyPending = false;
+		fTransport.setRequestTimeout(CAPABILITIES_TIMEOUT);
+		try {
+			String reply = fRequestReader.readLine();
+			if (fRecorder != null)
+				fRecorder.recordReply(0, reply);
+		} catch (SocketTimeoutException e) {
+			//the request was not understood
+		} finally {
+			fTransport.setRequestTimeout(fRequestTimeout);
+		}
 	}
-	/* (non-Javadoc)
-	 * @see org.eclipse.debug.core.model.IDisconnect#disconnect()
+	
+	/**
+	 * Sends a request whose reply is a binary frame (see {@link #isBinary()}), 
+	 * waits for and returns the reply.
+	 * 
+	 * @param request request
+	 * @return binary reply
+	 * @throws DebugException if the request fails or the reply is not binary
 	 */
-	public void disconnect() throws DebugException {
+	public DamsonBinaryReply sendBinaryRequest(String request) throws DebugException {
+		return sendRequestAsync(request).getBinaryReply(fRequestTimeout, null);
 	}
-	/* (non-Javadoc)
-	 * @see org.eclipse.debug.core.model.IDisconnect#isDisconnected()
+	
+	/**
+	 * Allocates the next request correlation ID
+	 * 
+	 * @return correlation ID
 	 */
-	public boolean isDisconnected() {
-		return false;
+	private synchronized int nextRequestId() {
+		return fNextRequestId++;
 	}
-	/* (non-Javadoc)
-	 * @see org.eclipse.debug.core.model.IMemoryBlockRetrieval#supportsStorageRetrieval()
+	
+	/**
+	 * Gets the time to wait for the reply to a request before giving up on it
+	 * 
+	 * @return timeout in milliseconds
 	 */
-	public boolean supportsStorageRetrieval() {
-		return false;
+	public int getRequestTimeout() {
+		return fRequestTimeout;
 	}
-	/* (non-Javadoc)
-	 * @see org.eclipse.debug.core.model.IMemoryBlockRetrieval#getMemoryBlock(long, long)
+	
+	/**
+	 * Sets the time to wait for the reply to a request before giving up on it
+	 * 
+	 * @param timeout timeout in milliseconds
 	 */
-	public IMemoryBlock getMemoryBlock(long startAddress, long length) throws DebugException {
-		return null;
+	public void setRequestTimeout(int timeout) {
+		fRequestTimeout = timeout;
 	}
-
+	
 	/**
-	 * Notification we have connected to the DAMSON debugger and it has started.
-	 * Resume the debugger.
+	 * Returns whether a request sent over the pipelined request channel is still waiting 
+	 * for its reply
+	 * 
+	 * @param request request
+	 * @return whether the request is outstanding
 	 */
-	private void started() {
-		fireCreationEvent();
-		installDeferredBreakpoints();
-		try {
-			resume();
-		} catch (DebugException e) {
+	boolean isOutstanding(DamsonRequest request) {
+		synchronized (fPendingRequests) {
+			return fPendingRequests.containsKey(Integer.valueOf(request.getId()));
 		}
 	}
 	
 	/**
-	 * Install breakpoints that are already registered with the breakpoint
-	 * manager.
+	 * Forgets a request which has been cancelled so that it is no longer outstanding
+	 * 
+	 * @param request cancelled request
 	 */
-	private void installDeferredBreakpoints() {
-		IBreakpoint[] breakpoints = getBreakpointManager().getBreakpoints(getModelIdentifier());
-		for (int i = 0; i < breakpoints.length; i++) {
-			breakpointAdded(breakpoints[i]);
+	void requestCancelled(DamsonRequest request) {
+		synchronized (fPendingRequests) {
+			fPendingRequests.remove(Integer.valueOf(request.getId()));
 		}
 	}
 	
 	/**
-	 * Called when this debug target terminates.
+	 * Fails all outstanding requests (i.e. no reply will arrive)
+	 * 
+	 * @param e cause of the failure
 	 */
-	private synchronized void notifyTerminate() {
-		fThreads = new DamsonThread[0];
-		IBreakpointManager breakpointManager = getBreakpointManager();
-        breakpointManager.removeBreakpointListener(this);
-		breakpointManager.removeBreakpointManagerListener(this);
-		fireTerminateEvent();
-		removeEventListener(this);
+	private void failPendingRequests(Throwable e) {
+		synchronized (fPendingRequests) {
+			Iterator<DamsonRequest> requests = fPendingRequests.values().iterator();
+			while (requests.hasNext()) {
+				requests.next().fail(e);
+			}
+			fPendingRequests.clear();
+		}
 	}
 	
-	
-	/* (non-Javadoc)
-	 * @see org.eclipse.debug.examples.core.pda.model.PDADebugElement#sendRequest(java.lang.String)
+	/**
+	 * Fails all outstanding and any further requests sent over a pipelined request channel 
+	 * (i.e. the channel has closed or can not be read)
+	 * 
+	 * @param e the cause of the failure
 	 */
-	public String sendRequest(String request) throws DebugException {
-		synchronized (fRequestSocket) {
-			fRequestWriter.print(request);
-			fRequestWriter.flush();
-			try {
-				// wait for reply
-				return fRequestReader.readLine();
-			} catch (IOException e) {
-				requestFailed("Request failed: " + request, e);
-			}
+	private void failRequestChannel(Throwable e) {
+		synchronized (fPendingRequests) {
+			if (fRequestFailure == null)
+				fRequestFailure = e;
 		}
-		return null;
-	}  
+		failPendingRequests(e);
+	}
 	
 	/**
 	 * When the breakpoint manager disables, remove all registered breakpoints
@@ -440,48 +1548,78 @@ public class DamsonDebugTarget extends DamsonDebugElement implements IDebugTarge
 	 */
 	public void breakpointManagerEnablementChanged(boolean enabled) {
 		IBreakpoint[] breakpoints = getBreakpointManager().getBreakpoints(getModelIdentifier());
-		for (int i = 0; i < breakpoints.length; i++) {
-			if (enabled) {
-				breakpointAdded(breakpoints[i]);
-			} else {
-				breakpointRemoved(breakpoints[i], null);
-			}
-        }
+		if (enabled) {
+			installBreakpoints(breakpoints);
+		} else {
+			removeBreakpoints(breakpoints);
+		}
 	}	
 	
 	public void updateTargetData()
 	{
 		if (isSuspended()&&!isTerminated()) { //should always be true
+			//fetch source, threads, frames and values in a single request where supported
+			if (hasCapability(CAPABILITY_SNAPSHOT) && updateTargetSnapshot()) {
+				updateCurrentNode();
+				return;
+			}
+			
 			//update source details
-			String sourceData[] = new String[0];
+			DamsonReplyTokenizer reply = new DamsonReplyTokenizer(null);
 			try {
-				sourceData = sendRequest("source").split("\\|");
+				reply.reset(sendRequest("source"));
 			} catch (DebugException e1) {}
-			if (sourceData.length == 2)
+			if (reply.countFields() == 2)
 			{
-				fTargetSourceFile = new Path(sourceData[0]).lastSegment();
-				fCurrentNode = Integer.parseInt(sourceData[1]);
+				fTargetSourceFile = new Path(reply.nextString()).lastSegment();
+				fCurrentNode = reply.nextInt();
 			}
 			
 			//update the current threads
-			String threads[] = new String[0];
+			reply.reset(null);
 			try {
-				threads = sendRequest("threads").split("#");
+				reply.reset(sendRequest("threads"));
 			} catch (DebugException e) {
 				e.printStackTrace();
 			}
-			fThreads = new DamsonThread[threads.length];
-			for (int i=0; i< threads.length; i++)
+			Map<Integer, DamsonThread> previous = getThreadsByHandle();
+			int numThreads = reply.countRecords();
+			DamsonThread updated[] = new DamsonThread[numThreads];
+			String stackRequests[] = new String[numThreads];
+			for (int i=0; i< numThreads; i++)
+			{
+				if (reply.countFields() == 2){
+					int handle = reply.nextInt();
+					int status = reply.nextInt();
+					updated[i] = retainThread(previous, handle, status);
+					stackRequests[i] = "stack "+handle;
+				}
+				reply.nextRecord();
+			}
+			setThreads(updated);
+			
+			//request all stacks at once and update the threads data as the replies arrive
+			DamsonRequest stacks[] = new DamsonRequest[0];
+			try {
+				stacks = sendRequestsAsync(compact(stackRequests));
+			} catch (DebugException e) {}
+			for (int i=0, j=0; i< fThreads.length; i++)
 			{
-				String threadData[] = threads[i].split("\\|");
-				if (threadData.length == 2){
-					int handle = Integer.parseInt(threadData[0]);
-					int status = Integer.parseInt(threadData[1]);
-					fThreads[i] = new DamsonThread(this, "Thread["+handle+"]", handle, status);
-					//update the threads data
-					fThreads[i].updateThreadData();
+				if (fThreads[i] != null && j < stacks.length)
+				{
+					fThreads[i].updateThreadData(stacks[j++]);
 				}
 			}
+			
+			//prefetch the variables of the top frame of the selected (top) thread only, 
+			//all other values are requested when first displayed
+			if (fThreads.length > 0 && fThreads[0] != null)
+			{
+				DamsonStackFrame top = (DamsonStackFrame)fThreads[0].getTopStackFrame();
+				if (top != null)
+					top.prefetchVariables();
+			}
+			updateCurrentNode();
 
 		}else
 		{
@@ -492,42 +1630,304 @@ public class DamsonDebugTarget extends DamsonDebugElement implements IDebugTarge
 		
 	}
 	
+	/**
+	 * Updates the source details and threads from a single snapshot request
+	 * 
+	 * @return whether the snapshot was received and parsed
+	 */
+	private boolean updateTargetSnapshot()
+	{
+		DamsonSnapshotParser parser = new DamsonSnapshotParser(this);
+		try {
+			if (isBinary()) {
+				if (!parser.parse(sendBinaryRequest("snapshot")))
+					return false;
+			} else if (!parser.parse(sendRequest("snapshot")))
+				return false;
+		} catch (DebugException e) {
+			return false;
+		}
+		fTargetSourceFile = parser.getSourceFile();
+		fCurrentNode = parser.getCurrentNode();
+		setThreads(parser.getThreads());
+		return true;
+	}
+	
+	/**
+	 * Returns the current threads indexed by process handle
+	 * 
+	 * @return map of process handle to thread
+	 */
+	Map<Integer, DamsonThread> getThreadsByHandle()
+	{
+		Map<Integer, DamsonThread> threads = new HashMap<Integer, DamsonThread>();
+		DamsonThread current[] = fThreads;
+		for (int i=0; i< current.length; i++)
+		{
+			if (current[i] != null)
+				threads.put(Integer.valueOf(current[i].getProcessHandle()), current[i]);
+		}
+		return threads;
+	}
+	
+	/**
+	 * Returns the thread of the previous suspend with the given handle (with its state updated) 
+	 * or a new thread if there was no such thread.
+	 * 
+	 * @param previous threads of the previous suspend indexed by process handle
+	 * @param handle process handle
+	 * @param status thread state
+	 * @return the retained or new thread
+	 */
+	DamsonThread retainThread(Map<Integer, DamsonThread> previous, int handle, int status)
+	{
+		DamsonThread thread = previous.get(Integer.valueOf(handle));
+		if (thread != null) {
+			thread.setStatus(status);
+			return thread;
+		}
+		return new DamsonThread(this, "Thread["+handle+"]", handle, status);
+	}
+	
+	/**
+	 * Sets the current threads. Fires creation events for threads which have been added and 
+	 * terminate events for threads which have been removed since the previous suspend rather 
+	 * than rebuilding the whole thread list.
+	 * 
+	 * @param threads current threads
+	 */
+	private void setThreads(DamsonThread[] threads)
+	{
+		Map<Integer, DamsonThread> removed = getThreadsByHandle();
+		DamsonThread previous[] = fThreads;
+		fThreads = threads;
+		for (int i=0; i< threads.length; i++)
+		{
+			if (threads[i] == null)
+				continue;
+			if (removed.remove(Integer.valueOf(threads[i].getProcessHandle())) == null && previous.length > 0)
+				threads[i].fireCreationEvent();
+		}
+		Iterator<DamsonThread> terminated = removed.values().iterator();
+		while (terminated.hasNext())
+		{
+			terminated.next().fireTerminateEvent();
+		}
+	}
+	
+	/**
+	 * Removes <code>null</code> entries from an array of requests
+	 * 
+	 * @param requests requests
+	 * @return non null requests
+	 */
+	private static String[] compact(String[] requests) {
+		Vector<String> compacted = new Vector<String>();
+		for (int i=0; i< requests.length; i++)
+		{
+			if (requests[i] != null)
+				compacted.add(requests[i]);
+		}
+		return compacted.toArray(new String[compacted.size()]);
+	}
+	
 	/* (non-Javadoc)
 	 * 
 	 */
-	public void handleEvent(String event) {
+	public void handleEvent(DamsonEvent event) {
+		if (event.isScoped()) {
+			handleScopedEvent(event);
+			return;
+		}
+		
 		// clear previous state
 		fBreakpoint = null;
 		setStepping(false);
 		
 		// handle events
-		if (event.equals("started")) {
+		if (event.getKind() == DamsonEvent.STARTED) {
 			started();
-		} else if (event.equals("terminated")) {
+		} else if (event.getKind() == DamsonEvent.TERMINATED) {
 			notifyTerminate();
-		} else if (event.startsWith("resumed")) {
+		} else if (event.getKind() == DamsonEvent.RESUMED) {
 			setSuspended(false);
-			if (event.endsWith("step")) {
+			//resuming the program resumes any node or thread suspended on its own
+			clearScopedSuspends();
+			if (event.isDetail(DamsonEvent.DETAIL_STEP)) {
 				setStepping(true);
 				notifyResume(DebugEvent.STEP_OVER);
-			} else if (event.endsWith("breakpoint")) {
+			} else if (event.isDetail(DamsonEvent.DETAIL_BREAKPOINT)) {
 				notifyResume(DebugEvent.BREAKPOINT);
 			}
-		} else if (event.startsWith("suspended")) {
+		} else if (event.getKind() == DamsonEvent.SUSPENDED) {
 			setSuspended(true);
-			if (event.startsWith("suspended breakpoint")) {
+			clearScopedSuspends();
+			fRequestStatistics.startSuspend();
+			fValueCache.advance();
+			fGlobalVariables.invalidate();
+			invalidateNodes();
+			if (event.isDetail(DamsonEvent.DETAIL_BREAKPOINT)) {
 				updateTargetData();
-				notifySuspend(DebugEvent.BREAKPOINT);
-			} else if (event.endsWith("step")) {
+				//find the hit breakpoint through the line index rather than asking every breakpoint
+				DamsonLineBreakpoint breakpoint = getBreakpoint(event.getLine());
+				if (breakpoint != null)
+					notifySuspendBy(breakpoint);
+				else
+					notifySuspend(DebugEvent.BREAKPOINT);
+			} else if (event.isDetail(DamsonEvent.DETAIL_STEP)) {
 				updateTargetData();
 				notifySuspend(DebugEvent.STEP_END);
 			}
-		} else if (event.equals("started")) {
-			fireCreationEvent();
 		}
 		
 	}
 	
+	/**
+	 * Handles the suspend and resume events of a single node or thread (non-stop mode). The 
+	 * rest of the program keeps running, so only the suspended node or thread is refreshed.
+	 * 
+	 * @param event node or thread event
+	 */
+	private void handleScopedEvent(DamsonEvent event) {
+		boolean suspended = event.getKind() == DamsonEvent.SUSPENDED;
+		if (!suspended && event.getKind() != DamsonEvent.RESUMED)
+			return;
+		int detail = DebugEvent.CLIENT_REQUEST;
+		if (event.isDetail(DamsonEvent.DETAIL_STEP))
+			detail = suspended ? DebugEvent.STEP_END : DebugEvent.STEP_OVER;
+		else if (event.isDetail(DamsonEvent.DETAIL_BREAKPOINT))
+			detail = DebugEvent.BREAKPOINT;
+		Integer id = Integer.valueOf(event.getScopeId());
+		if (suspended)
+			fRequestStatistics.startSuspend();
+		if (event.isNodeEvent()) {
+			synchronized (fSuspendedNodes) {
+				if (suspended)
+					fSuspendedNodes.add(id);
+				else
+					fSuspendedNodes.remove(id);
+			}
+			if (suspended && event.getScopeId() == getCurrentNode()) {
+				//globals (cached under &name) are read from the current node, so are stale too
+				fValueCache.advance("&");
+				fGlobalVariables.invalidate();
+			}
+			DamsonNode node = getNode(event.getScopeId());
+			if (node == null)
+				return;
+			if (suspended)
+				node.notifySuspend(detail);
+			else
+				node.notifyResume(detail);
+		} else if (event.isThreadEvent()) {
+			synchronized (fSuspendedNodes) {
+				if (suspended)
+					fSuspendedThreads.add(id);
+				else
+					fSuspendedThreads.remove(id);
+			}
+			DamsonThread thread = findThread(event.getScopeId());
+			if (thread == null)
+				return;
+			if (suspended)
+				thread.notifyThreadSuspend(detail);
+			else
+				thread.notifyThreadResume(detail);
+		}
+	}
+	
+	/**
+	 * Forgets the nodes and threads suspended on their own (the whole program has suspended 
+	 * or resumed). Fires a state change event for each of them which has been read.
+	 */
+	private void clearScopedSuspends() {
+		Integer[] nodes;
+		Integer[] threads;
+		synchronized (fSuspendedNodes) {
+			if (fSuspendedNodes.isEmpty() && fSuspendedThreads.isEmpty())
+				return;
+			nodes = fSuspendedNodes.toArray(new Integer[fSuspendedNodes.size()]);
+			threads = fSuspendedThreads.toArray(new Integer[fSuspendedThreads.size()]);
+			fSuspendedNodes.clear();
+			fSuspendedThreads.clear();
+		}
+		for (int i = 0; i < nodes.length; i++) {
+			DamsonNode node;
+			synchronized (fNodesByNumber) {
+				node = fNodesByNumber.get(nodes[i]);
+			}
+			if (node != null)
+				node.fireChangeEvent(DebugEvent.STATE);
+		}
+		for (int i = 0; i < threads.length; i++) {
+			DamsonThread thread = findThread(threads[i].intValue());
+			if (thread != null)
+				thread.fireChangeEvent(DebugEvent.STATE);
+		}
+	}
+	
+	/**
+	 * Finds a thread which has already been read, either a thread of the last suspend or a 
+	 * thread of a node
+	 * 
+	 * @param handle process handle
+	 * @return the thread or <code>null</code> if no such thread has been read
+	 */
+	private DamsonThread findThread(int handle) {
+		DamsonThread thread = getThreadsByHandle().get(Integer.valueOf(handle));
+		if (thread != null)
+			return thread;
+		DamsonNode[] nodes;
+		synchronized (fNodesByNumber) {
+			nodes = fNodesByNumber.values().toArray(new DamsonNode[fNodesByNumber.size()]);
+		}
+		for (int i = 0; i < nodes.length && thread == null; i++) {
+			thread = nodes[i].findThread(handle);
+		}
+		return thread;
+	}
+	
+	/**
+	 * Adds an installed breakpoint to the line index used to find the breakpoint hit by 
+	 * a breakpoint suspend event. Replaces any previous entry for the breakpoint (i.e. if 
+	 * its line has changed).
+	 * 
+	 * @param breakpoint installed breakpoint
+	 * @param lineNumber line number of the breakpoint
+	 */
+	public void addBreakpoint(DamsonLineBreakpoint breakpoint, int lineNumber) {
+		synchronized (fBreakpointsByLine) {
+			removeBreakpoint(breakpoint);
+			fBreakpointsByLine.put(Integer.valueOf(lineNumber), breakpoint);
+			fBreakpointLines.put(breakpoint, Integer.valueOf(lineNumber));
+		}
+	}
+	
+	/**
+	 * Removes a breakpoint from the line index. Has no effect if the breakpoint is not installed.
+	 * 
+	 * @param breakpoint breakpoint
+	 */
+	public void removeBreakpoint(DamsonLineBreakpoint breakpoint) {
+		synchronized (fBreakpointsByLine) {
+			Integer line = fBreakpointLines.remove(breakpoint);
+			if (line != null && fBreakpointsByLine.get(line) == breakpoint)
+				fBreakpointsByLine.remove(line);
+		}
+	}
+	
+	/**
+	 * Gets the breakpoint installed at the given line
+	 * 
+	 * @param lineNumber line number
+	 * @return the breakpoint or <code>null</code> if none is installed at the line
+	 */
+	public DamsonLineBreakpoint getBreakpoint(int lineNumber) {
+		synchronized (fBreakpointsByLine) {
+			return fBreakpointsByLine.get(Integer.valueOf(lineNumber));
+		}
+	}
+	
 	/**
 	 * Sets whether DAMSOn emulator is stepping
 	 * 
@@ -614,6 +2014,85 @@ public class DamsonDebugTarget extends DamsonDebugElement implements IDebugTarge
 		return fSuspended && !isTerminated();
 	}
 	
+	/**
+	 * Returns whether the DAMSON debugger suspends, steps and resumes single nodes or threads 
+	 * while the rest of the program runs (i.e. reports the <code>nonstop</code> capability)
+	 * 
+	 * @return whether non-stop mode is supported
+	 */
+	public boolean isNonStop() {
+		return hasCapability(CAPABILITY_NON_STOP);
+	}
+	
+	/**
+	 * Returns whether a node is suspended, either with the whole program or on its own
+	 * 
+	 * @param number node number
+	 * @return whether the node is suspended
+	 */
+	public boolean isNodeSuspended(int number) {
+		if (isSuspended())
+			return true;
+		synchronized (fSuspendedNodes) {
+			return fSuspendedNodes.contains(Integer.valueOf(number)) && !isTerminated();
+		}
+	}
+	
+	/**
+	 * Returns whether a thread is suspended, either with the whole program, with its node or 
+	 * on its own
+	 * 
+	 * @param thread thread
+	 * @return whether the thread is suspended
+	 */
+	public boolean isThreadSuspended(DamsonThread thread) {
+		if (isSuspended())
+			return true;
+		if (thread.getNode() != null && isNodeSuspended(thread.getNode().getNumber()))
+			return true;
+		synchronized (fSuspendedNodes) {
+			return fSuspendedThreads.contains(Integer.valueOf(thread.getProcessHandle())) && !isTerminated();
+		}
+	}
+	
+	/**
+	 * Gets the element which a suspend, resume or step command on the given element acts on. 
+	 * Commands act on the whole program unless the DAMSON debugger supports non-stop mode and 
+	 * the program is running, in which case a command on a node, or on a thread or stack frame 
+	 * of a node, acts on the node alone. Without nodes a command on a thread acts on the thread.
+	 * 
+	 * @param element debug element the command was issued on
+	 * @return this target, a node or a thread
+	 */
+	public DamsonDebugElement getSuspendScope(DamsonDebugElement element) {
+		if (!isNonStop() || isSuspended() || isTerminated())
+			return this;
+		if (element instanceof DamsonStackFrame)
+			element = ((DamsonStackFrame)element).getThread();
+		if (element instanceof DamsonThread && ((DamsonThread)element).getNode() != null)
+			return ((DamsonThread)element).getNode();
+		if (element instanceof DamsonNode || element instanceof DamsonThread)
+			return element;
+		return this;
+	}
+	
+	/**
+	 * Gets a suspend, resume or step request for the scope of the given element (see 
+	 * {@link #getSuspendScope(DamsonDebugElement)}), i.e. <code>suspend node N</code>
+	 * 
+	 * @param request request acting on the whole program
+	 * @param element debug element the command was issued on
+	 * @return the request followed by the node or thread it acts on, if any
+	 */
+	public String getScopedRequest(String request, DamsonDebugElement element) {
+		DamsonDebugElement scope = getSuspendScope(element);
+		if (scope instanceof DamsonNode)
+			return request + " " + DamsonEvent.SCOPE_NODE + " " + ((DamsonNode)scope).getNumber();
+		if (scope instanceof DamsonThread)
+			return request + " " + DamsonEvent.SCOPE_THREAD + " " + ((DamsonThread)scope).getProcessHandle();
+		return request;
+	}
+	
 	/* (non-Javadoc)
 	 * @see org.eclipse.debug.core.model.IStep#isStepping()
 	 */
@@ -662,7 +2141,15 @@ public class DamsonDebugTarget extends DamsonDebugElement implements IDebugTarge
 	 * @see org.eclipse.debug.core.model.ITerminate#terminate()
 	 */
 	public void terminate() throws DebugException {
-		sendRequest("exit");
+		try {
+			sendRequest("exit");
+		} catch (DebugException e) {
+			//the terminated event may fail the request before its reply is read
+			synchronized (this) {
+				if (!fTerminateNotified)
+					throw e;
+			}
+		}
 	}
 
 	
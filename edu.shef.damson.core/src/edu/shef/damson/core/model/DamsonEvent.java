@@ -0,0 +1,310 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.model;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An event received from the DAMSON debugger, parsed once from the text of the event line
+ * (see {@link IDamsonEventListener} for the events generated by the DAMSON debugger).
+ */
+public class DamsonEvent {
+
+	/**
+	 * Event kind of the <code>started</code> event
+	 */
+	public static final int STARTED = 1;
+
+	/**
+	 * Event kind of the <code>terminated</code> event
+	 */
+	public static final int TERMINATED = 2;
+
+	/**
+	 * Event kind of the <code>suspended X</code> events
+	 */
+	public static final int SUSPENDED = 3;
+
+	/**
+	 * Event kind of the <code>resumed X</code> events
+	 */
+	public static final int RESUMED = 4;
+
+	/**
+	 * Event kind of any event not understood by this version of the debugger
+	 */
+	public static final int UNKNOWN = 0;
+
+	/**
+	 * Detail of events caused by a breakpoint
+	 */
+	public static final String DETAIL_BREAKPOINT = "breakpoint";
+
+	/**
+	 * Detail of events caused by a client request
+	 */
+	public static final String DETAIL_CLIENT = "client";
+
+	/**
+	 * Detail of events caused by a step request
+	 */
+	public static final String DETAIL_STEP = "step";
+
+	/**
+	 * Scope of suspend and resume events of a single node (non-stop mode)
+	 */
+	public static final String SCOPE_NODE = "node";
+
+	/**
+	 * Scope of suspend and resume events of a single thread (non-stop mode)
+	 */
+	public static final String SCOPE_THREAD = "thread";
+
+	private String fText;
+	private int fKind;
+	private String fDetail;
+	private int fLine;
+	private String fScope;
+	private int fScopeId = -1;
+
+	/**
+	 * Constructs an event
+	 *
+	 * @param text event text
+	 * @param kind event kind
+	 * @param detail cause of the event or <code>null</code>
+	 * @param line breakpoint line number or -1
+	 */
+	public DamsonEvent(String text, int kind, String detail, int line) {
+		fText = text;
+		fKind = kind;
+		fDetail = detail;
+		fLine = line;
+	}
+
+	/**
+	 * Constructs a suspend or resume event of a single node or thread
+	 *
+	 * @param text event text
+	 * @param kind event kind
+	 * @param detail cause of the event or <code>null</code>
+	 * @param line breakpoint line number or -1
+	 * @param scope <code>SCOPE_NODE</code>, <code>SCOPE_THREAD</code> or <code>null</code> if the 
+	 * event applies to the whole program
+	 * @param scopeId node number or process handle, -1 if the event applies to the whole program
+	 */
+	public DamsonEvent(String text, int kind, String detail, int line, String scope, int scopeId) {
+		this(text, kind, detail, line);
+		fScope = scope;
+		fScopeId = scopeId;
+	}
+
+	/**
+	 * Parses the text of an event line
+	 *
+	 * @param text event text
+	 * @return the event
+	 */
+	public static DamsonEvent parse(String text) {
+		int kind;
+		String args;
+		if (text.equals("started")) {
+			return new DamsonEvent(text, STARTED, null, -1);
+		} else if (text.equals("terminated")) {
+			return new DamsonEvent(text, TERMINATED, null, -1);
+		} else if (text.startsWith("suspended")) {
+			kind = SUSPENDED;
+			args = text.substring("suspended".length()).trim();
+		} else if (text.startsWith("resumed")) {
+			kind = RESUMED;
+			args = text.substring("resumed".length()).trim();
+		} else {
+			return new DamsonEvent(text, UNKNOWN, null, -1);
+		}
+		//events of a single node or thread are "suspended node N X" or "suspended thread H X"
+		String scope = null;
+		int scopeId = -1;
+		if (args.startsWith(SCOPE_NODE + " ") || args.startsWith(SCOPE_THREAD + " ")) {
+			String[] scoped = args.split(" ", 3);
+			try {
+				scopeId = Integer.parseInt(scoped[1]);
+				scope = scoped[0];
+				args = scoped.length > 2 ? scoped[2].trim() : "";
+			} catch (NumberFormatException e) {
+				return new DamsonEvent(text, UNKNOWN, null, -1);
+			}
+		}
+		String detail = args;
+		int line = -1;
+		int space = args.indexOf(' ');
+		if (space > 0) {
+			detail = args.substring(0, space);
+			try {
+				line = Integer.parseInt(args.substring(space + 1).trim());
+			} catch (NumberFormatException e) {
+				line = -1;
+			}
+		}
+		return new DamsonEvent(text, kind, detail, line, scope, scopeId);
+	}
+
+	/**
+	 * Removes the state transitions of a batch of events which have been superseded by a later 
+	 * event of the same batch. A suspend which is followed by a resume has already been left by 
+	 * the time the batch is handled, so refreshing the model for it would be wasted; only the 
+	 * resume is kept (and only the latest suspend of a burst triggers a model refresh). 
+	 * Suspends of a node or thread are only superseded by a later resume of the same node or 
+	 * thread, or of the whole program.
+	 *
+	 * @param events events in the order received
+	 * @return events which still need handling, in the order received
+	 */
+	public static List<DamsonEvent> coalesce(List<DamsonEvent> events) {
+		if (events.size() < 2) {
+			return events;
+		}
+		boolean resumed = false;
+		Set<String> resumedScopes = new HashSet<String>();
+		boolean[] superseded = new boolean[events.size()];
+		for (int i = events.size() - 1; i >= 0; i--) {
+			DamsonEvent event = events.get(i);
+			int kind = event.getKind();
+			if (kind == RESUMED) {
+				if (event.isScoped())
+					resumedScopes.add(event.getScopeKey());
+				else
+					resumed = true;
+			} else if (kind == SUSPENDED) {
+				superseded[i] = resumed || (event.isScoped() && resumedScopes.contains(event.getScopeKey()));
+			} else if (kind == STARTED || kind == TERMINATED) {
+				resumed = false;
+				resumedScopes.clear();
+			}
+		}
+		List<DamsonEvent> coalesced = new ArrayList<DamsonEvent>(events.size());
+		for (int i = 0; i < superseded.length; i++) {
+			if (!superseded[i]) {
+				coalesced.add(events.get(i));
+			}
+		}
+		return coalesced;
+	}
+
+	/**
+	 * Gets the event text as sent by the DAMSON debugger
+	 *
+	 * @return event text
+	 */
+	public String getText() {
+		return fText;
+	}
+
+	/**
+	 * Gets the kind of this event
+	 *
+	 * @return one of <code>STARTED</code>, <code>TERMINATED</code>, <code>SUSPENDED</code>, 
+	 * <code>RESUMED</code> or <code>UNKNOWN</code>
+	 */
+	public int getKind() {
+		return fKind;
+	}
+
+	/**
+	 * Gets the cause of a suspend or resume event
+	 *
+	 * @return one of <code>DETAIL_BREAKPOINT</code>, <code>DETAIL_CLIENT</code>, 
+	 * <code>DETAIL_STEP</code> or <code>null</code>
+	 */
+	public String getDetail() {
+		return fDetail;
+	}
+
+	/**
+	 * Returns whether this event has the given cause
+	 *
+	 * @param detail cause
+	 * @return whether the cause of this event is the given detail
+	 */
+	public boolean isDetail(String detail) {
+		return detail.equals(fDetail);
+	}
+
+	/**
+	 * Gets the line number of a breakpoint suspend event
+	 *
+	 * @return line number or -1 if not a breakpoint event
+	 */
+	public int getLine() {
+		return fLine;
+	}
+
+	/**
+	 * Returns whether this event applies to a single node or thread rather than the whole program
+	 *
+	 * @return whether a node or thread event
+	 */
+	public boolean isScoped() {
+		return fScope != null;
+	}
+
+	/**
+	 * Returns whether this event applies to a single node
+	 *
+	 * @return whether a node event
+	 */
+	public boolean isNodeEvent() {
+		return SCOPE_NODE.equals(fScope);
+	}
+
+	/**
+	 * Returns whether this event applies to a single thread
+	 *
+	 * @return whether a thread event
+	 */
+	public boolean isThreadEvent() {
+		return SCOPE_THREAD.equals(fScope);
+	}
+
+	/**
+	 * Gets the node number of a node event or the process handle of a thread event
+	 *
+	 * @return node number, process handle or -1 if the event applies to the whole program
+	 */
+	public int getScopeId() {
+		return fScopeId;
+	}
+
+	/**
+	 * Gets the key identifying the node or thread of a scoped event
+	 *
+	 * @return scope and identifier
+	 */
+	private String getScopeKey() {
+		return fScope + " " + fScopeId;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return fText;
+	}
+}
@@ -0,0 +1,132 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.model;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads events from the DAMSON debugger event channel without blocking on a single line. 
+ * The channel is polled through a selector and all of the event lines available at once 
+ * are returned together as a batch of parsed (and coalesced) events, so that a burst of 
+ * events (i.e. during fast stepping) is handled as a whole.
+ */
+public class DamsonEventReader {
+
+	private static final int BUFFER_SIZE = 4096;
+
+	private SocketChannel fChannel;
+	private Selector fSelector;
+	private ByteBuffer fBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+	//bytes of the (incomplete) line currently being read
+	private byte[] fLine = new byte[256];
+	private int fLineLength = 0;
+	private boolean fEndOfStream = false;
+
+	/**
+	 * Constructs a reader for the given (connected) event channel. The channel is put in 
+	 * non-blocking mode.
+	 *
+	 * @param channel event channel
+	 * @throws IOException if the channel can not be registered with a selector
+	 */
+	public DamsonEventReader(SocketChannel channel) throws IOException {
+		fChannel = channel;
+		fSelector = Selector.open();
+		fChannel.configureBlocking(false);
+		fChannel.register(fSelector, SelectionKey.OP_READ);
+	}
+
+	/**
+	 * Waits for events and returns all the events available
+	 *
+	 * @param timeout maximum time to wait in milliseconds (0 waits indefinitely)
+	 * @return coalesced events in the order received, empty if no complete event line arrived 
+	 * within the timeout
+	 * @throws EOFException if the DAMSON debugger closed the event channel
+	 * @throws IOException if reading from the channel fails
+	 */
+	public List<DamsonEvent> read(long timeout) throws IOException {
+		List<DamsonEvent> events = new ArrayList<DamsonEvent>();
+		if (fEndOfStream) {
+			throw new EOFException();
+		}
+		if (fSelector.select(timeout) > 0) {
+			fSelector.selectedKeys().clear();
+			//drain everything currently available
+			int read;
+			while ((read = fChannel.read(fBuffer)) > 0) {
+				fBuffer.flip();
+				addLines(events);
+				fBuffer.clear();
+			}
+			if (read < 0) {
+				fEndOfStream = true;
+				if (events.isEmpty()) {
+					throw new EOFException();
+				}
+			}
+		}
+		return DamsonEvent.coalesce(events);
+	}
+
+	/**
+	 * Splits the buffered bytes into event lines
+	 *
+	 * @param events list to which complete events are added
+	 */
+	private void addLines(List<DamsonEvent> events) {
+		while (fBuffer.hasRemaining()) {
+			byte b = fBuffer.get();
+			if (b == '\n') {
+				if (fLineLength > 0 && fLine[fLineLength - 1] == '\r') {
+					fLineLength--;
+				}
+				events.add(DamsonEvent.parse(new String(fLine, 0, fLineLength)));
+				fLineLength = 0;
+			} else {
+				if (fLineLength == fLine.length) {
+					byte[] line = new byte[fLine.length * 2];
+					System.arraycopy(fLine, 0, line, 0, fLineLength);
+					fLine = line;
+				}
+				fLine[fLineLength++] = b;
+			}
+		}
+	}
+
+	/**
+	 * Closes the selector and the event channel
+	 */
+	public void close() {
+		try {
+			fSelector.close();
+		} catch (IOException e) {
+		}
+		try {
+			fChannel.close();
+		} catch (IOException e) {
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.model;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Store of the global variables of a DAMSON debug target. Global variables are listed 
+ * (prefixed with <code>&amp;</code>) in the variable list of every stack frame. Rather than each 
+ * frame holding and requesting its own copy, all frames of all threads share the single 
+ * variable held by this store so that each global value is requested at most once per suspend.
+ */
+public class DamsonGlobalVariables {
+
+	private DamsonDebugTarget fTarget;
+	private Map<String, DamsonVariable> fVariables = new HashMap<String, DamsonVariable>();
+
+	/**
+	 * Constructs an empty store for the given target
+	 *
+	 * @param target owning debug target
+	 */
+	public DamsonGlobalVariables(DamsonDebugTarget target) {
+		fTarget = target;
+	}
+
+	/**
+	 * Gets the shared global variable of the given name, creating it on first use
+	 *
+	 * @param name variable name (without the global prefix)
+	 * @return the global variable
+	 */
+	public synchronized DamsonVariable getVariable(String name) {
+		DamsonVariable var = fVariables.get(name);
+		if (var == null) {
+			var = new DamsonVariable(fTarget, name);
+			fVariables.put(name, var);
+		}
+		return var;
+	}
+
+	/**
+	 * Discards the values of all global variables (i.e. on suspend) so that each is 
+	 * requested again when next displayed
+	 */
+	public synchronized void invalidate() {
+		Iterator<DamsonVariable> vars = fVariables.values().iterator();
+		while (vars.hasNext()) {
+			vars.next().invalidate();
+		}
+	}
+
+	/**
+	 * Discards all global variables
+	 */
+	public synchronized void clear() {
+		fVariables.clear();
+	}
+}
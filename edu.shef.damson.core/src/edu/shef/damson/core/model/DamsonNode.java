@@ -0,0 +1,301 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.model;
+
+import org.eclipse.debug.core.DebugEvent;
+import org.eclipse.debug.core.DebugException;
+import org.eclipse.debug.core.model.IStep;
+import org.eclipse.debug.core.model.ISuspendResume;
+
+/**
+ * A node of the DAMSON network (declared by <code>#node</code>, optionally named by 
+ * <code>#alias</code>). Nodes are listed by the target in pages (see 
+ * {@link DamsonDebugTarget#getNodes(int, int)}) and the threads of a node are only 
+ * requested from the DAMSON debugger once they are needed (i.e. the node is expanded). 
+ * The threads are discarded on each suspend and requested again when next needed.
+ * <p>
+ * If the DAMSON debugger supports non-stop mode a node can be suspended, stepped and 
+ * resumed on its own while the rest of the network runs (see 
+ * {@link DamsonDebugTarget#getSuspendScope(DamsonDebugElement)}).
+ * </p>
+ */
+public class DamsonNode extends DamsonDebugElement implements ISuspendResume, IStep {
+	
+	private int fIndex;
+	private int fNumber;
+	private String fAlias;
+	private DamsonThread[] fThreads;
+	private DamsonThread[] fRetainedThreads = new DamsonThread[0];
+	private boolean fStepping = false;
+	
+	/**
+	 * Constructs a node of the given target
+	 * 
+	 * @param target debug target
+	 * @param index position of the node in the node list of the DAMSON debugger
+	 * @param number node number
+	 * @param alias node alias or <code>null</code> if the node has no alias
+	 */
+	public DamsonNode(DamsonDebugTarget target, int index, int number, String alias) {
+		super(target);
+		fIndex = index;
+		fNumber = number;
+		fAlias = alias;
+	}
+	
+	/**
+	 * Gets the position of this node in the node list of the target
+	 * 
+	 * @return node index
+	 */
+	public int getIndex() {
+		return fIndex;
+	}
+	
+	/**
+	 * Gets the node number
+	 * 
+	 * @return node number
+	 */
+	public int getNumber() {
+		return fNumber;
+	}
+	
+	/**
+	 * Gets the alias of this node
+	 * 
+	 * @return alias or <code>null</code> if the node has no alias
+	 */
+	public String getAlias() {
+		return fAlias;
+	}
+	
+	/**
+	 * Gets the name of this node
+	 * 
+	 * @return name (node number and alias)
+	 */
+	public String getName() {
+		if (fAlias == null)
+			return "Node " + fNumber;
+		return "Node " + fNumber + " (" + fAlias + ")";
+	}
+	
+	/**
+	 * Returns whether this is the node at which the target is suspended
+	 * 
+	 * @return whether the current node
+	 */
+	public boolean isCurrent() {
+		return getDamsonDebugTarget().isSuspended() && getDamsonDebugTarget().getCurrentNode() == fNumber;
+	}
+	
+	/**
+	 * Gets the threads of this node, requesting them from the DAMSON debugger if they have 
+	 * not been requested since the target suspended
+	 * 
+	 * @return threads (empty if the node is not suspended)
+	 */
+	public DamsonThread[] getThreads() {
+		DamsonThread[] threads = fThreads;
+		if (threads == null) {
+			threads = getDamsonDebugTarget().requestNodeThreads(this);
+			if (isSuspended())
+				fThreads = threads;
+		}
+		return threads;
+	}
+	
+	/**
+	 * Returns whether the threads of this node have been requested since the target suspended
+	 * 
+	 * @return whether the threads are available without a request
+	 */
+	public boolean isThreadsAvailable() {
+		return fThreads != null;
+	}
+	
+	/**
+	 * Sets the threads of this node (i.e. the threads of the current node read by the target)
+	 * 
+	 * @param threads threads
+	 */
+	void setThreads(DamsonThread[] threads) {
+		fThreads = threads;
+		fRetainedThreads = threads;
+		for (int i = 0; i < threads.length; i++) {
+			if (threads[i] != null)
+				threads[i].setNode(this);
+		}
+	}
+	
+	/**
+	 * Discards the threads of this node (on suspend). Fires a content change event if the 
+	 * threads had been read so that they are requested again if shown.
+	 */
+	void invalidate() {
+		if (fThreads != null) {
+			fRetainedThreads = fThreads;
+			fThreads = null;
+			fireChangeEvent(DebugEvent.CONTENT);
+		}
+	}
+	
+	/**
+	 * Finds a thread of this node which has already been read
+	 * 
+	 * @param handle process handle
+	 * @return the thread or <code>null</code> if the threads have not been read or the node has 
+	 * no such thread
+	 */
+	DamsonThread findThread(int handle) {
+		DamsonThread[] threads = getRetainedThreads();
+		for (int i = 0; i < threads.length; i++) {
+			if (threads[i] != null && threads[i].getProcessHandle() == handle)
+				return threads[i];
+		}
+		return null;
+	}
+	
+	/**
+	 * Gets the threads of this node read last, which are retained when the threads are 
+	 * requested again so that the Debug view keeps their expansion and selection
+	 * 
+	 * @return threads read last (empty if never read)
+	 */
+	DamsonThread[] getRetainedThreads() {
+		DamsonThread[] threads = fThreads;
+		return threads != null ? threads : fRetainedThreads;
+	}
+	
+	/**
+	 * Notification this node has suspended on its own (non-stop mode). Values read for its 
+	 * threads become the previous values and the threads are requested again when next needed.
+	 * 
+	 * @param detail reason for the suspend
+	 */
+	void notifySuspend(int detail) {
+		fStepping = false;
+		DamsonThread[] threads = getRetainedThreads();
+		for (int i = 0; i < threads.length; i++) {
+			if (threads[i] != null)
+				getDamsonDebugTarget().getValueCache().advance(threads[i].getCachePrefix());
+		}
+		fRetainedThreads = threads;
+		fThreads = null;
+		fireSuspendEvent(detail);
+	}
+	
+	/**
+	 * Notification this node has resumed on its own (non-stop mode)
+	 * 
+	 * @param detail reason for the resume
+	 */
+	void notifyResume(int detail) {
+		fStepping = detail == DebugEvent.STEP_OVER;
+		fireResumeEvent(detail);
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.ISuspendResume#canResume()
+	 */
+	public boolean canResume() {
+		return isSuspended();
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.ISuspendResume#canSuspend()
+	 */
+	public boolean canSuspend() {
+		return !isSuspended() && !getDebugTarget().isTerminated();
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.ISuspendResume#isSuspended()
+	 */
+	public boolean isSuspended() {
+		return getDamsonDebugTarget().isNodeSuspended(fNumber);
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.ISuspendResume#resume()
+	 */
+	public void resume() throws DebugException {
+		sendRequest(getDamsonDebugTarget().getScopedRequest("resume", this));
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.ISuspendResume#suspend()
+	 */
+	public void suspend() throws DebugException {
+		sendRequest(getDamsonDebugTarget().getScopedRequest("suspend", this));
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IStep#canStepInto()
+	 */
+	public boolean canStepInto() {
+		return isSuspended();
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IStep#canStepOver()
+	 */
+	public boolean canStepOver() {
+		return isSuspended();
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IStep#canStepReturn()
+	 */
+	public boolean canStepReturn() {
+		if (getDamsonDebugTarget().isSuspended())
+			return getDamsonDebugTarget().canStepReturn();
+		//steps the top thread of the node, only known once the threads have been read
+		DamsonThread[] threads = fThreads;
+		return isSuspended() && threads != null && threads.length > 0 && threads[0] != null && threads[0].canStepReturn();
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IStep#isStepping()
+	 */
+	public boolean isStepping() {
+		return fStepping || getDamsonDebugTarget().isStepping();
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IStep#stepInto()
+	 */
+	public void stepInto() throws DebugException {
+		sendRequest(getDamsonDebugTarget().getScopedRequest("step into", this));
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IStep#stepOver()
+	 */
+	public void stepOver() throws DebugException {
+		sendRequest(getDamsonDebugTarget().getScopedRequest("step over", this));
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IStep#stepReturn()
+	 */
+	public void stepReturn() throws DebugException {
+		sendRequest(getDamsonDebugTarget().getScopedRequest("step out", this));
+	}
+}
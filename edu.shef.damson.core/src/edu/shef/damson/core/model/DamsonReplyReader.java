@@ -0,0 +1,184 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.model;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads replies from the DAMSON debugger request stream. Replies are either text lines or, 
+ * once the <code>binary</code> capability has been negotiated, binary frames:
+ * <pre>
+ * 0x01 &lt;varint correlation ID&gt; &lt;varint payload length&gt; &lt;payload&gt;
+ * </pre>
+ * The correlation ID is 0 unless the request channel is pipelined. Text replies never start 
+ * with the frame marker so the kind of the next reply is known from its first byte 
+ * (see {@link #peek()}). All reads go through a single reusable buffer.
+ */
+public class DamsonReplyReader {
+
+	/**
+	 * First byte of a binary reply frame
+	 */
+	public static final int FRAME_MARKER = 0x01;
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private InputStream fInput;
+	//unread bytes are between the position and the limit
+	private ByteBuffer fBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+	//bytes of the text line currently being read, kept if the read times out
+	private byte[] fLine = new byte[256];
+	private int fLineLength = 0;
+
+	/**
+	 * Constructs a reader for the given request stream
+	 *
+	 * @param input request input stream
+	 */
+	public DamsonReplyReader(InputStream input) {
+		fInput = input;
+		fBuffer.limit(0);
+	}
+
+	/**
+	 * Reads more bytes from the stream into the buffer
+	 *
+	 * @return whether any bytes were read (<code>false</code> at the end of the stream)
+	 */
+	private boolean fill() throws IOException {
+		fBuffer.compact();
+		int read;
+		try {
+			read = fInput.read(fBuffer.array(), fBuffer.arrayOffset() + fBuffer.position(), fBuffer.remaining());
+			if (read > 0) {
+				fBuffer.position(fBuffer.position() + read);
+			}
+		} finally {
+			fBuffer.flip();
+		}
+		return read > 0;
+	}
+
+	/**
+	 * Returns the first byte of the next reply without consuming it, waiting for it to arrive
+	 *
+	 * @return next byte or -1 at the end of the stream
+	 * @throws IOException if reading fails
+	 */
+	public int peek() throws IOException {
+		if (!fBuffer.hasRemaining() && !fill()) {
+			return -1;
+		}
+		return fBuffer.get(fBuffer.position()) & 0xff;
+	}
+
+	/**
+	 * Returns whether a reply has at least partly arrived, i.e. whether reading would not block
+	 *
+	 * @return whether bytes are available
+	 * @throws IOException if the stream can not be queried
+	 */
+	public boolean ready() throws IOException {
+		return fBuffer.hasRemaining() || fInput.available() > 0;
+	}
+
+	/**
+	 * Reads a single byte
+	 */
+	private int read() throws IOException {
+		if (!fBuffer.hasRemaining() && !fill()) {
+			throw new EOFException();
+		}
+		return fBuffer.get() & 0xff;
+	}
+
+	/**
+	 * Reads a text reply line. If the read times out the part of the line read so far is 
+	 * kept and the next read continues the line.
+	 *
+	 * @return the line without its terminator or <code>null</code> at the end of the stream
+	 * @throws IOException if reading fails
+	 */
+	public String readLine() throws IOException {
+		while (true) {
+			if (!fBuffer.hasRemaining() && !fill()) {
+				int length = fLineLength;
+				fLineLength = 0;
+				return length > 0 ? new String(fLine, 0, length) : null;
+			}
+			byte b = fBuffer.get();
+			if (b == '\n') {
+				int length = fLineLength;
+				fLineLength = 0;
+				if (length > 0 && fLine[length - 1] == '\r') {
+					length--;
+				}
+				return new String(fLine, 0, length);
+			}
+			if (fLineLength == fLine.length) {
+				byte[] line = new byte[fLine.length * 2];
+				System.arraycopy(fLine, 0, line, 0, fLineLength);
+				fLine = line;
+			}
+			fLine[fLineLength++] = b;
+		}
+	}
+
+	/**
+	 * Reads a binary reply frame
+	 *
+	 * @return the frame payload
+	 * @throws IOException if the next reply is not a binary frame or reading fails
+	 */
+	public DamsonBinaryReply readFrame() throws IOException {
+		if (read() != FRAME_MARKER) {
+			throw new IOException("DAMSON reply is not a binary frame");
+		}
+		int id = readVarint();
+		int length = readVarint();
+		byte[] payload = new byte[length];
+		int copied = 0;
+		while (copied < length) {
+			if (!fBuffer.hasRemaining() && !fill()) {
+				throw new EOFException();
+			}
+			int n = Math.min(fBuffer.remaining(), length - copied);
+			fBuffer.get(payload, copied, n);
+			copied += n;
+		}
+		return new DamsonBinaryReply(id, payload, length);
+	}
+
+	/**
+	 * Reads an unsigned varint of a frame header
+	 */
+	private int readVarint() throws IOException {
+		int value = 0;
+		for (int shift = 0; shift <= 28; shift += 7) {
+			int b = read();
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed DAMSON reply frame");
+	}
+}
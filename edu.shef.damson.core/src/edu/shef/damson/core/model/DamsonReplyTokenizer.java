@@ -0,0 +1,245 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.model;
+
+/**
+ * Cursor over a text reply from the DAMSON debugger. Replies are records separated by 
+ * <code>#</code>, each record being fields separated by <code>|</code>. Fields are read in 
+ * order directly from the reply: integers are parsed in place and no intermediate arrays 
+ * or strings are created (other than for fields read as strings).
+ * <p>
+ * The cursor is always at the start of a field or at the end of a record. A tokenizer 
+ * may be reused for another reply (see {@link #reset(String)}).
+ * </p>
+ */
+public class DamsonReplyTokenizer {
+
+	/**
+	 * Separator between the fields of a record
+	 */
+	public static final char FIELD_SEPARATOR = '|';
+
+	/**
+	 * Separator between records
+	 */
+	public static final char RECORD_SEPARATOR = '#';
+
+	private String fReply;
+	private int fPosition;
+	private int fLength;
+
+	/**
+	 * Constructs a tokenizer over the given reply
+	 *
+	 * @param reply reply or <code>null</code> (no records)
+	 */
+	public DamsonReplyTokenizer(String reply) {
+		reset(reply);
+	}
+
+	/**
+	 * Moves the cursor to the start of the given reply
+	 *
+	 * @param reply reply or <code>null</code> (no records)
+	 */
+	public void reset(String reply) {
+		fReply = reply;
+		fPosition = 0;
+		fLength = reply == null ? 0 : reply.length();
+	}
+
+	/**
+	 * Returns whether the cursor is at the end of the reply
+	 *
+	 * @return whether all records have been read
+	 */
+	public boolean atEnd() {
+		return fPosition >= fLength;
+	}
+
+	/**
+	 * Returns whether the cursor is at the end of the current record
+	 *
+	 * @return whether all fields of the current record have been read
+	 */
+	public boolean atEndOfRecord() {
+		return fPosition >= fLength || fReply.charAt(fPosition) == RECORD_SEPARATOR;
+	}
+
+	/**
+	 * Skips any remaining fields of the current record and moves to the start of the next record
+	 *
+	 * @return whether there is a next record
+	 */
+	public boolean nextRecord() {
+		while (fPosition < fLength && fReply.charAt(fPosition) != RECORD_SEPARATOR) {
+			fPosition++;
+		}
+		if (fPosition >= fLength) {
+			return false;
+		}
+		fPosition++;
+		return true;
+	}
+
+	/**
+	 * Counts the records from the cursor to the end of the reply (including the current record)
+	 *
+	 * @return number of records
+	 */
+	public int countRecords() {
+		if (fPosition >= fLength) {
+			return 0;
+		}
+		int count = 1;
+		for (int i = fPosition; i < fLength; i++) {
+			if (fReply.charAt(i) == RECORD_SEPARATOR) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Counts the fields from the cursor to the end of the current record
+	 *
+	 * @return number of fields
+	 */
+	public int countFields() {
+		if (atEndOfRecord()) {
+			return 0;
+		}
+		int count = 1;
+		for (int i = fPosition; i < fLength; i++) {
+			char c = fReply.charAt(i);
+			if (c == RECORD_SEPARATOR) {
+				break;
+			}
+			if (c == FIELD_SEPARATOR) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the end of the field at the cursor
+	 */
+	private int fieldEnd() {
+		int end = fPosition;
+		while (end < fLength) {
+			char c = fReply.charAt(end);
+			if (c == FIELD_SEPARATOR || c == RECORD_SEPARATOR) {
+				break;
+			}
+			end++;
+		}
+		return end;
+	}
+
+	/**
+	 * Moves the cursor past the field ending at the given position
+	 */
+	private void endField(int end) {
+		fPosition = end;
+		if (fPosition < fLength && fReply.charAt(fPosition) == FIELD_SEPARATOR) {
+			fPosition++;
+		}
+	}
+
+	/**
+	 * Reads the field at the cursor as a string
+	 *
+	 * @return field
+	 */
+	public String nextString() {
+		int end = fieldEnd();
+		String field = fReply.substring(fPosition, end);
+		endField(end);
+		return field;
+	}
+
+	/**
+	 * Reads the field at the cursor as a decimal integer
+	 *
+	 * @return field value
+	 * @throws NumberFormatException if the field is not an integer
+	 */
+	public int nextInt() {
+		int end = fieldEnd();
+		int value = parseInt(fReply, fPosition, end);
+		endField(end);
+		return value;
+	}
+
+	/**
+	 * Skips the field at the cursor
+	 */
+	public void skipField() {
+		endField(fieldEnd());
+	}
+
+	/**
+	 * Returns whether the field at the cursor starts with the given character
+	 *
+	 * @param c character
+	 * @return whether the field starts with the character
+	 */
+	public boolean fieldStartsWith(char c) {
+		return !atEndOfRecord() && fReply.charAt(fPosition) == c;
+	}
+
+	/**
+	 * Parses a decimal integer from part of a string without creating a substring
+	 *
+	 * @param s string
+	 * @param start index of the first character
+	 * @param end index after the last character
+	 * @return value
+	 * @throws NumberFormatException if the characters are not an integer
+	 */
+	public static int parseInt(String s, int start, int end) {
+		if (start >= end) {
+			throw new NumberFormatException("Empty field");
+		}
+		boolean negative = false;
+		int i = start;
+		char first = s.charAt(i);
+		if (first == '-' || first == '+') {
+			negative = first == '-';
+			if (++i == end) {
+				throw new NumberFormatException(s.substring(start, end));
+			}
+		}
+		//accumulate negatively so that Integer.MIN_VALUE can be parsed
+		int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+		int value = 0;
+		for (; i < end; i++) {
+			int digit = s.charAt(i) - '0';
+			if (digit < 0 || digit > 9 || value < limit / 10) {
+				throw new NumberFormatException(s.substring(start, end));
+			}
+			value *= 10;
+			if (value < limit + digit) {
+				throw new NumberFormatException(s.substring(start, end));
+			}
+			value -= digit;
+		}
+		return negative ? value : -value;
+	}
+}
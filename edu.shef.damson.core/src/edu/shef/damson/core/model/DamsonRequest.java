@@ -0,0 +1,327 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.model;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.debug.core.DebugException;
+
+import edu.shef.damson.core.DebugCorePlugin;
+
+/**
+ * A request sent to the DAMSON debugger whose reply may arrive at a later time.
+ *
+ * Each request carries a correlation ID which is unique within a debug target. When the
+ * request channel is pipelined the ID is sent with the request and the debugger echoes it
+ * in the reply, allowing many requests to be outstanding at once. The reply is collected
+ * through the <code>Future</code> interface or by {@link #getReply()}.
+ */
+public class DamsonRequest implements Future<String> {
+
+	/**
+	 * Interval at which a request waiting with a progress monitor checks for cancellation
+	 */
+	private static final long CANCEL_POLL_INTERVAL = 100;
+
+	private DamsonDebugTarget fTarget;
+	private int fId;
+	private String fRequest;
+	private String fReply;
+	private DamsonBinaryReply fBinaryReply;
+	private Throwable fError;
+	private boolean fDone = false;
+	private boolean fCancelled = false;
+	private long fSendTime;
+	private int fBytesOut;
+
+	/**
+	 * Constructs a new outstanding request
+	 *
+	 * @param target debug target sending the request
+	 * @param id correlation ID of the request
+	 * @param request command sent to the DAMSON debugger
+	 */
+	DamsonRequest(DamsonDebugTarget target, int id, String request) {
+		fTarget = target;
+		fId = id;
+		fRequest = request;
+	}
+
+	/**
+	 * Gets the correlation ID of this request
+	 *
+	 * @return correlation ID
+	 */
+	public int getId() {
+		return fId;
+	}
+
+	/**
+	 * Gets the command sent to the DAMSON debugger
+	 *
+	 * @return request command
+	 */
+	public String getRequest() {
+		return fRequest;
+	}
+
+	/**
+	 * Notification that this request is being written to the DAMSON debugger. Starts 
+	 * the latency measurement of the request (see {@link DamsonRequestStatistics}).
+	 *
+	 * @param bytesOut number of bytes written for the request
+	 */
+	synchronized void sent(int bytesOut) {
+		fSendTime = System.nanoTime();
+		fBytesOut = bytesOut;
+	}
+
+	/**
+	 * Records the latency and size of this request in the statistics of its target now 
+	 * that it is done. Requests which fail, are cancelled or time out are recorded as failures 
+	 * with the time waited.
+	 *
+	 * @param bytesIn number of bytes received for the reply
+	 * @param failed whether the request failed
+	 */
+	private void record(int bytesIn, boolean failed) {
+		if (fSendTime != 0)
+			fTarget.getRequestStatistics().record(fRequest, System.nanoTime() - fSendTime, fBytesOut, bytesIn, failed);
+	}
+
+	/**
+	 * Notification that the reply for this request has arrived
+	 *
+	 * @param reply the reply
+	 */
+	synchronized void complete(String reply) {
+		if (!fDone) {
+			record(reply == null ? 0 : reply.length() + 1, reply == null);
+			fReply = reply;
+			fDone = true;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Notification that the binary reply for this request has arrived
+	 *
+	 * @param reply the binary reply
+	 */
+	synchronized void complete(DamsonBinaryReply reply) {
+		if (!fDone) {
+			record(reply.getLength(), false);
+			fBinaryReply = reply;
+			fDone = true;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Notification that no reply will arrive for this request
+	 *
+	 * @param error the cause of the failure
+	 */
+	synchronized void fail(Throwable error) {
+		if (!fDone) {
+			record(0, true);
+			fError = error;
+			fDone = true;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Waits for and returns the reply to this request.
+	 *
+	 * @return reply
+	 * @throws DebugException if the request failed or was cancelled
+	 */
+	public String getReply() throws DebugException {
+		try {
+			return get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw newDebugException("Request interrupted: " + fRequest, e);
+		} catch (ExecutionException e) {
+			throw newDebugException("Request failed: " + fRequest, e.getCause());
+		} catch (CancellationException e) {
+			throw newDebugException("Request cancelled: " + fRequest, e);
+		}
+	}
+
+	/**
+	 * Waits for and returns the reply to this request, giving up if the reply does not 
+	 * arrive in time or the monitor is cancelled. The request is cancelled when given up 
+	 * (a late reply is discarded).
+	 *
+	 * @param timeout time to wait in milliseconds
+	 * @param monitor progress monitor checked for cancellation or <code>null</code>
+	 * @return reply
+	 * @throws DebugException if the request failed, timed out or was cancelled
+	 */
+	public String getReply(long timeout, IProgressMonitor monitor) throws DebugException {
+		long deadline = System.currentTimeMillis() + timeout;
+		try {
+			while (true) {
+				long remaining = deadline - System.currentTimeMillis();
+				try {
+					return get(Math.min(remaining, CANCEL_POLL_INTERVAL), TimeUnit.MILLISECONDS);
+				} catch (TimeoutException e) {
+					if (monitor != null && monitor.isCanceled()) {
+						cancel(true);
+						throw newDebugException("Request cancelled: " + fRequest, null);
+					}
+					if (remaining <= CANCEL_POLL_INTERVAL) {
+						cancel(true);
+						throw newDebugException("Request timed out: " + fRequest, e);
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw newDebugException("Request interrupted: " + fRequest, e);
+		} catch (ExecutionException e) {
+			throw newDebugException("Request failed: " + fRequest, e.getCause());
+		} catch (CancellationException e) {
+			throw newDebugException("Request cancelled: " + fRequest, e);
+		}
+	}
+
+	/**
+	 * Waits for and returns the binary reply to this request.
+	 *
+	 * @return binary reply
+	 * @throws DebugException if the request failed, was cancelled or the DAMSON debugger 
+	 * replied with text (i.e. an error)
+	 */
+	public DamsonBinaryReply getBinaryReply() throws DebugException {
+		return getBinaryReply(getReply());
+	}
+
+	/**
+	 * Waits for and returns the binary reply to this request, giving up if the reply does 
+	 * not arrive in time or the monitor is cancelled (see {@link #getReply(long, IProgressMonitor)}).
+	 *
+	 * @param timeout time to wait in milliseconds
+	 * @param monitor progress monitor checked for cancellation or <code>null</code>
+	 * @return binary reply
+	 * @throws DebugException if the request failed, timed out or was cancelled or the DAMSON 
+	 * debugger replied with text (i.e. an error)
+	 */
+	public DamsonBinaryReply getBinaryReply(long timeout, IProgressMonitor monitor) throws DebugException {
+		return getBinaryReply(getReply(timeout, monitor));
+	}
+
+	/**
+	 * Returns the binary reply of a request which has completed with the given text reply
+	 */
+	private DamsonBinaryReply getBinaryReply(String reply) throws DebugException {
+		synchronized (this) {
+			if (fBinaryReply == null) {
+				throw newDebugException("Request failed: " + fRequest + " (" + reply + ")", null);
+			}
+			return fBinaryReply;
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.Future#cancel(boolean)
+	 */
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		synchronized (this) {
+			if (fDone) {
+				return false;
+			}
+			record(0, true);
+			fCancelled = true;
+			fDone = true;
+			notifyAll();
+		}
+		//outside the lock as the target completes requests while holding its own
+		fTarget.requestCancelled(this);
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.Future#isCancelled()
+	 */
+	public synchronized boolean isCancelled() {
+		return fCancelled;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.Future#isDone()
+	 */
+	public synchronized boolean isDone() {
+		return fDone;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.Future#get()
+	 */
+	public synchronized String get() throws InterruptedException, ExecutionException {
+		while (!fDone) {
+			wait();
+		}
+		return result();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.concurrent.Future#get(long, java.util.concurrent.TimeUnit)
+	 */
+	public synchronized String get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		long remaining = unit.toMillis(timeout);
+		long deadline = System.currentTimeMillis() + remaining;
+		while (!fDone) {
+			if (remaining <= 0) {
+				throw new TimeoutException(fRequest);
+			}
+			wait(remaining);
+			remaining = deadline - System.currentTimeMillis();
+		}
+		return result();
+	}
+
+	/**
+	 * Returns the reply of a completed request
+	 */
+	private String result() throws ExecutionException {
+		if (fCancelled) {
+			throw new CancellationException(fRequest);
+		}
+		if (fError != null) {
+			throw new ExecutionException(fError);
+		}
+		return fReply;
+	}
+
+	/**
+	 * Creates a debug exception for a failed request
+	 */
+	private DebugException newDebugException(String message, Throwable e) {
+		return new DebugException(new Status(IStatus.ERROR, DebugCorePlugin.PLUGIN_ID, DebugException.TARGET_REQUEST_FAILED, message, e));
+	}
+}
@@ -0,0 +1,162 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Statistics of the requests sent to the DAMSON debugger, by command (see 
+ * {@link DamsonCommandStatistics}). Statistics are kept both in total and for the 
+ * current suspend (the requests since the most recent suspend event), so that the 
+ * cost of refreshing the debug model after a suspend or step can be seen.
+ * <p>
+ * Each debug target keeps the statistics of its own requests (see 
+ * {@link DamsonDebugTarget#getRequestStatistics()}) so that the suspends of one 
+ * target do not clear the figures of another.
+ * </p>
+ */
+public class DamsonRequestStatistics {
+
+	private Map<String, DamsonCommandStatistics> fTotal = new TreeMap<String, DamsonCommandStatistics>();
+	private Map<String, DamsonCommandStatistics> fSuspend = new TreeMap<String, DamsonCommandStatistics>();
+	private long fSuspendCount = 0;
+	private boolean fEnabled = true;
+
+	/**
+	 * Records a completed request
+	 *
+	 * @param request the request command
+	 * @param time latency in nanoseconds
+	 * @param bytesOut bytes sent
+	 * @param bytesIn bytes received (0 if the request failed)
+	 * @param failed whether the request failed
+	 */
+	public synchronized void record(String request, long time, int bytesOut, int bytesIn, boolean failed) {
+		if (!fEnabled)
+			return;
+		String command = getCommand(request);
+		getStatistics(fTotal, command).record(time, bytesOut, bytesIn, failed);
+		getStatistics(fSuspend, command).record(time, bytesOut, bytesIn, failed);
+	}
+
+	/**
+	 * Starts the statistics of a new suspend
+	 */
+	public synchronized void startSuspend() {
+		fSuspendCount++;
+		fSuspend.clear();
+	}
+
+	/**
+	 * Discards all statistics
+	 */
+	public synchronized void reset() {
+		fTotal.clear();
+		fSuspend.clear();
+		fSuspendCount = 0;
+	}
+
+	/**
+	 * Enables or disables recording (enabled by default)
+	 *
+	 * @param enabled whether requests are recorded
+	 */
+	public synchronized void setEnabled(boolean enabled) {
+		fEnabled = enabled;
+	}
+
+	/**
+	 * Returns whether requests are recorded
+	 *
+	 * @return whether enabled
+	 */
+	public synchronized boolean isEnabled() {
+		return fEnabled;
+	}
+
+	/**
+	 * Gets the number of suspends since the statistics were reset
+	 *
+	 * @return suspend count
+	 */
+	public synchronized long getSuspendCount() {
+		return fSuspendCount;
+	}
+
+	/**
+	 * Gets the total statistics of each command
+	 *
+	 * @return copies of the statistics, ordered by command
+	 */
+	public synchronized DamsonCommandStatistics[] getCommandStatistics() {
+		return copy(fTotal);
+	}
+
+	/**
+	 * Gets the statistics of each command since the most recent suspend
+	 *
+	 * @return copies of the statistics, ordered by command
+	 */
+	public synchronized DamsonCommandStatistics[] getSuspendStatistics() {
+		return copy(fSuspend);
+	}
+
+	/**
+	 * Gets the statistics of a command, creating them if required
+	 *
+	 * @param statistics statistics by command
+	 * @param command command name
+	 * @return the command statistics
+	 */
+	private DamsonCommandStatistics getStatistics(Map<String, DamsonCommandStatistics> statistics, String command) {
+		DamsonCommandStatistics command_statistics = statistics.get(command);
+		if (command_statistics == null) {
+			command_statistics = new DamsonCommandStatistics(command);
+			statistics.put(command, command_statistics);
+		}
+		return command_statistics;
+	}
+
+	/**
+	 * Copies statistics by command
+	 *
+	 * @param statistics statistics by command
+	 * @return copies ordered by command
+	 */
+	private DamsonCommandStatistics[] copy(Map<String, DamsonCommandStatistics> statistics) {
+		List<DamsonCommandStatistics> copies = new ArrayList<DamsonCommandStatistics>(statistics.size());
+		for (DamsonCommandStatistics command_statistics : statistics.values()) {
+			copies.add(command_statistics.copy());
+		}
+		return copies.toArray(new DamsonCommandStatistics[copies.size()]);
+	}
+
+	/**
+	 * Gets the command name of a request (the first word)
+	 *
+	 * @param request request
+	 * @return command name
+	 */
+	private static String getCommand(String request) {
+		int space = request.indexOf(' ');
+		return space < 0 ? request : request.substring(0, space);
+	}
+}
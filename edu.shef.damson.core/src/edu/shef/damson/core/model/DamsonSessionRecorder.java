@@ -0,0 +1,218 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Records the traffic between a debug target and the DAMSON debugger (every request, 
+ * reply and event with the time it was sent or received) to a compressed file. A recording 
+ * can be replayed without DAMSON by the replay engine (see 
+ * {@link edu.shef.damson.core.engine.ReplayDamsonEngine}).
+ * <p>
+ * The file is GZIP compressed and starts with the {@link #MAGIC} string and the format 
+ * {@link #VERSION}. It is followed by records until the end of the file, each a record type 
+ * byte and the time in microseconds since recording started:
+ * <ul>
+ * <li>{@link #RECORD_REQUEST} - request ID and request text</li>
+ * <li>{@link #RECORD_REPLY} - ID of the request answered and reply text</li>
+ * <li>{@link #RECORD_BINARY_REPLY} - ID of the request answered and frame payload</li>
+ * <li>{@link #RECORD_EVENT} - event text</li>
+ * </ul>
+ * Strings and payloads are written as a length followed by the (UTF-8) bytes.
+ * </p>
+ * Recording stops at the first write error so that a full disk does not affect debugging.
+ */
+public class DamsonSessionRecorder {
+
+	/**
+	 * String identifying a recording file
+	 */
+	public static final String MAGIC = "DAMSON session";
+	/**
+	 * Recording file format version
+	 */
+	public static final int VERSION = 1;
+	/**
+	 * Record of a request sent to the DAMSON debugger
+	 */
+	public static final int RECORD_REQUEST = 1;
+	/**
+	 * Record of a text reply
+	 */
+	public static final int RECORD_REPLY = 2;
+	/**
+	 * Record of a binary reply frame
+	 */
+	public static final int RECORD_BINARY_REPLY = 3;
+	/**
+	 * Record of an event
+	 */
+	public static final int RECORD_EVENT = 4;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private DataOutputStream fOut;
+	private long fStartTime;
+
+	/**
+	 * Creates (or overwrites) a recording file
+	 *
+	 * @param file recording file
+	 * @throws IOException if the file can not be created
+	 */
+	public DamsonSessionRecorder(File file) throws IOException {
+		fOut = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(file)), 8192));
+		fOut.writeUTF(MAGIC);
+		fOut.writeInt(VERSION);
+		fStartTime = System.nanoTime();
+	}
+
+	/**
+	 * Records a request sent to the DAMSON debugger
+	 *
+	 * @param id request correlation ID
+	 * @param request request text
+	 */
+	public synchronized void recordRequest(int id, String request) {
+		if (startRecord(RECORD_REQUEST)) {
+			try {
+				fOut.writeInt(id);
+				writeString(request);
+			} catch (IOException e) {
+				stop();
+			}
+		}
+	}
+
+	/**
+	 * Records a text reply
+	 *
+	 * @param id correlation ID of the request answered
+	 * @param reply reply text (without correlation ID)
+	 */
+	public synchronized void recordReply(int id, String reply) {
+		if (reply != null && startRecord(RECORD_REPLY)) {
+			try {
+				fOut.writeInt(id);
+				writeString(reply);
+			} catch (IOException e) {
+				stop();
+			}
+		}
+	}
+
+	/**
+	 * Records a binary reply frame
+	 *
+	 * @param id correlation ID of the request answered
+	 * @param reply binary reply (which has not yet been decoded)
+	 */
+	public synchronized void recordReply(int id, DamsonBinaryReply reply) {
+		if (startRecord(RECORD_BINARY_REPLY)) {
+			try {
+				fOut.writeInt(id);
+				fOut.writeInt(reply.getLength());
+				fOut.write(reply.getData(), 0, reply.getLength());
+			} catch (IOException e) {
+				stop();
+			}
+		}
+	}
+
+	/**
+	 * Records an event received from the DAMSON debugger
+	 *
+	 * @param event event text
+	 */
+	public synchronized void recordEvent(String event) {
+		if (startRecord(RECORD_EVENT)) {
+			try {
+				writeString(event);
+			} catch (IOException e) {
+				stop();
+			}
+		}
+	}
+
+	/**
+	 * Completes the recording file. Further records are ignored.
+	 */
+	public synchronized void close() {
+		if (fOut == null)
+			return;
+		try {
+			fOut.close();
+		} catch (IOException e) {
+		}
+		fOut = null;
+	}
+
+	/**
+	 * Returns whether records are still being written
+	 *
+	 * @return whether recording
+	 */
+	public synchronized boolean isRecording() {
+		return fOut != null;
+	}
+
+	/**
+	 * Writes the record type and time of a new record
+	 *
+	 * @param type record type
+	 * @return whether the record should be written
+	 */
+	private boolean startRecord(int type) {
+		if (fOut == null)
+			return false;
+		try {
+			fOut.writeByte(type);
+			fOut.writeLong((System.nanoTime() - fStartTime) / 1000);
+			return true;
+		} catch (IOException e) {
+			stop();
+			return false;
+		}
+	}
+
+	/**
+	 * Writes a length prefixed UTF-8 string
+	 *
+	 * @param value string
+	 * @throws IOException if writing fails
+	 */
+	private void writeString(String value) throws IOException {
+		byte[] bytes = value.getBytes(UTF8);
+		fOut.writeInt(bytes.length);
+		fOut.write(bytes);
+	}
+
+	/**
+	 * Stops recording after a write error
+	 */
+	private void stop() {
+		close();
+	}
+}
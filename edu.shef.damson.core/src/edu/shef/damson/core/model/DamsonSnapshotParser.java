@@ -0,0 +1,270 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.Path;
+import org.eclipse.debug.core.model.IVariable;
+
+/**
+ * Builds the thread, stack frame and variable tree of a DAMSON debug target from the reply
+ * to a <code>snapshot</code> request. The whole reply is read before the tree is built, so 
+ * an invalid reply leaves the threads of the target as they were.
+ * <p>
+ * The snapshot is a single string of records separated by <code>#</code>. Each record is a
+ * list of fields separated by <code>|</code> where the first field gives the record type:
+ * <ul>
+ * <li><code>S|filename|node</code> - the current source file and node (first record)</li>
+ * <li><code>T|handle|state</code> - a thread (process handle and thread state)</li>
+ * <li><code>F|line|function|name|value|...|name|value</code> - a stack frame of the preceding
+ * 		thread with its variable names and values (global variable names are prefixed with
+ * 		<code>&amp;</code>). Frames are listed from the top of the stack.</li>
+ * </ul>
+ * </p>
+ * Binary snapshots (see {@link DamsonDebugTarget#isBinary()}) hold the same fields: the source file 
+ * and node, the thread count and for each thread its handle, state and frame count, and for each 
+ * frame its line, function, variable count and variable names and values.
+ * <p>
+ * Threads, frames and variables of the previous suspend which are still present are retained.
+ */
+public class DamsonSnapshotParser {
+
+	private DamsonDebugTarget fTarget;
+	private Map<Integer, DamsonThread> fPrevious;
+	private String fSourceFile;
+	private int fCurrentNode;
+	private List<DamsonThread> fThreads = new ArrayList<DamsonThread>();
+
+	/**
+	 * The fields of a thread in the snapshot
+	 */
+	private static class ThreadRecord {
+		int fHandle;
+		int fStatus;
+		List<FrameRecord> fFrames = new ArrayList<FrameRecord>();
+
+		ThreadRecord(int handle, int status) {
+			fHandle = handle;
+			fStatus = status;
+		}
+	}
+
+	/**
+	 * The fields of a stack frame in the snapshot
+	 */
+	private static class FrameRecord {
+		int fLine;
+		String fFunction;
+		String[] fNames;
+		String[] fValues;
+
+		FrameRecord(int line, String function, int numVars) {
+			fLine = line;
+			fFunction = function;
+			fNames = new String[numVars];
+			fValues = new String[numVars];
+		}
+	}
+
+	/**
+	 * Constructs a parser for the given target
+	 *
+	 * @param target debug target owning the parsed threads
+	 */
+	public DamsonSnapshotParser(DamsonDebugTarget target) {
+		fTarget = target;
+		fPrevious = target.getThreadsByHandle();
+	}
+
+	/**
+	 * Parses the snapshot reply. The threads of the target are only updated once the whole 
+	 * reply has been read and found valid.
+	 *
+	 * @param snapshot reply to the snapshot request
+	 * @return whether the reply was a valid snapshot
+	 */
+	public boolean parse(String snapshot) {
+		if (snapshot == null || !snapshot.startsWith("S|")) {
+			return false;
+		}
+		String sourceFile = null;
+		int currentNode = 0;
+		List<ThreadRecord> threads = new ArrayList<ThreadRecord>();
+		ThreadRecord thread = null;
+		try {
+			DamsonReplyTokenizer records = new DamsonReplyTokenizer(snapshot);
+			do {
+				int numFields = records.countFields();
+				if (records.fieldStartsWith('S') && numFields == 3) {
+					records.skipField();
+					sourceFile = new Path(records.nextString()).lastSegment();
+					currentNode = records.nextInt();
+				} else if (records.fieldStartsWith('T') && numFields == 3) {
+					records.skipField();
+					int handle = records.nextInt();
+					thread = new ThreadRecord(handle, records.nextInt());
+					threads.add(thread);
+				} else if (records.fieldStartsWith('F') && numFields >= 3 && (numFields - 3) % 2 == 0 && thread != null) {
+					//a name without a value means the reply is out of step with the request
+					records.skipField();
+					int line = records.nextInt();
+					FrameRecord frame = new FrameRecord(line, records.nextString(), (numFields - 3) / 2);
+					for (int j = 0; j < frame.fNames.length; j++) {
+						frame.fNames[j] = records.nextString();
+						frame.fValues[j] = records.nextString();
+					}
+					thread.fFrames.add(frame);
+				} else {
+					return false;
+				}
+			} while (records.nextRecord());
+		} catch (NumberFormatException e) {
+			return false;
+		}
+		apply(sourceFile, currentNode, threads);
+		return true;
+	}
+
+	/**
+	 * Parses a binary snapshot reply. The threads of the target are only updated once the 
+	 * whole reply has been read.
+	 *
+	 * @param snapshot binary reply to the snapshot request
+	 * @return whether the reply was a valid snapshot
+	 */
+	public boolean parse(DamsonBinaryReply snapshot) {
+		String sourceFile;
+		int currentNode;
+		List<ThreadRecord> threads;
+		try {
+			sourceFile = new Path(snapshot.readString()).lastSegment();
+			currentNode = snapshot.readInt();
+			int numThreads = snapshot.readVarint();
+			threads = new ArrayList<ThreadRecord>();
+			for (int i = 0; i < numThreads; i++) {
+				int handle = snapshot.readInt();
+				ThreadRecord thread = new ThreadRecord(handle, snapshot.readInt());
+				int numFrames = snapshot.readVarint();
+				for (int j = 0; j < numFrames; j++) {
+					int line = snapshot.readInt();
+					FrameRecord frame = new FrameRecord(line, snapshot.readString(), snapshot.readVarint());
+					for (int k = 0; k < frame.fNames.length; k++) {
+						frame.fNames[k] = snapshot.readString();
+						frame.fValues[k] = snapshot.readString();
+					}
+					thread.fFrames.add(frame);
+				}
+				threads.add(thread);
+			}
+		} catch (IOException e) {
+			return false;
+		}
+		apply(sourceFile, currentNode, threads);
+		return true;
+	}
+
+	/**
+	 * Builds the threads, stack frames and variables of a valid snapshot, retaining those 
+	 * of the previous suspend
+	 *
+	 * @param sourceFile current source file name
+	 * @param currentNode current node number
+	 * @param threads thread records in the order of the snapshot
+	 */
+	private void apply(String sourceFile, int currentNode, List<ThreadRecord> threads) {
+		fSourceFile = sourceFile;
+		fCurrentNode = currentNode;
+		for (int i = 0; i < threads.size(); i++) {
+			ThreadRecord record = threads.get(i);
+			DamsonThread thread = fTarget.retainThread(fPrevious, record.fHandle, record.fStatus);
+			thread.setStackFrames(buildFrames(thread, record.fFrames));
+			fThreads.add(thread);
+		}
+	}
+
+	/**
+	 * Builds the stack frames of a thread from its frame records
+	 *
+	 * @param thread thread
+	 * @param records frame records from the top of the stack
+	 * @return stack frames
+	 */
+	private DamsonStackFrame[] buildFrames(DamsonThread thread, List<FrameRecord> records) {
+		int numFrames = records.size();
+		DamsonStackFrame[] frames = new DamsonStackFrame[numFrames];
+		for (int i = 0; i < numFrames; i++) {
+			FrameRecord record = records.get(i);
+			frames[i] = thread.retainFrame(record.fLine, record.fFunction, numFrames-i-1, i);
+			int numVars = record.fNames.length;
+			IVariable[] vars = new IVariable[numVars];
+			for (int j = 0; j < numVars; j++) {
+				String name = record.fNames[j];
+				boolean global = false;
+				if (name.startsWith("&"))
+				{
+					global = true;
+					name = name.substring(1);
+				}
+				DamsonVariable var;
+				if (global) {
+					//globals are shared by all frames so only set the value once
+					var = fTarget.getGlobalVariables().getVariable(name);
+					if (!var.isValueAvailable())
+						var.setValueData(record.fValues[j]);
+				} else if ((var = frames[i].findVariable(name, false)) != null)
+					var.setValueData(record.fValues[j]);
+				else
+					var = new DamsonVariable(frames[i], name, false, record.fValues[j]);
+				vars[j] = var;
+			}
+			frames[i].setVariables(vars);
+		}
+		return frames;
+	}
+
+	/**
+	 * Gets the current source file name
+	 *
+	 * @return source file name
+	 */
+	public String getSourceFile() {
+		return fSourceFile;
+	}
+
+	/**
+	 * Gets the current node number
+	 *
+	 * @return current node number
+	 */
+	public int getCurrentNode() {
+		return fCurrentNode;
+	}
+
+	/**
+	 * Gets the parsed threads
+	 *
+	 * @return threads
+	 */
+	public DamsonThread[] getThreads() {
+		return fThreads.toArray(new DamsonThread[fThreads.size()]);
+	}
+}
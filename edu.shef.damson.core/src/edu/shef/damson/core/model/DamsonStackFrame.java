@@ -17,6 +17,10 @@
  ******************************************************************************************/
 package edu.shef.damson.core.model;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.debug.core.DebugEvent;
 import org.eclipse.debug.core.DebugException;
 import org.eclipse.debug.core.model.IRegisterGroup;
 import org.eclipse.debug.core.model.IStackFrame;
@@ -59,29 +63,161 @@ public class DamsonStackFrame extends DamsonDebugElement implements IStackFrame
 		init(frame_format);
 	}
 	
+	/**
+	 * Constructs a stack frame in the given thread whose variables are set
+	 * separately (see {@link #setVariables(IVariable[])}).
+	 * 
+	 * @param thread
+	 * @param line_number current source line of the frame
+	 * @param name function name
+	 * @param id a unique identifier (0 is the bottom of the stack)
+	 * @param stack_frame the stack frame id in DAMSON (0 top of the stack)
+	 */
+	public DamsonStackFrame(DamsonThread thread, int line_number, String name, int id, int stack_frame) {
+		super(thread.getDamsonDebugTarget());
+		uniqueID = id;
+		fThread = thread;
+		fStackFrame = stack_frame;
+		fLineNumber = line_number;
+		fName = name;
+		fVariables = new IVariable[0];
+	}
+	
 	/**
 	 * Initialises this frame based on its data
 	 * 
 	 * @param frame_format
 	 */
 	private void init(String frame_format) {
-		String[] strings = frame_format.split("\\|");
-		String pc = strings[0];
-		fLineNumber = Integer.parseInt(pc);
-		fName = strings[1];
-		int numVars = strings.length - 2;
-		IVariable[] vars = new IVariable[numVars];
-		for (int i = 0; i < numVars; i++) {
-			String name = strings[i+2];
-			boolean global = false;
-			if (name.startsWith("&"))
-			{
-				global = true;
-				name = name.substring(1);
-			}
-			vars[i] = new DamsonVariable(this, name, global);
+		DamsonReplyTokenizer fields = new DamsonReplyTokenizer(frame_format);
+		fLineNumber = fields.nextInt();
+		fName = fields.nextString();
+		initVariables(fields);
+	}
+	
+	/**
+	 * Sets the variables of this frame from the remaining fields (the variable names) of the 
+	 * frame record at the cursor. Variables of the same name which already belong to this 
+	 * frame are retained with their values invalidated so that they are requested again when 
+	 * displayed. Global variables are taken from the target's global variable store and are 
+	 * left out of frames of threads on nodes other than the current node (see {@link #hasGlobals()}).
+	 * 
+	 * @param fields frame data positioned at the first variable name
+	 */
+	void initVariables(DamsonReplyTokenizer fields) {
+		int count = fields.countFields();
+		List<IVariable> vars = new ArrayList<IVariable>(count);
+		for (int i = 0; i < count; i++) {
+			DamsonVariable var = retainVariable(fields.nextString());
+			if (var != null)
+				vars.add(var);
 		}
-		fVariables = vars;
+		fVariables = vars.toArray(new IVariable[vars.size()]);
+	}
+	
+	/**
+	 * Sets the variables of this frame from the given variable names (see 
+	 * {@link #initVariables(DamsonReplyTokenizer)}).
+	 * 
+	 * @param names variable names
+	 */
+	void initVariables(String[] names) {
+		List<IVariable> vars = new ArrayList<IVariable>(names.length);
+		for (int i = 0; i < names.length; i++) {
+			DamsonVariable var = retainVariable(names[i]);
+			if (var != null)
+				vars.add(var);
+		}
+		fVariables = vars.toArray(new IVariable[vars.size()]);
+	}
+	
+	/**
+	 * Returns whether this frame shows global variables. The DAMSON debugger reads globals 
+	 * from the current node only, so the frames of threads on other nodes do not show them.
+	 * 
+	 * @return whether the thread of this frame is on the current node
+	 */
+	private boolean hasGlobals() {
+		DamsonNode node = fThread.getNode();
+		return node == null || node.getNumber() == getDamsonDebugTarget().getCurrentNode();
+	}
+	
+	/**
+	 * Gets the variable of this frame for a variable name of the frame data
+	 * 
+	 * @param name variable name (prefixed with <code>&amp;</code> if global)
+	 * @return the retained or new variable or <code>null</code> if the variable is a global 
+	 * which this frame does not show
+	 */
+	private DamsonVariable retainVariable(String name) {
+		if (name.startsWith("&")) {	//globals are shared by all frames
+			if (!hasGlobals())
+				return null;
+			return getDamsonDebugTarget().getGlobalVariables().getVariable(name.substring(1));
+		}
+		DamsonVariable var = findVariable(name, false);
+		if (var != null)
+			var.invalidate();
+		else
+			var = new DamsonVariable(this, name, false);
+		return var;
+	}
+	
+	/**
+	 * Updates the position of this frame from the frame data of a later suspend if the data 
+	 * describes the same function. Fires a change event if the current line has changed.
+	 * 
+	 * @param line_number current source line of the frame
+	 * @param name function name
+	 * @param stack_frame the stack frame id in DAMSON (0 top of the stack)
+	 * @return whether the frame was retained (i.e. the snapshot describes this function)
+	 */
+	boolean retain(int line_number, String name, int stack_frame) {
+		if (!name.equals(fName))
+			return false;
+		fStackFrame = stack_frame;
+		if (line_number != fLineNumber) {
+			fLineNumber = line_number;
+			fireChangeEvent(DebugEvent.STATE);
+		}
+		return true;
+	}
+	
+	/**
+	 * Finds a variable of this frame by name
+	 * 
+	 * @param name variable name
+	 * @param global whether the variable is global
+	 * @return the variable or <code>null</code> if this frame has no such variable
+	 */
+	DamsonVariable findVariable(String name, boolean global) {
+		IVariable[] vars = fVariables;
+		if (vars == null)
+			return null;
+		for (int i = 0; i < vars.length; i++) {
+			DamsonVariable var = (DamsonVariable)vars[i];
+			if (var.isGlobal() == global && var.getVaribleName().equals(name))
+				return var;
+		}
+		return null;
+	}
+	
+	/**
+	 * Builds the key identifying this frame in the target value cache
+	 * 
+	 * @return process handle, unique identifier and function name of this frame
+	 */
+	String getCacheKey() {
+		return fThread.getProcessHandle() + "/" + uniqueID + "/" + fName;
+	}
+	
+	/**
+	 * Returns this stack frame's unique identifier (0 is the bottom of the stack)
+	 * 
+	 * @return unique identifier
+	 */
+	int getUniqueID() {
+		return uniqueID;
 	}
 	
 	public void clearVariables()
@@ -89,6 +225,44 @@ public class DamsonStackFrame extends DamsonDebugElement implements IStackFrame
 		fVariables = new DamsonVariable[0];
 	}
 	
+	/**
+	 * Requests the values of all variables of this frame which have not yet been fetched.
+	 * The requests are sent together so that they share a round trip when the request 
+	 * channel is pipelined.
+	 */
+	public void prefetchVariables()
+	{
+		getDamsonDebugTarget().requestVariableValues(fVariables);
+	}
+	
+	/**
+	 * Requests the values of a range of the variables of this frame which have not yet 
+	 * been fetched, i.e. the rows of the variables view which are visible.
+	 * 
+	 * @param offset index of the first variable
+	 * @param length number of variables
+	 */
+	public void prefetchVariables(int offset, int length)
+	{
+		IVariable[] variables = fVariables;
+		int end = Math.min(offset + length, variables.length);
+		if (offset >= end)
+			return;
+		IVariable[] range = new IVariable[end - offset];
+		System.arraycopy(variables, offset, range, 0, range.length);
+		getDamsonDebugTarget().requestVariableValues(range);
+	}
+	
+	/**
+	 * Sets the variables of this frame
+	 * 
+	 * @param variables variables
+	 */
+	void setVariables(IVariable[] variables)
+	{
+		fVariables = variables;
+	}
+	
 	/* (non-Javadoc)
 	 * @see org.eclipse.debug.core.model.IStackFrame#getThread()
 	 */
@@ -17,6 +17,9 @@
  ******************************************************************************************/
 package edu.shef.damson.core.model;
 
+import java.io.IOException;
+
+import org.eclipse.debug.core.DebugEvent;
 import org.eclipse.debug.core.DebugException;
 import org.eclipse.debug.core.model.IBreakpoint;
 import org.eclipse.debug.core.model.IStackFrame;
@@ -31,6 +34,8 @@ public class DamsonThread extends DamsonDebugElement implements IThread {
 	private int fStatus;
 	private int fProcessHandle;
 	private DamsonStackFrame[] fFrames;
+	private DamsonNode fNode;
+	private boolean fStepping = false;
 	
 	/**
 	 * Constructs a new thread for the given target
@@ -53,20 +58,95 @@ public class DamsonThread extends DamsonDebugElement implements IThread {
 	
 	public void updateThreadData()
 	{
+		DamsonRequest stack = null;
 		if (isSuspended() && !isTerminated()) {
-			//update the stack frames
-			String framesData = null;
+			//request the stack frames
 			try {
-				framesData = sendRequest("stack "+fProcessHandle);
+				stack = sendRequestAsync("stack "+fProcessHandle);
 			} catch (DebugException e) {}
+		}
+		updateThreadData(stack);
+	}
+	
+	/**
+	 * Updates the stack frames of this thread from the reply to a stack request
+	 * 
+	 * @param stack stack request or <code>null</code> if the request failed
+	 */
+	void updateThreadData(DamsonRequest stack)
+	{
+		if (stack != null && getDamsonDebugTarget().isBinary()) {
+			try {
+				updateThreadData(stack.getBinaryReply(getDamsonDebugTarget().getRequestTimeout(), null));
+				return;
+			} catch (DebugException e) {
+			} catch (IOException e) {
+			}
+			updateThreadData((String)null);
+			return;
+		}
+		String framesData = null;
+		try {
+			if (stack != null)
+				framesData = stack.getReply(getDamsonDebugTarget().getRequestTimeout(), null);
+		} catch (DebugException e) {}
+		updateThreadData(framesData);
+	}
+	
+	/**
+	 * Updates the stack frames of this thread from a binary stack reply. The reply is a 
+	 * frame count followed by the frames from the top of the stack, each being its line, 
+	 * function name, variable count and variable names.
+	 * 
+	 * @param framesData binary stack reply
+	 * @throws IOException if the reply is malformed
+	 */
+	private void updateThreadData(DamsonBinaryReply framesData) throws IOException
+	{
+		if (!isSuspended() || isTerminated()) {
+			updateThreadData((String)null);
+			return;
+		}
+		int numFrames = framesData.readVarint();
+		DamsonStackFrame[] updated = new DamsonStackFrame[numFrames];
+		for (int i = 0; i < numFrames; i++) {
+			int line = framesData.readInt();
+			String name = framesData.readString();
+			String[] vars = new String[framesData.readVarint()];
+			for (int j = 0; j < vars.length; j++) {
+				vars[j] = framesData.readString();
+			}
+			DamsonStackFrame frame = findFrame(numFrames-i-1);
+			if (frame == null || !frame.retain(line, name, i))
+				frame = new DamsonStackFrame(this, line, name, numFrames-i-1, i);
+			frame.initVariables(vars);
+			updated[i] = frame;
+		}
+		setStackFrames(updated);
+	}
+	
+	public void updateThreadData(String framesData)
+	{
+		if (isSuspended() && !isTerminated()) {
+			//update the stack frames
 			if (framesData != null) {
-				String[] frames = framesData.split("#");
-				fFrames = new DamsonStackFrame[frames.length];
-				for (int i = 0; i < frames.length; i++) {
-					String frame_format = frames[i];
-					fFrames[i] = new DamsonStackFrame(this, frame_format, frames.length-i-1, i);
-					//fFrames[i].updateFrameData();
+				DamsonReplyTokenizer frames = new DamsonReplyTokenizer(framesData);
+				int numFrames = frames.countRecords();
+				DamsonStackFrame[] updated = new DamsonStackFrame[numFrames];
+				for (int i = 0; i < numFrames; i++) {
+					int line = frames.nextInt();
+					String name = frames.nextString();
+					DamsonStackFrame frame = findFrame(numFrames-i-1);
+					if (frame == null || !frame.retain(line, name, i))
+						frame = new DamsonStackFrame(this, line, name, numFrames-i-1, i);
+					frame.initVariables(frames);
+					updated[i] = frame;
+					frames.nextRecord();
 				}
+				setStackFrames(updated);
+			}
+			else if (fFrames == null) {
+				fFrames = new DamsonStackFrame[0];
 			}
 		}
 		else{
@@ -74,6 +154,75 @@ public class DamsonThread extends DamsonDebugElement implements IThread {
 		}
 	}
 	
+	/**
+	 * Returns the frame of the previous suspend with the given unique identifier retained with the 
+	 * given position if it is the same function, otherwise a new frame.
+	 * 
+	 * @param line_number current source line of the frame
+	 * @param name function name
+	 * @param id a unique identifier (0 is the bottom of the stack)
+	 * @param stack_frame the stack frame id in DAMSON (0 top of the stack)
+	 * @return the retained or new frame
+	 */
+	DamsonStackFrame retainFrame(int line_number, String name, int id, int stack_frame)
+	{
+		DamsonStackFrame frame = findFrame(id);
+		if (frame != null && frame.retain(line_number, name, stack_frame))
+			return frame;
+		return new DamsonStackFrame(this, line_number, name, id, stack_frame);
+	}
+	
+	/**
+	 * Finds a frame of the previous suspend by its unique identifier
+	 * 
+	 * @param id a unique identifier (0 is the bottom of the stack)
+	 * @return the frame or <code>null</code> if there is no such frame
+	 */
+	private DamsonStackFrame findFrame(int id)
+	{
+		DamsonStackFrame[] frames = fFrames;
+		if (frames == null)
+			return null;
+		int index = frames.length - id - 1;
+		if (index >= 0 && index < frames.length && frames[index].getUniqueID() == id)
+			return frames[index];
+		return null;
+	}
+	
+	/**
+	 * Sets the stack frames of this thread. Fires a content change event if frames 
+	 * have been pushed or popped since the previous suspend.
+	 * 
+	 * @param frames stack frames, top of the stack first
+	 */
+	void setStackFrames(DamsonStackFrame[] frames)
+	{
+		DamsonStackFrame[] previous = fFrames;
+		fFrames = frames;
+		if (previous == null)
+			return;
+		boolean changed = previous.length != frames.length;
+		for (int i = 0; !changed && i < frames.length; i++) {
+			changed = previous[i] != frames[i];
+		}
+		if (changed)
+			fireChangeEvent(DebugEvent.CONTENT);
+	}
+	
+	/**
+	 * Updates the state of this thread from a later suspend. Fires a state change 
+	 * event if the state has changed.
+	 * 
+	 * @param state thread state
+	 */
+	void setStatus(int state)
+	{
+		if (state != fStatus) {
+			fStatus = state;
+			fireChangeEvent(DebugEvent.STATE);
+		}
+	}
+	
 	/* (non-Javadoc)
 	 * @see org.eclipse.debug.core.model.IThread#hasStackFrames()
 	 */
@@ -115,6 +264,36 @@ public class DamsonThread extends DamsonDebugElement implements IThread {
 		return fProcessHandle;
 	}
 	
+	/**
+	 * Gets the node running this thread
+	 * 
+	 * @return the node or <code>null</code> if the target does not list nodes
+	 */
+	public DamsonNode getNode()
+	{
+		return fNode;
+	}
+	
+	/**
+	 * Sets the node running this thread
+	 * 
+	 * @param node node
+	 */
+	void setNode(DamsonNode node)
+	{
+		fNode = node;
+	}
+	
+	/**
+	 * Gets the prefix of the paths of the variables of this thread in the target value cache
+	 * 
+	 * @return cache key prefix
+	 */
+	String getCachePrefix()
+	{
+		return fProcessHandle + "/";
+	}
+	
 	/* (non-Javadoc)
 	 * @see org.eclipse.debug.core.model.IThread#getBreakpoints()
 	 */
@@ -142,26 +321,22 @@ public class DamsonThread extends DamsonDebugElement implements IThread {
 	 * @see org.eclipse.debug.core.model.ISuspendResume#isSuspended()
 	 */
 	public boolean isSuspended() {
-		return getDamsonDebugTarget().isSuspended();
+		return getDamsonDebugTarget().isThreadSuspended(this);
 	}
 	
 	/* (non-Javadoc)
 	 * @see org.eclipse.debug.core.model.ISuspendResume#resume()
 	 */
 	public void resume() throws DebugException {
-		DamsonStackFrame frames[] = getStackFrames();
-		for(int i=0;i<frames.length;i++)
-		{
-			frames[i].clearVariables();
-		}
-		getDamsonDebugTarget().resume();
+		//frames and variables are retained and their values invalidated on the next suspend
+		sendRequest(getDamsonDebugTarget().getScopedRequest("resume", this));
 	}
 	
 	/* (non-Javadoc)
 	 * @see org.eclipse.debug.core.model.ISuspendResume#suspend()
 	 */
 	public void suspend() throws DebugException {
-		getDamsonDebugTarget().suspend();
+		sendRequest(getDamsonDebugTarget().getScopedRequest("suspend", this));
 	}
 	
 	/* (non-Javadoc)
@@ -182,7 +357,10 @@ public class DamsonThread extends DamsonDebugElement implements IThread {
 	 * @see org.eclipse.debug.core.model.IStep#canStepReturn()
 	 */
 	public boolean canStepReturn() {
-		return getDamsonDebugTarget().canStepReturn();
+		if (getDamsonDebugTarget().isSuspended())
+			return getDamsonDebugTarget().canStepReturn();
+		DamsonStackFrame[] frames = fFrames;
+		return isSuspended() && frames != null && frames.length > 1;
 	}
 	
 
@@ -191,21 +369,21 @@ public class DamsonThread extends DamsonDebugElement implements IThread {
 	 * @see org.eclipse.debug.core.model.IStep#stepInto()
 	 */
 	public void stepInto() throws DebugException {
-		getDamsonDebugTarget().stepInto();
+		sendRequest(getDamsonDebugTarget().getScopedRequest("step into", this));
 	}
 	
 	/* (non-Javadoc)
 	 * @see org.eclipse.debug.core.model.IStep#stepOver()
 	 */
 	public void stepOver() throws DebugException {
-		getDamsonDebugTarget().stepOver();
+		sendRequest(getDamsonDebugTarget().getScopedRequest("step over", this));
 	}
 	
 	/* (non-Javadoc)
 	 * @see org.eclipse.debug.core.model.IStep#stepReturn()
 	 */
 	public void stepReturn() throws DebugException {
-		getDamsonDebugTarget().stepReturn();
+		sendRequest(getDamsonDebugTarget().getScopedRequest("step out", this));
 	}
 	
 	/* (non-Javadoc)
@@ -225,7 +403,9 @@ public class DamsonThread extends DamsonDebugElement implements IThread {
 	 * @see org.eclipse.debug.core.model.IStep#isStepping()
 	 */
 	public boolean isStepping() {
-		return ((DamsonDebugTarget)getDebugTarget()).isStepping();
+		if (fNode != null && fNode.isStepping())
+			return true;
+		return fStepping || getDamsonDebugTarget().isStepping();
 	}
 	
 	/* (non-Javadoc)
@@ -252,6 +432,29 @@ public class DamsonThread extends DamsonDebugElement implements IThread {
 	public void notifyResume(int detail) {
 		fireResumeEvent(detail);
 	}
+	
+	/**
+	 * Notification this thread has resumed on its own (non-stop mode)
+	 * 
+	 * @param detail reason for the resume
+	 */
+	void notifyThreadResume(int detail) {
+		fStepping = detail == DebugEvent.STEP_OVER;
+		fireResumeEvent(detail);
+	}
+	
+	/**
+	 * Notification this thread has suspended on its own (non-stop mode). Values read for the 
+	 * thread become the previous values and its stack frames are read again.
+	 * 
+	 * @param detail reason for the suspend
+	 */
+	void notifyThreadSuspend(int detail) {
+		fStepping = false;
+		getDamsonDebugTarget().getValueCache().advance(getCachePrefix());
+		updateThreadData();
+		fireSuspendEvent(detail);
+	}
 
     
 
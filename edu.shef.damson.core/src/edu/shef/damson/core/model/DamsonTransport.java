@@ -0,0 +1,398 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * The link carrying the request and event streams between a DAMSON debug target and the 
+ * DAMSON debugger. The streams use either loopback TCP ports or, where the Java runtime 
+ * supports them (Java 16 and later, not Windows), Unix domain sockets which avoid the TCP 
+ * stack for the many small requests issued by each suspend.
+ * <p>
+ * Connecting fails with a <code>ConnectException</code> while the DAMSON debugger is not 
+ * yet listening so that the caller may retry.
+ * </p>
+ */
+public abstract class DamsonTransport {
+
+	/**
+	 * Creates a transport using loopback TCP ports
+	 *
+	 * @param requestPort port of the request socket
+	 * @param eventPort port of the event socket
+	 * @return transport
+	 */
+	public static DamsonTransport createTcp(int requestPort, int eventPort) {
+		return new TcpTransport(requestPort, eventPort);
+	}
+
+	/**
+	 * Creates a transport using Unix domain sockets. Callers should check 
+	 * {@link #isUnixDomainSupported()} first.
+	 *
+	 * @param requestPath file system path of the request socket
+	 * @param eventPath file system path of the event socket
+	 * @return transport
+	 */
+	public static DamsonTransport createUnix(String requestPath, String eventPath) {
+		return new UnixTransport(requestPath, eventPath);
+	}
+
+	/**
+	 * Returns whether Unix domain sockets can be used by this Java runtime
+	 *
+	 * @return whether the Unix domain socket transport is supported
+	 */
+	public static boolean isUnixDomainSupported() {
+		if (System.getProperty("os.name", "").startsWith("Windows")) {
+			return false;
+		}
+		try {
+			Class.forName("java.net.UnixDomainSocketAddress");
+			return true;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Connects the request stream
+	 *
+	 * @throws ConnectException if the DAMSON debugger is not (yet) listening
+	 * @throws IOException if the connection fails
+	 */
+	public abstract void connectRequest() throws IOException;
+
+	/**
+	 * Connects the event stream. The returned channel is connected in blocking mode.
+	 *
+	 * @return event channel
+	 * @throws ConnectException if the DAMSON debugger is not (yet) listening
+	 * @throws IOException if the connection fails
+	 */
+	public abstract SocketChannel connectEvents() throws IOException;
+
+	/**
+	 * Gets the input stream of the connected request stream
+	 *
+	 * @return request input stream
+	 * @throws IOException if not connected
+	 */
+	public abstract InputStream getRequestInputStream() throws IOException;
+
+	/**
+	 * Gets the output stream of the connected request stream
+	 *
+	 * @return request output stream
+	 * @throws IOException if not connected
+	 */
+	public abstract OutputStream getRequestOutputStream() throws IOException;
+
+	/**
+	 * Sets the time a read of the request stream may block before failing with a 
+	 * <code>SocketTimeoutException</code>.
+	 *
+	 * @param timeout timeout in milliseconds (0 blocks indefinitely)
+	 * @throws IOException if the timeout can not be set
+	 */
+	public abstract void setRequestTimeout(int timeout) throws IOException;
+
+	/**
+	 * Closes the request stream
+	 */
+	public abstract void close();
+
+	/**
+	 * Loopback TCP transport. Nagle's algorithm is disabled as each request is a single 
+	 * small write which waits for its reply.
+	 */
+	private static class TcpTransport extends DamsonTransport {
+
+		private int fRequestPort;
+		private int fEventPort;
+		private Socket fRequestSocket;
+
+		TcpTransport(int requestPort, int eventPort) {
+			fRequestPort = requestPort;
+			fEventPort = eventPort;
+		}
+
+		public void connectRequest() throws IOException {
+			fRequestSocket = new Socket("localhost", fRequestPort);
+			fRequestSocket.setTcpNoDelay(true);
+		}
+
+		public SocketChannel connectEvents() throws IOException {
+			SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", fEventPort));
+			channel.socket().setTcpNoDelay(true);
+			return channel;
+		}
+
+		public InputStream getRequestInputStream() throws IOException {
+			return fRequestSocket.getInputStream();
+		}
+
+		public OutputStream getRequestOutputStream() throws IOException {
+			return fRequestSocket.getOutputStream();
+		}
+
+		public void setRequestTimeout(int timeout) throws IOException {
+			fRequestSocket.setSoTimeout(timeout);
+		}
+
+		public void close() {
+			if (fRequestSocket != null) {
+				try {
+					fRequestSocket.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+
+	/**
+	 * Unix domain socket transport. The socket address class is only available from Java 16 
+	 * so is created reflectively. The socket files are removed when the transport is closed.
+	 * <p>
+	 * Channels of Unix domain sockets have no socket read timeout, so the request channel is 
+	 * used in non-blocking mode and reads wait on a selector with the request timeout.
+	 * </p>
+	 */
+	private static class UnixTransport extends DamsonTransport {
+
+		private String fRequestPath;
+		private String fEventPath;
+		private SocketChannel fRequestChannel;
+		private ChannelInputStream fRequestInput;
+		private ChannelOutputStream fRequestOutput;
+
+		UnixTransport(String requestPath, String eventPath) {
+			fRequestPath = requestPath;
+			fEventPath = eventPath;
+		}
+
+		public void connectRequest() throws IOException {
+			fRequestChannel = open(fRequestPath);
+			fRequestChannel.configureBlocking(false);
+			fRequestInput = new ChannelInputStream(fRequestChannel);
+			fRequestOutput = new ChannelOutputStream(fRequestChannel);
+		}
+
+		public SocketChannel connectEvents() throws IOException {
+			return open(fEventPath);
+		}
+
+		/**
+		 * Connects a channel to the Unix domain socket at the given path
+		 */
+		private SocketChannel open(String path) throws IOException {
+			if (!new File(path).exists()) {
+				throw new ConnectException(path);
+			}
+			SocketAddress address;
+			try {
+				Class<?> addressClass = Class.forName("java.net.UnixDomainSocketAddress");
+				Method of = addressClass.getMethod("of", new Class<?>[] {String.class});
+				address = (SocketAddress)of.invoke(null, new Object[] {path});
+			} catch (Exception e) {
+				IOException ioe = new IOException("Unix domain sockets are not supported");
+				ioe.initCause(e);
+				throw ioe;
+			}
+			return SocketChannel.open(address);
+		}
+
+		public InputStream getRequestInputStream() throws IOException {
+			if (fRequestInput == null) {
+				throw new IOException("Request stream not connected");
+			}
+			return fRequestInput;
+		}
+
+		public OutputStream getRequestOutputStream() throws IOException {
+			if (fRequestOutput == null) {
+				throw new IOException("Request stream not connected");
+			}
+			return fRequestOutput;
+		}
+
+		public void setRequestTimeout(int timeout) throws IOException {
+			getRequestInputStream();
+			fRequestInput.setTimeout(timeout);
+		}
+
+		public void close() {
+			//closing the streams also wakes any read or write waiting on their selectors
+			try {
+				if (fRequestInput != null) {
+					fRequestInput.close();
+				}
+				if (fRequestOutput != null) {
+					fRequestOutput.close();
+				}
+				if (fRequestChannel != null) {
+					fRequestChannel.close();
+				}
+			} catch (IOException e) {
+			}
+			new File(fRequestPath).delete();
+			new File(fEventPath).delete();
+		}
+	}
+
+	/**
+	 * Input stream reading from a non-blocking channel, waiting on a selector for the channel 
+	 * to become readable. Unlike the streams of <code>java.nio.channels.Channels</code> reads 
+	 * do not hold the channel's blocking lock, so requests can be written while a reply is 
+	 * being read, and reads fail with a <code>SocketTimeoutException</code> once the timeout 
+	 * has passed.
+	 */
+	private static class ChannelInputStream extends InputStream {
+
+		private SocketChannel fChannel;
+		private Selector fSelector;
+		private volatile int fTimeout = 0;
+
+		ChannelInputStream(SocketChannel channel) throws IOException {
+			fChannel = channel;
+			fSelector = Selector.open();
+			fChannel.register(fSelector, SelectionKey.OP_READ);
+		}
+
+		/**
+		 * Sets the time a read may wait for data
+		 *
+		 * @param timeout timeout in milliseconds (0 waits indefinitely)
+		 */
+		void setTimeout(int timeout) {
+			fTimeout = timeout;
+		}
+
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			int n = read(b, 0, 1);
+			return n < 0 ? -1 : b[0] & 0xff;
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+			int timeout = fTimeout;
+			long deadline = System.currentTimeMillis() + timeout;
+			while (true) {
+				int n = fChannel.read(buffer);
+				if (n != 0) {
+					return n;
+				}
+				long wait = 0;
+				if (timeout > 0) {
+					wait = deadline - System.currentTimeMillis();
+					if (wait <= 0) {
+						throw new SocketTimeoutException("Read timed out");
+					}
+				}
+				select(fSelector, wait);
+			}
+		}
+
+		public int available() throws IOException {
+			try {
+				return fSelector.selectNow() > 0 ? 1 : 0;
+			} catch (ClosedSelectorException e) {
+				throw new ClosedChannelException();
+			} finally {
+				if (fSelector.isOpen()) {
+					fSelector.selectedKeys().clear();
+				}
+			}
+		}
+
+		public void close() throws IOException {
+			fSelector.close();
+			fChannel.close();
+		}
+	}
+
+	/**
+	 * Waits for the channel registered with a selector to become ready
+	 *
+	 * @param selector selector
+	 * @param timeout maximum wait in milliseconds (0 waits indefinitely)
+	 * @throws ClosedChannelException if the stream has been closed
+	 */
+	private static void select(Selector selector, long timeout) throws IOException {
+		try {
+			selector.select(timeout);
+			selector.selectedKeys().clear();
+		} catch (ClosedSelectorException e) {
+			throw new ClosedChannelException();
+		}
+	}
+
+	/**
+	 * Output stream writing to a non-blocking channel, waiting on a selector while the 
+	 * channel can not accept more bytes (see {@link ChannelInputStream})
+	 */
+	private static class ChannelOutputStream extends OutputStream {
+
+		private SocketChannel fChannel;
+		private Selector fSelector;
+
+		ChannelOutputStream(SocketChannel channel) throws IOException {
+			fChannel = channel;
+			fSelector = Selector.open();
+			fChannel.register(fSelector, SelectionKey.OP_WRITE);
+		}
+
+		public void write(int b) throws IOException {
+			write(new byte[] {(byte)b}, 0, 1);
+		}
+
+		public void write(byte[] b, int off, int len) throws IOException {
+			ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+			while (buffer.hasRemaining()) {
+				if (fChannel.write(buffer) == 0) {
+					select(fSelector, 0);
+				}
+			}
+		}
+
+		public void close() throws IOException {
+			fSelector.close();
+			fChannel.close();
+		}
+	}
+}
@@ -17,19 +17,27 @@
  ******************************************************************************************/
 package edu.shef.damson.core.model;
 
+import java.io.EOFException;
+import java.util.HashMap;
+import java.util.Map;
+
 import org.eclipse.debug.core.DebugException;
-import org.eclipse.debug.core.model.IValue;
+import org.eclipse.debug.core.model.IIndexedValue;
 import org.eclipse.debug.core.model.IVariable;
 
 /**
  * Value of a DAMSON variable. Is recursive in that the value may have more variables 
  * (i.e. an array). As such the value keeps track of the associated DamsonVariable.
+ * 
+ * Array values are indexed so that the variables view groups large arrays into ranges 
+ * (i.e. [0..99]). Elements are created and their values fetched a range at a time when 
+ * the range is expanded.
  */
-public class DamsonValue extends DamsonDebugElement implements IValue {
+public class DamsonValue extends DamsonDebugElement implements IIndexedValue {
 	
 	private String fValue;
 	private DamsonVariable fVariable;
-	private DamsonVariable fVariables[] = null;
+	private Map<Integer, DamsonVariable> fElements = null;	//element variables created so far, by index
 	
 	
 	public DamsonValue(DamsonDebugTarget target, DamsonVariable variable, String value) {
@@ -75,38 +83,159 @@ public class DamsonValue extends DamsonDebugElement implements IValue {
 	 * @see org.eclipse.debug.core.model.IValue#getVariables()
 	 */
 	public IVariable[] getVariables() throws DebugException {
-		//only update if the value is null (i.e) has'nt already been fetched.
-		if (fVariables == null)
-			updateVariablesData();
-		return fVariables;
+		//all elements as a single range (the variables view asks for large arrays a range at a time)
+		return getVariables(0, getSize());
 	}
 	
-	public void updateVariablesData()
+	/**
+	 * Creates the variable for an element of this array value
+	 * 
+	 * @param index element index
+	 * @return the element variable
+	 */
+	private DamsonVariable createElement(int index)
 	{
-		int vars = Integer.parseInt(fValue.substring(1, fValue.length()-1));
-		fVariables = new DamsonVariable[vars];
-		for (int i = 0; i < vars; i++) {
-			String display_name = getDamsonVariable().getVaribleName();
-			//create a new indices array and update the display name
-			int [] indices = new int[getDamsonVariable().getIndices().length+1];
-			indices[0] = getDamsonVariable().getIndices()[0]+1;
-			for (int j=1; j< getDamsonVariable().getIndices().length; j++){
-				indices[j] = getDamsonVariable().getIndices()[j];
-				display_name += "["+getDamsonVariable().getIndices()[j]+"]";
+		String display_name = getDamsonVariable().getVaribleName();
+		//create a new indices array and update the display name
+		int [] indices = new int[getDamsonVariable().getIndices().length+1];
+		indices[0] = getDamsonVariable().getIndices()[0]+1;
+		for (int j=1; j< getDamsonVariable().getIndices().length; j++){
+			indices[j] = getDamsonVariable().getIndices()[j];
+			display_name += "["+getDamsonVariable().getIndices()[j]+"]";
+		}
+		indices[getDamsonVariable().getIndices().length] = index;
+		display_name += "["+index+"]";
+		
+		if (fVariable.isGlobal())
+			return new DamsonVariable(getDamsonDebugTarget(), display_name, fVariable.getVaribleName(), indices);
+		return new DamsonVariable(getDamsonVariable().getStackFrame(), display_name, fVariable.getVaribleName(), indices, false);
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IIndexedValue#getVariable(int)
+	 */
+	public IVariable getVariable(int offset) throws DebugException {
+		return getVariables(offset, 1)[0];
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IIndexedValue#getVariables(int, int)
+	 */
+	public IVariable[] getVariables(int offset, int length) throws DebugException {
+		int size = getSize();
+		if (offset < 0 || length < 0 || offset + length > size)
+			requestFailed("Array range [" + offset + ".." + (offset + length - 1) + "] out of bounds", null);
+		if (fElements == null)
+			fElements = new HashMap<Integer, DamsonVariable>();
+		DamsonVariable[] range = new DamsonVariable[length];
+		for (int i = 0; i < length; i++) {
+			Integer index = Integer.valueOf(offset + i);
+			range[i] = fElements.get(index);
+			if (range[i] == null) {
+				range[i] = createElement(offset + i);
+				fElements.put(index, range[i]);
 			}
-			indices[getDamsonVariable().getIndices().length] = i;
-			display_name += "["+i+"]";
-			
-			fVariables[i] = new DamsonVariable(getDamsonVariable().getStackFrame(), display_name, fVariable.getVaribleName(), indices, fVariable.isGlobal());
 		}
+		requestElementValues(range, offset);
+		return range;
+	}
+	
+	/**
+	 * Fetches the values of a contiguous range of elements which have not yet been fetched. 
+	 * Where supported the values are read with a single array range request, otherwise 
+	 * each element value is requested.
+	 * 
+	 * @param range element variables
+	 * @param offset index of the first element in the range
+	 */
+	private void requestElementValues(DamsonVariable[] range, int offset)
+	{
+		DamsonDebugTarget target = getDamsonDebugTarget();
+		if (target.hasCapability(DamsonDebugTarget.CAPABILITY_ARRAY_RANGE) && fVariable.isSuspended()) {
+			//find the pending part of the range
+			int first = -1;
+			int last = -1;
+			for (int i = 0; i < range.length; i++) {
+				if (!range[i].isValueAvailable()) {
+					if (first < 0)
+						first = i;
+					last = i;
+				}
+			}
+			if (first < 0)
+				return;
+			int count = last - first + 1;
+			//single elements use the element request (a one value reply can not be told apart from an error)
+			if (count > 1) {
+				try {
+					if (target.isBinary()) {
+						//binary reply is the value count followed by the values
+						DamsonBinaryReply values = target.sendBinaryRequest(fVariable.getRangeRequest(offset + first, count));
+						if (values.readVarint() == count) {
+							for (int i = first; i <= last; i++) {
+								String value = values.readString();
+								if (!range[i].isValueAvailable())
+									range[i].setValueData(value);
+							}
+							return;
+						}
+					} else {
+						DamsonReplyTokenizer values = new DamsonReplyTokenizer(sendRequest(fVariable.getRangeRequest(offset + first, count)));
+						if (values.countFields() == count) {
+							for (int i = first; i <= last; i++) {
+								if (!range[i].isValueAvailable())
+									range[i].setValueData(values.nextString());
+								else
+									values.skipField();
+							}
+							return;
+						}
+					}
+				} catch (DebugException e) {
+				} catch (EOFException e) {}
+			}
+		}
+		target.requestVariableValues(range);
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IIndexedValue#getSize()
+	 */
+	public int getSize() {
+		if (!isArray())
+			return 0;
+		return DamsonReplyTokenizer.parseInt(fValue, 1, fValue.length()-1);
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.model.IIndexedValue#getInitialOffset()
+	 */
+	public int getInitialOffset() {
+		return 0;
 	}
-
 	
+	/**
+	 * Returns whether this value is an array (i.e. the value is the array size <code>[S]</code>)
+	 * 
+	 * @return whether this value is an array
+	 */
+	private boolean isArray() {
+		int last = fValue.length() - 1;
+		if (last < 2 || fValue.charAt(0) != '[' || fValue.charAt(last) != ']')
+			return false;
+		for (int i = 1; i < last; i++) {
+			char c = fValue.charAt(i);
+			if (c < '0' || c > '9')
+				return false;
+		}
+		return true;
+	}
+
 	/* (non-Javadoc)
 	 * @see org.eclipse.debug.core.model.IValue#hasVariables()
 	 */
 	public boolean hasVariables() throws DebugException {
-		return fValue.matches("\\[[0-9]+\\]");
+		return isArray();
 	}
 	/*
 	 *  (non-Javadoc)
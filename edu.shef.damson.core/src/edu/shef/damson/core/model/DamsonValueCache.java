@@ -0,0 +1,128 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.core.model;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Cache of the variable values read from the DAMSON debugger. Values are keyed by the
+ * variable path (process handle, stack frame, variable name and indices) and are only
+ * valid for the suspend in which they were read. Each suspend starts a new epoch, keeping
+ * the values of the previous epoch so that changed values can be detected without any
+ * further requests.
+ */
+public class DamsonValueCache {
+
+	private int fEpoch = 0;
+	private Map<String, String> fCurrent = new HashMap<String, String>();
+	private Map<String, String> fPrevious = new HashMap<String, String>();
+
+	/**
+	 * Starts a new suspend epoch. Values of the current epoch become the previous values.
+	 */
+	public synchronized void advance() {
+		fEpoch++;
+		fPrevious = fCurrent;
+		fCurrent = new HashMap<String, String>();
+	}
+
+	/**
+	 * Starts a new epoch for the values whose path starts with the given prefix (i.e. the 
+	 * values of a thread suspended on its own in non-stop mode). The values of the prefix 
+	 * read during the current epoch become its previous values; all other values are kept.
+	 *
+	 * @param prefix variable path prefix
+	 */
+	public synchronized void advance(String prefix) {
+		Iterator<Map.Entry<String, String>> previous = fPrevious.entrySet().iterator();
+		while (previous.hasNext()) {
+			if (previous.next().getKey().startsWith(prefix))
+				previous.remove();
+		}
+		Iterator<Map.Entry<String, String>> current = fCurrent.entrySet().iterator();
+		while (current.hasNext()) {
+			Map.Entry<String, String> entry = current.next();
+			if (entry.getKey().startsWith(prefix)) {
+				fPrevious.put(entry.getKey(), entry.getValue());
+				current.remove();
+			}
+		}
+	}
+
+	/**
+	 * Gets the current suspend epoch
+	 *
+	 * @return the number of suspends so far
+	 */
+	public synchronized int getEpoch() {
+		return fEpoch;
+	}
+
+	/**
+	 * Gets a value read during the current epoch
+	 *
+	 * @param key variable path
+	 * @return the value or <code>null</code> if not yet read during this epoch
+	 */
+	public synchronized String get(String key) {
+		return fCurrent.get(key);
+	}
+
+	/**
+	 * Stores a value read during the current epoch
+	 *
+	 * @param key variable path
+	 * @param value the value
+	 */
+	public synchronized void put(String key, String value) {
+		fCurrent.put(key, value);
+	}
+
+	/**
+	 * Removes a value of the current epoch (i.e. after the value has been modified)
+	 *
+	 * @param key variable path
+	 */
+	public synchronized void remove(String key) {
+		fCurrent.remove(key);
+	}
+
+	/**
+	 * Returns whether the value read during this epoch differs from the value read
+	 * during the previous epoch. Values which were not read in both epochs are
+	 * considered unchanged.
+	 *
+	 * @param key variable path
+	 * @return whether the value has changed since the previous suspend
+	 */
+	public synchronized boolean hasChanged(String key) {
+		String current = fCurrent.get(key);
+		String previous = fPrevious.get(key);
+		return current != null && previous != null && !current.equals(previous);
+	}
+
+	/**
+	 * Discards all values
+	 */
+	public synchronized void clear() {
+		fCurrent.clear();
+		fPrevious.clear();
+	}
+}
@@ -24,7 +24,8 @@ import org.eclipse.debug.core.model.IVariable;
 
 /**
  * A variable in a DAMSON stack frame. Value may be either an integer or an array size 
- * indicating that the DamsonVariable is an array.
+ * indicating that the DamsonVariable is an array. Values are requested from the DAMSON 
+ * debugger on demand (i.e. when first displayed) unless already known.
  */
 public class DamsonVariable extends DamsonDebugElement implements IVariable {
 	
@@ -45,14 +46,65 @@ public class DamsonVariable extends DamsonDebugElement implements IVariable {
 		fVarName = varName;
 		fIndices = indices;
 		fGlobal = global;
-		requestVariableData();
 	}
 	
 	public DamsonVariable(DamsonStackFrame frame, String name, boolean global) {
 		this(frame, name, name, new int[]{0}, global);
 	}
 	
-	public void requestVariableData()
+	/**
+	 * Constructs an element of a global array variable. Global variables do not belong 
+	 * to any stack frame.
+	 * 
+	 * @param target owning debug target
+	 * @param name display name
+	 * @param varName variable name
+	 * @param indices variable indices
+	 */
+	public DamsonVariable(DamsonDebugTarget target, String name, String varName, int [] indices) {
+		super(target);
+		fName = name;
+		fVarName = varName;
+		fIndices = indices;
+		fGlobal = true;
+	}
+	
+	/**
+	 * Constructs a global variable. Global variables are shared by all stack frames 
+	 * (see {@link DamsonGlobalVariables}).
+	 * 
+	 * @param target owning debug target
+	 * @param name variable name
+	 */
+	public DamsonVariable(DamsonDebugTarget target, String name) {
+		this(target, name, name, new int[]{0});
+	}
+	
+	/**
+	 * Constructs a singleton variable whose value is already known (i.e. from a snapshot)
+	 * and therefore does not need to be requested.
+	 * 
+	 * @param frame owning stack frame
+	 * @param name variable name
+	 * @param global whether the variable is global
+	 * @param value the value reply of the variable
+	 */
+	public DamsonVariable(DamsonStackFrame frame, String name, boolean global, String value) {
+		super(frame.getDamsonDebugTarget());
+		fFrame = frame;
+		fName = name;
+		fVarName = name;
+		fIndices = new int[]{0};
+		fGlobal = global;
+		setValueData(value);
+	}
+	
+	/**
+	 * Builds the request which returns the value of this variable
+	 * 
+	 * @return the value request
+	 */
+	String getValueRequest()
 	{
 		String request;
 		if (fIndices[0]>0)
@@ -71,23 +123,116 @@ public class DamsonVariable extends DamsonDebugElement implements IVariable {
 			else
 				request = "var " + getStackFrame().getThread().getProcessHandle() + " " + getStackFrame().getStackFrame() + " " + getVaribleName();
 		}
-		String value;
+		return request;
+	}
+	
+	/**
+	 * Builds the request which returns the values of a contiguous range of elements of 
+	 * this (array) variable
+	 * 
+	 * @param start index of the first element
+	 * @param count number of elements
+	 * @return the range request
+	 */
+	String getRangeRequest(int start, int count)
+	{
+		String request;
+		if (fGlobal)
+			request = "garrayrange " + getVaribleName();
+		else
+			request = "arrayrange " + getStackFrame().getThread().getProcessHandle() + " " + getStackFrame().getStackFrame() + " " + getVaribleName();
+		for (int i=0; i< getIndices().length; i++)	//append indices of the array to request
+			request += " " + getIndices()[i];
+		return request + " " + start + " " + count;
+	}
+	
+	public void requestVariableData()
+	{
 		try {
-			value = sendRequest(request);
-			fValue = new DamsonValue(this.getDamsonDebugTarget(), this, value);
+			setValueData(sendRequest(getValueRequest()));
 		} catch (DebugException e) {
 			fValue = null;
 		}
 
 	}
 	
+	/**
+	 * Sets the value of this variable from the reply to its value request
+	 * 
+	 * @param value the value reply
+	 */
+	void setValueData(String value)
+	{
+		fValue = new DamsonValue(this.getDamsonDebugTarget(), this, value);
+		getDamsonDebugTarget().getValueCache().put(getCacheKey(), value);
+	}
+	
+	/**
+	 * Builds the key of this variable in the target value cache (the variable path)
+	 * 
+	 * @return cache key
+	 */
+	String getCacheKey()
+	{
+		StringBuffer key = new StringBuffer();
+		if (fGlobal)
+			key.append("&");
+		else
+			key.append(getStackFrame().getCacheKey()).append('/');
+		key.append(getVaribleName());
+		for (int i=1; i< fIndices.length; i++)
+			key.append('[').append(fIndices[i]).append(']');
+		return key.toString();
+	}
+	
+	/**
+	 * Discards the value of this variable so that it is requested again when next displayed
+	 */
+	void invalidate()
+	{
+		fValue = null;
+	}
+	
+	/**
+	 * Returns whether the value of this variable has already been fetched
+	 * 
+	 * @return whether the value is available without a request
+	 */
+	boolean isValueAvailable()
+	{
+		if (fValue == null) {
+			//values already read during this suspend are served from the cache
+			String cached = getDamsonDebugTarget().getValueCache().get(getCacheKey());
+			if (cached != null)
+				fValue = new DamsonValue(this.getDamsonDebugTarget(), this, cached);
+		}
+		return fValue != null;
+	}
+	
 	/* (non-Javadoc)
 	 * @see org.eclipse.debug.core.model.IVariable#getValue()
 	 */
 	public IValue getValue() throws DebugException {
+		//fetch the value on first use
+		if (!isValueAvailable() && isSuspended())
+			requestVariableData();
 		return fValue;
 	}
 	
+	/**
+	 * Returns whether the thread owning this variable is suspended, or for global variables 
+	 * the current node (globals are read from the current node, which may be suspended on 
+	 * its own in non-stop mode). Values can only be requested when suspended.
+	 * 
+	 * @return whether the owning thread or current node is suspended
+	 */
+	boolean isSuspended()
+	{
+		if (fGlobal || getStackFrame() == null)
+			return getDamsonDebugTarget().isNodeSuspended(getDamsonDebugTarget().getCurrentNode());
+		return getStackFrame().getThread().isSuspended();
+	}
+	
 	/* (non-Javadoc)
 	 * @see org.eclipse.debug.core.model.IVariable#getName()
 	 */
@@ -116,7 +261,7 @@ public class DamsonVariable extends DamsonDebugElement implements IVariable {
 	 * @see org.eclipse.debug.core.model.IVariable#hasValueChanged()
 	 */
 	public boolean hasValueChanged() throws DebugException {
-		return false;
+		return getDamsonDebugTarget().getValueCache().hasChanged(getCacheKey());
 	}
 	
 	/* (non-Javadoc)
@@ -160,6 +305,7 @@ public class DamsonVariable extends DamsonDebugElement implements IVariable {
 					request = "setvar " + getStackFrame().getThread().getProcessHandle() + " " + getStackFrame().getStackFrame() + " " + getVaribleName() + " " + value;
 			}
 			sendRequest(request);
+			getDamsonDebugTarget().getValueCache().remove(getCacheKey());
 			fireChangeEvent(DebugEvent.CONTENT);
 			requestVariableData();
 		}
@@ -200,7 +346,7 @@ public class DamsonVariable extends DamsonDebugElement implements IVariable {
 	/**
 	 * Returns the stack frame owning this variable.
 	 * 
-	 * @return the stack frame owning this variable
+	 * @return the stack frame owning this variable or <code>null</code> if global
 	 */
 	protected DamsonStackFrame getStackFrame() {
 		return fFrame;
@@ -48,8 +48,16 @@ package edu.shef.damson.core.model;
  * 		</ul>
  * </li>
  * 
+ * <li><code>suspended node N X</code>, <code>resumed node N X</code> - node number <code>N</code> 
+ * 		has suspended or resumed on its own while the rest of the program runs (non-stop mode); 
+ * 		<code>X</code> is the cause as above. <code>suspended thread H X</code> and 
+ * 		<code>resumed thread H X</code> are the events of the thread with process handle <code>H</code>.
+ * </li>
+ * 
  * </ul>
  * </p>
+ * Breakpoints are not event listeners; the debug target finds the breakpoint hit by a 
+ * <code>suspended breakpoint N</code> event from its index of installed breakpoints.
  */
 public interface IDamsonEventListener {
 	
@@ -57,8 +65,8 @@ public interface IDamsonEventListener {
 	 * Notification the given event occurred in the target program
 	 * being interpreted.
 	 * 
-	 * @param event the event
+	 * @param event the event (parsed once for all listeners)
 	 */
-	public void handleEvent(String event);
+	public void handleEvent(DamsonEvent event);
 
 }
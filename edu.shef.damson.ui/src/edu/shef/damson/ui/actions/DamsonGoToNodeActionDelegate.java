@@ -0,0 +1,77 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.ui.actions;
+
+import org.eclipse.debug.core.DebugEvent;
+import org.eclipse.debug.core.DebugPlugin;
+import org.eclipse.jface.action.IAction;
+import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.jface.viewers.IStructuredSelection;
+import org.eclipse.jface.window.Window;
+import org.eclipse.ui.IObjectActionDelegate;
+import org.eclipse.ui.IWorkbenchPart;
+
+import edu.shef.damson.core.model.DamsonDebugElement;
+import edu.shef.damson.core.model.DamsonDebugTarget;
+import edu.shef.damson.core.model.DamsonNode;
+import edu.shef.damson.ui.model.DamsonNodeEventHandler;
+
+/**
+ * Goes to a node of the DAMSON debug target selected in the Debug view, chosen by number 
+ * or alias. The node is revealed, expanded and selected directly (see 
+ * {@link DamsonNodeEventHandler#REVEAL}) without expanding the tree up to it.
+ */
+public class DamsonGoToNodeActionDelegate implements IObjectActionDelegate {
+
+	private IWorkbenchPart fPart;
+	private DamsonDebugTarget fTarget;
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.ui.IObjectActionDelegate#setActivePart(org.eclipse.jface.action.IAction, org.eclipse.ui.IWorkbenchPart)
+	 */
+	public void setActivePart(IAction action, IWorkbenchPart targetPart) {
+		fPart = targetPart;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.ui.IActionDelegate#run(org.eclipse.jface.action.IAction)
+	 */
+	public void run(IAction action) {
+		if (fTarget == null || fPart == null)
+			return;
+		DamsonGoToNodeDialog dialog = new DamsonGoToNodeDialog(fPart.getSite().getShell(), fTarget);
+		if (dialog.open() != Window.OK || dialog.getNode() == null)
+			return;
+		DamsonNode node = dialog.getNode();
+		DebugPlugin.getDefault().fireDebugEventSet(new DebugEvent[] {
+				new DebugEvent(node, DebugEvent.MODEL_SPECIFIC, DamsonNodeEventHandler.REVEAL) });
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.ui.IActionDelegate#selectionChanged(org.eclipse.jface.action.IAction, org.eclipse.jface.viewers.ISelection)
+	 */
+	public void selectionChanged(IAction action, ISelection selection) {
+		fTarget = null;
+		if (selection instanceof IStructuredSelection) {
+			Object element = ((IStructuredSelection)selection).getFirstElement();
+			if (element instanceof DamsonDebugElement)
+				fTarget = (DamsonDebugTarget)((DamsonDebugElement)element).getDebugTarget();
+		}
+		action.setEnabled(fTarget != null && fTarget.hasNodes() && !fTarget.isTerminated());
+	}
+}
@@ -0,0 +1,334 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.ui.actions;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.dialogs.Dialog;
+import org.eclipse.jface.dialogs.IDialogConstants;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.ModifyEvent;
+import org.eclipse.swt.events.ModifyListener;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.List;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Text;
+
+import edu.shef.damson.core.model.DamsonDebugTarget;
+import edu.shef.damson.core.model.DamsonNode;
+
+/**
+ * Asks for a node of a DAMSON debug target to go to. The filter box lists the nodes whose 
+ * number or alias starts with the filter (matched by the DAMSON debugger in a job as the 
+ * filter is typed). The node whose number or alias is the filter is preferred to the other 
+ * matches unless another node is selected; a node number or alias which is not listed is 
+ * resolved in a job when OK is pressed and the dialog closes once the node is found.
+ */
+public class DamsonGoToNodeDialog extends Dialog {
+
+	/**
+	 * Maximum number of nodes listed
+	 */
+	private static final int MAX_MATCHES = 100;
+
+	/**
+	 * Delay after the last key stroke before the nodes are matched
+	 */
+	private static final int MATCH_DELAY = 200;
+
+	private DamsonDebugTarget fTarget;
+	private Text fFilterText;
+	private List fList;
+	private Label fStatusLabel;
+	private DamsonNode[] fMatches = new DamsonNode[0];	//nodes listed for the current filter
+	private boolean fSelectedByUser = false;	//whether the selection was picked rather than defaulted
+	private DamsonNode fNode;
+	private MatchJob fMatchJob = new MatchJob();
+	private FindJob fFindJob;
+
+	/**
+	 * Matches the nodes of the current filter
+	 */
+	class MatchJob extends Job {
+
+		public MatchJob() {
+			super("Match DAMSON Nodes");
+			setSystem(true);
+		}
+
+		/* (non-Javadoc)
+		 * @see org.eclipse.core.runtime.jobs.Job#run(org.eclipse.core.runtime.IProgressMonitor)
+		 */
+		protected IStatus run(IProgressMonitor monitor) {
+			final String filter = getFilter();
+			if (filter == null)
+				return Status.OK_STATUS;
+			final DamsonNode[] matches = fTarget.matchNodes(filter, MAX_MATCHES);
+			if (!monitor.isCanceled() && !fList.isDisposed()) {
+				fList.getDisplay().asyncExec(new Runnable() {
+					public void run() {
+						//ignore the matches of a filter which has since changed
+						if (!fList.isDisposed() && filter.equals(fFilterText.getText()))
+							setMatches(matches);
+					}
+				});
+			}
+			return Status.OK_STATUS;
+		}
+	}
+
+	/**
+	 * Resolves a node number or alias which is not listed and closes the dialog if the 
+	 * node is found
+	 */
+	class FindJob extends Job {
+
+		private String fQuery;
+		private DamsonNode fDefault;
+
+		/**
+		 * Constructs a job to find a node
+		 * 
+		 * @param query node number or alias
+		 * @param defaultNode node to go to if there is no such node or <code>null</code>
+		 */
+		public FindJob(String query, DamsonNode defaultNode) {
+			super("Find DAMSON Node");
+			setSystem(true);
+			fQuery = query;
+			fDefault = defaultNode;
+		}
+
+		/* (non-Javadoc)
+		 * @see org.eclipse.core.runtime.jobs.Job#run(org.eclipse.core.runtime.IProgressMonitor)
+		 */
+		protected IStatus run(IProgressMonitor monitor) {
+			DamsonNode found = fTarget.findNode(fQuery);
+			final DamsonNode node = found != null ? found : fDefault;
+			if (!monitor.isCanceled() && !fList.isDisposed()) {
+				fList.getDisplay().asyncExec(new Runnable() {
+					public void run() {
+						if (!fList.isDisposed())
+							nodeFound(FindJob.this, node);
+					}
+				});
+			}
+			return Status.OK_STATUS;
+		}
+		
+		/**
+		 * Gets the node number or alias
+		 * 
+		 * @return query
+		 */
+		public String getQuery() {
+			return fQuery;
+		}
+	}
+
+	/**
+	 * Constructs a dialog to go to a node of the given target
+	 * 
+	 * @param shell parent shell
+	 * @param target debug target
+	 */
+	public DamsonGoToNodeDialog(Shell shell, DamsonDebugTarget target) {
+		super(shell);
+		fTarget = target;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.jface.window.Window#configureShell(org.eclipse.swt.widgets.Shell)
+	 */
+	protected void configureShell(Shell shell) {
+		super.configureShell(shell);
+		shell.setText("Go to Node");
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.jface.dialogs.Dialog#createDialogArea(org.eclipse.swt.widgets.Composite)
+	 */
+	protected Control createDialogArea(Composite parent) {
+		Composite composite = (Composite)super.createDialogArea(parent);
+		Label label = new Label(composite, SWT.NONE);
+		label.setText("Node &number or alias:");
+		fFilterText = new Text(composite, SWT.SINGLE | SWT.BORDER | SWT.SEARCH);
+		fFilterText.setLayoutData(new GridData(GridData.FILL_HORIZONTAL));
+		fFilterText.addModifyListener(new ModifyListener() {
+			public void modifyText(ModifyEvent e) {
+				//the listed nodes and any node being found no longer match the filter
+				setMatches(new DamsonNode[0]);
+				fStatusLabel.setText("");
+				if (fFindJob != null) {
+					fFindJob.cancel();
+					fFindJob = null;
+					getButton(IDialogConstants.OK_ID).setEnabled(true);
+				}
+				fMatchJob.cancel();
+				fMatchJob.schedule(MATCH_DELAY);
+			}
+		});
+		fList = new List(composite, SWT.SINGLE | SWT.BORDER | SWT.V_SCROLL);
+		GridData data = new GridData(GridData.FILL_BOTH);
+		data.widthHint = 300;
+		data.heightHint = 250;
+		fList.setLayoutData(data);
+		fList.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent e) {
+				fSelectedByUser = true;
+			}
+			public void widgetDefaultSelected(SelectionEvent e) {
+				okPressed();
+			}
+		});
+		fStatusLabel = new Label(composite, SWT.NONE);
+		fStatusLabel.setLayoutData(new GridData(GridData.FILL_HORIZONTAL));
+		fMatchJob.schedule();
+		return composite;
+	}
+
+	/**
+	 * Gets the filter (from a job)
+	 * 
+	 * @return the filter or <code>null</code> if the dialog has been closed
+	 */
+	private String getFilter() {
+		final String[] filter = new String[1];
+		if (!fFilterText.isDisposed()) {
+			fFilterText.getDisplay().syncExec(new Runnable() {
+				public void run() {
+					if (!fFilterText.isDisposed())
+						filter[0] = fFilterText.getText();
+				}
+			});
+		}
+		return filter[0];
+	}
+
+	/**
+	 * Lists the matching nodes, selecting the node whose number or alias is the filter 
+	 * or otherwise the first
+	 * 
+	 * @param matches matching nodes
+	 */
+	private void setMatches(DamsonNode[] matches) {
+		fMatches = matches;
+		fSelectedByUser = false;
+		String filter = fFilterText.getText().trim();
+		String[] items = new String[matches.length];
+		int selection = 0;
+		for (int i = 0; i < matches.length; i++) {
+			items[i] = matches[i].getName();
+			if (selection == 0 && isExactMatch(matches[i], filter))
+				selection = i;
+		}
+		fList.setItems(items);
+		if (matches.length > 0)
+			fList.select(selection);
+		fStatusLabel.setText(matches.length == 0 ? "No matching nodes" : matches.length >= MAX_MATCHES ? "First " + MAX_MATCHES + " matching nodes" : "");
+	}
+	
+	/**
+	 * Returns whether the number or alias of a node is the filter
+	 * 
+	 * @param node node
+	 * @param filter trimmed filter
+	 * @return whether the node is an exact match
+	 */
+	private static boolean isExactMatch(DamsonNode node, String filter) {
+		return Integer.toString(node.getNumber()).equals(filter) || filter.equals(node.getAlias());
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.jface.dialogs.Dialog#okPressed()
+	 */
+	protected void okPressed() {
+		String filter = fFilterText.getText().trim();
+		int selection = fList.getSelectionIndex();
+		DamsonNode selected = selection >= 0 && selection < fMatches.length ? fMatches[selection] : null;
+		if (selected != null && (fSelectedByUser || filter.length() == 0 || isExactMatch(selected, filter))) {
+			closeWithNode(selected);
+		} else if (filter.length() > 0) {
+			//a single request resolves a node which is not listed (or not yet listed), 
+			//falling back to the first match
+			fStatusLabel.setText("Finding node " + filter + "...");
+			getButton(IDialogConstants.OK_ID).setEnabled(false);
+			if (fFindJob != null)
+				fFindJob.cancel();
+			fFindJob = new FindJob(filter, selected);
+			fFindJob.schedule();
+		} else {
+			fStatusLabel.setText("No matching nodes");
+		}
+	}
+	
+	/**
+	 * Closes the dialog once a node which is not listed has been resolved (in the UI thread)
+	 * 
+	 * @param job the job which resolved the node
+	 * @param node the node or <code>null</code> if there is no such node
+	 */
+	private void nodeFound(FindJob job, DamsonNode node) {
+		if (job != fFindJob)
+			return;
+		fFindJob = null;
+		getButton(IDialogConstants.OK_ID).setEnabled(true);
+		if (node == null) {
+			fStatusLabel.setText("No node " + job.getQuery());
+			return;
+		}
+		closeWithNode(node);
+	}
+	
+	/**
+	 * Closes the dialog with the node to go to
+	 * 
+	 * @param node node
+	 */
+	private void closeWithNode(DamsonNode node) {
+		fNode = node;
+		fMatchJob.cancel();
+		super.okPressed();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.jface.dialogs.Dialog#cancelPressed()
+	 */
+	protected void cancelPressed() {
+		fMatchJob.cancel();
+		if (fFindJob != null)
+			fFindJob.cancel();
+		super.cancelPressed();
+	}
+
+	/**
+	 * Gets the node to go to
+	 * 
+	 * @return the node or <code>null</code> if the dialog was cancelled
+	 */
+	public DamsonNode getNode() {
+		return fNode;
+	}
+}
@@ -18,6 +18,8 @@
 package edu.shef.damson.ui.launcher;
 
 
+import java.io.File;
+
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.ResourcesPlugin;
@@ -43,6 +45,7 @@ import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.FileDialog;
 import org.eclipse.swt.widgets.Label;
 import org.eclipse.swt.widgets.Text;
 import org.eclipse.ui.dialogs.ResourceListSelectionDialog;
@@ -63,6 +66,14 @@ public class DamsonMainTab extends AbstractLaunchConfigurationTab {
 	private Button codegenButton;
 	private Button outputButton;
 	
+	private Button dynamicPortsButton;
+	private Button unixSocketButton;
+	private Button protocolExtensionsButton;
+	
+	private Text fRecordText;
+	private Text fReplayText;
+	private Button replayRealTimeButton;
+	
 	
 	/* (non-Javadoc)
 	 * @see org.eclipse.debug.ui.ILaunchConfigurationTab#createControl(org.eclipse.swt.widgets.Composite)
@@ -182,6 +193,104 @@ public class DamsonMainTab extends AbstractLaunchConfigurationTab {
 			}
 		});
 		new Label(comp, SWT.NULL);	//Spacing
+		
+		//row for debugger ports
+		Label debugLabel = new Label(comp, SWT.NONE);
+		debugLabel.setText("&Debug:");
+		gd = new GridData(GridData.BEGINNING);
+		debugLabel.setLayoutData(gd);
+		debugLabel.setFont(font);
+		dynamicPortsButton = new Button (comp, SWT.CHECK);
+		dynamicPortsButton.setLayoutData(new GridData(GridData.HORIZONTAL_ALIGN_BEGINNING));
+		dynamicPortsButton.setText ("Allocate free debugger ports (allows concurrent debug sessions)");
+		dynamicPortsButton.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent e) {
+				updateLaunchConfigurationDialog();
+			}
+		});
+		new Label(comp, SWT.NULL);	//Spacing
+		
+		//row for debugger transport
+		new Label(comp, SWT.NULL);	//Spacing
+		unixSocketButton = new Button (comp, SWT.CHECK);
+		unixSocketButton.setLayoutData(new GridData(GridData.HORIZONTAL_ALIGN_BEGINNING));
+		unixSocketButton.setText ("Use Unix domain sockets for the debugger connection (where supported)");
+		unixSocketButton.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent e) {
+				updateLaunchConfigurationDialog();
+			}
+		});
+		new Label(comp, SWT.NULL);	//Spacing
+		
+		//row for debugger protocol extensions
+		new Label(comp, SWT.NULL);	//Spacing
+		protocolExtensionsButton = new Button (comp, SWT.CHECK);
+		protocolExtensionsButton.setLayoutData(new GridData(GridData.HORIZONTAL_ALIGN_BEGINNING));
+		protocolExtensionsButton.setText ("Query the debugger for protocol extensions (requires a DAMSON version which supports them)");
+		protocolExtensionsButton.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent e) {
+				updateLaunchConfigurationDialog();
+			}
+		});
+		new Label(comp, SWT.NULL);	//Spacing
+		
+		//row for session recording
+		Label recordLabel = new Label(comp, SWT.NONE);
+		recordLabel.setText("&Record session to:");
+		gd = new GridData(GridData.BEGINNING);
+		recordLabel.setLayoutData(gd);
+		recordLabel.setFont(font);
+		fRecordText = new Text(comp, SWT.SINGLE | SWT.BORDER);
+		gd = new GridData(GridData.FILL_HORIZONTAL);
+		fRecordText.setLayoutData(gd);
+		fRecordText.setFont(font);
+		fRecordText.addModifyListener(new ModifyListener() {
+			public void modifyText(ModifyEvent e) {
+				updateLaunchConfigurationDialog();
+			}
+		});
+		Button recordButton = createPushButton(comp, "Browse...", null); //$NON-NLS-1$
+		recordButton.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent e) {
+				browseSessionFiles(fRecordText, SWT.SAVE);
+			}
+		});
+		
+		//row for session replay
+		Label replayLabel = new Label(comp, SWT.NONE);
+		replayLabel.setText("Rep&lay session from:");
+		gd = new GridData(GridData.BEGINNING);
+		replayLabel.setLayoutData(gd);
+		replayLabel.setFont(font);
+		fReplayText = new Text(comp, SWT.SINGLE | SWT.BORDER);
+		gd = new GridData(GridData.FILL_HORIZONTAL);
+		fReplayText.setLayoutData(gd);
+		fReplayText.setFont(font);
+		fReplayText.addModifyListener(new ModifyListener() {
+			public void modifyText(ModifyEvent e) {
+				replayRealTimeButton.setEnabled(fReplayText.getText().trim().length() > 0);
+				updateLaunchConfigurationDialog();
+			}
+		});
+		Button replayButton = createPushButton(comp, "Browse...", null); //$NON-NLS-1$
+		replayButton.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent e) {
+				browseSessionFiles(fReplayText, SWT.OPEN);
+			}
+		});
+		
+		//row for session replay speed
+		new Label(comp, SWT.NULL);	//Spacing
+		replayRealTimeButton = new Button (comp, SWT.CHECK);
+		replayRealTimeButton.setLayoutData(new GridData(GridData.HORIZONTAL_ALIGN_BEGINNING));
+		replayRealTimeButton.setText ("Replay with the recorded reply times (rather than at once)");
+		replayRealTimeButton.setEnabled(false);
+		replayRealTimeButton.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent e) {
+				updateLaunchConfigurationDialog();
+			}
+		});
+		new Label(comp, SWT.NULL);	//Spacing
 
 	}
 	
@@ -199,6 +308,23 @@ public class DamsonMainTab extends AbstractLaunchConfigurationTab {
 		}
 		
 	}
+	/**
+	 * Open a file chooser to select a debug session recording
+	 * 
+	 * @param text field holding the path of the recording
+	 * @param style <code>SWT.SAVE</code> to record a session or <code>SWT.OPEN</code> to replay one
+	 */
+	protected void browseSessionFiles(Text text, int style) {
+		FileDialog dialog = new FileDialog(getShell(), style);
+		dialog.setText(style == SWT.SAVE ? "Record DAMSON Debug Session" : "Replay DAMSON Debug Session");
+		String path = text.getText().trim();
+		if (path.length() > 0)
+			dialog.setFileName(path);
+		String selected = dialog.open();
+		if (selected != null)
+			text.setText(selected);
+	}
+	
 	/* (non-Javadoc)
 	 * @see org.eclipse.debug.ui.ILaunchConfigurationTab#setDefaults(org.eclipse.debug.core.ILaunchConfigurationWorkingCopy)
 	 */
@@ -249,6 +375,16 @@ public class DamsonMainTab extends AbstractLaunchConfigurationTab {
 				}
 			}
 			
+			//load the debugger port option
+			dynamicPortsButton.setSelection(configuration.getAttribute(DebugCorePlugin.ATTR_DAMSON_DYNAMIC_PORTS, false));
+			unixSocketButton.setSelection(DebugCorePlugin.TRANSPORT_UNIX.equals(configuration.getAttribute(DebugCorePlugin.ATTR_DAMSON_TRANSPORT, DebugCorePlugin.TRANSPORT_TCP)));
+			protocolExtensionsButton.setSelection(configuration.getAttribute(DebugCorePlugin.ATTR_DAMSON_PROTOCOL_EXTENSIONS, false));
+			
+			//load the session recording options
+			fRecordText.setText(configuration.getAttribute(DebugCorePlugin.ATTR_DAMSON_RECORD_FILE, ""));
+			fReplayText.setText(configuration.getAttribute(DebugCorePlugin.ATTR_DAMSON_REPLAY_FILE, ""));
+			replayRealTimeButton.setSelection(configuration.getAttribute(DebugCorePlugin.ATTR_DAMSON_REPLAY_REAL_TIME, false));
+			
 		} catch (CoreException e) {
 			setErrorMessage(e.getMessage());
 		}
@@ -281,6 +417,18 @@ public class DamsonMainTab extends AbstractLaunchConfigurationTab {
 			configuration.setAttribute(DebugCorePlugin.ATTR_DAMSON_LAUNCH_OPTIONS, DebugCorePlugin.LAUNCH_OPTION_COMPILE);
 		else //interpretButton must be true (assume this anyway)
 			configuration.setAttribute(DebugCorePlugin.ATTR_DAMSON_LAUNCH_OPTIONS, DebugCorePlugin.LAUNCH_OPTION_INTERPRETER);
+		
+		//set configuration for debugger ports
+		configuration.setAttribute(DebugCorePlugin.ATTR_DAMSON_DYNAMIC_PORTS, dynamicPortsButton.getSelection());
+		configuration.setAttribute(DebugCorePlugin.ATTR_DAMSON_TRANSPORT, unixSocketButton.getSelection() ? DebugCorePlugin.TRANSPORT_UNIX : DebugCorePlugin.TRANSPORT_TCP);
+		configuration.setAttribute(DebugCorePlugin.ATTR_DAMSON_PROTOCOL_EXTENSIONS, protocolExtensionsButton.getSelection());
+		
+		//set configuration for session recording (unset paths are removed, not left empty)
+		String record = fRecordText.getText().trim();
+		configuration.setAttribute(DebugCorePlugin.ATTR_DAMSON_RECORD_FILE, record.length() > 0 ? record : null);
+		String replay = fReplayText.getText().trim();
+		configuration.setAttribute(DebugCorePlugin.ATTR_DAMSON_REPLAY_FILE, replay.length() > 0 ? replay : null);
+		configuration.setAttribute(DebugCorePlugin.ATTR_DAMSON_REPLAY_REAL_TIME, replayRealTimeButton.getSelection());
 		 
 		
 		// perform resource mapping for contextual launch
@@ -331,6 +479,15 @@ public class DamsonMainTab extends AbstractLaunchConfigurationTab {
 		} else {
 			setMessage("Select a DAMSON program");
 		}
+		String replay = fReplayText.getText().trim();
+		if (replay.length() > 0 && !new File(replay).isFile()) {
+			setErrorMessage("Specified session recording does not exist");
+			return false;
+		}
+		if (replay.length() > 0 && replay.equals(fRecordText.getText().trim())) {
+			setErrorMessage("A session can not be recorded to the recording being replayed");
+			return false;
+		}
 		return true;
 	}
 
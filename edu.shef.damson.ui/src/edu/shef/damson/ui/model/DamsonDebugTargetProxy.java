@@ -0,0 +1,94 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.ui.model;
+
+import org.eclipse.debug.core.DebugPlugin;
+import org.eclipse.debug.core.ILaunch;
+import org.eclipse.debug.core.model.IStackFrame;
+import org.eclipse.debug.core.model.IThread;
+import org.eclipse.debug.internal.ui.viewers.model.provisional.IModelDelta;
+import org.eclipse.debug.internal.ui.viewers.model.provisional.ModelDelta;
+import org.eclipse.debug.internal.ui.viewers.update.DebugEventHandler;
+import org.eclipse.debug.internal.ui.viewers.update.DebugTargetEventHandler;
+import org.eclipse.debug.internal.ui.viewers.update.DebugTargetProxy;
+import org.eclipse.debug.internal.ui.viewers.update.StackFrameEventHandler;
+
+import edu.shef.damson.core.model.DamsonDebugTarget;
+import edu.shef.damson.core.model.DamsonNode;
+import edu.shef.damson.core.model.DamsonThread;
+
+/**
+ * Model proxy of a DAMSON debug target in the Debug view. Builds the deltas of thread and 
+ * stack frame events through the node of the thread when the target lists nodes, so that 
+ * suspended threads are revealed and selected under their node.
+ */
+public class DamsonDebugTargetProxy extends DebugTargetProxy {
+
+	private DamsonDebugTarget fTarget;
+
+	/**
+	 * Constructs a proxy for the given target
+	 * 
+	 * @param target debug target
+	 */
+	public DamsonDebugTargetProxy(DamsonDebugTarget target) {
+		super(target);
+		fTarget = target;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.internal.ui.viewers.update.DebugTargetProxy#createEventHandlers()
+	 */
+	protected DebugEventHandler[] createEventHandlers() {
+		DamsonThreadEventHandler threadEventHandler = new DamsonThreadEventHandler(this);
+		return new DebugEventHandler[] {
+				new DebugTargetEventHandler(this),
+				threadEventHandler,
+				new StackFrameEventHandler(this, threadEventHandler),
+				new DamsonNodeEventHandler(this) };
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.internal.ui.viewers.update.DebugTargetProxy#getNextSuspendedThreadDelta(org.eclipse.debug.core.model.IThread, boolean)
+	 */
+	protected ModelDelta getNextSuspendedThreadDelta(IThread currentThread, boolean reverse) {
+		if (!fTarget.hasNodes())
+			return super.getNextSuspendedThreadDelta(currentThread, reverse);
+		//the threads of the target are those of the current node
+		IThread[] threads = fTarget.getThreads();
+		for (int i = 0; i < threads.length; i++) {
+			int index = reverse ? threads.length - i - 1 : i;
+			DamsonThread thread = (DamsonThread)threads[index];
+			DamsonNode node = thread.getNode();
+			if (thread.equals(currentThread) || node == null || !thread.isSuspended())
+				continue;
+			IStackFrame frame = thread.getTopStackFrame();
+			if (frame == null)
+				continue;
+			ILaunch launch = fTarget.getLaunch();
+			ModelDelta delta = new ModelDelta(DebugPlugin.getDefault().getLaunchManager(), IModelDelta.NO_CHANGE);
+			ModelDelta child = delta.addNode(launch, getLaunchIndex(launch), IModelDelta.NO_CHANGE, launch.getChildren().length);
+			child = child.addNode(fTarget, getTargetIndex(fTarget), IModelDelta.NO_CHANGE, fTarget.getNodeCount());
+			child = child.addNode(node, node.getIndex(), IModelDelta.NO_CHANGE | IModelDelta.EXPAND, threads.length);
+			child = child.addNode(thread, index, IModelDelta.NO_CHANGE | IModelDelta.EXPAND, thread.getStackFrames().length);
+			child.addNode(frame, 0, IModelDelta.NO_CHANGE | IModelDelta.SELECT, 0);
+			return delta;
+		}
+		return null;
+	}
+}
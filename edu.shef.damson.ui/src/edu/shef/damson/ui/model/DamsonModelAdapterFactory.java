@@ -0,0 +1,73 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.ui.model;
+
+import org.eclipse.core.runtime.IAdapterFactory;
+import org.eclipse.debug.internal.ui.viewers.model.provisional.IElementContentProvider;
+import org.eclipse.debug.internal.ui.viewers.model.provisional.IModelProxyFactory;
+
+import edu.shef.damson.core.model.DamsonDebugTarget;
+import edu.shef.damson.core.model.DamsonNode;
+import edu.shef.damson.core.model.DamsonStackFrame;
+import edu.shef.damson.core.model.DamsonThread;
+import edu.shef.damson.core.model.DamsonValue;
+import edu.shef.damson.core.model.DamsonVariable;
+
+/**
+ * Creates the asynchronous content providers of the DAMSON debug model elements shown by 
+ * the Debug, Variables and Expressions views and the model proxy factory of DAMSON targets.
+ */
+public class DamsonModelAdapterFactory implements IAdapterFactory {
+	
+	private static IElementContentProvider fgTargetContentProvider = new DamsonDebugTargetContentProvider();
+	private static IElementContentProvider fgNodeContentProvider = new DamsonNodeContentProvider();
+	private static IElementContentProvider fgThreadContentProvider = new DamsonThreadContentProvider();
+	private static IElementContentProvider fgFrameContentProvider = new DamsonStackFrameContentProvider();
+	private static IElementContentProvider fgValueContentProvider = new DamsonValueContentProvider();
+	private static IModelProxyFactory fgModelProxyFactory = new DamsonModelProxyFactory();
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.core.runtime.IAdapterFactory#getAdapter(java.lang.Object, java.lang.Class)
+	 */
+	@SuppressWarnings("rawtypes")
+	public Object getAdapter(Object adaptableObject, Class adapterType) {
+		if (adapterType.equals(IElementContentProvider.class)) {
+			if (adaptableObject instanceof DamsonDebugTarget)
+				return fgTargetContentProvider;
+			if (adaptableObject instanceof DamsonNode)
+				return fgNodeContentProvider;
+			if (adaptableObject instanceof DamsonThread)
+				return fgThreadContentProvider;
+			if (adaptableObject instanceof DamsonStackFrame)
+				return fgFrameContentProvider;
+			if (adaptableObject instanceof DamsonVariable || adaptableObject instanceof DamsonValue)
+				return fgValueContentProvider;
+		}
+		if (adapterType.equals(IModelProxyFactory.class) && adaptableObject instanceof DamsonDebugTarget)
+			return fgModelProxyFactory;
+		return null;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.core.runtime.IAdapterFactory#getAdapterList()
+	 */
+	@SuppressWarnings("rawtypes")
+	public Class[] getAdapterList() {
+		return new Class[]{IElementContentProvider.class, IModelProxyFactory.class};
+	}
+}
@@ -0,0 +1,124 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.ui.model;
+
+import org.eclipse.debug.core.DebugEvent;
+import org.eclipse.debug.core.DebugPlugin;
+import org.eclipse.debug.core.ILaunch;
+import org.eclipse.debug.internal.ui.viewers.model.provisional.IModelDelta;
+import org.eclipse.debug.internal.ui.viewers.model.provisional.ModelDelta;
+import org.eclipse.debug.internal.ui.viewers.provisional.AbstractModelProxy;
+import org.eclipse.debug.internal.ui.viewers.update.DebugEventHandler;
+
+import edu.shef.damson.core.model.DamsonDebugTarget;
+import edu.shef.damson.core.model.DamsonNode;
+
+/**
+ * Refreshes a DAMSON node in the Debug view when its threads change (i.e. are discarded 
+ * on suspend) or it suspends or resumes on its own (non-stop mode), and reveals a node on 
+ * request. A node which suspends at a breakpoint or after a step is also revealed.
+ */
+public class DamsonNodeEventHandler extends DebugEventHandler {
+
+	/**
+	 * Detail of a model specific event requesting that the source node is revealed, expanded 
+	 * and selected. The delta locates the node by its index so that only its page of the 
+	 * node list and its threads are read by the view.
+	 */
+	public static final int REVEAL = 1;
+
+	/**
+	 * Constructs a handler for the given model proxy
+	 * 
+	 * @param proxy model proxy
+	 */
+	public DamsonNodeEventHandler(AbstractModelProxy proxy) {
+		super(proxy);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.internal.ui.viewers.update.DebugEventHandler#handlesEvent(org.eclipse.debug.core.DebugEvent)
+	 */
+	protected boolean handlesEvent(DebugEvent event) {
+		return event.getSource() instanceof DamsonNode;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.internal.ui.viewers.update.DebugEventHandler#handleChange(org.eclipse.debug.core.DebugEvent)
+	 */
+	protected void handleChange(DebugEvent event) {
+		DamsonNode node = (DamsonNode)event.getSource();
+		fireNodeDelta(node, event.getDetail() == DebugEvent.CONTENT ? IModelDelta.CONTENT : IModelDelta.STATE);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.internal.ui.viewers.update.DebugEventHandler#handleSuspend(org.eclipse.debug.core.DebugEvent)
+	 */
+	protected void handleSuspend(DebugEvent event) {
+		DamsonNode node = (DamsonNode)event.getSource();
+		if (event.getDetail() == DebugEvent.BREAKPOINT || event.getDetail() == DebugEvent.STEP_END)
+			reveal(node, IModelDelta.STATE | IModelDelta.CONTENT);
+		else
+			fireNodeDelta(node, IModelDelta.STATE | IModelDelta.CONTENT);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.internal.ui.viewers.update.DebugEventHandler#handleResume(org.eclipse.debug.core.DebugEvent)
+	 */
+	protected void handleResume(DebugEvent event) {
+		fireNodeDelta((DamsonNode)event.getSource(), IModelDelta.STATE | IModelDelta.CONTENT);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.internal.ui.viewers.update.DebugEventHandler#handleOther(org.eclipse.debug.core.DebugEvent)
+	 */
+	protected void handleOther(DebugEvent event) {
+		if (event.getKind() != DebugEvent.MODEL_SPECIFIC || event.getDetail() != REVEAL)
+			return;
+		reveal((DamsonNode)event.getSource(), IModelDelta.NO_CHANGE);
+	}
+
+	/**
+	 * Fires a delta for a node located by its index
+	 * 
+	 * @param node node
+	 * @param flags delta flags of the node
+	 */
+	private void fireNodeDelta(DamsonNode node, int flags) {
+		ModelDelta delta = new ModelDelta(DebugPlugin.getDefault().getLaunchManager(), IModelDelta.NO_CHANGE);
+		ModelDelta target = delta.addNode(node.getLaunch(), IModelDelta.NO_CHANGE).addNode(node.getDebugTarget(), IModelDelta.NO_CHANGE);
+		target.addNode(node, node.getIndex(), flags, -1);
+		fireDelta(delta);
+	}
+
+	/**
+	 * Reveals, expands and selects a node
+	 * 
+	 * @param node node
+	 * @param flags further delta flags of the node
+	 */
+	private void reveal(DamsonNode node, int flags) {
+		DamsonDebugTarget target = (DamsonDebugTarget)node.getDebugTarget();
+		ILaunch launch = node.getLaunch();
+		ModelDelta delta = new ModelDelta(DebugPlugin.getDefault().getLaunchManager(), IModelDelta.NO_CHANGE);
+		ModelDelta child = delta.addNode(launch, indexOf(DebugPlugin.getDefault().getLaunchManager().getLaunches(), launch), IModelDelta.NO_CHANGE, launch.getChildren().length);
+		child = child.addNode(target, indexOf(launch.getChildren(), target), IModelDelta.EXPAND, target.getNodeCount());
+		child.addNode(node, node.getIndex(), flags | IModelDelta.REVEAL | IModelDelta.EXPAND | IModelDelta.SELECT, -1);
+		fireDelta(delta);
+	}
+}
@@ -0,0 +1,69 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.ui.model;
+
+import org.eclipse.debug.core.ILaunch;
+import org.eclipse.debug.core.model.IThread;
+import org.eclipse.debug.internal.ui.viewers.model.provisional.IModelDelta;
+import org.eclipse.debug.internal.ui.viewers.model.provisional.ModelDelta;
+import org.eclipse.debug.internal.ui.viewers.provisional.AbstractModelProxy;
+import org.eclipse.debug.internal.ui.viewers.update.ThreadEventHandler;
+
+import edu.shef.damson.core.model.DamsonDebugTarget;
+import edu.shef.damson.core.model.DamsonNode;
+import edu.shef.damson.core.model.DamsonThread;
+
+/**
+ * Updates the Debug view on thread events, taking account of the node level between the 
+ * target and the threads when the target lists nodes.
+ */
+public class DamsonThreadEventHandler extends ThreadEventHandler {
+
+	/**
+	 * Constructs a handler for the given model proxy
+	 * 
+	 * @param proxy model proxy
+	 */
+	public DamsonThreadEventHandler(AbstractModelProxy proxy) {
+		super(proxy);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.internal.ui.viewers.update.ThreadEventHandler#addPathToThread(org.eclipse.debug.internal.ui.viewers.model.provisional.ModelDelta, org.eclipse.debug.core.model.IThread)
+	 */
+	protected ModelDelta addPathToThread(ModelDelta delta, IThread thread) {
+		DamsonNode node = ((DamsonThread)thread).getNode();
+		if (node == null)
+			return super.addPathToThread(delta, thread);
+		ILaunch launch = thread.getLaunch();
+		DamsonDebugTarget target = (DamsonDebugTarget)thread.getDebugTarget();
+		delta = delta.addNode(launch, indexOf(getLaunchManager().getLaunches(), launch), IModelDelta.NO_CHANGE, launch.getChildren().length);
+		delta = delta.addNode(target, indexOf(launch.getChildren(), target), IModelDelta.NO_CHANGE, target.getNodeCount());
+		return delta.addNode(node, node.getIndex(), IModelDelta.NO_CHANGE, node.isThreadsAvailable() ? node.getThreads().length : -1);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.internal.ui.viewers.update.ThreadEventHandler#indexOf(org.eclipse.debug.core.model.IThread)
+	 */
+	protected int indexOf(IThread thread) {
+		DamsonNode node = ((DamsonThread)thread).getNode();
+		if (node == null || !node.isThreadsAvailable())
+			return super.indexOf(thread);
+		return indexOf(node.getThreads(), thread);
+	}
+}
@@ -0,0 +1,104 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.ui.model;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.debug.core.model.IDebugElement;
+import org.eclipse.debug.internal.ui.model.elements.VariableContentProvider;
+import org.eclipse.debug.internal.ui.viewers.model.provisional.IPresentationContext;
+import org.eclipse.debug.internal.ui.viewers.model.provisional.IViewerUpdate;
+import org.eclipse.debug.ui.IDebugUIConstants;
+
+import edu.shef.damson.core.model.DamsonValue;
+import edu.shef.damson.core.model.DamsonVariable;
+
+/**
+ * Provides the elements of a DAMSON array (the children of an array variable or value) 
+ * to the Variables and Expressions views. Children are retrieved in a job (off the UI 
+ * thread). Arrays larger than the partition size are grouped into ranges (i.e. [0..99]) as 
+ * for any indexed value; the elements of a range are fetched when it is expanded. For other 
+ * arrays only the element variables of the requested rows are created, with their values 
+ * fetched by a single array range request where supported.
+ */
+public class DamsonValueContentProvider extends VariableContentProvider {
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.internal.ui.model.elements.ElementContentProvider#getChildCount(java.lang.Object, org.eclipse.debug.internal.ui.viewers.model.provisional.IPresentationContext, org.eclipse.debug.internal.ui.viewers.model.provisional.IViewerUpdate)
+	 */
+	protected int getChildCount(Object element, IPresentationContext context, IViewerUpdate monitor) throws CoreException {
+		DamsonValue value = getValue(element);
+		if (value == null)
+			return 0;
+		if (isPartitioned(value))
+			return getValueChildren((IDebugElement)element, value, context).length;
+		return value.getSize();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.internal.ui.model.elements.ElementContentProvider#getChildren(java.lang.Object, int, int, org.eclipse.debug.internal.ui.viewers.model.provisional.IPresentationContext, org.eclipse.debug.internal.ui.viewers.model.provisional.IViewerUpdate)
+	 */
+	protected Object[] getChildren(Object parent, int index, int length, IPresentationContext context, IViewerUpdate monitor) throws CoreException {
+		DamsonValue value = getValue(parent);
+		if (value == null || monitor.isCanceled())
+			return EMPTY;
+		if (isPartitioned(value))
+			return getElements(getValueChildren((IDebugElement)parent, value, context), index, length);
+		int size = value.getSize();
+		if (index >= size)
+			return EMPTY;
+		return value.getVariables(index, Math.min(length, size - index));
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.internal.ui.model.elements.ElementContentProvider#hasChildren(java.lang.Object, org.eclipse.debug.internal.ui.viewers.model.provisional.IPresentationContext, org.eclipse.debug.internal.ui.viewers.model.provisional.IViewerUpdate)
+	 */
+	protected boolean hasChildren(Object element, IPresentationContext context, IViewerUpdate monitor) throws CoreException {
+		DamsonValue value = getValue(element);
+		return value != null && value.hasVariables();
+	}
+
+	/**
+	 * Returns whether the elements of an array are grouped into ranges
+	 *
+	 * @param value array value
+	 * @return whether shown as partitions
+	 */
+	private boolean isPartitioned(DamsonValue value) {
+		return computeParitionSize(value) > 1;
+	}
+
+	/**
+	 * Gets the value whose elements are the children of a variable or value
+	 *
+	 * @param element DAMSON variable or value
+	 * @return the value or <code>null</code> if not available (i.e. not suspended)
+	 * @throws CoreException if the value can not be retrieved
+	 */
+	private DamsonValue getValue(Object element) throws CoreException {
+		if (element instanceof DamsonVariable)
+			return (DamsonValue)((DamsonVariable)element).getValue();
+		return (DamsonValue)element;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.internal.ui.model.elements.ElementContentProvider#supportsContextId(java.lang.String)
+	 */
+	protected boolean supportsContextId(String id) {
+		return IDebugUIConstants.ID_VARIABLE_VIEW.equals(id) || IDebugUIConstants.ID_EXPRESSION_VIEW.equals(id);
+	}
+}
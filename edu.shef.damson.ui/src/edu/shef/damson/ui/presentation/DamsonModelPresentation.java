@@ -26,6 +26,7 @@ import org.eclipse.debug.core.model.IValue;
 import edu.shef.damson.core.DebugCorePlugin;
 import edu.shef.damson.core.breakpoints.DamsonLineBreakpoint;
 import edu.shef.damson.core.model.DamsonDebugTarget;
+import edu.shef.damson.core.model.DamsonNode;
 import edu.shef.damson.core.model.DamsonStackFrame;
 import edu.shef.damson.core.model.DamsonThread;
 import edu.shef.damson.core.model.DamsonVariable;
@@ -55,6 +56,8 @@ public class DamsonModelPresentation extends LabelProvider implements IDebugMode
 	public String getText(Object element) {
 		if (element instanceof DamsonDebugTarget) {
 			return getTargetText((DamsonDebugTarget)element);
+		} else if (element instanceof DamsonNode) {
+			return getNodeText((DamsonNode)element);
 		} else if (element instanceof DamsonThread) {
 	        return getThreadText((DamsonThread)element);
 	    } else if (element instanceof DamsonStackFrame) {
@@ -114,6 +117,25 @@ public class DamsonModelPresentation extends LabelProvider implements IDebugMode
 		
 	}
 	
+	/**
+	 * Returns a label for the given node
+	 * 
+	 * @param node a node
+	 * @return a label for the given node
+	 */
+	private String getNodeText(DamsonNode node) {
+		if (node.isCurrent())
+			return node.getName() + " (Current)";
+		//nodes suspended on their own while the program runs (non-stop mode)
+		if (!node.getDebugTarget().isSuspended()) {
+			if (node.isStepping())
+				return node.getName() + " (Stepping)";
+			if (node.isSuspended())
+				return node.getName() + " (Suspended)";
+		}
+		return node.getName();
+	}
+	
 	/**
 	 * Returns a label for the given stack frame
 	 * 
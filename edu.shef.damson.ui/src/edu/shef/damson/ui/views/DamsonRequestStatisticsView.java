@@ -0,0 +1,237 @@
+/******************************************************************************************
+ * Copyright (c) 2011, University of Sheffield
+ * 
+ * The source code for the DAMSON Debugger is available for non commercial use.
+ * The code is based up that of Bjorn Freeman-Benson and IBM Corporation which is 
+ * described at 
+ * 
+ * http://www.eclipse.org/articles/Article-Debugger/how-to.html
+ * 
+ * and is distributed under the Eclipse Public License v1.0
+ * 
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Paul Richmond (http://www.paulrichmond.staff.shef.ac.uk/) - DAMSON debugger
+ *     IBM Corporation and Bjorn Freeman-Benson - initial code developed for a PDA debugger
+ ******************************************************************************************/
+package edu.shef.damson.ui.views;
+
+import org.eclipse.debug.core.DebugEvent;
+import org.eclipse.debug.core.DebugException;
+import org.eclipse.debug.core.DebugPlugin;
+import org.eclipse.debug.core.IDebugEventSetListener;
+import org.eclipse.debug.core.ILaunch;
+import org.eclipse.debug.core.model.IDebugElement;
+import org.eclipse.debug.ui.DebugUITools;
+import org.eclipse.debug.ui.contexts.DebugContextEvent;
+import org.eclipse.debug.ui.contexts.IDebugContextListener;
+import org.eclipse.debug.ui.contexts.IDebugContextService;
+import org.eclipse.jface.action.Action;
+import org.eclipse.jface.action.IToolBarManager;
+import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.jface.viewers.IStructuredSelection;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.swt.widgets.TableItem;
+import org.eclipse.ui.part.ViewPart;
+
+import edu.shef.damson.core.model.DamsonCommandStatistics;
+import edu.shef.damson.core.model.DamsonDebugTarget;
+import edu.shef.damson.core.model.DamsonRequestStatistics;
+
+/**
+ * View of the statistics of the requests sent to the DAMSON debugger by the debug target 
+ * of the current debug context (see {@link DamsonDebugTarget#getRequestStatistics()}). Lists 
+ * each command with its request count in total and since the most recent suspend, its 
+ * latencies and the bytes sent and received. The view is refreshed whenever a DAMSON debug 
+ * target suspends or another target is selected.
+ */
+public class DamsonRequestStatisticsView extends ViewPart implements IDebugEventSetListener, IDebugContextListener {
+
+	/**
+	 * View identifier (must match plugin.xml)
+	 */
+	public static final String ID = "edu.shef.damson.ui.views.DamsonRequestStatisticsView";
+
+	private static final String[] COLUMNS = {
+		"Command", "Count", "Last Suspend", "Mean (ms)", "p99 (ms)", "Max (ms)", "Bytes Out", "Bytes In", "Failures"
+	};
+	private static final int[] COLUMN_WIDTHS = {
+		100, 70, 90, 80, 80, 80, 90, 90, 70
+	};
+
+	private Table fTable;
+	private DamsonDebugTarget fTarget;	//target whose statistics are shown, null if none
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.ui.part.WorkbenchPart#createPartControl(org.eclipse.swt.widgets.Composite)
+	 */
+	public void createPartControl(Composite parent) {
+		fTable = new Table(parent, SWT.FULL_SELECTION | SWT.H_SCROLL | SWT.V_SCROLL);
+		fTable.setHeaderVisible(true);
+		fTable.setLinesVisible(true);
+		for (int i = 0; i < COLUMNS.length; i++) {
+			TableColumn column = new TableColumn(fTable, i == 0 ? SWT.LEFT : SWT.RIGHT);
+			column.setText(COLUMNS[i]);
+			column.setWidth(COLUMN_WIDTHS[i]);
+		}
+		createActions();
+		DebugPlugin.getDefault().addDebugEventListener(this);
+		IDebugContextService contextService = DebugUITools.getDebugContextManager().getContextService(getSite().getWorkbenchWindow());
+		contextService.addDebugContextListener(this);
+		fTarget = getTarget(contextService.getActiveContext());
+		refresh();
+	}
+	
+	/**
+	 * Gets the DAMSON debug target of a debug context
+	 * 
+	 * @param context debug context selection
+	 * @return the target or <code>null</code> if the context is not within a DAMSON debug target
+	 */
+	private static DamsonDebugTarget getTarget(ISelection context) {
+		if (!(context instanceof IStructuredSelection))
+			return null;
+		Object element = ((IStructuredSelection)context).getFirstElement();
+		if (element instanceof ILaunch)
+			element = ((ILaunch)element).getDebugTarget();
+		if (element instanceof IDebugElement && ((IDebugElement)element).getDebugTarget() instanceof DamsonDebugTarget)
+			return (DamsonDebugTarget)((IDebugElement)element).getDebugTarget();
+		return null;
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.ui.contexts.IDebugContextListener#debugContextChanged(org.eclipse.debug.ui.contexts.DebugContextEvent)
+	 */
+	public void debugContextChanged(DebugContextEvent event) {
+		if ((event.getFlags() & DebugContextEvent.ACTIVATED) == 0)
+			return;
+		DamsonDebugTarget target = getTarget(event.getContext());
+		//keep showing the previous target when something other than a DAMSON element is selected
+		if (target != null && target != fTarget) {
+			fTarget = target;
+			refresh();
+		}
+	}
+
+	/**
+	 * Adds the refresh and reset actions to the view tool bar
+	 */
+	private void createActions() {
+		IToolBarManager toolbar = getViewSite().getActionBars().getToolBarManager();
+		toolbar.add(new Action("Refresh") {
+			public void run() {
+				refresh();
+			}
+		});
+		toolbar.add(new Action("Reset") {
+			public void run() {
+				if (fTarget != null)
+					fTarget.getRequestStatistics().reset();
+				refresh();
+			}
+		});
+	}
+
+	/**
+	 * Rebuilds the table from the request statistics of the current target
+	 */
+	public void refresh() {
+		if (fTable == null || fTable.isDisposed())
+			return;
+		if (fTarget == null) {
+			fTable.removeAll();
+			setContentDescription("No DAMSON debug target selected");
+			return;
+		}
+		DamsonRequestStatistics statistics = fTarget.getRequestStatistics();
+		DamsonCommandStatistics[] total = statistics.getCommandStatistics();
+		DamsonCommandStatistics[] suspend = statistics.getSuspendStatistics();
+		fTable.setRedraw(false);
+		fTable.removeAll();
+		for (int i = 0; i < total.length; i++) {
+			DamsonCommandStatistics command = total[i];
+			long last = 0;
+			for (int j = 0; j < suspend.length; j++) {
+				if (suspend[j].getCommand().equals(command.getCommand()))
+					last = suspend[j].getCount();
+			}
+			TableItem item = new TableItem(fTable, SWT.NONE);
+			item.setText(new String[] {
+				command.getCommand(),
+				Long.toString(command.getCount()),
+				Long.toString(last),
+				formatTime(command.getMeanTime()),
+				formatTime(command.getPercentile(0.99)),
+				formatTime(command.getMaxTime()),
+				Long.toString(command.getBytesOut()),
+				Long.toString(command.getBytesIn()),
+				Long.toString(command.getFailures())
+			});
+		}
+		setContentDescription(getTargetName() + ": " + statistics.getSuspendCount() + " suspends");
+		fTable.setRedraw(true);
+	}
+
+	/**
+	 * Gets the name of the current target
+	 * 
+	 * @return target name
+	 */
+	private String getTargetName() {
+		try {
+			return fTarget.getName();
+		} catch (DebugException e) {
+			return "DAMSON";
+		}
+	}
+	
+	/**
+	 * Formats a latency in milliseconds
+	 *
+	 * @param nanos latency in nanoseconds
+	 * @return formatted latency
+	 */
+	private static String formatTime(long nanos) {
+		return String.format("%.3f", nanos / 1000000.0);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.debug.core.IDebugEventSetListener#handleDebugEvents(org.eclipse.debug.core.DebugEvent[])
+	 */
+	public void handleDebugEvents(DebugEvent[] events) {
+		for (int i = 0; i < events.length; i++) {
+			if (events[i].getKind() == DebugEvent.SUSPEND || events[i].getKind() == DebugEvent.TERMINATE) {
+				Display display = fTable.getDisplay();
+				if (!display.isDisposed()) {
+					display.asyncExec(new Runnable() {
+						public void run() {
+							refresh();
+						}
+					});
+				}
+				return;
+			}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.ui.part.WorkbenchPart#setFocus()
+	 */
+	public void setFocus() {
+		fTable.setFocus();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.ui.part.WorkbenchPart#dispose()
+	 */
+	public void dispose() {
+		DebugPlugin.getDefault().removeDebugEventListener(this);
+		DebugUITools.getDebugContextManager().getContextService(getSite().getWorkbenchWindow()).removeDebugContextListener(this);
+		super.dispose();
+	}
+}